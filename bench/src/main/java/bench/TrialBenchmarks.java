@@ -0,0 +1,182 @@
+package bench;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import config.Config;
+import config.Settings;
+import controller.DataWriter;
+import model.AlphaPair;
+import model.AlphaPairGenerator;
+import model.GameLogic;
+import model.Player;
+
+/**
+ * JMH benchmarks of the hot paths of a trial: making the next pair, scoring
+ * the response, updating the subject, exporting the trial, and reading the
+ * config. Each benchmark works through a fixed set of pairs from a seeded
+ * generator, so every run measures the same work.
+ *
+ * Run with the GC profiler, which gives the bytes allocated per operation
+ * (gc.alloc.rate.norm) next to the time:
+ *
+ *  mvn -B -f bench/pom.xml package
+ *  java -jar bench/target/benchmarks.jar -prof gc
+ *
+ * writeToCSV appends to results_letters in the working folder, as the game
+ * does, so run the benchmarks from a scratch folder. The file it writes is
+ * deleted afterwards.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class TrialBenchmarks {
+
+    /** Seed of the generators. */
+    static final long SEED = 20261019L;
+
+    /** Number of pairs the benchmarks cycle through. A power of two. */
+    static final int NUM_PAIRS = 1024;
+
+    /** Subject the export benchmarks write as, chosen not to clash with a real subject. */
+    static final int BENCH_SUBJECT = 999999;
+
+    /** A generator of pairs. */
+    @State(Scope.Thread)
+    public static class Generator {
+        AlphaPairGenerator apg;
+
+        @Setup
+        public void setUp() {
+            AlphaPairGenerator.buildTables();
+            this.apg = new AlphaPairGenerator(SEED);
+        }
+    }
+
+    /** Pairs from a seeded generator, a subject and a writer. */
+    @State(Scope.Thread)
+    public static class Trials {
+        AlphaPair pairs[];
+        Player player;
+        DataWriter writer;
+        LocalDateTime time;
+        int next;
+
+        @Setup
+        public void setUp() {
+            quietLogging();
+            AlphaPairGenerator.buildTables();
+            AlphaPairGenerator apg = new AlphaPairGenerator(SEED);
+            this.pairs = new AlphaPair[NUM_PAIRS];
+            for (int i = 0; i < this.pairs.length; i++) {
+                apg.getNewDifficultyPair();
+                this.pairs[i] = apg.getAlphaPair();
+            }
+            this.player = new Player(BENCH_SUBJECT, Player.Gender.FEMALE, 7, NUM_PAIRS);
+            this.player.setResponseTime(612345678L);
+            this.writer = new DataWriter();
+            this.time = LocalDateTime.of(2026, 10, 19, 9, 30, 15, 123456000);
+            this.writer.grabData(this.player, this.pairs[0], this.time);
+            this.writer.getResultsFile().delete();
+        }
+
+        /** @return Index of the next pair. */
+        int next() {
+            return this.next++ & (NUM_PAIRS - 1);
+        }
+
+        @TearDown
+        public void tearDown() {
+            this.writer.getResultsFile().delete();
+        }
+    }
+
+    /** The default config. */
+    @State(Scope.Thread)
+    public static class Configs {
+        Config config;
+
+        @Setup
+        public void setUp() {
+            quietLogging();
+            this.config = new Config();
+        }
+    }
+
+    /**
+     * Log only warnings and errors, through log4j and through java.util.logging,
+     * which DataWriter logs to, so the results do not depend on where the log goes.
+     */
+    static void quietLogging() {
+        BasicConfigurator.resetConfiguration();
+        BasicConfigurator.configure();
+        Logger.getRootLogger().setLevel(org.apache.log4j.Level.WARN);
+        java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+    }
+
+    @Benchmark
+    public int newDifficultyPair(Generator generator) {
+        generator.apg.getNewDifficultyPair();
+        return generator.apg.getAlphaPair().getFontSizeOne();
+    }
+
+    @Benchmark
+    public boolean checkAnswerCorrect(Trials trials) {
+        int i = trials.next();
+        return GameLogic.checkAnswerCorrect((i & 1) == 0, trials.pairs[i]);
+    }
+
+    @Benchmark
+    public int recordTrial(Trials trials) {
+        int i = trials.next();
+        if (i == 0) {
+            // A new session every NUM_PAIRS trials, so the history stays its expected size.
+            trials.player.getTrialHistory().clear();
+        }
+        trials.player.recordTrial(400000000L + i, (i & 3) != 0, trials.pairs[i]);
+        return trials.player.getNumRounds();
+    }
+
+    @Benchmark
+    public String generateTrialText(Trials trials) {
+        trials.writer.grabData(trials.player, trials.pairs[trials.next()], trials.time);
+        return trials.writer.generateTrialText();
+    }
+
+    @Benchmark
+    public int writeToCSV(Trials trials) {
+        int i = trials.next();
+        trials.writer.grabData(trials.player, trials.pairs[i], trials.time);
+        trials.writer.writeToCSV();
+        return i;
+    }
+
+    @Benchmark
+    public int configLookup(Configs configs) {
+        return configs.config.getPropertyInt("time.between.rounds")
+                + (configs.config.getPropertyBoolean("size.variation") ? 1 : 0)
+                + configs.config.getProperty("stimulus.renderer").length();
+    }
+
+    @Benchmark
+    public int configSettings(Configs configs) {
+        return new Settings(configs.config).getTimeBetweenRounds();
+    }
+}
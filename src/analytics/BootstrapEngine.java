@@ -0,0 +1,675 @@
+package analytics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import controller.DataWriter;
+
+/**
+ * Bootstrap confidence intervals of the accuracy, the accuracy at each
+ * difficulty, the median response time and the fitted thresholds, for every
+ * subject and for groups of subjects.
+ *
+ * The trials of a subject are resampled with replacement within each
+ * difficulty, so every replicate keeps the session's mix of difficulties. A
+ * group is resampled in two stages, subjects with replacement and then the
+ * trials of each, so its intervals include the spread between subjects. The
+ * interval is the percentile interval of the replicates; replicates whose fit
+ * did not converge are left out, and the number kept is reported.
+ *
+ * The replicates of each subject or group are cut into chunks of
+ * CHUNK_REPLICATES, and each chunk is one task on a TaskPool.
+ * Every chunk has its own SplittableRandom, split from the seed in the order
+ * the chunks are submitted, so the intervals depend only on the seed and the
+ * data, not on the number of threads or how the tasks were scheduled. The
+ * first task of each subject or group also fits its trials as they are, and
+ * the fits of every replicate start from that estimate. A replicate is kept
+ * as counts per distance and ratio level in primitive arrays that a task
+ * allocates once and reuses, and is fitted from the counts, so its cost
+ * grows with its trials only to draw them.
+ * The intervals of each subject are taken as soon as its chunks are done,
+ * so the replicates held at once do not grow with the size of the cohort.
+ *
+ * Classes Related To:
+ *  -Trials.java
+ *      -The trials resampled.
+ *  -PsychometricFit.java
+ *      -Fits the thresholds of each replicate.
+ *  -TaskPool.java
+ *      -Runs the chunks in parallel.
+ *  -BootstrapMain.java (main)
+ *      -Runs the bootstrap from the command line.
+ *
+ */
+public class BootstrapEngine {
+
+    private static final Logger logger = Logger.getLogger(BootstrapEngine.class);
+
+    /** Replicates when none are given. */
+    public static final int DEFAULT_REPLICATES = 1000;
+
+    /** Confidence level when none is given. */
+    public static final double DEFAULT_CONFIDENCE = 0.95;
+
+    /** Seed when none is given. */
+    public static final long DEFAULT_SEED = 20261019L;
+
+    /** Replicates of one task. */
+    static final int CHUNK_REPLICATES = 100;
+
+    /** The metrics, in the order of each replicate's values. */
+    public static final String METRICS[] = {
+            "Accuracy",
+            "Accuracy " + Trials.DIFFICULTIES[0],
+            "Accuracy " + Trials.DIFFICULTIES[1],
+            "Accuracy " + Trials.DIFFICULTIES[2],
+            "Median RT (s)",
+            "Distance Threshold",
+            "Ratio Threshold",
+    };
+
+    static final int ACCURACY = 0;
+    static final int ACCURACY_BY_DIFFICULTY = 1;
+    static final int MEDIAN_RT = 4;
+    static final int DISTANCE_THRESHOLD = 5;
+    static final int RATIO_THRESHOLD = 6;
+
+    /** Columns of the table of intervals. */
+    public static final String COLUMNS[] = {"Subject or Group", "Metric", "Estimate", "Lower", "Upper", "Replicates"};
+
+    /** Confidence interval of one metric of a subject or group. */
+    public static final class Interval {
+        private final String unit;
+        private final String metric;
+        private final double estimate;
+        private final double lower;
+        private final double upper;
+        private final int replicates;
+
+        Interval(String unit, String metric, double estimate, double lower, double upper, int replicates) {
+            this.unit = unit;
+            this.metric = metric;
+            this.estimate = estimate;
+            this.lower = lower;
+            this.upper = upper;
+            this.replicates = replicates;
+        }
+
+        /** @return The subject ID, or the name of the group. */
+        public String getUnit() {
+            return this.unit;
+        }
+
+        public String getMetric() {
+            return this.metric;
+        }
+
+        /** @return The metric of the trials as they are. */
+        public double getEstimate() {
+            return this.estimate;
+        }
+
+        public double getLower() {
+            return this.lower;
+        }
+
+        public double getUpper() {
+            return this.upper;
+        }
+
+        /** @return Number of replicates the metric could be computed for. */
+        public int getReplicates() {
+            return this.replicates;
+        }
+
+        /**
+         * @return The values of the interval, in the order of COLUMNS.
+         */
+        public String[] toValues() {
+            return new String[] {this.unit, this.metric, Double.toString(this.estimate),
+                    Double.toString(this.lower), Double.toString(this.upper), Integer.toString(this.replicates)};
+        }
+    }
+
+    /**
+     * A subject or group: its trials, with each subject's trials indexed by
+     * difficulty for stratified resampling, and the level of the distance and
+     * of the ratio of each trial among the levels of the unit. Every replicate
+     * draws from those levels, so it is fitted from counts per level without
+     * sorting its trials. Read only once built, so shared by the tasks.
+     */
+    private static final class Unit {
+        private final String name;
+        private final Trials subjects[];
+        private final boolean group;
+        /** Indexes of each subject's trials, ordered by difficulty. */
+        private final int order[][];
+        /** Start of each difficulty in order, the last being the trials of no difficulty. */
+        private final int strata[][];
+        /** Distinct distances and ratios of the unit, ascending. */
+        private final double distanceLevels[];
+        private final double ratioLevels[];
+        /** Difficulty of each distance level, -1 if none. */
+        private final int levelDifficulty[];
+        /** Level of the distance and of the ratio of each trial, indexed by [subject][trial]. */
+        private final int distanceLevel[][];
+        private final int ratioLevel[][];
+        /** Number of trials of the unit as it is. */
+        private final int size;
+        /** Metrics of the unit as it is, and its fits, which the replicates start from. Guarded by this. */
+        private double estimate[];
+        private PsychometricFit.Logistic fits[];
+
+        Unit(String name, List<Trials> subjects, boolean group) {
+            this.name = name;
+            this.subjects = subjects.toArray(new Trials[0]);
+            this.group = group;
+            int numSubjects = this.subjects.length;
+            this.order = new int[numSubjects][];
+            this.strata = new int[numSubjects][];
+            this.distanceLevel = new int[numSubjects][];
+            this.ratioLevel = new int[numSubjects][];
+            int size = 0;
+            for (Trials trials : this.subjects) {
+                size += trials.getSize();
+            }
+            this.size = size;
+            this.distanceLevels = levels(this.subjects, size, false);
+            this.ratioLevels = levels(this.subjects, size, true);
+            this.levelDifficulty = new int[this.distanceLevels.length];
+            for (int l = 0; l < this.distanceLevels.length; l++) {
+                this.levelDifficulty[l] = Trials.difficultyOf(this.distanceLevels[l]);
+            }
+
+            for (int s = 0; s < numSubjects; s++) {
+                Trials trials = this.subjects[s];
+                int n = trials.getSize();
+                double distance[] = trials.getDistance();
+                double fontRatio[] = trials.getFontRatio();
+                this.distanceLevel[s] = new int[n];
+                this.ratioLevel[s] = new int[n];
+                for (int i = 0; i < n; i++) {
+                    this.distanceLevel[s][i] = Arrays.binarySearch(this.distanceLevels, distance[i]);
+                    this.ratioLevel[s][i] = Arrays.binarySearch(this.ratioLevels, fontRatio[i]);
+                }
+
+                int numStrata = Trials.DIFFICULTIES.length + 1;
+                int counts[] = new int[numStrata + 1];
+                for (int i = 0; i < n; i++) {
+                    counts[stratum(distance[i]) + 1]++;
+                }
+                for (int k = 1; k <= numStrata; k++) {
+                    counts[k] += counts[k - 1];
+                }
+                this.strata[s] = Arrays.copyOf(counts, counts.length);
+                this.order[s] = new int[n];
+                for (int i = 0; i < n; i++) {
+                    this.order[s][counts[stratum(distance[i])]++] = i;
+                }
+            }
+        }
+
+        /**
+         * @return The distinct distances, or ratios, of the subjects, ascending.
+         */
+        private static double[] levels(Trials subjects[], int size, boolean ratio) {
+            double levels[] = new double[size];
+            int n = 0;
+            for (Trials trials : subjects) {
+                System.arraycopy(ratio ? trials.getFontRatio() : trials.getDistance(), 0, levels, n, trials.getSize());
+                n += trials.getSize();
+            }
+            Arrays.sort(levels);
+            int distinct = 0;
+            for (int i = 0; i < n; i++) {
+                if (distinct == 0 || Double.compare(levels[i], levels[distinct - 1]) != 0) {
+                    levels[distinct++] = levels[i];
+                }
+            }
+            return Arrays.copyOf(levels, distinct);
+        }
+
+        /**
+         * Compute the metrics of the unit as it is, once, on the first task
+         * that needs them.
+         * @return The fits of the distance and the ratio thresholds.
+         */
+        synchronized PsychometricFit.Logistic[] estimate() {
+            if (this.estimate == null) {
+                Sample sample = new Sample(this);
+                for (int s = 0; s < this.subjects.length; s++) {
+                    sample.ensure(this.subjects[s].getSize());
+                    for (int t = 0; t < this.subjects[s].getSize(); t++) {
+                        sample.add(this, s, t);
+                    }
+                }
+                double estimate[] = new double[METRICS.length];
+                PsychometricFit.Logistic fits[] = new PsychometricFit.Logistic[2];
+                metrics(this, sample, estimate, null, fits);
+                this.estimate = estimate;
+                this.fits = fits;
+            }
+            return this.fits;
+        }
+
+        synchronized double[] getEstimate() {
+            return this.estimate;
+        }
+
+        /**
+         * @return The stratum of a trial: its difficulty, or the last stratum if none.
+         */
+        private static int stratum(double distance) {
+            int difficulty = Trials.difficultyOf(distance);
+            return difficulty < 0 ? Trials.DIFFICULTIES.length : difficulty;
+        }
+    }
+
+    /**
+     * The trials of one replicate, as the number of trials and of correct
+     * responses at each level, and the response times of the correct trials.
+     * A replicate of a group has as many trials as the subjects drawn, so the
+     * response times grow when a draw needs more room.
+     */
+    private static final class Sample {
+        private final int distanceTrials[];
+        private final int distanceSuccesses[];
+        private final int ratioTrials[];
+        private final int ratioSuccesses[];
+        private double correctTimes[];
+        private int size;
+        private int numCorrect;
+
+        Sample(Unit unit) {
+            this.distanceTrials = new int[unit.distanceLevels.length];
+            this.distanceSuccesses = new int[unit.distanceLevels.length];
+            this.ratioTrials = new int[unit.ratioLevels.length];
+            this.ratioSuccesses = new int[unit.ratioLevels.length];
+            this.correctTimes = new double[unit.size + (unit.size >> 3)];
+        }
+
+        /** Empty the sample for the next replicate. */
+        void clear() {
+            Arrays.fill(this.distanceTrials, 0);
+            Arrays.fill(this.distanceSuccesses, 0);
+            Arrays.fill(this.ratioTrials, 0);
+            Arrays.fill(this.ratioSuccesses, 0);
+            this.size = 0;
+            this.numCorrect = 0;
+        }
+
+        /**
+         * Make room for more trials.
+         * @param more Number of trials about to be added.
+         */
+        void ensure(int more) {
+            int needed = this.numCorrect + more;
+            if (needed > this.correctTimes.length) {
+                this.correctTimes = Arrays.copyOf(this.correctTimes,
+                        Math.max(needed, this.correctTimes.length + (this.correctTimes.length >> 1)));
+            }
+        }
+
+        /**
+         * Add a trial of the unit.
+         * @param s Index of the subject in the unit.
+         * @param t Index of the trial.
+         */
+        void add(Unit unit, int s, int t) {
+            int distance = unit.distanceLevel[s][t];
+            int ratio = unit.ratioLevel[s][t];
+            this.distanceTrials[distance]++;
+            this.ratioTrials[ratio]++;
+            if (unit.subjects[s].getCorrect()[t]) {
+                this.distanceSuccesses[distance]++;
+                this.ratioSuccesses[ratio]++;
+                this.correctTimes[this.numCorrect++] = unit.subjects[s].getResponseTime()[t];
+            }
+            this.size++;
+        }
+    }
+
+    /** The replicates of one chunk, indexed by [metric][replicate]. */
+    private static final class Chunk {
+        private final Unit unit;
+        private final Future<double[][]> values;
+
+        Chunk(Unit unit, Future<double[][]> values) {
+            this.unit = unit;
+            this.values = values;
+        }
+    }
+
+    private final int threads;
+    private final int replicates;
+    private final double confidence;
+    private final long seed;
+
+    /**
+     * Constructor.
+     * @param threads Number of chunks run at once.
+     * @param replicates Replicates of each subject and group.
+     * @param confidence Confidence level of the intervals, such as 0.95.
+     * @param seed Seed of the resampling.
+     */
+    public BootstrapEngine(int threads, int replicates, double confidence, long seed) {
+        if (replicates < 1 || !(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("Need replicates >= 1 and 0 < confidence < 1");
+        }
+        this.threads = Math.max(1, threads);
+        this.replicates = replicates;
+        this.confidence = confidence;
+        this.seed = seed;
+    }
+
+    /**
+     * Group subjects by a property of theirs.
+     * @param subjects The subjects.
+     * @param by "gender", "age", or null for no groups but "all".
+     * @return The subjects of each group, "all" first.
+     */
+    public static Map<String, List<Trials>> groupBy(List<Trials> subjects, String by) {
+        Map<String, List<Trials>> groups = new LinkedHashMap<String, List<Trials>>();
+        groups.put("all", subjects);
+        if (by == null) {
+            return groups;
+        }
+        if (!by.equals("gender") && !by.equals("age")) {
+            throw new IllegalArgumentException("Cannot group by " + by);
+        }
+        // Keyed by the age as a number, so the groups are in order of age.
+        Map<Object, List<Trials>> byValue = new TreeMap<Object, List<Trials>>();
+        for (Trials subject : subjects) {
+            Object value = by.equals("gender") ? subject.getGender() : Integer.valueOf(subject.getAge());
+            byValue.computeIfAbsent(value, v -> new ArrayList<Trials>()).add(subject);
+        }
+        for (Map.Entry<Object, List<Trials>> entry : byValue.entrySet()) {
+            groups.put(by + "=" + entry.getKey(), entry.getValue());
+        }
+        return groups;
+    }
+
+    /**
+     * Compute the intervals of every subject, then of every group.
+     * @param subjects The trials of each subject.
+     * @param groups The subjects of each group, see groupBy().
+     * @return The intervals, METRICS.length per subject in order, then per group.
+     * @throws IOException If the bootstrap is interrupted or a task fails.
+     */
+    public List<Interval> run(List<Trials> subjects, Map<String, List<Trials>> groups) throws IOException {
+        List<Unit> units = new ArrayList<Unit>(subjects.size() + groups.size());
+        for (Trials subject : subjects) {
+            units.add(new Unit(Integer.toString(subject.getSubjectID()), Arrays.asList(subject), false));
+        }
+        for (Map.Entry<String, List<Trials>> group : groups.entrySet()) {
+            units.add(new Unit(group.getKey(), group.getValue(), true));
+        }
+
+        SplittableRandom root = new SplittableRandom(this.seed);
+        List<Interval> intervals = new ArrayList<Interval>(units.size() * METRICS.length);
+        Deque<Chunk> pending = new ArrayDeque<Chunk>();
+        try (TaskPool pool = new TaskPool(this.threads, "bootstrap")) {
+            for (Unit unit : units) {
+                for (int first = 0; first < this.replicates; first += CHUNK_REPLICATES) {
+                    int count = Math.min(CHUNK_REPLICATES, this.replicates - first);
+                    SplittableRandom random = root.split();
+                    pending.add(new Chunk(unit, pool.submit(() -> resample(unit, count, random))));
+                }
+                this.drain(pending, intervals, false);
+            }
+            this.drain(pending, intervals, true);
+        } catch (InterruptedException e) {
+            throw new IOException("Bootstrap interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Bootstrap failed", e.getCause());
+        }
+        logger.info("Bootstrapped " + subjects.size() + " subjects and " + groups.size() + " groups, "
+                + this.replicates + " replicates each, on " + this.threads + " threads");
+        return intervals;
+    }
+
+    /**
+     * Take the intervals of the units whose chunks are all done, in order.
+     * @param pending The chunks not taken yet, in order of unit.
+     * @param intervals The list to add the intervals to.
+     * @param wait Whether to wait for every chunk.
+     */
+    private void drain(Deque<Chunk> pending, List<Interval> intervals, boolean wait)
+            throws InterruptedException, ExecutionException {
+        while (!pending.isEmpty()) {
+            Unit unit = pending.peek().unit;
+            List<Chunk> chunks = new ArrayList<Chunk>();
+            for (Chunk chunk : pending) {
+                if (chunk.unit != unit) {
+                    break;
+                }
+                chunks.add(chunk);
+            }
+            if (!wait) {
+                for (Chunk chunk : chunks) {
+                    if (!chunk.values.isDone()) {
+                        return;
+                    }
+                }
+            }
+            double values[][] = new double[METRICS.length][this.replicates];
+            int filled = 0;
+            for (Chunk chunk : chunks) {
+                double chunkValues[][] = chunk.values.get();
+                for (int m = 0; m < METRICS.length; m++) {
+                    System.arraycopy(chunkValues[m], 0, values[m], filled, chunkValues[m].length);
+                }
+                filled += chunkValues[0].length;
+                pending.remove();
+            }
+            unit.estimate();
+            double estimate[] = unit.getEstimate();
+            for (int m = 0; m < METRICS.length; m++) {
+                intervals.add(this.interval(unit.name, m, estimate[m], values[m]));
+            }
+        }
+    }
+
+    /**
+     * The percentile interval of a metric.
+     * @param values The metric of each replicate, reordered.
+     */
+    private Interval interval(String unit, int metric, double estimate, double values[]) {
+        int valid = 0;
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                values[valid++] = value;
+            }
+        }
+        if (valid == 0) {
+            return new Interval(unit, METRICS[metric], estimate, Double.NaN, Double.NaN, 0);
+        }
+        Arrays.sort(values, 0, valid);
+        double tail = (1 - this.confidence) / 2;
+        return new Interval(unit, METRICS[metric], estimate, quantile(values, valid, tail),
+                quantile(values, valid, 1 - tail), valid);
+    }
+
+    /**
+     * @return The quantile p of the first n sorted values, interpolated between neighbours.
+     */
+    static double quantile(double sorted[], int n, double p) {
+        double position = p * (n - 1);
+        int below = (int) Math.floor(position);
+        int above = Math.min(n - 1, below + 1);
+        return sorted[below] + (position - below) * (sorted[above] - sorted[below]);
+    }
+
+    /**
+     * Compute replicates of a subject or group. Runs on the pool.
+     * @param unit The subject or group.
+     * @param count Number of replicates.
+     * @param random The generator of this chunk.
+     * @return The metrics of each replicate, indexed by [metric][replicate].
+     */
+    private static double[][] resample(Unit unit, int count, SplittableRandom random) {
+        PsychometricFit.Logistic fits[] = unit.estimate();
+        Sample sample = new Sample(unit);
+        double values[][] = new double[METRICS.length][count];
+        double replicate[] = new double[METRICS.length];
+        int numSubjects = unit.subjects.length;
+        for (int r = 0; r < count; r++) {
+            sample.clear();
+            for (int k = 0; k < numSubjects; k++) {
+                int s = unit.group ? random.nextInt(numSubjects) : k;
+                int order[] = unit.order[s];
+                int strata[] = unit.strata[s];
+                sample.ensure(unit.subjects[s].getSize());
+                for (int stratum = 0; stratum + 1 < strata.length; stratum++) {
+                    int start = strata[stratum];
+                    int size = strata[stratum + 1] - start;
+                    for (int i = 0; i < size; i++) {
+                        sample.add(unit, s, order[start + random.nextInt(size)]);
+                    }
+                }
+            }
+            metrics(unit, sample, replicate, fits, null);
+            for (int m = 0; m < METRICS.length; m++) {
+                values[m][r] = replicate[m];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Compute every metric of a sample.
+     * @param unit The subject or group the sample was drawn from.
+     * @param sample The sample. Its response times are reordered.
+     * @param out Set to the metrics, in the order of METRICS, NaN where one cannot be computed.
+     * @param start Fits of the distance and ratio thresholds to start from, null for none.
+     * @param fitted Set to the fits of the distance and ratio thresholds, null if not needed.
+     */
+    private static void metrics(Unit unit, Sample sample, double out[], PsychometricFit.Logistic start[],
+            PsychometricFit.Logistic fitted[]) {
+        int trialsAt[] = new int[Trials.DIFFICULTIES.length];
+        int correctAt[] = new int[Trials.DIFFICULTIES.length];
+        for (int l = 0; l < unit.levelDifficulty.length; l++) {
+            int difficulty = unit.levelDifficulty[l];
+            if (difficulty >= 0) {
+                trialsAt[difficulty] += sample.distanceTrials[l];
+                correctAt[difficulty] += sample.distanceSuccesses[l];
+            }
+        }
+        out[ACCURACY] = sample.size == 0 ? Double.NaN : (double) sample.numCorrect / sample.size;
+        for (int d = 0; d < trialsAt.length; d++) {
+            out[ACCURACY_BY_DIFFICULTY + d] = trialsAt[d] == 0 ? Double.NaN : (double) correctAt[d] / trialsAt[d];
+        }
+        out[MEDIAN_RT] = median(sample.correctTimes, sample.numCorrect);
+        PsychometricFit.Logistic distanceFit = PsychometricFit.fitBinomial(unit.distanceLevels, sample.distanceTrials,
+                sample.distanceSuccesses, unit.distanceLevels.length, start == null ? null : start[0]);
+        PsychometricFit.Logistic ratioFit = PsychometricFit.fitBinomial(unit.ratioLevels, sample.ratioTrials,
+                sample.ratioSuccesses, unit.ratioLevels.length, start == null ? null : start[1]);
+        out[DISTANCE_THRESHOLD] = distanceFit.getThreshold();
+        out[RATIO_THRESHOLD] = ratioFit.getThreshold();
+        if (fitted != null) {
+            fitted[0] = distanceFit;
+            fitted[1] = ratioFit;
+        }
+    }
+
+    /**
+     * Find the median of the first n values, reordering them.
+     * @return The median, NaN if n is 0.
+     */
+    static double median(double values[], int n) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        int half = n / 2;
+        double upper = select(values, n, half);
+        if (n % 2 == 1) {
+            return upper;
+        }
+        // After select() the values below half are all <= the one at half.
+        double lower = values[0];
+        for (int i = 1; i < half; i++) {
+            lower = Math.max(lower, values[i]);
+        }
+        return (lower + upper) / 2;
+    }
+
+    /**
+     * Move the k-th smallest of the first n values to index k, smaller ones
+     * before it and larger ones after it.
+     * @return The k-th smallest value.
+     */
+    static double select(double values[], int n, int k) {
+        int left = 0;
+        int right = n - 1;
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            double pivot = values[middle];
+            values[middle] = values[right];
+            values[right] = pivot;
+            int store = left;
+            for (int i = left; i < right; i++) {
+                if (values[i] < pivot) {
+                    double swap = values[i];
+                    values[i] = values[store];
+                    values[store++] = swap;
+                }
+            }
+            values[right] = values[store];
+            values[store] = pivot;
+            if (store == k) {
+                break;
+            } else if (store < k) {
+                left = store + 1;
+            } else {
+                right = store - 1;
+            }
+        }
+        return values[k];
+    }
+
+    /**
+     * Write intervals as a table.
+     * @param intervals The intervals.
+     * @param out The CSV file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void writeIntervals(List<Interval> intervals, File out) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(out))) {
+            writer.print(String.join(DataWriter.DELIMITER, COLUMNS) + "\n");
+            for (Interval interval : intervals) {
+                writer.print(String.join(DataWriter.DELIMITER, interval.toValues()) + "\n");
+            }
+        }
+    }
+
+    public int getThreads() {
+        return this.threads;
+    }
+
+    public int getReplicates() {
+        return this.replicates;
+    }
+
+    public double getConfidence() {
+        return this.confidence;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+}
@@ -0,0 +1,112 @@
+package analytics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import controller.DataWriter;
+
+/**
+ * Converts a results tree (results_letters/subjectID/results_subjectID.csv)
+ * to a columnar file. Subjects are read and written one at a time, so memory
+ * stays bounded by the largest subject rather than the cohort.
+ *
+ * Classes Related To:
+ *  -ColumnarWriter.java
+ *      -Writes the row group of each subject.
+ *  -ColumnarExportMain.java (main)
+ *      -Runs the export from the command line.
+ *
+ */
+public class CohortExporter {
+
+    private static final Logger logger = Logger.getLogger(CohortExporter.class);
+
+    /** Disable constructing of an object. */
+    private CohortExporter() {
+
+    }
+
+    /**
+     * Find the results file of every subject of a results tree.
+     * @param resultsDir The results tree, such as results_letters.
+     * @return The results files, in order of subject.
+     */
+    public static List<File> findResults(File resultsDir) {
+        List<File> files = new ArrayList<File>();
+        File subjectDirs[] = resultsDir.listFiles(File::isDirectory);
+        if (subjectDirs == null) {
+            return files;
+        }
+        Arrays.sort(subjectDirs);
+        for (File subjectDir : subjectDirs) {
+            File file = new File(subjectDir, "results_" + subjectDir.getName() + ".csv");
+            if (file.isFile()) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Read the trials of a results file.
+     * @param file The results file.
+     * @return The values of each trial, in the order of DataWriter.COLUMNS. The
+     *  runtime columns of a file written before they were added are NaN.
+     * @throws IOException If the file cannot be read or a trial has the wrong number of values.
+     */
+    public static List<String[]> readTrials(File file) throws IOException {
+        List<String[]> rows = new ArrayList<String[]>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String values[] = line.split(DataWriter.DELIMITER, -1);
+                if (values.length == DataWriter.NUM_TRIAL_COLUMNS) {
+                    // Written before the runtime columns were added.
+                    values = Arrays.copyOf(values, DataWriter.COLUMNS.length);
+                    Arrays.fill(values, DataWriter.NUM_TRIAL_COLUMNS, values.length, DataWriter.UNKNOWN);
+                }
+                if (values.length != DataWriter.COLUMNS.length) {
+                    throw new IOException(file + ":" + lineNumber + " has " + values.length
+                            + " values, expected " + DataWriter.COLUMNS.length);
+                }
+                rows.add(values);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Export a results tree. A subject whose file cannot be read or parsed is
+     * logged and skipped.
+     * @param resultsDir The results tree.
+     * @param out The columnar file to write.
+     * @return Number of subjects exported.
+     * @throws IOException If the columnar file cannot be created.
+     */
+    public static int export(File resultsDir, File out) throws IOException {
+        try (ColumnarWriter writer = new ColumnarWriter(out)) {
+            for (File file : findResults(resultsDir)) {
+                String subject = file.getParentFile().getName();
+                try {
+                    writer.writeGroup(Integer.parseInt(subject), readTrials(file));
+                } catch (IOException | NumberFormatException e) {
+                    logger.error("Skipping subject " + subject + ": " + e.getMessage());
+                }
+            }
+            logger.info("Exported " + writer.getNumGroups() + " subjects to " + out);
+            return writer.getNumGroups();
+        }
+    }
+}
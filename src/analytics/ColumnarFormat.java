@@ -0,0 +1,143 @@
+package analytics;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import controller.DataWriter;
+
+/**
+ * Layout of the columnar export of the results (.lgc files), shared by
+ * ColumnarWriter and ColumnarReader.
+ *
+ * A file holds one row group per subject. Each row group is the columns of
+ * the subject's trials one after another, in the order of DataWriter.COLUMNS:
+ *  -INT, LONG, DOUBLE: the values as big-endian primitives.
+ *  -BOOLEAN: one byte per value, 1 for true.
+ *  -DICTIONARY: one byte per value, the index of the value in the column's dictionary.
+ * The footer follows the last row group: the name and type of each column,
+ * the dictionary of each DICTIONARY column, and the offset, number of rows
+ * and subject of each row group. The file ends with the offset of the footer
+ * and MAGIC, so a reader can find the footer and then read any row group.
+ *
+ * Classes Related To:
+ *  -ColumnarWriter.java
+ *      -Writes the files.
+ *  -ColumnarReader.java
+ *      -Reads the files.
+ *  -DataWriter.java (controller)
+ *      -The columns and how they are written to CSV.
+ *
+ */
+public final class ColumnarFormat {
+
+    /** First and last four bytes of every file: "LGC1". */
+    public static final int MAGIC = 0x4C474331;
+
+    /** Most distinct values of a DICTIONARY column. */
+    public static final int MAX_DICTIONARY = 256;
+
+    /** How a column is stored. */
+    public enum Type {
+        INT,
+        LONG,
+        DOUBLE,
+        BOOLEAN,
+        DICTIONARY,
+    }
+
+    /** Type of each column of DataWriter.COLUMNS. */
+    public static final Type TYPES[] = {
+            Type.INT,           // Subject ID
+            Type.INT,           // Subject Age
+            Type.DICTIONARY,    // Subject Gender
+            Type.DICTIONARY,    // Left Choice
+            Type.DICTIONARY,    // Right Choice
+            Type.DICTIONARY,    // Side Correct
+            Type.DICTIONARY,    // Side Picked
+            Type.BOOLEAN,       // Correct
+            Type.DICTIONARY,    // Difficulty
+            Type.INT,           // Distance
+            Type.INT,           // Left Choice Size
+            Type.INT,           // Right Choice Size
+            Type.DOUBLE,        // Font Ratio
+            Type.DICTIONARY,    // Which Size Correct
+            Type.DICTIONARY,    // Which Size Picked
+            Type.DOUBLE,        // Response Time, in seconds
+            Type.LONG,          // Date/Time, in microseconds since 1970 local time
+            Type.INT,           // Consecutive Rounds
+            Type.DOUBLE,        // GC Pause (ms), NaN if not measured
+            Type.DOUBLE,        // GC Count, NaN if not measured
+            Type.DOUBLE,        // JIT Time (ms), NaN if not measured
+    };
+
+    /** Disable constructing of an object. */
+    private ColumnarFormat() {
+
+    }
+
+    /**
+     * Get the number of columns.
+     * @return The number of columns of DataWriter.
+     */
+    public static int numColumns() {
+        return DataWriter.COLUMNS.length;
+    }
+
+    /**
+     * Get the number of bytes a value of a type takes.
+     * @param type The type.
+     * @return The width in bytes.
+     */
+    public static int width(Type type) {
+        switch (type) {
+        case INT:
+            return 4;
+        case LONG:
+        case DOUBLE:
+            return 8;
+        default:
+            return 1;
+        }
+    }
+
+    /**
+     * Get the number of bytes one trial takes across all columns.
+     * @return The width in bytes.
+     */
+    public static int rowWidth() {
+        int width = 0;
+        for (Type type : TYPES) {
+            width += width(type);
+        }
+        return width;
+    }
+
+    /**
+     * Parse a BOOLEAN value as DataWriter writes it.
+     * @param text "yes" or "no".
+     * @return true for "yes".
+     */
+    public static boolean parseBoolean(String text) {
+        return text.equals("yes");
+    }
+
+    /**
+     * Parse a date and time as DataWriter writes it.
+     * @param text The date and time, see LocalDateTime.toString().
+     * @return Microseconds since 1970 in the same local time.
+     */
+    public static long parseDateTime(String text) {
+        LocalDateTime time = LocalDateTime.parse(text);
+        return time.toEpochSecond(ZoneOffset.UTC) * 1000000L + time.getNano() / 1000;
+    }
+
+    /**
+     * Convert a date and time back to what DataWriter writes.
+     * @param micros Microseconds since 1970 in local time.
+     * @return The date and time.
+     */
+    public static LocalDateTime toDateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1000000L),
+                (int) Math.floorMod(micros, 1000000L) * 1000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,252 @@
+package analytics;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import analytics.ColumnarFormat.Type;
+
+/**
+ * Reads a columnar file written by ColumnarWriter. The footer is read when the
+ * file is opened; each row group is then read on its own, so a reader can load
+ * one subject at a time or the whole cohort. See ColumnarFormat for the layout.
+ *
+ * Classes Related To:
+ *  -ColumnarFormat.java
+ *      -The layout of the file.
+ *  -ColumnarWriter.java
+ *      -Writes the files.
+ *
+ */
+public class ColumnarReader implements Closeable {
+
+    /** The trials of one subject, one array per column. */
+    public static final class Group {
+        private final int subjectID;
+        private final int numRows;
+        private final Object columns[];
+
+        Group(int subjectID, int numRows, Object columns[]) {
+            this.subjectID = subjectID;
+            this.numRows = numRows;
+            this.columns = columns;
+        }
+
+        public int getSubjectID() {
+            return this.subjectID;
+        }
+
+        public int getNumRows() {
+            return this.numRows;
+        }
+
+        /** @return Values of an INT column. */
+        public int[] getInts(int column) {
+            return (int[]) this.columns[column];
+        }
+
+        /** @return Values of a LONG column. */
+        public long[] getLongs(int column) {
+            return (long[]) this.columns[column];
+        }
+
+        /** @return Values of a DOUBLE column. */
+        public double[] getDoubles(int column) {
+            return (double[]) this.columns[column];
+        }
+
+        /** @return Values of a BOOLEAN column. */
+        public boolean[] getBooleans(int column) {
+            return (boolean[]) this.columns[column];
+        }
+
+        /** @return Dictionary codes of a DICTIONARY column, see getDictionary(). */
+        public byte[] getCodes(int column) {
+            return (byte[]) this.columns[column];
+        }
+    }
+
+    private final RandomAccessFile file;
+
+    private final String names[];
+    private final Type types[];
+    private final String dictionaries[][];
+
+    /** Offset, number of rows and subject of each row group. */
+    private final long groupOffsets[];
+    private final int groupRows[];
+    private final int groupSubjects[];
+
+    /**
+     * Constructor. Reads the footer.
+     * @param path The file to read.
+     * @throws IOException If the file cannot be read or is not a columnar file.
+     */
+    public ColumnarReader(File path) throws IOException {
+        this.file = new RandomAccessFile(path, "r");
+        try {
+            long length = this.file.length();
+            if (length < 16 || this.file.readInt() != ColumnarFormat.MAGIC) {
+                throw new IOException(path + " is not a columnar file");
+            }
+            this.file.seek(length - 12);
+            long footer = this.file.readLong();
+            if (this.file.readInt() != ColumnarFormat.MAGIC || footer < 4 || footer > length - 12) {
+                throw new IOException(path + " has no footer, it may be truncated");
+            }
+            byte bytes[] = new byte[(int) (length - 12 - footer)];
+            this.file.seek(footer);
+            this.file.readFully(bytes);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            int numColumns = in.readUnsignedShort();
+            this.names = new String[numColumns];
+            this.types = new Type[numColumns];
+            this.dictionaries = new String[numColumns][];
+            for (int c = 0; c < numColumns; c++) {
+                this.names[c] = in.readUTF();
+                this.types[c] = Type.values()[in.readUnsignedByte()];
+                if (this.types[c] == Type.DICTIONARY) {
+                    this.dictionaries[c] = new String[in.readUnsignedShort()];
+                    for (int i = 0; i < this.dictionaries[c].length; i++) {
+                        this.dictionaries[c][i] = in.readUTF();
+                    }
+                }
+            }
+            int numGroups = in.readInt();
+            this.groupOffsets = new long[numGroups];
+            this.groupRows = new int[numGroups];
+            this.groupSubjects = new int[numGroups];
+            for (int g = 0; g < numGroups; g++) {
+                this.groupOffsets[g] = in.readLong();
+                this.groupRows[g] = in.readInt();
+                this.groupSubjects[g] = in.readInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            this.file.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(path + " has a bad footer", e);
+        }
+    }
+
+    /**
+     * Read the trials of one subject.
+     * @param group Index of the row group.
+     * @return The trials, one array per column.
+     * @throws IOException If the row group cannot be read.
+     */
+    public Group readGroup(int group) throws IOException {
+        int rows = this.groupRows[group];
+        int width = 0;
+        for (Type type : this.types) {
+            width += ColumnarFormat.width(type);
+        }
+        byte bytes[] = new byte[rows * width];
+        this.file.seek(this.groupOffsets[group]);
+        this.file.readFully(bytes);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        Object columns[] = new Object[this.types.length];
+        for (int c = 0; c < this.types.length; c++) {
+            switch (this.types[c]) {
+            case INT:
+                int ints[] = new int[rows];
+                for (int i = 0; i < rows; i++) {
+                    ints[i] = in.readInt();
+                }
+                columns[c] = ints;
+                break;
+            case LONG:
+                long longs[] = new long[rows];
+                for (int i = 0; i < rows; i++) {
+                    longs[i] = in.readLong();
+                }
+                columns[c] = longs;
+                break;
+            case DOUBLE:
+                double doubles[] = new double[rows];
+                for (int i = 0; i < rows; i++) {
+                    doubles[i] = in.readDouble();
+                }
+                columns[c] = doubles;
+                break;
+            case BOOLEAN:
+                boolean booleans[] = new boolean[rows];
+                for (int i = 0; i < rows; i++) {
+                    booleans[i] = in.readByte() != 0;
+                }
+                columns[c] = booleans;
+                break;
+            case DICTIONARY:
+                byte codes[] = new byte[rows];
+                in.readFully(codes);
+                columns[c] = codes;
+                break;
+            }
+        }
+        return new Group(this.groupSubjects[group], rows, columns);
+    }
+
+    /**
+     * Read the trials of every subject.
+     * @return One group per subject, in the order they were written.
+     * @throws IOException If a row group cannot be read.
+     */
+    public List<Group> readAll() throws IOException {
+        List<Group> groups = new ArrayList<Group>(this.groupOffsets.length);
+        for (int g = 0; g < this.groupOffsets.length; g++) {
+            groups.add(this.readGroup(g));
+        }
+        return groups;
+    }
+
+    /**
+     * Get a value of a DICTIONARY column from its code.
+     * @param column Index of the column.
+     * @param code The code, see Group.getCodes().
+     * @return The value as written to the CSV.
+     */
+    public String decode(int column, byte code) {
+        return this.dictionaries[column][code & 0xFF];
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    public int getNumGroups() {
+        return this.groupOffsets.length;
+    }
+
+    public int getNumColumns() {
+        return this.types.length;
+    }
+
+    public String getName(int column) {
+        return this.names[column];
+    }
+
+    public Type getType(int column) {
+        return this.types[column];
+    }
+
+    /** @return Values of a DICTIONARY column, indexed by code. */
+    public String[] getDictionary(int column) {
+        return this.dictionaries[column];
+    }
+
+    /** @return Number of rows of a row group. */
+    public int getNumRows(int group) {
+        return this.groupRows[group];
+    }
+
+    /** @return Subject of a row group. */
+    public int getSubjectID(int group) {
+        return this.groupSubjects[group];
+    }
+}
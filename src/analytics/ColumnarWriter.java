@@ -0,0 +1,170 @@
+package analytics;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import analytics.ColumnarFormat.Type;
+import controller.DataWriter;
+
+/**
+ * Writes trials to a columnar file, one row group per subject. Only the
+ * subject being written is held in memory, so a whole cohort can be
+ * exported subject by subject. See ColumnarFormat for the layout.
+ *
+ * Classes Related To:
+ *  -ColumnarFormat.java
+ *      -The layout of the file.
+ *  -CohortExporter.java
+ *      -Feeds the subjects of a results tree to the writer.
+ *
+ */
+public class ColumnarWriter implements Closeable {
+
+    private final DataOutputStream out;
+
+    /** Bytes written so far, the offset of the next row group. */
+    private long offset;
+
+    /** Dictionary of each DICTIONARY column, null for the others. */
+    private final List<Map<String, Integer>> dictionaries;
+    private final List<List<String>> dictionaryValues;
+
+    /** Offset, number of rows and subject of each row group. */
+    private final List<long[]> groups;
+
+    /**
+     * Constructor.
+     * @param file The file to write.
+     * @throws IOException If the file cannot be created.
+     */
+    public ColumnarWriter(File file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.dictionaries = new ArrayList<Map<String, Integer>>();
+        this.dictionaryValues = new ArrayList<List<String>>();
+        for (Type type : ColumnarFormat.TYPES) {
+            this.dictionaries.add(type == Type.DICTIONARY ? new HashMap<String, Integer>() : null);
+            this.dictionaryValues.add(type == Type.DICTIONARY ? new ArrayList<String>() : null);
+        }
+        this.groups = new ArrayList<long[]>();
+        this.out.writeInt(ColumnarFormat.MAGIC);
+        this.offset = 4;
+    }
+
+    /**
+     * Write the trials of one subject as a row group.
+     * @param subjectID The subject.
+     * @param rows The trials, each the values of DataWriter.COLUMNS as written to the CSV.
+     * @throws IOException If a value cannot be parsed, in which case nothing
+     *  is written, or if the group cannot be written.
+     */
+    public void writeGroup(int subjectID, List<String[]> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows.size() * ColumnarFormat.rowWidth());
+        DataOutputStream group = new DataOutputStream(bytes);
+        for (int c = 0; c < ColumnarFormat.numColumns(); c++) {
+            for (String row[] : rows) {
+                this.writeValue(group, c, row[c]);
+            }
+        }
+        bytes.writeTo(this.out);
+        this.groups.add(new long[] {this.offset, rows.size(), subjectID});
+        this.offset += (long) rows.size() * ColumnarFormat.rowWidth();
+    }
+
+    /**
+     * Write one value of a column.
+     * @param group Stream of the row group.
+     * @param column Index of the column.
+     * @param text The value as written to the CSV.
+     * @throws IOException If the value cannot be parsed or written.
+     */
+    private void writeValue(DataOutputStream group, int column, String text) throws IOException {
+        try {
+            switch (ColumnarFormat.TYPES[column]) {
+            case INT:
+                group.writeInt(Integer.parseInt(text));
+                break;
+            case LONG:
+                group.writeLong(ColumnarFormat.parseDateTime(text));
+                break;
+            case DOUBLE:
+                group.writeDouble(Double.parseDouble(text));
+                break;
+            case BOOLEAN:
+                group.writeByte(ColumnarFormat.parseBoolean(text) ? 1 : 0);
+                break;
+            case DICTIONARY:
+                group.writeByte(this.code(column, text));
+                break;
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Bad value \"" + text + "\" in column " + DataWriter.COLUMNS[column], e);
+        }
+    }
+
+    /**
+     * Get the code of a value in a column's dictionary, adding it if new.
+     * @param column Index of the column.
+     * @param text The value.
+     * @return The code.
+     * @throws IOException If the dictionary is full.
+     */
+    private int code(int column, String text) throws IOException {
+        Map<String, Integer> dictionary = this.dictionaries.get(column);
+        Integer code = dictionary.get(text);
+        if (code == null) {
+            if (dictionary.size() == ColumnarFormat.MAX_DICTIONARY) {
+                throw new IOException("More than " + ColumnarFormat.MAX_DICTIONARY
+                        + " values in column " + DataWriter.COLUMNS[column]);
+            }
+            code = dictionary.size();
+            dictionary.put(text, code);
+            this.dictionaryValues.get(column).add(text);
+        }
+        return code;
+    }
+
+    /**
+     * Write the footer and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        long footer = this.offset;
+        this.out.writeShort(ColumnarFormat.numColumns());
+        for (int c = 0; c < ColumnarFormat.numColumns(); c++) {
+            this.out.writeUTF(DataWriter.COLUMNS[c]);
+            this.out.writeByte(ColumnarFormat.TYPES[c].ordinal());
+            if (ColumnarFormat.TYPES[c] == Type.DICTIONARY) {
+                List<String> values = this.dictionaryValues.get(c);
+                this.out.writeShort(values.size());
+                for (String value : values) {
+                    this.out.writeUTF(value);
+                }
+            }
+        }
+        this.out.writeInt(this.groups.size());
+        for (long group[] : this.groups) {
+            this.out.writeLong(group[0]);
+            this.out.writeInt((int) group[1]);
+            this.out.writeInt((int) group[2]);
+        }
+        this.out.writeLong(footer);
+        this.out.writeInt(ColumnarFormat.MAGIC);
+        this.out.close();
+    }
+
+    /**
+     * @return Number of row groups written.
+     */
+    public int getNumGroups() {
+        return this.groups.size();
+    }
+}
@@ -0,0 +1,277 @@
+package analytics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import controller.DataWriter;
+
+/**
+ * Fits the psychometric functions of every subject of a cohort in parallel,
+ * then of the cohort as a whole, and writes them as a summary table with one
+ * row per subject and a last row for the cohort.
+ *
+ * Each subject is one task on a TaskPool, which loads the subject's trials
+ * and fits them. Reading a CSV file is part of the task, since parsing costs
+ * more than fitting. A columnar file has one reader, so its row groups are
+ * read one at a time while the fits run in parallel. Only the trials being
+ * fitted are held in full; of the rest only the four columns the cohort fit
+ * needs are kept. The cohort row is fitted with the same code on the pooled
+ * trials.
+ *
+ * Classes Related To:
+ *  -PsychometricFit.java
+ *      -The fits of one set of trials.
+ *  -CohortExporter.java
+ *      -Finds and reads the results files of a results tree.
+ *  -TaskPool.java
+ *      -Runs the subjects in parallel.
+ *  -FitMain.java (main)
+ *      -Runs the fits from the command line.
+ *
+ */
+public class FitEngine {
+
+    private static final Logger logger = Logger.getLogger(FitEngine.class);
+
+    /** Columns of the summary table. */
+    public static final String COLUMNS[] = {
+            "Subject ID",
+            "Trials",
+            "Accuracy",
+            "Distance Threshold",
+            "Distance Threshold SE",
+            "Distance Slope",
+            "Distance Slope SE",
+            "Distance Converged",
+            "Ratio Threshold",
+            "Ratio Threshold SE",
+            "Ratio Slope",
+            "Ratio Slope SE",
+            "Ratio Converged",
+            "RT Trials",
+            "RT Intercept (s)",
+            "RT Distance Slope (s)",
+            "RT Distance Slope SE",
+            "RT R Squared",
+    };
+
+    /** The fits of one subject, or of the cohort. */
+    public static final class Row {
+        private final int subjectID;
+        private final int numTrials;
+        private final double accuracy;
+        private final PsychometricFit.Logistic distance;
+        private final PsychometricFit.Logistic fontRatio;
+        private final PsychometricFit.Linear responseTime;
+
+        Row(int subjectID, int numTrials, double accuracy, PsychometricFit.Logistic distance,
+                PsychometricFit.Logistic fontRatio, PsychometricFit.Linear responseTime) {
+            this.subjectID = subjectID;
+            this.numTrials = numTrials;
+            this.accuracy = accuracy;
+            this.distance = distance;
+            this.fontRatio = fontRatio;
+            this.responseTime = responseTime;
+        }
+
+        /** @return The subject, Trials.COHORT for the cohort. */
+        public int getSubjectID() {
+            return this.subjectID;
+        }
+
+        public int getNumTrials() {
+            return this.numTrials;
+        }
+
+        /** @return Fraction of the trials answered correctly. */
+        public double getAccuracy() {
+            return this.accuracy;
+        }
+
+        /** @return Accuracy against letter distance. */
+        public PsychometricFit.Logistic getDistance() {
+            return this.distance;
+        }
+
+        /** @return Accuracy against font ratio. */
+        public PsychometricFit.Logistic getFontRatio() {
+            return this.fontRatio;
+        }
+
+        /** @return Response time of correct trials against letter distance. */
+        public PsychometricFit.Linear getResponseTime() {
+            return this.responseTime;
+        }
+
+        /**
+         * @return The values of the row, in the order of COLUMNS.
+         */
+        public String[] toValues() {
+            return new String[] {
+                    this.subjectID == Trials.COHORT ? "all" : Integer.toString(this.subjectID),
+                    Integer.toString(this.numTrials),
+                    Double.toString(this.accuracy),
+                    Double.toString(this.distance.getThreshold()),
+                    Double.toString(this.distance.getThresholdError()),
+                    Double.toString(this.distance.getSlope()),
+                    Double.toString(this.distance.getSlopeError()),
+                    this.distance.isConverged() ? "yes" : "no",
+                    Double.toString(this.fontRatio.getThreshold()),
+                    Double.toString(this.fontRatio.getThresholdError()),
+                    Double.toString(this.fontRatio.getSlope()),
+                    Double.toString(this.fontRatio.getSlopeError()),
+                    this.fontRatio.isConverged() ? "yes" : "no",
+                    Integer.toString(this.responseTime.getNumTrials()),
+                    Double.toString(this.responseTime.getIntercept()),
+                    Double.toString(this.responseTime.getSlope()),
+                    Double.toString(this.responseTime.getSlopeError()),
+                    Double.toString(this.responseTime.getRSquared()),
+            };
+        }
+    }
+
+    /** Loads the trials of one subject. */
+    private interface Loader {
+        Trials load() throws IOException;
+    }
+
+    private final int threads;
+
+    /**
+     * Constructor.
+     * @param threads Number of subjects fitted at once.
+     */
+    public FitEngine(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Fit one set of trials.
+     * @param trials The trials of a subject, or of the cohort.
+     * @return The fits.
+     */
+    public static Row fit(Trials trials) {
+        int n = trials.getSize();
+        boolean correct[] = trials.getCorrect();
+        int numCorrect = 0;
+        for (int i = 0; i < n; i++) {
+            if (correct[i]) {
+                numCorrect++;
+            }
+        }
+        return new Row(trials.getSubjectID(), n, n == 0 ? Double.NaN : (double) numCorrect / n,
+                PsychometricFit.fitLogistic(trials.getDistance(), correct, n),
+                PsychometricFit.fitLogistic(trials.getFontRatio(), correct, n),
+                PsychometricFit.fitLinear(trials.getDistance(), trials.getResponseTime(), correct, n));
+    }
+
+    /**
+     * Fit every subject of a results tree, reading and fitting each on the pool.
+     * A subject whose file cannot be read or parsed is logged and skipped.
+     * @param resultsDir The results tree, such as results_letters.
+     * @return One row per subject in order of subject, then the cohort row.
+     * @throws IOException If the fits are interrupted.
+     */
+    public List<Row> fitResults(File resultsDir) throws IOException {
+        List<File> files = CohortExporter.findResults(resultsDir);
+        List<Loader> loaders = new ArrayList<Loader>(files.size());
+        for (File file : files) {
+            String subject = file.getParentFile().getName();
+            loaders.add(() -> {
+                try {
+                    return Trials.fromRows(Integer.parseInt(subject), CohortExporter.readTrials(file));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ": " + e.getMessage(), e);
+                }
+            });
+        }
+        return this.run(loaders);
+    }
+
+    /**
+     * Fit every subject of a columnar file. The row groups are read one at a
+     * time and fitted on the pool.
+     * @param columnar The columnar file, see ColumnarExportMain.
+     * @return One row per subject in the order of the file, then the cohort row.
+     * @throws IOException If the file cannot be read or the fits are interrupted.
+     */
+    public List<Row> fitColumnar(File columnar) throws IOException {
+        try (ColumnarReader reader = new ColumnarReader(columnar)) {
+            List<Loader> loaders = new ArrayList<Loader>(reader.getNumGroups());
+            for (int g = 0; g < reader.getNumGroups(); g++) {
+                int group = g;
+                loaders.add(() -> {
+                    synchronized (reader) {
+                        return Trials.fromGroup(reader, reader.readGroup(group));
+                    }
+                });
+            }
+            return this.run(loaders);
+        }
+    }
+
+    /**
+     * Load and fit each subject on the pool, then fit the pooled trials.
+     * @param loaders The loader of each subject.
+     * @return One row per subject loaded, in order, then the cohort row.
+     * @throws IOException If the fits are interrupted.
+     */
+    private List<Row> run(List<Loader> loaders) throws IOException {
+        try (TaskPool pool = new TaskPool(this.threads, "fit-engine")) {
+            // Each task keeps its trials for the cohort fit; Future.get() makes them visible here.
+            Trials loaded[] = new Trials[loaders.size()];
+            List<Future<Row>> fits = new ArrayList<Future<Row>>(loaders.size());
+            for (int i = 0; i < loaders.size(); i++) {
+                Loader loader = loaders.get(i);
+                int index = i;
+                fits.add(pool.submit(() -> {
+                    Trials trials = loader.load();
+                    loaded[index] = trials;
+                    return fit(trials);
+                }));
+            }
+            List<Row> rows = new ArrayList<Row>(loaders.size() + 1);
+            List<Trials> cohort = new ArrayList<Trials>(loaders.size());
+            for (int i = 0; i < loaders.size(); i++) {
+                try {
+                    rows.add(fits.get(i).get());
+                    cohort.add(loaded[i]);
+                } catch (ExecutionException e) {
+                    logger.error("Skipping a subject: " + e.getCause().getMessage());
+                }
+            }
+            rows.add(fit(Trials.pool(cohort)));
+            logger.info("Fitted " + (rows.size() - 1) + " subjects on " + this.threads + " threads");
+            return rows;
+        } catch (InterruptedException e) {
+            throw new IOException("Fitting interrupted", e);
+        }
+    }
+
+    /**
+     * Write fits as a summary table.
+     * @param rows The fits.
+     * @param out The CSV file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void writeSummary(List<Row> rows, File out) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(out))) {
+            writer.print(String.join(DataWriter.DELIMITER, COLUMNS) + "\n");
+            for (Row row : rows) {
+                writer.print(String.join(DataWriter.DELIMITER, row.toValues()) + "\n");
+            }
+        }
+    }
+
+    public int getThreads() {
+        return this.threads;
+    }
+}
@@ -0,0 +1,398 @@
+package analytics;
+
+import java.util.Arrays;
+
+/**
+ * Fits of how a subject's accuracy and response time depend on a stimulus
+ * variable, such as the letter distance or the font ratio.
+ *
+ * Accuracy is fitted with a logistic psychometric function for two
+ * alternatives,
+ *
+ *      P(correct) = CHANCE + (1 - CHANCE - LAPSE) / (1 + exp(-slope * (x - threshold)))
+ *
+ * by maximum likelihood, using Fisher scoring with step halving on the
+ * standardized variable. The threshold is the x at which accuracy is halfway
+ * between chance and its maximum (about 75% correct), and the slope is in
+ * units of 1/x; a negative slope means accuracy falls as x grows. The small
+ * fixed lapse rate keeps one careless error at an easy x from flattening the
+ * curve. A subject who is always right, or never better than chance, has no
+ * finite fit; it is then reported as not converged, with NaN estimates.
+ * Trials are counted at each distinct x, so an iteration costs one pass over
+ * the levels rather than the trials, and a fit can start from an earlier one,
+ * which a bootstrap replicate of the same trials converges from in a few
+ * iterations.
+ *
+ * Response time is fitted with a least squares line over the correct trials.
+ *
+ * The fits only read primitive arrays and share nothing, so many subjects
+ * can be fitted at once on different threads.
+ *
+ * Classes Related To:
+ *  -Trials.java
+ *      -The trials fitted.
+ *  -FitEngine.java
+ *      -Fits every subject of a cohort in parallel.
+ *
+ */
+public final class PsychometricFit {
+
+    /** Accuracy when guessing between the two letters. */
+    public static final double CHANCE = 0.5;
+
+    /** Rate of errors made regardless of the stimulus. */
+    public static final double LAPSE = 0.01;
+
+    /** Fewest trials a curve is fitted to. */
+    public static final int MIN_TRIALS = 10;
+
+    /** Most iterations of Fisher scoring. */
+    static final int MAX_ITERATIONS = 50;
+
+    /** Change in log-likelihood at which the fit has converged. */
+    static final double TOLERANCE = 1e-9;
+
+    /** Most times a step is halved before giving up. */
+    static final int MAX_HALVINGS = 30;
+
+    /**
+     * Largest standardized intercept or slope. Beyond it the likelihood is
+     * still rising towards a curve that is flat, or a step, over the trials.
+     */
+    static final double MAX_PARAMETER = 50;
+
+    /** Fit of a logistic psychometric function. */
+    public static final class Logistic {
+        private final int numTrials;
+        private final double threshold;
+        private final double thresholdError;
+        private final double slope;
+        private final double slopeError;
+        private final int iterations;
+        private final boolean converged;
+
+        Logistic(int numTrials, double threshold, double thresholdError, double slope, double slopeError,
+                int iterations, boolean converged) {
+            this.numTrials = numTrials;
+            this.threshold = threshold;
+            this.thresholdError = thresholdError;
+            this.slope = slope;
+            this.slopeError = slopeError;
+            this.iterations = iterations;
+            this.converged = converged;
+        }
+
+        public int getNumTrials() {
+            return this.numTrials;
+        }
+
+        /** @return The x at which accuracy is halfway between chance and its maximum, NaN if not converged. */
+        public double getThreshold() {
+            return this.threshold;
+        }
+
+        /** @return Standard error of the threshold. */
+        public double getThresholdError() {
+            return this.thresholdError;
+        }
+
+        /** @return Slope of the logistic in units of 1/x, NaN if not converged. */
+        public double getSlope() {
+            return this.slope;
+        }
+
+        /** @return Standard error of the slope. */
+        public double getSlopeError() {
+            return this.slopeError;
+        }
+
+        public int getIterations() {
+            return this.iterations;
+        }
+
+        public boolean isConverged() {
+            return this.converged;
+        }
+
+        /**
+         * @return The fitted probability of a correct response at x.
+         */
+        public double predict(double x) {
+            return CHANCE + (1 - CHANCE - LAPSE) / (1 + Math.exp(-this.slope * (x - this.threshold)));
+        }
+    }
+
+    /** Least squares line. */
+    public static final class Linear {
+        private final int numTrials;
+        private final double intercept;
+        private final double slope;
+        private final double slopeError;
+        private final double rSquared;
+
+        Linear(int numTrials, double intercept, double slope, double slopeError, double rSquared) {
+            this.numTrials = numTrials;
+            this.intercept = intercept;
+            this.slope = slope;
+            this.slopeError = slopeError;
+            this.rSquared = rSquared;
+        }
+
+        public int getNumTrials() {
+            return this.numTrials;
+        }
+
+        public double getIntercept() {
+            return this.intercept;
+        }
+
+        public double getSlope() {
+            return this.slope;
+        }
+
+        /** @return Standard error of the slope. */
+        public double getSlopeError() {
+            return this.slopeError;
+        }
+
+        /** @return Fraction of the variance explained. */
+        public double getRSquared() {
+            return this.rSquared;
+        }
+    }
+
+    /** Disable constructing of an object. */
+    private PsychometricFit() {
+
+    }
+
+    /**
+     * Fit accuracy against a stimulus variable. Trials at the same x share
+     * their terms of the likelihood, so they are counted per distinct x and
+     * fitted with fitBinomial(); the letter distance has only a few dozen.
+     * @param x The variable of each trial.
+     * @param correct Whether each response was correct.
+     * @param n Number of trials.
+     * @return The fit, not converged if there are fewer than MIN_TRIALS or x does not vary.
+     */
+    public static Logistic fitLogistic(double x[], boolean correct[], int n) {
+        return fitLogistic(x, correct, n, null);
+    }
+
+    /**
+     * Fit accuracy against a stimulus variable, starting from an earlier fit,
+     * such as the fit of the trials a bootstrap replicate was drawn from.
+     * @param x The variable of each trial.
+     * @param correct Whether each response was correct.
+     * @param n Number of trials.
+     * @param start The fit to start from, null or not converged to start from a flat curve.
+     * @return The fit, not converged if there are fewer than MIN_TRIALS or x does not vary.
+     */
+    public static Logistic fitLogistic(double x[], boolean correct[], int n, Logistic start) {
+        double levels[] = Arrays.copyOf(x, n);
+        Arrays.sort(levels);
+        int numLevels = 0;
+        for (int i = 0; i < n; i++) {
+            if (numLevels == 0 || Double.compare(levels[i], levels[numLevels - 1]) != 0) {
+                levels[numLevels++] = levels[i];
+            }
+        }
+        int trials[] = new int[numLevels];
+        int successes[] = new int[numLevels];
+        for (int i = 0; i < n; i++) {
+            int level = Arrays.binarySearch(levels, 0, numLevels, x[i]);
+            trials[level]++;
+            if (correct[i]) {
+                successes[level]++;
+            }
+        }
+        return fitBinomial(levels, trials, successes, numLevels, start);
+    }
+
+    /**
+     * Fit accuracy against a stimulus variable from the number of trials and
+     * of correct responses at each level of it.
+     * @param x Each level of the variable.
+     * @param trials Number of trials at each level.
+     * @param successes Number of correct responses at each level.
+     * @param numLevels Number of levels.
+     * @param start The fit to start from, null or not converged to start from a flat curve.
+     * @return The fit, not converged if there are fewer than MIN_TRIALS or x does not vary.
+     */
+    public static Logistic fitBinomial(double x[], int trials[], int successes[], int numLevels, Logistic start) {
+        int n = 0;
+        double mean = 0;
+        for (int l = 0; l < numLevels; l++) {
+            n += trials[l];
+            mean += trials[l] * x[l];
+        }
+        mean /= n;
+        double variance = 0;
+        for (int l = 0; l < numLevels; l++) {
+            variance += trials[l] * (x[l] - mean) * (x[l] - mean);
+        }
+        double scale = Math.sqrt(variance / n);
+        if (n < MIN_TRIALS || !(scale > 0)) {
+            return notConverged(n, 0);
+        }
+
+        // Fit eta = a + b * z on z = (x - mean) / scale, which keeps the scoring well conditioned.
+        double z[] = new double[numLevels];
+        for (int l = 0; l < numLevels; l++) {
+            z[l] = (x[l] - mean) / scale;
+        }
+        double a = 0;
+        double b = 0;
+        if (start != null && start.isConverged()) {
+            a = start.getSlope() * (mean - start.getThreshold());
+            b = start.getSlope() * scale;
+        }
+        // The score and information of the current a, b, and of the candidate step.
+        double score[] = new double[2];
+        double info[] = new double[3];
+        double nextScore[] = new double[2];
+        double nextInfo[] = new double[3];
+        double likelihood = evaluate(z, trials, successes, numLevels, a, b, score, info);
+        if (Double.isNaN(likelihood) || Double.isInfinite(likelihood)) {
+            a = 0;
+            b = 0;
+            likelihood = evaluate(z, trials, successes, numLevels, a, b, score, info);
+        }
+        int iteration = 0;
+        boolean converged = false;
+        while (iteration < MAX_ITERATIONS && !converged) {
+            iteration++;
+            double det = info[0] * info[2] - info[1] * info[1];
+            if (!(det > 0)) {
+                return notConverged(n, iteration);
+            }
+            double stepA = (info[2] * score[0] - info[1] * score[1]) / det;
+            double stepB = (info[0] * score[1] - info[1] * score[0]) / det;
+            double step = 1;
+            double next = Double.NEGATIVE_INFINITY;
+            for (int halving = 0; halving <= MAX_HALVINGS; halving++) {
+                next = evaluate(z, trials, successes, numLevels, a + step * stepA, b + step * stepB,
+                        nextScore, nextInfo);
+                if (next >= likelihood - TOLERANCE) {
+                    break;
+                }
+                step /= 2;
+            }
+            if (!(next >= likelihood - TOLERANCE)) {
+                return notConverged(n, iteration);
+            }
+            a += step * stepA;
+            b += step * stepB;
+            double swap[] = score;
+            score = nextScore;
+            nextScore = swap;
+            swap = info;
+            info = nextInfo;
+            nextInfo = swap;
+            converged = Math.abs(next - likelihood) < TOLERANCE;
+            likelihood = next;
+            if (Math.abs(a) > MAX_PARAMETER || Math.abs(b) > MAX_PARAMETER) {
+                return notConverged(n, iteration);
+            }
+        }
+        if (!converged || b == 0) {
+            return notConverged(n, iteration);
+        }
+
+        // Standard errors from the inverse of the information at the estimate, by the delta method.
+        double det = info[0] * info[2] - info[1] * info[1];
+        double varA = info[2] / det;
+        double varB = info[0] / det;
+        double covAB = -info[1] / det;
+        double threshold = mean - scale * a / b;
+        double dA = -scale / b;
+        double dB = scale * a / (b * b);
+        double thresholdError = Math.sqrt(dA * dA * varA + 2 * dA * dB * covAB + dB * dB * varB);
+        return new Logistic(n, threshold, thresholdError, b / scale, Math.sqrt(varB) / scale, iteration, true);
+    }
+
+    /**
+     * @return A fit with no estimates.
+     */
+    private static Logistic notConverged(int n, int iterations) {
+        return new Logistic(n, Double.NaN, Double.NaN, Double.NaN, Double.NaN, iterations, false);
+    }
+
+    /**
+     * Compute the log-likelihood, the score and the Fisher information of the
+     * standardized fit a, b, in one pass over the levels.
+     * @param score Set to the derivatives of the log-likelihood by a and b.
+     * @param info Set to the information matrix as {aa, ab, bb}.
+     * @return The log-likelihood.
+     */
+    private static double evaluate(double z[], int trials[], int successes[], int numLevels,
+            double a, double b, double score[], double info[]) {
+        double likelihood = 0, sa = 0, sb = 0, iaa = 0, iab = 0, ibb = 0;
+        for (int l = 0; l < numLevels; l++) {
+            double s = 1 / (1 + Math.exp(-(a + b * z[l])));
+            double p = CHANCE + (1 - CHANCE - LAPSE) * s;
+            int failures = trials[l] - successes[l];
+            likelihood += (successes[l] == 0 ? 0 : successes[l] * Math.log(p))
+                    + (failures == 0 ? 0 : failures * Math.log(1 - p));
+            double dp = (1 - CHANCE - LAPSE) * s * (1 - s);
+            double variance = p * (1 - p);
+            double u = (successes[l] - trials[l] * p) * dp / variance;
+            double w = trials[l] * dp * dp / variance;
+            sa += u;
+            sb += u * z[l];
+            iaa += w;
+            iab += w * z[l];
+            ibb += w * z[l] * z[l];
+        }
+        score[0] = sa;
+        score[1] = sb;
+        info[0] = iaa;
+        info[1] = iab;
+        info[2] = ibb;
+        return likelihood;
+    }
+
+    /**
+     * Fit response time against a stimulus variable over the correct trials.
+     * @param x The variable of each trial.
+     * @param responseTime Response time of each trial.
+     * @param correct Whether each response was correct.
+     * @param n Number of trials.
+     * @return The line, NaN if there are fewer than MIN_TRIALS correct trials or x does not vary.
+     */
+    public static Linear fitLinear(double x[], double responseTime[], boolean correct[], int n) {
+        int count = 0;
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < n; i++) {
+            if (correct[i]) {
+                count++;
+                meanX += x[i];
+                meanY += responseTime[i];
+            }
+        }
+        if (count < MIN_TRIALS) {
+            return new Linear(count, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+        meanX /= count;
+        meanY /= count;
+        double sxx = 0, sxy = 0, syy = 0;
+        for (int i = 0; i < n; i++) {
+            if (correct[i]) {
+                double dx = x[i] - meanX;
+                double dy = responseTime[i] - meanY;
+                sxx += dx * dx;
+                sxy += dx * dy;
+                syy += dy * dy;
+            }
+        }
+        if (!(sxx > 0)) {
+            return new Linear(count, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+        double slope = sxy / sxx;
+        double residual = Math.max(0, syy - slope * sxy);
+        double slopeError = count > 2 ? Math.sqrt(residual / (count - 2) / sxx) : Double.NaN;
+        double rSquared = syy > 0 ? 1 - residual / syy : Double.NaN;
+        return new Linear(count, meanY - slope * meanX, slope, slopeError, rSquared);
+    }
+}
@@ -0,0 +1,86 @@
+package analytics;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A fixed pool of daemon threads for the per-subject work of the analytics
+ * and the reports. Each subject is one task, and the tasks share nothing, so
+ * the throughput grows with the number of cores. At most QUEUED_PER_THREAD
+ * tasks per thread are queued or running at once; submit() waits for one to
+ * finish beyond that, so the inputs loaded ahead of the threads stay bounded.
+ * Closing the pool interrupts the tasks still running.
+ *
+ * Classes Related To:
+ *  -FitEngine.java, BootstrapEngine.java
+ *      -Fit and resample subjects on the pool.
+ *  -ReportGenerator.java
+ *      -Summarizes subjects on the pool.
+ *
+ */
+public class TaskPool implements Closeable {
+
+    /** Tasks queued per thread before submit() waits. */
+    public static final int QUEUED_PER_THREAD = 4;
+
+    private final ExecutorService pool;
+
+    /** Permits for the tasks queued or running. */
+    private final Semaphore queued;
+
+    private final int threads;
+
+    /**
+     * Constructor.
+     * @param threads Number of threads, at least one.
+     * @param name Name of the threads.
+     */
+    public TaskPool(int threads, String name) {
+        this.threads = Math.max(1, threads);
+        this.pool = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.queued = new Semaphore(this.threads * QUEUED_PER_THREAD);
+    }
+
+    /**
+     * Submit a task, waiting first if QUEUED_PER_THREAD tasks per thread are
+     * already queued or running.
+     * @param task The task.
+     * @return The task's result.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public <T> Future<T> submit(Callable<T> task) throws InterruptedException {
+        this.queued.acquire();
+        try {
+            return this.pool.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    this.queued.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            this.queued.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Stop the threads, interrupting the tasks still running.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdownNow();
+    }
+
+    public int getThreads() {
+        return this.threads;
+    }
+}
@@ -0,0 +1,237 @@
+package analytics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import controller.DataWriter;
+import model.AlphaPairGenerator;
+
+/**
+ * The columns of a set of trials that the psychometric fits use: letter
+ * distance, font ratio, whether the response was correct, and the response
+ * time. Holds the trials of one subject, with the subject's age and gender
+ * as of the first trial, or of a whole cohort pooled.
+ *
+ * Classes Related To:
+ *  -PsychometricFit.java
+ *      -Fits the trials.
+ *  -FitEngine.java
+ *      -Loads the trials of each subject and fits them in parallel.
+ *  -BootstrapEngine.java
+ *      -Resamples the trials for confidence intervals.
+ *
+ */
+public final class Trials {
+
+    private static final Logger logger = Logger.getLogger(Trials.class);
+
+    /** Subject of pooled trials. */
+    public static final int COHORT = -1;
+
+    /** The difficulties, indexed as difficultyOf() returns them. */
+    public static final String DIFFICULTIES[] = {"EASY", "MEDIUM", "HARD"};
+
+    /** Lowest distance of each difficulty, indexed as DIFFICULTIES. */
+    static final int DIFFICULTY_MINS[] = {
+            AlphaPairGenerator.EASY_MODE_MIN,
+            AlphaPairGenerator.MEDIUM_MODE_MIN,
+            AlphaPairGenerator.HARD_MODE_MIN,
+    };
+
+    static final int AGE_COLUMN = indexOf(DataWriter.SUBJECT_AGE);
+    static final int GENDER_COLUMN = indexOf(DataWriter.SUBJECT_GENDER);
+    static final int CORRECT_COLUMN = indexOf(DataWriter.IS_CORRECT);
+    static final int DISTANCE_COLUMN = indexOf(DataWriter.DISTANCE);
+    static final int FONT_RATIO_COLUMN = indexOf(DataWriter.FONT_RATIO);
+    static final int RESPONSE_TIME_COLUMN = indexOf(DataWriter.RESPONSE_TIME);
+
+    private final int subjectID;
+    private final int age;
+    private final String gender;
+    private final int size;
+    private final double distance[];
+    private final double fontRatio[];
+    private final boolean correct[];
+    private final double responseTime[];
+
+    /**
+     * Constructor. The arrays are not copied.
+     * @param subjectID The subject, COHORT if pooled.
+     * @param age Age of the subject, -1 if pooled.
+     * @param gender Gender of the subject, empty if pooled.
+     * @param size Number of trials, the arrays may be longer.
+     * @param distance Letter distance of each trial.
+     * @param fontRatio Font ratio of each trial, greater to smaller.
+     * @param correct Whether each response was correct.
+     * @param responseTime Response time of each trial in seconds.
+     */
+    public Trials(int subjectID, int age, String gender, int size, double distance[], double fontRatio[],
+            boolean correct[], double responseTime[]) {
+        this.subjectID = subjectID;
+        this.age = age;
+        this.gender = gender;
+        this.size = size;
+        this.distance = distance;
+        this.fontRatio = fontRatio;
+        this.correct = correct;
+        this.responseTime = responseTime;
+    }
+
+    /**
+     * @return Index of a column in DataWriter.COLUMNS.
+     */
+    private static int indexOf(String column) {
+        return Arrays.asList(DataWriter.COLUMNS).indexOf(column);
+    }
+
+    /**
+     * Get the difficulty of a trial as DataWriter names it.
+     * @param distance Letter distance of the trial.
+     * @return Index in DIFFICULTIES, -1 if the distance is in none, as in adaptive mode.
+     */
+    public static int difficultyOf(double distance) {
+        for (int d = 0; d < DIFFICULTY_MINS.length; d++) {
+            if (distance >= DIFFICULTY_MINS[d]
+                    && distance < DIFFICULTY_MINS[d] + AlphaPairGenerator.NUM_CHOICES_IN_MODE) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Take the trials of a row group of a columnar file.
+     * @param reader The file, to decode the gender.
+     * @param group The row group.
+     * @return The trials.
+     */
+    public static Trials fromGroup(ColumnarReader reader, ColumnarReader.Group group) {
+        int rows = group.getNumRows();
+        int distances[] = group.getInts(DISTANCE_COLUMN);
+        double distance[] = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            distance[i] = distances[i];
+        }
+        int age = rows == 0 ? -1 : group.getInts(AGE_COLUMN)[0];
+        String gender = rows == 0 ? "" : reader.decode(GENDER_COLUMN, group.getCodes(GENDER_COLUMN)[0]);
+        return new Trials(group.getSubjectID(), age, gender, rows, distance, group.getDoubles(FONT_RATIO_COLUMN),
+                group.getBooleans(CORRECT_COLUMN), group.getDoubles(RESPONSE_TIME_COLUMN));
+    }
+
+    /**
+     * Parse the trials of a results file.
+     * @param subjectID The subject.
+     * @param rows The values of each trial, see CohortExporter.readTrials().
+     * @return The trials.
+     * @throws NumberFormatException If a value cannot be parsed.
+     */
+    public static Trials fromRows(int subjectID, List<String[]> rows) {
+        int size = rows.size();
+        double distance[] = new double[size];
+        double fontRatio[] = new double[size];
+        boolean correct[] = new boolean[size];
+        double responseTime[] = new double[size];
+        for (int i = 0; i < size; i++) {
+            String values[] = rows.get(i);
+            distance[i] = Integer.parseInt(values[DISTANCE_COLUMN]);
+            fontRatio[i] = Double.parseDouble(values[FONT_RATIO_COLUMN]);
+            correct[i] = ColumnarFormat.parseBoolean(values[CORRECT_COLUMN]);
+            responseTime[i] = Double.parseDouble(values[RESPONSE_TIME_COLUMN]);
+        }
+        int age = size == 0 ? -1 : Integer.parseInt(rows.get(0)[AGE_COLUMN]);
+        String gender = size == 0 ? "" : rows.get(0)[GENDER_COLUMN];
+        return new Trials(subjectID, age, gender, size, distance, fontRatio, correct, responseTime);
+    }
+
+    /**
+     * Load the trials of every subject of a results tree or a columnar file.
+     * A subject whose file cannot be read or parsed is logged and skipped.
+     * @param in The results tree, such as results_letters, or a columnar file.
+     * @return The trials of each subject, in the order of the tree or the file.
+     * @throws IOException If the columnar file cannot be read.
+     */
+    public static List<Trials> loadAll(File in) throws IOException {
+        List<Trials> subjects = new ArrayList<Trials>();
+        if (in.isDirectory()) {
+            for (File file : CohortExporter.findResults(in)) {
+                String subject = file.getParentFile().getName();
+                try {
+                    subjects.add(fromRows(Integer.parseInt(subject), CohortExporter.readTrials(file)));
+                } catch (IOException | NumberFormatException e) {
+                    logger.error("Skipping subject " + subject + ": " + e.getMessage());
+                }
+            }
+        } else {
+            try (ColumnarReader reader = new ColumnarReader(in)) {
+                for (int g = 0; g < reader.getNumGroups(); g++) {
+                    subjects.add(fromGroup(reader, reader.readGroup(g)));
+                }
+            }
+        }
+        return subjects;
+    }
+
+    /**
+     * Pool the trials of many subjects.
+     * @param parts The trials of each subject.
+     * @return The trials of all of them, as COHORT.
+     */
+    public static Trials pool(List<Trials> parts) {
+        int size = 0;
+        for (Trials part : parts) {
+            size += part.size;
+        }
+        double distance[] = new double[size];
+        double fontRatio[] = new double[size];
+        boolean correct[] = new boolean[size];
+        double responseTime[] = new double[size];
+        int offset = 0;
+        for (Trials part : parts) {
+            System.arraycopy(part.distance, 0, distance, offset, part.size);
+            System.arraycopy(part.fontRatio, 0, fontRatio, offset, part.size);
+            System.arraycopy(part.correct, 0, correct, offset, part.size);
+            System.arraycopy(part.responseTime, 0, responseTime, offset, part.size);
+            offset += part.size;
+        }
+        return new Trials(COHORT, -1, "", size, distance, fontRatio, correct, responseTime);
+    }
+
+    public int getSubjectID() {
+        return this.subjectID;
+    }
+
+    /** @return Age of the subject at the first trial, -1 if pooled. */
+    public int getAge() {
+        return this.age;
+    }
+
+    /** @return Gender of the subject at the first trial, empty if pooled. */
+    public String getGender() {
+        return this.gender;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public double[] getDistance() {
+        return this.distance;
+    }
+
+    public double[] getFontRatio() {
+        return this.fontRatio;
+    }
+
+    public boolean[] getCorrect() {
+        return this.correct;
+    }
+
+    public double[] getResponseTime() {
+        return this.responseTime;
+    }
+}
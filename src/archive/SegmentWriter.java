@@ -0,0 +1,178 @@
+package archive;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes one archive segment, see SessionArchive for the layout. The segment
+ * is written to a temporary file and only renamed into place, after being
+ * forced to disk, when it is closed, so a segment that exists is complete and
+ * is never written again. The folder is forced to disk after the rename, so
+ * the segment is still there after a crash before results folders that were
+ * packed into it are removed.
+ *
+ * Classes Related To:
+ *  -SessionArchive.java
+ *      -Reads the segments and decides what goes into a new one.
+ *
+ */
+public class SegmentWriter implements Closeable {
+
+    private final File file;
+    private final File tmpFile;
+    private final FileOutputStream fileOut;
+    private final DataOutputStream out;
+
+    /** Bytes written so far, the offset of the next session. */
+    private long offset;
+
+    private final List<SessionArchive.Entry> entries = new ArrayList<SessionArchive.Entry>();
+
+    private boolean closed;
+
+    /**
+     * Constructor.
+     * @param file The segment to write. Must not exist yet.
+     * @throws IOException If the segment cannot be created.
+     */
+    public SegmentWriter(File file) throws IOException {
+        if (file.exists()) {
+            throw new IOException(file + " already exists, segments are never rewritten");
+        }
+        this.file = file;
+        this.tmpFile = new File(file.getPath() + ".tmp");
+        this.fileOut = new FileOutputStream(this.tmpFile);
+        this.out = new DataOutputStream(new BufferedOutputStream(this.fileOut, 1 << 16));
+        this.out.writeInt(SessionArchive.MAGIC);
+        this.offset = 4;
+    }
+
+    /**
+     * Pack the files of a session into the segment.
+     * @param subjectID The subject.
+     * @param files The files of the session.
+     * @return The index entry of the session.
+     * @throws IOException If a file cannot be read or the segment cannot be written.
+     */
+    public SessionArchive.Entry add(String subjectID, List<File> files) throws IOException {
+        File sorted[] = files.toArray(new File[0]);
+        Arrays.sort(sorted);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(raw);
+        payload.writeShort(sorted.length);
+        for (File file : sorted) {
+            byte bytes[] = Files.readAllBytes(file.toPath());
+            payload.writeUTF(file.getName());
+            payload.writeLong(file.lastModified());
+            payload.writeInt(bytes.length);
+            payload.write(bytes);
+        }
+        payload.flush();
+        CRC32 crc = new CRC32();
+        crc.update(raw.toByteArray(), 0, raw.size());
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.size() / 4 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(compressed, deflater)) {
+            raw.writeTo(deflate);
+        } finally {
+            deflater.end();
+        }
+        compressed.writeTo(this.out);
+
+        SessionArchive.Entry entry = new SessionArchive.Entry(subjectID, this.file, this.offset,
+                compressed.size(), raw.size(), (int) crc.getValue(), sorted.length, System.currentTimeMillis());
+        this.entries.add(entry);
+        this.offset += compressed.size();
+        return entry;
+    }
+
+    /**
+     * Write the footer index, force the segment to disk, rename it into place
+     * and force the rename to disk.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream footer = new DataOutputStream(bytes);
+        footer.writeInt(this.entries.size());
+        for (SessionArchive.Entry entry : this.entries) {
+            footer.writeUTF(entry.getSubjectID());
+            footer.writeLong(entry.getOffset());
+            footer.writeInt(entry.getCompressedLength());
+            footer.writeInt(entry.getRawLength());
+            footer.writeInt(entry.getCrc());
+            footer.writeShort(entry.getNumFiles());
+            footer.writeLong(entry.getArchivedAt());
+        }
+        footer.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        bytes.writeTo(this.out);
+        this.out.writeLong(this.offset);
+        this.out.writeInt((int) crc.getValue());
+        this.out.writeInt(SessionArchive.MAGIC);
+        this.out.flush();
+        this.fileOut.getChannel().force(true);
+        this.out.close();
+        Files.move(this.tmpFile.toPath(), this.file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        forceFolder(this.file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Force a folder's entries to disk, such as a file just renamed into it.
+     * @param dir The folder.
+     */
+    private static void forceFolder(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Windows cannot open a folder as a channel; there the rename is left to the file system.
+        }
+    }
+
+    /**
+     * Throw away a segment that could not be completed.
+     */
+    public void abort() {
+        this.closed = true;
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            // Deleted anyway.
+        }
+        this.tmpFile.delete();
+    }
+
+    /** @return Bytes written so far. */
+    public long getSize() {
+        return this.offset;
+    }
+
+    public int getNumEntries() {
+        return this.entries.size();
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+}
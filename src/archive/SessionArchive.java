@@ -0,0 +1,611 @@
+package archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An archive of finished sessions: every file of a subject's results folder
+ * (trials, staircase summary, timing header, replay recording with its seed)
+ * packed into compressed, checksummed, append-only segments.
+ *
+ * Each run of pack() writes new segments (segment_NNNNN.lgs) next to the old
+ * ones and never rewrites a segment. A segment is:
+ *  -MAGIC ("LGA1").
+ *  -One entry per session: the session's files deflated together. Before
+ *   compression an entry is the number of files, then for each file its
+ *   name, last modified time, length and bytes.
+ *  -The footer index: for each entry the subject, offset, compressed and
+ *   raw length, CRC32 of the raw bytes, number of files and when it was
+ *   archived.
+ *  -The offset of the footer, the CRC32 of the footer, and MAGIC.
+ * Opening the archive reads only the footers, so a subject can be found
+ * and extracted without reading any other session.
+ *
+ * A subject archived again, because its folder changed after it was
+ * archived, gets a new entry in a later segment. Extracting the subject
+ * writes its entries oldest first.
+ *
+ * Classes Related To:
+ *  -SegmentWriter.java
+ *      -Writes a segment.
+ *  -ArchiveMain.java (main)
+ *      -Packs, lists, extracts and verifies from the command line.
+ *
+ */
+public class SessionArchive {
+
+    private static final Logger logger = Logger.getLogger(SessionArchive.class);
+
+    /** First and last four bytes of every segment: "LGA1". */
+    public static final int MAGIC = 0x4C474131;
+
+    /** File name of each segment, numbered from 1. */
+    static final String SEGMENT_PREFIX = "segment_";
+    static final String SEGMENT_SUFFIX = ".lgs";
+
+    /** Size in bytes a segment is closed at and the next one started. */
+    public static final long DEFAULT_MAX_SEGMENT = 256L << 20;
+
+    /** A session in a segment, as listed in the segment's footer index. */
+    public static final class Entry {
+        private final String subjectID;
+        private final File segment;
+        private final long offset;
+        private final int compressedLength;
+        private final int rawLength;
+        private final int crc;
+        private final int numFiles;
+        private final long archivedAt;
+
+        Entry(String subjectID, File segment, long offset, int compressedLength, int rawLength,
+                int crc, int numFiles, long archivedAt) {
+            this.subjectID = subjectID;
+            this.segment = segment;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+            this.crc = crc;
+            this.numFiles = numFiles;
+            this.archivedAt = archivedAt;
+        }
+
+        public String getSubjectID() {
+            return this.subjectID;
+        }
+
+        public File getSegment() {
+            return this.segment;
+        }
+
+        public long getOffset() {
+            return this.offset;
+        }
+
+        public int getCompressedLength() {
+            return this.compressedLength;
+        }
+
+        public int getRawLength() {
+            return this.rawLength;
+        }
+
+        public int getCrc() {
+            return this.crc;
+        }
+
+        public int getNumFiles() {
+            return this.numFiles;
+        }
+
+        /** @return Time in milliseconds since 1970 the session was archived. */
+        public long getArchivedAt() {
+            return this.archivedAt;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d files, %d -> %d bytes in %s", this.subjectID, this.numFiles,
+                    this.rawLength, this.compressedLength, this.segment.getName());
+        }
+    }
+
+    /** A file of an archived session. */
+    public static final class ArchivedFile {
+        private final String name;
+        private final long lastModified;
+        private final byte bytes[];
+
+        ArchivedFile(String name, long lastModified, byte bytes[]) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getLastModified() {
+            return this.lastModified;
+        }
+
+        public byte[] getBytes() {
+            return this.bytes;
+        }
+    }
+
+    /** Outcome of pack(). */
+    public static final class PackResult {
+        private final List<Entry> packed = new ArrayList<Entry>();
+        private final List<String> skipped = new ArrayList<String>();
+        private int removed;
+
+        /** @return The sessions packed. */
+        public List<Entry> getPacked() {
+            return this.packed;
+        }
+
+        /** @return Subjects not packed, each with the reason. */
+        public List<String> getSkipped() {
+            return this.skipped;
+        }
+
+        /** @return Number of results folders removed after they were archived and verified. */
+        public int getRemoved() {
+            return this.removed;
+        }
+
+        @Override
+        public String toString() {
+            long raw = 0;
+            long compressed = 0;
+            for (Entry entry : this.packed) {
+                raw += entry.getRawLength();
+                compressed += entry.getCompressedLength();
+            }
+            return String.format("Packed %d sessions, %d -> %d bytes, %d skipped, %d folders removed",
+                    this.packed.size(), raw, compressed, this.skipped.size(), this.removed);
+        }
+    }
+
+    private final File dir;
+
+    /** Segments, oldest first. */
+    private final List<File> segments = new ArrayList<File>();
+
+    /** Entries of each subject, oldest first. */
+    private final Map<String, List<Entry>> index = new TreeMap<String, List<Entry>>();
+
+    /**
+     * Open an archive, reading the footer of every segment. The folder is
+     * created if it does not exist.
+     * @param dir The folder of the segments.
+     * @throws IOException If a segment cannot be read or has a bad footer.
+     */
+    public SessionArchive(File dir) throws IOException {
+        this.dir = dir;
+        dir.mkdirs();
+        File files[] = dir.listFiles();
+        if (files == null) {
+            throw new IOException(dir + " is not a folder");
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                this.segments.add(file);
+                for (Entry entry : readFooter(file)) {
+                    this.index.computeIfAbsent(entry.getSubjectID(), k -> new ArrayList<Entry>()).add(entry);
+                }
+            } else if (name.endsWith(SEGMENT_SUFFIX + ".tmp")) {
+                logger.warn("Ignoring " + file + ", a segment that was never completed");
+            }
+        }
+    }
+
+    /**
+     * Read the footer index of a segment.
+     * @param segment The segment.
+     * @return Its entries.
+     * @throws IOException If the segment cannot be read or has a bad footer.
+     */
+    static List<Entry> readFooter(File segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < 20 || readAt(channel, 0, 4).getInt() != MAGIC) {
+                throw new IOException(segment + " is not an archive segment");
+            }
+            ByteBuffer trailer = readAt(channel, length - 16, 16);
+            long footer = trailer.getLong();
+            int footerCrc = trailer.getInt();
+            if (trailer.getInt() != MAGIC || footer < 4 || footer > length - 16) {
+                throw new IOException(segment + " has no footer, it may be truncated");
+            }
+            byte bytes[] = readAt(channel, footer, (int) (length - 16 - footer)).array();
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            if ((int) crc.getValue() != footerCrc) {
+                throw new IOException(segment + " has a corrupt footer");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            int numEntries = in.readInt();
+            List<Entry> entries = new ArrayList<Entry>(numEntries);
+            for (int i = 0; i < numEntries; i++) {
+                entries.add(new Entry(in.readUTF(), segment, in.readLong(), in.readInt(), in.readInt(),
+                        in.readInt(), in.readUnsignedShort(), in.readLong()));
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Read bytes at a position of a channel. Safe to call from several threads on one channel.
+     * @param channel The channel.
+     * @param position Where to start.
+     * @param length Number of bytes.
+     * @return The bytes, ready to be read.
+     * @throws IOException If the channel ends first.
+     */
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive segment");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Pack every finished session of a results tree into new segments.
+     * A session is finished once no file in its folder has been modified for
+     * quietMillis. A session already archived is skipped unless its folder
+     * changed since.
+     * @param resultsDir The results tree, such as results_letters.
+     * @param quietMillis Time in milliseconds since the last change for a session to count as finished.
+     * @param maxSegment Size in bytes a segment is closed at.
+     * @param remove Whether to remove each folder once its session is archived and verified,
+     *      and only if the folder still holds exactly the files archived, as they were.
+     * @return What was packed and skipped.
+     * @throws IOException If a segment cannot be written.
+     */
+    public PackResult pack(File resultsDir, long quietMillis, long maxSegment, boolean remove) throws IOException {
+        PackResult result = new PackResult();
+        File subjectDirs[] = resultsDir.listFiles(File::isDirectory);
+        if (subjectDirs == null) {
+            throw new IOException(resultsDir + " is not a folder");
+        }
+        Arrays.sort(subjectDirs);
+        long now = System.currentTimeMillis();
+        Map<Entry, File> archivedDirs = new LinkedHashMap<Entry, File>();
+        SegmentWriter writer = null;
+        try {
+            for (File subjectDir : subjectDirs) {
+                String subjectID = subjectDir.getName();
+                File files[] = subjectDir.listFiles(File::isFile);
+                if (files == null || files.length == 0) {
+                    continue;
+                }
+                long lastModified = 0;
+                for (File file : files) {
+                    lastModified = Math.max(lastModified, file.lastModified());
+                }
+                if (now - lastModified < quietMillis) {
+                    result.skipped.add(subjectID + ": still in progress");
+                    continue;
+                }
+                List<Entry> archived = this.index.get(subjectID);
+                if (archived != null && archived.get(archived.size() - 1).getArchivedAt() >= lastModified) {
+                    result.skipped.add(subjectID + ": already archived");
+                    archivedDirs.put(archived.get(archived.size() - 1), subjectDir);
+                    continue;
+                }
+                if (writer == null) {
+                    writer = new SegmentWriter(this.nextSegment());
+                }
+                try {
+                    Entry entry = writer.add(subjectID, Arrays.asList(files));
+                    result.packed.add(entry);
+                    archivedDirs.put(entry, subjectDir);
+                } catch (IOException e) {
+                    logger.error("Skipping subject " + subjectID + ": " + e.getMessage());
+                    result.skipped.add(subjectID + ": " + e.getMessage());
+                }
+                if (writer.getSize() >= maxSegment) {
+                    this.closeSegment(writer);
+                    writer = null;
+                }
+            }
+            if (writer != null) {
+                this.closeSegment(writer);
+                writer = null;
+            }
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+        if (remove) {
+            for (Map.Entry<Entry, File> archived : archivedDirs.entrySet()) {
+                Entry entry = archived.getKey();
+                File subjectDir = archived.getValue();
+                List<ArchivedFile> files;
+                try {
+                    files = this.read(entry);
+                } catch (IOException e) {
+                    logger.error("Keeping " + subjectDir + ", its archived copy failed to verify: " + e.getMessage());
+                    continue;
+                }
+                if (!matches(subjectDir, files)) {
+                    logger.warn("Keeping " + subjectDir + ", it changed since it was archived");
+                    continue;
+                }
+                if (removeFolder(subjectDir)) {
+                    result.removed++;
+                }
+            }
+        }
+        logger.info(result);
+        return result;
+    }
+
+    /**
+     * Close a segment and add its entries to the index.
+     * @param writer The segment.
+     */
+    private void closeSegment(SegmentWriter writer) throws IOException {
+        writer.close();
+        this.segments.add(writer.getFile());
+        for (Entry entry : readFooter(writer.getFile())) {
+            this.index.computeIfAbsent(entry.getSubjectID(), k -> new ArrayList<Entry>()).add(entry);
+        }
+        logger.info("Wrote " + writer.getNumEntries() + " sessions to " + writer.getFile());
+    }
+
+    /**
+     * @return The file of the next segment, numbered after the last.
+     */
+    private File nextSegment() {
+        int last = 0;
+        for (File segment : this.segments) {
+            String name = segment.getName();
+            try {
+                last = Math.max(last, Integer.parseInt(
+                        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            } catch (NumberFormatException e) {
+                // Not numbered by pack().
+            }
+        }
+        return new File(this.dir, String.format("%s%05d%s", SEGMENT_PREFIX, last + 1, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Check that a results folder holds exactly the files of its archived
+     * copy, with the same length and last modified time.
+     * @param subjectDir The folder.
+     * @param files The archived files of the folder.
+     * @return Whether the folder is as it was archived.
+     */
+    private static boolean matches(File subjectDir, List<ArchivedFile> files) {
+        File current[] = subjectDir.listFiles();
+        if (current == null || current.length != files.size()) {
+            return false;
+        }
+        Map<String, ArchivedFile> byName = new TreeMap<String, ArchivedFile>();
+        for (ArchivedFile file : files) {
+            byName.put(file.getName(), file);
+        }
+        for (File file : current) {
+            ArchivedFile archived = byName.get(file.getName());
+            if (archived == null || !file.isFile() || file.lastModified() != archived.getLastModified()
+                    || file.length() != archived.getBytes().length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a results folder and its files.
+     * @param subjectDir The folder.
+     * @return Whether everything was removed.
+     */
+    private static boolean removeFolder(File subjectDir) {
+        File files[] = subjectDir.listFiles();
+        boolean removed = files != null;
+        if (files != null) {
+            for (File file : files) {
+                removed &= file.delete();
+            }
+        }
+        removed &= subjectDir.delete();
+        if (!removed) {
+            logger.warn("Could not remove all of " + subjectDir);
+        }
+        return removed;
+    }
+
+    /**
+     * Read the files of an archived session, checking its checksum.
+     * @param entry The session.
+     * @return Its files.
+     * @throws IOException If the session cannot be read or is corrupt.
+     */
+    public List<ArchivedFile> read(Entry entry) throws IOException {
+        try (FileChannel channel = FileChannel.open(entry.getSegment().toPath(), StandardOpenOption.READ)) {
+            return read(channel, entry);
+        }
+    }
+
+    /**
+     * Read the files of an archived session from an open segment, checking its checksum.
+     * @param channel The segment of the session.
+     * @param entry The session.
+     * @return Its files.
+     * @throws IOException If the session cannot be read or is corrupt.
+     */
+    private static List<ArchivedFile> read(FileChannel channel, Entry entry) throws IOException {
+        byte compressed[] = readAt(channel, entry.getOffset(), entry.getCompressedLength()).array();
+        byte raw[] = new byte[entry.getRawLength()];
+        try (InputStream inflate = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            int read = 0;
+            while (read < raw.length) {
+                int n = inflate.read(raw, read, raw.length - read);
+                if (n < 0) {
+                    throw new IOException(entry.getSubjectID() + " is shorter than its index says");
+                }
+                read += n;
+            }
+            if (inflate.read() >= 0) {
+                throw new IOException(entry.getSubjectID() + " is longer than its index says");
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw, 0, raw.length);
+        if ((int) crc.getValue() != entry.getCrc()) {
+            throw new IOException(entry.getSubjectID() + " fails its checksum");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        int numFiles = in.readUnsignedShort();
+        if (numFiles != entry.getNumFiles()) {
+            throw new IOException(entry.getSubjectID() + " has " + numFiles + " files, its index says "
+                    + entry.getNumFiles());
+        }
+        List<ArchivedFile> files = new ArrayList<ArchivedFile>(numFiles);
+        for (int i = 0; i < numFiles; i++) {
+            String name = in.readUTF();
+            long lastModified = in.readLong();
+            byte bytes[] = new byte[in.readInt()];
+            in.readFully(bytes);
+            files.add(new ArchivedFile(name, lastModified, bytes));
+        }
+        return files;
+    }
+
+    /**
+     * Check one archived session.
+     * @param entry The session.
+     * @throws IOException If the session cannot be read or is corrupt.
+     */
+    public void verify(Entry entry) throws IOException {
+        this.read(entry);
+    }
+
+    /**
+     * Check every archived session in parallel, reading each segment through
+     * one shared channel.
+     * @param threads Number of sessions checked at once.
+     * @return One line for each session that failed, empty if all passed.
+     * @throws IOException If a segment cannot be opened.
+     */
+    public List<String> verifyAll(int threads) throws IOException {
+        Map<File, FileChannel> channels = new LinkedHashMap<File, FileChannel>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "archive-verify");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (File segment : this.segments) {
+                channels.put(segment, FileChannel.open(segment.toPath(), StandardOpenOption.READ));
+            }
+            List<Entry> entries = this.getEntries();
+            List<Future<String>> results = new ArrayList<Future<String>>(entries.size());
+            for (Entry entry : entries) {
+                FileChannel channel = channels.get(entry.getSegment());
+                results.add(pool.submit(() -> {
+                    try {
+                        read(channel, entry);
+                        return null;
+                    } catch (IOException | RuntimeException e) {
+                        return entry.getSubjectID() + " in " + entry.getSegment().getName() + ": " + e.getMessage();
+                    }
+                }));
+            }
+            List<String> failures = new ArrayList<String>();
+            for (Future<String> result : results) {
+                String failure = result.get();
+                if (failure != null) {
+                    failures.add(failure);
+                }
+            }
+            return failures;
+        } catch (Exception e) {
+            throw e instanceof IOException ? (IOException) e : new IOException("Verify interrupted", e);
+        } finally {
+            pool.shutdownNow();
+            for (FileChannel channel : channels.values()) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Write the files of a subject's archived sessions to a folder, oldest first.
+     * @param subjectID The subject.
+     * @param outDir The folder to write to, such as results_letters/subjectID.
+     * @return Number of files written, 0 if the subject is not archived.
+     * @throws IOException If a session is corrupt or a file cannot be written.
+     */
+    public int extract(String subjectID, File outDir) throws IOException {
+        int written = 0;
+        for (Entry entry : this.getEntries(subjectID)) {
+            outDir.mkdirs();
+            for (ArchivedFile file : this.read(entry)) {
+                File out = new File(outDir, new File(file.getName()).getName());
+                try (FileOutputStream stream = new FileOutputStream(out)) {
+                    stream.write(file.getBytes());
+                }
+                out.setLastModified(file.getLastModified());
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @return The archived sessions of a subject, oldest first, empty if none.
+     */
+    public List<Entry> getEntries(String subjectID) {
+        List<Entry> entries = this.index.get(subjectID);
+        return entries == null ? Collections.<Entry>emptyList() : Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return Every archived session, by subject.
+     */
+    public List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (List<Entry> subject : this.index.values()) {
+            entries.addAll(subject);
+        }
+        return entries;
+    }
+
+    /** @return The segments, oldest first. */
+    public List<File> getSegments() {
+        return Collections.unmodifiableList(this.segments);
+    }
+}
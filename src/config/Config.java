@@ -15,20 +15,30 @@ import java.util.Properties;
 public class Config {
     
     /** Default properties to be loaded from defaultconfig.properties */
-    private static Properties defaultProperties;
+    private final Properties defaultProperties;
     private final static String DEFAULT_CONFIG_FILE_NAME = "defaultconfig.properties";
     
     public Config() {
+        this.defaultProperties = new Properties();
         defaultLoad();
     }
     
+    /**
+     * Load the defaults, then replace them with the given properties.
+     * Lets each session in the same JVM run with its own settings.
+     * @param overrides Properties that take precedence over the defaults.
+     */
+    public Config(Properties overrides) {
+        this();
+        this.defaultProperties.putAll(overrides);
+    }
+    
     /**
      * Creates and loads the default properties
      */
     private void defaultLoad()
     {
         // load the properties from the default config file
-        defaultProperties = new Properties();
         InputStream in;
         try
         {
@@ -50,7 +60,7 @@ public class Config {
      * @param key The key desired
      * @return The value as a boolean
      */
-    public static Boolean getPropertyBoolean(String key) {
+    public Boolean getPropertyBoolean(String key) {
         if (defaultProperties.containsKey(key)) {
             return Boolean.valueOf(defaultProperties.getProperty(key));
         } else {
@@ -59,12 +69,40 @@ public class Config {
         }
     }
     
+    /**
+     * Grab the property as a string.
+     * @param key The key desired
+     * @return The value, or null if not found.
+     */
+    public String getProperty(String key) {
+        if (defaultProperties.containsKey(key)) {
+            return defaultProperties.getProperty(key).trim();
+        } else {
+            System.err.println("Property \""  + key + "\" not found.");
+            return null;
+        }
+    }
+    
+    /**
+     * Grab the property and convert the value to a double.
+     * @param key The key desired
+     * @return The value as a double.
+     */
+    public double getPropertyDouble(String key) {
+        if (defaultProperties.containsKey(key)) {
+            return Double.parseDouble(defaultProperties.getProperty(key));
+        } else {
+            System.err.println("Property \""  + key + "\" not found.");
+            return 0;
+        }
+    }
+    
     /**
      * Grab the property and convert the value to an int.
      * @param key The key desired
      * @return The value as an int.
      */
-    public static int getPropertyInt(String key) {
+    public int getPropertyInt(String key) {
         if (defaultProperties.containsKey(key)) {
             return Integer.parseInt(defaultProperties.getProperty(key));
         } else {
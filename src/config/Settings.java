@@ -0,0 +1,276 @@
+package config;
+
+/**
+ * The settings of one session, read once from a Config. Immutable, so it
+ * can be loaded on a background thread and shared with the FX thread.
+ * 
+ */
+public final class Settings {
+    
+    /** Difficulty mode where the staircase decides the difficulty. */
+    public static final String ADAPTIVE_MODE = "adaptive";
+    
+    /** Time between rounds in milliseconds. */
+    private final int timeBetweenRounds;
+    
+    /** True if choices should vary in physical size */
+    private final boolean sizeVariation;
+    
+    /** True if the static layers (background and stars) should be render cached. */
+    private final boolean renderCache;
+    
+    /** How the letters are drawn: "atlas" or "label". See StimulusRenderer. */
+    private final String stimulusRenderer;
+    
+    /** True if the assessment adapts its difficulty with a staircase instead of fixed difficulty modes. */
+    private final boolean adaptive;
+    
+    /** Proportion correct the staircase converges on in adaptive mode. */
+    private final double staircaseTarget;
+    
+    /** True if each session is recorded so it can be replayed. See SessionRecorder. */
+    private final boolean recordReplay;
+    
+    /** True if the game returns to a fresh login screen after each participant. */
+    private final boolean kiosk;
+    
+    /** Time in milliseconds the finish screen is shown in kiosk mode, 0 to wait for the experimenter key. */
+    private final int kioskDelay;
+    
+    /** True if trials are also sent to the collector. See NetworkSink. */
+    private final boolean sinkEnabled;
+    
+    /** Host and port of the collector. */
+    private final String sinkHost;
+    private final int sinkPort;
+    
+    /** Number of this station in the lab. */
+    private final int sinkStation;
+    
+    /** Most trials sent to the collector at once. */
+    private final int sinkBatchSize;
+    
+    /** Longest time in milliseconds a trial waits before being sent to the collector. */
+    private final int sinkFlushMillis;
+    
+    /** Folder trials are kept in while the collector cannot be reached. */
+    private final String sinkSpoolDir;
+    
+    /** True if the live metrics of the session are registered as an MBean. See SessionMetrics. */
+    private final boolean jmxEnabled;
+    
+    /** True if each trial records the GC pauses and JIT time during its response. See PauseMonitor. */
+    private final boolean pauseMonitor;
+    
+    /** True if trials are also kept in the embedded database. See TrialStore. */
+    private final boolean storeEnabled;
+    
+    /** JDBC driver and URL of the embedded database. */
+    private final String storeDriver;
+    private final String storeUrl;
+    
+    /** Most trials inserted into the database at once. */
+    private final int storeBatchSize;
+    
+    /** Longest time in milliseconds a trial waits before being inserted into the database. */
+    private final int storeFlushMillis;
+    
+    /** When the results are forced to disk: none, trial, group or session. See TrialSync. */
+    private final String durabilityMode;
+    
+    /** Most trials waiting to be forced to disk under the group policy. */
+    private final int durabilityGroupTrials;
+    
+    /** Longest time in milliseconds a trial waits to be forced to disk under the group policy. */
+    private final int durabilityGroupMillis;
+    
+    /** Largest acceptable step of System.nanoTime(), in microseconds. See TimingCalibration. */
+    private final double timingMaxClockResolution;
+    
+    /** Largest acceptable 99th percentile of the overshoot of Thread.sleep(1), in milliseconds. */
+    private final double timingMaxSleepOvershoot;
+    
+    /** Largest acceptable frame interval of the display, in milliseconds. */
+    private final double timingMaxFrame;
+    
+    /** Largest acceptable standard deviation of the FX pulse interval, in milliseconds. */
+    private final double timingMaxPulseJitter;
+    
+    /**
+     * Read the settings from a config.
+     * @param config The config.
+     */
+    public Settings(Config config) {
+        this.timeBetweenRounds = config.getPropertyInt("time.between.rounds");
+        this.sizeVariation = config.getPropertyBoolean("size.variation");
+        this.renderCache = config.getPropertyBoolean("render.cache");
+        this.stimulusRenderer = config.getProperty("stimulus.renderer");
+        this.adaptive = ADAPTIVE_MODE.equals(config.getProperty("difficulty.mode"));
+        this.staircaseTarget = config.getPropertyDouble("staircase.target");
+        this.recordReplay = config.getPropertyBoolean("replay.record");
+        this.kiosk = config.getPropertyBoolean("kiosk.mode");
+        this.kioskDelay = config.getPropertyInt("kiosk.delay");
+        this.sinkEnabled = config.getPropertyBoolean("sink.enabled");
+        this.sinkHost = config.getProperty("sink.host");
+        this.sinkPort = config.getPropertyInt("sink.port");
+        this.sinkStation = config.getPropertyInt("sink.station");
+        this.sinkBatchSize = config.getPropertyInt("sink.batch.size");
+        this.sinkFlushMillis = config.getPropertyInt("sink.flush.ms");
+        this.sinkSpoolDir = config.getProperty("sink.spool.dir");
+        this.jmxEnabled = config.getPropertyBoolean("jmx.enabled");
+        this.pauseMonitor = config.getPropertyBoolean("pause.monitor");
+        this.storeEnabled = config.getPropertyBoolean("store.enabled");
+        this.storeDriver = config.getProperty("store.driver");
+        this.storeUrl = config.getProperty("store.url");
+        this.storeBatchSize = config.getPropertyInt("store.batch.size");
+        this.storeFlushMillis = config.getPropertyInt("store.flush.ms");
+        this.durabilityMode = config.getProperty("durability.mode");
+        this.durabilityGroupTrials = config.getPropertyInt("durability.group.trials");
+        this.durabilityGroupMillis = config.getPropertyInt("durability.group.ms");
+        this.timingMaxClockResolution = config.getPropertyDouble("timing.max.clock.resolution.us");
+        this.timingMaxSleepOvershoot = config.getPropertyDouble("timing.max.sleep.overshoot.ms");
+        this.timingMaxFrame = config.getPropertyDouble("timing.max.frame.ms");
+        this.timingMaxPulseJitter = config.getPropertyDouble("timing.max.pulse.jitter.ms");
+    }
+
+    public int getTimeBetweenRounds() {
+        return timeBetweenRounds;
+    }
+
+    public boolean isSizeVariation() {
+        return sizeVariation;
+    }
+
+    public boolean isRenderCache() {
+        return renderCache;
+    }
+
+    public String getStimulusRenderer() {
+        return stimulusRenderer;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public double getStaircaseTarget() {
+        return staircaseTarget;
+    }
+
+    public boolean isRecordReplay() {
+        return recordReplay;
+    }
+
+    public boolean isKiosk() {
+        return kiosk;
+    }
+
+    public int getKioskDelay() {
+        return kioskDelay;
+    }
+
+    public boolean isSinkEnabled() {
+        return sinkEnabled;
+    }
+
+    public String getSinkHost() {
+        return sinkHost;
+    }
+
+    public int getSinkPort() {
+        return sinkPort;
+    }
+
+    public int getSinkStation() {
+        return sinkStation;
+    }
+
+    public int getSinkBatchSize() {
+        return sinkBatchSize;
+    }
+
+    public int getSinkFlushMillis() {
+        return sinkFlushMillis;
+    }
+
+    public String getSinkSpoolDir() {
+        return sinkSpoolDir;
+    }
+
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    public boolean isPauseMonitor() {
+        return pauseMonitor;
+    }
+
+    public boolean isStoreEnabled() {
+        return storeEnabled;
+    }
+
+    public String getStoreDriver() {
+        return storeDriver;
+    }
+
+    public String getStoreUrl() {
+        return storeUrl;
+    }
+
+    public int getStoreBatchSize() {
+        return storeBatchSize;
+    }
+
+    public int getStoreFlushMillis() {
+        return storeFlushMillis;
+    }
+
+    public String getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    public int getDurabilityGroupTrials() {
+        return durabilityGroupTrials;
+    }
+
+    public int getDurabilityGroupMillis() {
+        return durabilityGroupMillis;
+    }
+
+    public double getTimingMaxClockResolution() {
+        return timingMaxClockResolution;
+    }
+
+    public double getTimingMaxSleepOvershoot() {
+        return timingMaxSleepOvershoot;
+    }
+
+    public double getTimingMaxFrame() {
+        return timingMaxFrame;
+    }
+
+    public double getTimingMaxPulseJitter() {
+        return timingMaxPulseJitter;
+    }
+    
+    @Override
+    public String toString() {
+        return "TIME_BETWEEN_ROUNDS: " + timeBetweenRounds
+                + ", SIZE_VARIATION: " + sizeVariation
+                + ", RENDER_CACHE: " + renderCache
+                + ", STIMULUS_RENDERER: " + stimulusRenderer
+                + ", ADAPTIVE: " + adaptive
+                + ", STAIRCASE_TARGET: " + staircaseTarget
+                + ", RECORD_REPLAY: " + recordReplay
+                + ", KIOSK: " + kiosk + ", KIOSK_DELAY: " + kioskDelay
+                + ", SINK: " + (sinkEnabled ? sinkHost + ":" + sinkPort + " station " + sinkStation : "off")
+                + ", JMX: " + jmxEnabled
+                + ", PAUSE_MONITOR: " + pauseMonitor
+                + ", STORE: " + (storeEnabled ? storeUrl : "off")
+                + ", DURABILITY: " + durabilityMode + " (" + durabilityGroupTrials + " trials, " 
+                + durabilityGroupMillis + " ms)"
+                + ", TIMING TOLERANCES: clock " + timingMaxClockResolution + " us, sleep " 
+                + timingMaxSleepOvershoot + " ms, frame " + timingMaxFrame + " ms, jitter " 
+                + timingMaxPulseJitter + " ms";
+    }
+}
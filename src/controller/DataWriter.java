@@ -1,23 +1,31 @@
 package controller;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 import model.AlphaPair;
 import model.AlphaPairGenerator;
 import model.Player;
+import model.Staircase;
+import util.PauseMonitor;
 
 
 /**
  * Class for grabbing and exporting data to a CSV file.
  * 
  * Classes Related to:
- *  -LetterGameController.java
- *      -Grabs AlphaPair and Player from the controller to record and export their data.
+ *  -GameSession.java
+ *      -Grabs AlphaPair and Player from the session to record and export their data.
  * 
  * @author Tony Jiang
  * 6-25-2015
@@ -45,29 +53,84 @@ public class DataWriter {
     public static final String RESPONSE_TIME = "Response Time";
     public static final String DATE_TIME = "Date/Time";
     public static final String CONSECUTIVE_ROUND = "Consecutive Rounds";
+    public static final String GC_PAUSE = "GC Pause (ms)";
+    public static final String GC_COUNT = "GC Count";
+    public static final String JIT_TIME = "JIT Time (ms)";
+    public static final String STAIRCASE_LEVEL = "Staircase Level";
+    public static final String STAIRCASE_REVERSAL = "Reversal";
+    public static final String STAIRCASE_ESTIMATE = "Threshold Estimate (Level)";
+    
+    /** The columns of the results CSV file, in order. */
+    public static final String COLUMNS[] = {
+            SUBJECT_ID,
+            SUBJECT_AGE,
+            SUBJECT_GENDER,
+            LEFT_CHOICE,
+            RIGHT_CHOICE,
+            WHICH_SIDE_CORRECT,
+            WHICH_SIDE_PICKED,
+            IS_CORRECT,
+            DIFFICULTY,
+            DISTANCE,
+            LEFT_CHOICE_SIZE,
+            RIGHT_CHOICE_SIZE,
+            FONT_RATIO,
+            WHICH_SIZE_CORRECT,
+            WHICH_SIZE_PICKED,
+            RESPONSE_TIME,
+            DATE_TIME,
+            CONSECUTIVE_ROUND,
+            GC_PAUSE,
+            GC_COUNT,
+            JIT_TIME,
+    };
+    
+    /** 
+     * Number of leading COLUMNS that describe the trial itself. The rest describe
+     * the JVM during the trial, differ between runs, and are NaN when unknown.
+     */
+    public static final int NUM_TRIAL_COLUMNS = 18;
+    
+    /** Written for a runtime column that was not measured. */
+    public static final String UNKNOWN = "NaN";
+    
     
     /** The subject to grab data from. */
     private Player player;
     /** AlphaPair to grab data from. */
     private AlphaPair alphaPair;
+    /** Time of the subject's response. */
+    private LocalDateTime trialTime;
+    /** What overlapped the trial's response window, null if not measured. */
+    private PauseMonitor.Window pauses;
+    /** Results file whose column names have been checked, null if none yet. */
+    private File checkedFile;
     
     /**
-     * Constructor for data writer that takes in a controller
-     * and grabs the player and alpha pair.
-     * @param lgc Controller to grab data from
+     * Constructor for data writer. Call grabData() before writing a trial.
      */
-    public DataWriter(LetterGameController lgc) {
-        this.player = lgc.getThePlayer();
-        this.alphaPair = lgc.getCurrentAlphaPair();
+    public DataWriter() {
     }
     
     /**
-     * Regrab the current subject and alphapair from the controller.
-     * @param lgc Controller to grab data from
+     * Grab the current subject and alphapair of the session.
+     * @param player The subject.
+     * @param alphaPair The pair the subject responded to.
+     * @param trialTime Time of the response.
      */
-    public void grabData(LetterGameController lgc) {
-        this.player = lgc.getThePlayer();
-        this.alphaPair = lgc.getCurrentAlphaPair();
+    public void grabData(Player player, AlphaPair alphaPair, LocalDateTime trialTime) {
+        this.player = player;
+        this.alphaPair = alphaPair;
+        this.trialTime = trialTime;
+        this.pauses = null;
+    }
+    
+    /**
+     * Grab what overlapped the response window of the trial. Call after grabData().
+     * @param pauses The closed window, or null if it was not measured.
+     */
+    public void grabPauses(PauseMonitor.Window pauses) {
+        this.pauses = pauses;
     }
     
     /**
@@ -76,16 +139,14 @@ public class DataWriter {
      * Location of CSV file is in folder "results". "Results" will contain
      * subfolders each titled by Subject ID number containing the subject's
      * CSV data. 
+     * The first trial written to an existing file checks its column names, 
+     * see checkColumns().
      */
     public void writeToCSV() {
         
         PrintWriter writer = null;
         String subjectId = Integer.toString(this.player.getSubjectID());
         try {
-            /** Grab path to project */
-            String path = new File(".").getAbsolutePath();
-            path = path.substring(0, path.length() - 1);
-            
             /** Create results folder if doesn't exist */
             File resultsDir = new File("results_letters");
             resultsDir.mkdir();
@@ -95,15 +156,17 @@ public class DataWriter {
             subjectDir.mkdir();    
             
             /** Create new csv file for subject if doesn't exist */
-            File file = new File(path + "\\results_letters\\" + subjectId 
-                    + "\\results_" + subjectId + ".csv");            
+            File file = this.getResultsFile();
             logger.info(file.getPath());
             String text = "";
             
             /** Write data to new file or append to old file */
             if (file.createNewFile()) {
                 text += this.generateColumnNames();
+            } else if (!file.equals(this.checkedFile) && !this.checkColumns(file)) {
+                text += this.generateColumnNames();
             }
+            this.checkedFile = file;
             text += this.generateTrialText();
             writer = new PrintWriter(
                         new BufferedWriter(
@@ -119,30 +182,110 @@ public class DataWriter {
         } 
     }
     
+    /**
+     * Make sure an existing results file has the column names of COLUMNS
+     * before trials are appended to it. A file written before the runtime 
+     * columns were added has only the first NUM_TRIAL_COLUMNS; it is rewritten 
+     * with every column, its old trials getting UNKNOWN for the runtime 
+     * columns. A file with any other column names is renamed aside with the 
+     * suffix .old and the time in milliseconds, so the trials start a new file
+     * and an earlier file renamed aside is never replaced.
+     * @param file The results file, which exists.
+     * @return True if the file can be appended to, false if the column names 
+     *      must be written first, as the file is empty or was renamed aside.
+     * @throws IOException If the file cannot be read, rewritten or renamed.
+     */
+    private boolean checkColumns(File file) throws IOException {
+        String header;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            header = reader.readLine();
+        }
+        if (header == null) {
+            return false;
+        }
+        if (header.equals(String.join(DELIMITER, COLUMNS))) {
+            return true;
+        }
+        if (header.equals(String.join(DELIMITER, Arrays.copyOf(COLUMNS, NUM_TRIAL_COLUMNS)))) {
+            File tmpFile = new File(file.getPath() + ".tmp");
+            try (BufferedReader reader = new BufferedReader(new FileReader(file));
+                    PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(tmpFile)))) {
+                reader.readLine();
+                writer.write(this.generateColumnNames());
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String values[] = line.split(DELIMITER, -1);
+                    if (values.length == NUM_TRIAL_COLUMNS) {
+                        values = Arrays.copyOf(values, COLUMNS.length);
+                        Arrays.fill(values, NUM_TRIAL_COLUMNS, values.length, UNKNOWN);
+                    }
+                    writer.write(String.join(DELIMITER, values) + "\n");
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            logger.info("Added the runtime columns to " + file.getPath());
+            return true;
+        }
+        File old = new File(file.getPath() + ".old." + System.currentTimeMillis());
+        Files.move(file.toPath(), old.toPath());
+        logger.warning(file.getPath() + " has other columns, moved it to " + old.getPath());
+        return false;
+    }
+    
+    /**
+     * Get the CSV file the trials of the current subject are appended to.
+     * @return The file, which may not exist yet.
+     */
+    public File getResultsFile() {
+        String subjectId = Integer.toString(this.player.getSubjectID());
+        /** Grab path to project */
+        String path = new File(".").getAbsolutePath();
+        path = path.substring(0, path.length() - 1);
+        return new File(path + "\\results_letters\\" + subjectId 
+                + "\\results_" + subjectId + ".csv");
+    }
+    
+    /**
+     * Export the state of the staircase after every trial of an adaptive session
+     * to its own CSV file next to the subject's results. Overwrites the file of an
+     * earlier session of the same subject.
+     * @param staircase The staircase of the session.
+     */
+    public void writeStaircaseToCSV(Staircase staircase) {
+        String subjectId = Integer.toString(this.player.getSubjectID());
+        File subjectDir = new File("results_letters", subjectId);
+        subjectDir.mkdirs();
+        File file = new File(subjectDir, "staircase_" + subjectId + ".csv");
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            writer.write(CONSECUTIVE_ROUND + DELIMITER
+                    + STAIRCASE_LEVEL + DELIMITER
+                    + DISTANCE + DELIMITER
+                    + FONT_RATIO + DELIMITER
+                    + IS_CORRECT + DELIMITER
+                    + STAIRCASE_REVERSAL + DELIMITER
+                    + STAIRCASE_ESTIMATE + "\n");
+            for (int i = 0; i < staircase.getNumTrials(); i++) {
+                int level = staircase.getTrialLevel(i);
+                writer.write((i + 1) + DELIMITER
+                        + level + DELIMITER
+                        + AlphaPairGenerator.getAdaptiveDistance(level) + DELIMITER
+                        + (1 / AlphaPairGenerator.getAdaptiveFontRatio(level)) + DELIMITER
+                        + (staircase.isTrialCorrect(i) ? "yes" : "no") + DELIMITER
+                        + (staircase.isTrialReversal(i) ? "yes" : "no") + DELIMITER
+                        + staircase.getTrialEstimate(i) + "\n");
+            }
+            logger.info(file.getPath());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+    
     /**
      * Generate the column names.
      * @return String column names.
      */
     private String generateColumnNames() {
-        String text = SUBJECT_ID + DELIMITER
-                + SUBJECT_AGE + DELIMITER
-                + SUBJECT_GENDER + DELIMITER
-                + LEFT_CHOICE + DELIMITER
-                + RIGHT_CHOICE + DELIMITER
-                + WHICH_SIDE_CORRECT + DELIMITER
-                + WHICH_SIDE_PICKED + DELIMITER
-                + IS_CORRECT + DELIMITER
-                + DIFFICULTY + DELIMITER
-                + DISTANCE + DELIMITER
-                + LEFT_CHOICE_SIZE + DELIMITER
-                + RIGHT_CHOICE_SIZE + DELIMITER
-                + FONT_RATIO + DELIMITER
-                + WHICH_SIZE_CORRECT + DELIMITER
-                + WHICH_SIZE_PICKED + DELIMITER
-                + RESPONSE_TIME + DELIMITER
-                + DATE_TIME + DELIMITER
-                + CONSECUTIVE_ROUND + "\n";
-        return text;
+        return String.join(DELIMITER, COLUMNS) + "\n";
     }
 
     /**
@@ -150,6 +293,14 @@ public class DataWriter {
      * @return String CSV text data
      */
     public String generateTrialText() {
+        return String.join(DELIMITER, this.generateTrialValues()) + "\n";
+    }
+    
+    /**
+     * Generate the value of each column for the round (one pair), in the order of COLUMNS.
+     * @return The values as they are written to the CSV file.
+     */
+    public String[] generateTrialValues() {
         String subjectID = this.generateSubjectIdText();
         String subjectAge = this.generateSubjectAgeText();
         String subjectGender = this.generateSubjectGenderText();
@@ -168,27 +319,35 @@ public class DataWriter {
         String responseTime = this.generateResponseTimeText();
         String dateTime = this.generateDateTimeText();
         String consecutiveRounds = this.generateConsecutiveRoundsText();
+        boolean measured = this.pauses != null && this.pauses.isClosed();
+        String gcPause = measured ? String.valueOf(this.pauses.getGcPauseMillis()) : UNKNOWN;
+        String gcCount = measured ? Long.toString(this.pauses.getGcCount()) : UNKNOWN;
+        String jitTime = measured && this.pauses.getJitMillis() >= 0 
+                ? Long.toString(this.pauses.getJitMillis()) : UNKNOWN;
         
-        String trialText = subjectID + DELIMITER
-                + subjectAge + DELIMITER
-                + subjectGender + DELIMITER
-                + leftChoice + DELIMITER
-                + rightChoice + DELIMITER
-                + whichSideCorrect + DELIMITER
-                + whichSidePicked + DELIMITER
-                + correct + DELIMITER
-                + difficulty + DELIMITER
-                + distance + DELIMITER
-                + leftChoiceSize + DELIMITER
-                + rightChoiceSize + DELIMITER
-                + fontRatio + DELIMITER
-                + whichSizeCorrect + DELIMITER
-                + whichSizePicked + DELIMITER
-                + responseTime + DELIMITER
-                + dateTime + DELIMITER
-                + consecutiveRounds + "\n";
-        
-        return trialText;
+        return new String[] {
+                subjectID,
+                subjectAge,
+                subjectGender,
+                leftChoice,
+                rightChoice,
+                whichSideCorrect,
+                whichSidePicked,
+                correct,
+                difficulty,
+                distance,
+                leftChoiceSize,
+                rightChoiceSize,
+                fontRatio,
+                whichSizeCorrect,
+                whichSizePicked,
+                responseTime,
+                dateTime,
+                consecutiveRounds,
+                gcPause,
+                gcCount,
+                jitTime,
+        };
     }
     
     private String generateSubjectIdText() {
@@ -244,7 +403,15 @@ public class DataWriter {
     }
     
     private String generateDifficultyText() {
-        int difference = Math.abs(this.alphaPair.getDifference());
+        return difficultyText(Math.abs(this.alphaPair.getDifference()));
+    }
+    
+    /**
+     * Name the difficulty of a pair as it is written to the CSV file.
+     * @param difference Distance between the letters in the alphabet.
+     * @return EASY, MEDIUM or HARD, or an empty string if the distance is in none of the modes.
+     */
+    public static String difficultyText(int difference) {
         if (difference >= AlphaPairGenerator.EASY_MODE_MIN &&
                 difference < AlphaPairGenerator.EASY_MODE_MIN 
                 + AlphaPairGenerator.NUM_CHOICES_IN_MODE) {
@@ -307,7 +474,7 @@ public class DataWriter {
     }
     
     private String generateDateTimeText() {
-        return LocalDateTime.now().toString();
+        return this.trialTime.toString();
     }
     
     private String generateConsecutiveRoundsText() {
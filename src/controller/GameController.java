@@ -35,6 +35,12 @@ public interface GameController {
      */
     void waitBeforeNextRoundAndUpdate(int waitTime);
     
+    /**
+     * Generate the next round's choices and lay them out, hidden, 
+     * so that showing them is only a swap.
+     */
+    void stageNextRound();
+    
     /**
      * Set the next round's choices.
      */
@@ -42,6 +48,7 @@ public interface GameController {
     
     /** 
      * Record the response time of the subject. 
+     * @return The response time in nanoseconds.
      */
-    void recordResponseTime();
+    long recordResponseTime();
 }
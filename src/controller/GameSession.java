@@ -0,0 +1,246 @@
+package controller;
+
+import java.time.LocalDateTime;
+
+import config.Settings;
+import model.AlphaPair;
+import model.AlphaPairGenerator;
+import model.GameLogic;
+import model.Player;
+import model.Staircase;
+import replay.SessionRecorder;
+import util.PauseMonitor;
+
+/**
+ * The game logic of one participant, without the view: which pair comes 
+ * next, whether a response is correct, what is exported and when practice
+ * and assessment are over. LetterGameController drives it from the subject's
+ * key presses; ReplayEngine drives it from a recording, headless.
+ * 
+ * Given the same seed, settings and responses, a GameSession produces the 
+ * same pairs and the same trial output, apart from the columns that describe
+ * the JVM during each trial (see DataWriter.NUM_TRIAL_COLUMNS).
+ * 
+ * Classes Related To:
+ *  -LetterGameController.java
+ *      -Drives the session and shows it.
+ *  -SessionRecorder.java (replay)
+ *      -Records the seed and every response so the session can be replayed.
+ * 
+ */
+public class GameSession {
+    
+    /** Settings of the session. */
+    private final Settings settings;
+    
+    /** Where the session is in the game. */
+    private final SessionState state;
+    
+    /** AlphaPairGenerator to generate an AlphaPair */
+    private final AlphaPairGenerator apg;
+    
+    /** DataWriter to export data to CSV. */
+    private final DataWriter dataWriter;
+    
+    /** Records the session, null if it is not recorded. */
+    private final SessionRecorder recorder;
+    
+    /** The subject. */
+    private Player player;
+    
+    /** The current AlphaPair being evaluated by the subject. */
+    private AlphaPair currentPair;
+    
+    /** The AlphaPair staged for the next round, not yet shown. */
+    private AlphaPair stagedPair;
+    
+    /** CSV text of the most recent trial, null if it was not exported. */
+    private String lastTrialText;
+    
+    /** What overlapped the response window of the current pair, null if not measured. */
+    private PauseMonitor.Window pauses;
+    
+    /**
+     * Constructor.
+     * @param settings Settings of the session.
+     * @param state Where the session is in the game.
+     * @param seed Seed of the pair generator.
+     * @param recorder Records the session, or null.
+     */
+    public GameSession(Settings settings, SessionState state, long seed, SessionRecorder recorder) {
+        this.settings = settings;
+        this.state = state;
+        this.apg = new AlphaPairGenerator(seed);
+        this.dataWriter = new DataWriter();
+        this.recorder = recorder;
+        this.player = new Player(GameController.NUM_ROUNDS);
+        if (recorder != null) {
+            recorder.start(seed, settings);
+        }
+    }
+    
+    /**
+     * Set who the subject is.
+     */
+    public void login(int subjectID, Player.Gender gender, int subjectAge) {
+        this.player.setSubjectID(subjectID);
+        this.player.setSubjectGender(gender);
+        this.player.setSubjectAge(subjectAge);
+        if (this.recorder != null) {
+            this.recorder.login(subjectID, gender, subjectAge);
+        }
+    }
+    
+    /**
+     * Start the practice rounds.
+     */
+    public void startPractice() {
+        this.state.setState(CurrentState.PRACTICE);
+        if (this.recorder != null) {
+            this.recorder.practice();
+        }
+    }
+    
+    /**
+     * Start the assessment: start the staircase in adaptive mode 
+     * and reset the player's data, but retain intrinsic subject data.
+     */
+    public void startAssessment() {
+        if (this.settings.isAdaptive()) {
+            this.apg.startStaircase(new Staircase(AlphaPairGenerator.NUM_ADAPTIVE_LEVELS, 
+                    this.settings.getStaircaseTarget(), GameController.NUM_ROUNDS));
+        }
+        this.state.setState(CurrentState.GAMEPLAY);
+        this.state.setGameState(null);
+        this.player = new Player(this.player.getSubjectID(), this.player.getSubjectGender(), 
+                this.player.getSubjectAge(), GameController.NUM_ROUNDS);
+        if (this.recorder != null) {
+            this.recorder.assessment();
+        }
+    }
+    
+    /**
+     * Generate the pair of the next round.
+     * @return The staged pair.
+     */
+    public AlphaPair stageNext() {
+        this.apg.getNewDifficultyPair();
+        this.stagedPair = this.apg.getAlphaPair();
+        return this.stagedPair;
+    }
+    
+    /**
+     * Make the staged pair the current one, staging one first if none is.
+     * @return The current pair.
+     */
+    public AlphaPair onset() {
+        if (this.stagedPair == null) {
+            this.stageNext();
+        }
+        this.currentPair = this.stagedPair;
+        this.stagedPair = null;
+        return this.currentPair;
+    }
+    
+    /**
+     * Set what overlapped the response window of the current pair, to be
+     * written with the trial by the next respond().
+     * @param pauses The closed window, or null if it was not measured.
+     */
+    public void setPauses(PauseMonitor.Window pauses) {
+        this.pauses = pauses;
+    }
+    
+    /**
+     * Score the subject's response to the current pair and update the player, 
+     * the staircase and the trial output.
+     * @param pickedLeft True if the subject picked the left choice.
+     * @param responseTime Response time in nanoseconds.
+     * @param trialTime Time of the response.
+     * @return True if the subject was correct.
+     */
+    public boolean respond(boolean pickedLeft, long responseTime, LocalDateTime trialTime) {
+        boolean correct = GameLogic.checkAnswerCorrect(pickedLeft, this.currentPair);
+        this.player.recordTrial(responseTime, correct, this.currentPair);
+        if (this.state.getState() == CurrentState.GAMEPLAY) {
+            this.apg.recordResponse(correct);
+        }
+        this.dataWriter.grabData(this.player, this.currentPair, trialTime);
+        this.dataWriter.grabPauses(this.pauses);
+        this.pauses = null;
+        this.lastTrialText = this.state.getState() == CurrentState.GAMEPLAY 
+                ? this.dataWriter.generateTrialText() : null;
+        if (this.recorder != null) {
+            this.recorder.key(pickedLeft, responseTime, trialTime);
+            if (this.lastTrialText != null) {
+                this.recorder.trial(this.lastTrialText);
+            }
+        }
+        return correct;
+    }
+    
+    /**
+     * @return True if the practice rounds are over.
+     */
+    public boolean isPracticeDone() {
+        return this.state.getState() == CurrentState.PRACTICE 
+                && this.player.getNumRounds() >= GameController.NUM_PRACTICE_ROUNDS;
+    }
+    
+    /**
+     * @return True if every round has been played, or the staircase has finished.
+     */
+    public boolean isAssessmentDone() {
+        if (this.player.getNumRounds() >= GameController.NUM_ROUNDS) {
+            return true;
+        }
+        return this.state.getState() == CurrentState.GAMEPLAY && this.apg.getStaircase() != null 
+                && this.apg.getStaircase().isFinished();
+    }
+    
+    /**
+     * Record that the assessment is over and close the recording.
+     */
+    public void finish() {
+        if (this.recorder != null) {
+            this.recorder.finish();
+            this.recorder.close();
+        }
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public AlphaPair getCurrentPair() {
+        return currentPair;
+    }
+
+    public AlphaPair getStagedPair() {
+        return stagedPair;
+    }
+
+    public AlphaPairGenerator getApg() {
+        return apg;
+    }
+
+    public Staircase getStaircase() {
+        return apg.getStaircase();
+    }
+
+    public DataWriter getDataWriter() {
+        return dataWriter;
+    }
+
+    public SessionRecorder getRecorder() {
+        return recorder;
+    }
+
+    public String getLastTrialText() {
+        return lastTrialText;
+    }
+    
+    public long getSeed() {
+        return apg.getSeed();
+    }
+}
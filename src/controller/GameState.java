@@ -0,0 +1,16 @@
+package controller;
+
+/**
+ * Enum describing the current state of gameplay within a round.
+ * 
+ * @author Tony Jiang
+ * 6-25-2015
+ * 
+ */
+public enum GameState {
+    /** Player has responded and next round is loading. */
+    WAITING_BETWEEN_ROUNDS,
+    
+    /** Player has not responded and question is being displayed. */
+    WAITING_FOR_RESPONSE,
+}
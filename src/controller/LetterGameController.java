@@ -1,27 +1,59 @@
 package controller;
 
+import java.io.File;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.log4j.Logger;
 
 import config.Config;
+import config.Settings;
+import ingest.NetworkSink;
+import ingest.TrialRecord;
+import controller.TrialLoopTimings.Stage;
+import jfr.BackgroundChangeEvent;
+import jfr.FeedbackEvent;
+import jfr.IsiEvent;
+import jfr.ResponseEvent;
+import jfr.StimulusOnsetEvent;
+import jfr.TrialEvent;
+import jfr.TrialExportEvent;
 import model.AlphaPair;
-import model.AlphaPairGenerator;
-import model.GameLogic;
 import model.Player;
-import javafx.beans.property.SimpleIntegerProperty;
+import model.TrialHistory;
+import replay.ReplayEvent;
+import replay.SessionRecorder;
+import replay.SessionRecording;
+import store.TrialStore;
+import util.PauseMonitor;
+import util.StartupProfiler;
+import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.concurrent.WorkerStateEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Scene;
 import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.media.AudioClip;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
-import javafx.scene.media.MediaView;
-import javafx.scene.text.Font;
 import view.GameGUI;
+import view.GameGUI.ProgressAccent;
+import view.TimingCalibration;
 
 /**
  * 
@@ -31,16 +63,13 @@ import view.GameGUI;
  * Classes Related to:
  *  -GameGUI.java (view)
  *      -Updates elements of the GUI as the game progresses and responds.
- *  -AlphaPairGenerator.java (model)
- *      -Calls on AlphaPairGenerator to generate new AlphaPairs.
- *  -AlphaPair.java (model)
- *      -LetterGameController keeps track of the most recent AlphaPair created in variable currentAlphaPair.
- *  -Player.java (model)
- *      -Updates Player information as the game progresses and responds.
- *  -GameLogic.java (model)
- *      -Calls on GameLogic to evaluate the correctness of a response from the subject.
+ *  -GameSession.java
+ *      -The game logic of the current participant: generates the AlphaPairs,
+ *      evaluates the responses and updates the Player and DataWriter.
  *  -DataWriter.java
- *      -Passes information (Player and AlphaPair) to DataWriter to be exported.
+ *      -Exports the trials of the GameSession.
+ *  -SessionRecording.java (replay)
+ *      -A recording the controller can replay at real speed.
  *      
  * @author Tony Jiang
  * 6-25-2015
@@ -55,87 +84,178 @@ public class LetterGameController implements GameController {
     /** Time in milliseconds for the player to get ready after pressing start */
     final static int GET_READY_TIME = 2000;
     
-    /** Integer representing each each background. */
-    private static int backgroundNumber = 0;
+    /** Properties that take precedence over defaultconfig.properties for this session. */
+    private final Properties configOverrides;
     
-    /** True if choices should vary in physical size */
-    public static boolean SIZE_VARIATION;
+    /** Settings of this session, set once the config has been loaded. */
+    private volatile Settings settings;
     
-    /** Time between rounds in milliseconds. */
-    public static int TIME_BETWEEN_ROUNDS;
+    /** Where this session is in the game, its stars and backgrounds. */
+    private final SessionState session;
     
-    /** DataWriter to export data to CSV. */
-    private DataWriter dataWriter;
+    /** Sends trials to the collector as well, null unless enabled in the config. */
+    private volatile NetworkSink networkSink;
     
-    /** AlphaPairGenerator to generate an AlphaPair */
-    private AlphaPairGenerator apg;
+    /** The game logic of the current participant, null until the subject has logged in. */
+    private GameSession game;
     /** The graphical user interface. */
     private GameGUI theView;
     /** The current scene. */
     private Scene theScene;
 
-    /** The subject. */
-    private Player thePlayer;
-    /** The current AlphaPair being evaluated by the subject. */
-    private AlphaPair currentAlphaPair;
+    /** Onset callbacks slower than this (in nanoseconds) from callback to swap are counted. */
+    static final long SLOW_ONSET_NANOS = 1000000;
     
-    /** Used to measure response time. */
-    private static long responseTimeMetric;
+    /** Time from the onset callback to the stimulus swap of the most recent round, in nanoseconds. */
+    private long onsetSwapNanos;
     
-    /** Current state of the overall game. */
-    public static CurrentState state;
+    /** Longest onset callback to swap time in the current phase, in nanoseconds. */
+    private long maxOnsetSwapNanos;
     
-    /** Describes the current state of gameplay */
-    private static GameState gameState;
+    /** Number of onsets in the current phase slower than SLOW_ONSET_NANOS. */
+    private int numSlowOnsets;
     
-    /** How many stars the player has earned. 
-     * The player earns a star for every time the
-     * progress bar is filled. */
-    private static int numStars = 0;
+    /** Number of onsets in the current phase. */
+    private int numOnsets;
+    
+    /** Latency of each stage of the trial loop in the current phase. */
+    private final TrialLoopTimings timings = new TrialLoopTimings();
+    
+    /** Timing calibration of the station, started each time the login screen is shown. */
+    private CompletableFuture<TimingCalibration> calibration;
+    
+    /** Longest time in milliseconds to wait at login for the timing calibration to finish. */
+    static final long CALIBRATION_WAIT = 5000;
+    
+    /** Embedded database the trials are also kept in, null if not enabled. */
+    private volatile TrialStore trialStore;
+    
+    /** Forces the results to disk according to the durability policy. */
+    private volatile TrialSync trialSync;
+    
+    /** Live metrics of the session, for JConsole or a monitoring agent. */
+    private final SessionMetrics metrics;
+    
+    /** Records the GC pauses and JIT time during each response, null if not enabled. */
+    private volatile PauseMonitor pauseMonitor;
+    
+    /** Response window of the current round, null if not measured. */
+    private PauseMonitor.Window pauseWindow;
+    
+    /** Key the experimenter presses to log the trial loop latencies so far. */
+    static final KeyCombination LATENCY_REPORT_KEY = 
+            new KeyCodeCombination(KeyCode.L, KeyCombination.SHORTCUT_DOWN);
+    
+    /** Key the experimenter presses on the finish screen to go to the next participant in kiosk mode. */
+    static final KeyCombination NEXT_PARTICIPANT_KEY = 
+            new KeyCodeCombination(KeyCode.N, KeyCombination.SHORTCUT_DOWN);
     
     /** Number of stars earned before changing to next background. */
     private static final int STARS_PER_BACKGROUND = 3;
     
-    private enum GameState {
-        /** Player has responded and next round is loading. */
-        WAITING_BETWEEN_ROUNDS,
-        
-        /** Player has not responded and question is being displayed. */
-        WAITING_FOR_RESPONSE,
-    }
+    /** Media players that are still playing. */
+    private final Set<MediaPlayer> soundPlayers = new HashSet<MediaPlayer>();
+    
+    /** The wait before the next round, cancelled if the practice or assessment ends first. */
+    private Task<Void> pendingRound;
+    
+    /** Flight Recorder event of the wait before the next round, null unless the event is enabled. */
+    private IsiEvent pendingIsi;
+    
+    /** The wait on the finish screen in kiosk mode, cancelled if the experimenter key is pressed first. */
+    private Task<Void> pendingNextParticipant;
+    
+    /** Time the previous participant finished, 0 if nobody has yet. */
+    private long lastFinishNanos;
+    
+    /** Number of participants who have finished in this session. */
+    private int numParticipants;
+    
+    /** Whether the escape handler for the exit popup has been added to the scene. */
+    private boolean exitHandlerSet;
+    
+    /** Recording being replayed at real speed, null when the subject is playing. */
+    private SessionRecording replay;
+    
+    /** Index in the replayed recording of the next event. */
+    private int replayPosition;
+    
+    /** Time in milliseconds a replay waits on each screen before going on. */
+    static final int REPLAY_SCREEN_TIME = 1500;
+    
+    /** Completes once the configuration has been loaded in the background. */
+    private CompletableFuture<Void> configLoaded;
     
     /** Alternate reference to "this" to be used in inner methods */
     private LetterGameController gameController;
     
     /** 
-     * Constructor for the controller. There is only meant
-     * to be one instance of the controller. Attaches listener
-     * for when user provides response during trials. On a response,
-     * prepare the next round and record the data.
+     * Constructor for the controller, with the default configuration.
      * @param view The graphical user interface.
      */
     public LetterGameController(GameGUI view) {
+        this(view, new Properties());
+    }
+    
+    /** 
+     * Constructor for the controller. There is one controller per session
+     * and it keeps no static state, so several sessions can run in one JVM.
+     * A controller is only used from the thread driving its session (the FX
+     * thread); the settings and session state are volatile so other threads
+     * can read them. Attaches listener for when user provides response during 
+     * trials. On a response, prepare the next round and record the data.
+     * @param view The graphical user interface.
+     * @param configOverrides Properties that take precedence over the defaults.
+     */
+    public LetterGameController(GameGUI view, Properties configOverrides) {
         
-        loadConfig();
+        this.configOverrides = configOverrides;
+        this.session = new SessionState();
+        this.metrics = new SessionMetrics(this.session);
+        this.configLoaded = StartupProfiler.getInstance().submit("config", this::loadConfig);
+        this.configLoaded.thenRun(() -> Platform.runLater(
+                () -> theView.setStimulusRenderer(settings.getStimulusRenderer())));
         
         this.gameController = this;
-        this.apg = new AlphaPairGenerator();
-        this.currentAlphaPair = null;
         this.theView = view;
         this.theScene = view.getScene();
-        this.thePlayer = new Player();
-        this.dataWriter = new DataWriter(this);
     }
     
     /** 
      * Load configuration settings. 
      */
     private void loadConfig() {
-        new Config();
-        TIME_BETWEEN_ROUNDS = Config.getPropertyInt("time.between.rounds");
-        SIZE_VARIATION = Config.getPropertyBoolean("size.variation");
-        logger.info("TIME_BETWEEN_ROUNDS: " + TIME_BETWEEN_ROUNDS);
-        logger.info("SIZE_VARIATION: " + SIZE_VARIATION);
+        Settings settings = new Settings(new Config(this.configOverrides));
+        logger.info(settings);
+        if (settings.isSinkEnabled()) {
+            this.networkSink = new NetworkSink(settings.getSinkHost(), settings.getSinkPort(), 
+                    settings.getSinkStation(), settings.getSinkBatchSize(), 
+                    settings.getSinkFlushMillis(), new File(settings.getSinkSpoolDir()));
+            this.metrics.setNetworkSink(this.networkSink);
+        }
+        if (settings.isStoreEnabled()) {
+            this.trialStore = TrialStore.open(settings.getStoreDriver(), settings.getStoreUrl(), 
+                    settings.getStoreBatchSize(), settings.getStoreFlushMillis());
+            this.metrics.setTrialStore(this.trialStore);
+        }
+        this.trialSync = new TrialSync(TrialSync.Policy.parse(settings.getDurabilityMode()), 
+                settings.getDurabilityGroupTrials(), settings.getDurabilityGroupMillis());
+        this.metrics.setTrialSync(this.trialSync);
+        if (settings.isJmxEnabled()) {
+            this.metrics.register(settings.getSinkStation());
+        }
+        if (settings.isPauseMonitor()) {
+            this.pauseMonitor = PauseMonitor.getInstance();
+        }
+        this.settings = settings;
+    }
+    
+    /**
+     * Wait for the configuration to finish loading. It is loaded in the background
+     * during start up and is normally done long before the subject has logged in.
+     */
+    private void awaitConfig() {
+        this.configLoaded.join();
     }
 
     /**
@@ -158,27 +278,39 @@ public class LetterGameController implements GameController {
                 }
             }
         });
-        this.theScene.addEventHandler(KeyEvent.KEY_PRESSED, new EventHandler<KeyEvent>() {
-            public void handle(final KeyEvent keyEvent) {
-                if (keyEvent.getCode() == KeyCode.ESCAPE) {
-                    theView.showExitPopup();
-                    keyEvent.consume();
+        if (!this.exitHandlerSet) {
+            this.exitHandlerSet = true;
+            this.theScene.addEventHandler(KeyEvent.KEY_PRESSED, new EventHandler<KeyEvent>() {
+                public void handle(final KeyEvent keyEvent) {
+                    if (keyEvent.getCode() == KeyCode.ESCAPE) {
+                        if (game != null && game.getRecorder() != null) {
+                            game.getRecorder().escape();
+                        }
+                        theView.showExitPopup();
+                        keyEvent.consume();
+                    } else if (LATENCY_REPORT_KEY.match(keyEvent)) {
+                        logger.info("Trial loop latencies so far:" + timings.report());
+                    }
                 }
-            }
-        });
+            });
+        }
     }
     
     /**
      * Action to be executed upon clicking of Start on Login screen.
      * 
-     * Records user inputted data and sets instructions screen.
+     * Records user inputted data, starts the participant's game session
+     * and sets instructions screen.
      */
     private void onClickStartButton() {
         theView.getFeedback().setVisible(false);
         theView.getFeedbackAge().setVisible(false);
         theView.getFeedbackGender().setVisible(false);
+        int subjectID;
+        Player.Gender subjectGender;
+        int subjectAge;
         try {
-            gameController.thePlayer.setSubjectID(Integer.parseInt(theView.getEnterId().getText()));
+            subjectID = Integer.parseInt(theView.getEnterId().getText());
         } catch (NumberFormatException ex) {
             theView.getEnterId().requestFocus();
             theView.getEnterId().setText("");
@@ -186,22 +318,88 @@ public class LetterGameController implements GameController {
             return;
         }    
         if (theView.getPickMale().isSelected()) {
-            gameController.thePlayer.setSubjectGender(Player.Gender.MALE);
+            subjectGender = Player.Gender.MALE;
         } else if (theView.getPickFemale().isSelected()) {
-            gameController.thePlayer.setSubjectGender(Player.Gender.FEMALE);
+            subjectGender = Player.Gender.FEMALE;
         } else {
             theView.getFeedbackGender().setVisible(true);
             return;
         }
         try {
-            gameController.thePlayer.setSubjectAge(Integer.parseInt(theView.getEnterAge().getText()));
+            subjectAge = Integer.parseInt(theView.getEnterAge().getText());
         } catch (NumberFormatException ex) {
             theView.getEnterAge().requestFocus();
             theView.getEnterAge().setText("");
             theView.getFeedbackAge().setVisible(true);
             return;
         }
+        if (this.lastFinishNanos != 0) {
+            logger.info("Time from previous participant finishing to next start: " 
+                    + (System.nanoTime() - this.lastFinishNanos) / 1000000.0 + " ms");
+        }
+        this.awaitConfig();
+        if (this.replay != null) {
+            this.game = new GameSession(settings, session, this.replay.getSeed(), null);
+        } else {
+            this.game = new GameSession(settings, session, new Random().nextLong(), 
+                    settings.isRecordReplay() ? SessionRecorder.create(subjectID) : null);
+        }
+        this.game.login(subjectID, subjectGender, subjectAge);
+        if (this.replay == null) {
+            if (this.trialStore != null) {
+                this.trialStore.startSession(subjectID, settings.getSinkStation(), this.game.getSeed());
+            }
+            this.writeTimingHeader(subjectID);
+        }
+        this.metrics.login(subjectID);
         theView.setInstructionsScreen(); 
+        if (this.replay != null) {
+            this.runLater(REPLAY_SCREEN_TIME, this::onClickNextInstructions);
+        }
+    }
+
+    /**
+     * Measure the timing of the station while the login screen is showing. 
+     * Once both the calibration and the config are done, the pulse monitor 
+     * uses the measured frame interval, and a warning is shown on the login 
+     * screen if the station is outside the tolerances in the config.
+     */
+    public void calibrateTiming() {
+        this.calibration = TimingCalibration.start();
+        this.calibration.thenCombine(this.configLoaded, (calibration, config) -> calibration)
+                .thenAccept(calibration -> Platform.runLater(() -> this.checkTiming(calibration)));
+    }
+    
+    /**
+     * Apply a finished calibration and warn if it is outside tolerance.
+     * @param calibration The calibration.
+     */
+    private void checkTiming(TimingCalibration calibration) {
+        logger.info(calibration);
+        theView.getPulseMonitor().setFrameNanos(calibration.getFrameInterval());
+        List<String> problems = calibration.check(settings);
+        if (!problems.isEmpty()) {
+            logger.warn("Station timing is outside tolerance: " + problems);
+            theView.showTimingWarning(problems);
+        }
+    }
+    
+    /**
+     * Write the timing header of the session next to the subject's results.
+     * The calibration has normally finished long before the subject logs in.
+     * @param subjectID The subject.
+     */
+    private void writeTimingHeader(int subjectID) {
+        if (this.calibration == null) {
+            return;
+        }
+        try {
+            this.calibration.get(CALIBRATION_WAIT, TimeUnit.MILLISECONDS).writeHeader(subjectID, settings);
+        } catch (TimeoutException e) {
+            logger.warn("Timing calibration did not finish, no timing header for subject " + subjectID);
+        } catch (InterruptedException | ExecutionException e) {
+            logger.error("Timing calibration failed.", e);
+        }
     }
 
     /** 
@@ -227,7 +425,7 @@ public class LetterGameController implements GameController {
      */
     private void onClickNextInstructions() {
         theView.setGameScreen(); 
-        state = CurrentState.PRACTICE;
+        game.startPractice();
     }
 
     /**
@@ -237,22 +435,14 @@ public class LetterGameController implements GameController {
      */
     public void setPracticeCompleteHandlers() {
         this.theView.getStartAssessment().setOnAction( e-> {
+            game.startAssessment();
+            this.metrics.resetPhase();
             theView.setGameScreen();
             theView.getPractice().setVisible(false);
-            state = CurrentState.GAMEPLAY;
-            gameState = null;
-            this.resetPlayer();
         });
-    }
-
-    /** 
-     * Reset the player data, but retain intrinsic subject data 
-     */
-    private void resetPlayer() {
-        SimpleIntegerProperty subjectID = new SimpleIntegerProperty(thePlayer.getSubjectID());
-        Player.Gender subjectGender = thePlayer.getSubjectGender();
-        SimpleIntegerProperty subjectAge = new SimpleIntegerProperty(thePlayer.getSubjectAge());
-        thePlayer = new Player(subjectID, subjectGender, subjectAge);
+        if (this.replay != null) {
+            this.runLater(REPLAY_SCREEN_TIME, () -> theView.getStartAssessment().fire());
+        }
     }
 
     /** 
@@ -264,10 +454,17 @@ public class LetterGameController implements GameController {
         this.theScene.setOnKeyPressed(new EventHandler<KeyEvent>() {
             @Override
             public void handle(KeyEvent event) {
-                if ((event.getCode() == KeyCode.F 
-                        || event.getCode() == KeyCode.J) 
-                        && gameState == GameState.WAITING_FOR_RESPONSE) {
+                if (event.getCode() != KeyCode.F && event.getCode() != KeyCode.J) {
+                    return;
+                }
+                if (replay != null) {
+                    return;
+                }
+                if (session.getGameState() == GameState.WAITING_FOR_RESPONSE) {
                     gameController.handlePressForJ(event);
+                } else if (game.getRecorder() != null) {
+                    game.getRecorder().ignoredKey(event.getCode() == KeyCode.F, 
+                            System.nanoTime() - session.getResponseTimeMetric());
                 }
             }
         });
@@ -279,63 +476,99 @@ public class LetterGameController implements GameController {
      * @param event
      */
     private void handlePressForJ(KeyEvent event) {
-        this.responseAndUpdate(event);
-        this.prepareNextRound(); 
+        this.handleResponse(event.getCode() == KeyCode.F, this.recordResponseTime(), LocalDateTime.now());
+    }
+    
+    /**
+     * Actions to be executed on a response, from the subject or a replay.
+     * @param pickedLeft True if the left choice was picked.
+     * @param responseTime Response time in nanoseconds.
+     * @param trialTime Time of the response.
+     */
+    private void handleResponse(boolean pickedLeft, long responseTime, LocalDateTime trialTime) {
+        long start = System.nanoTime();
+        ResponseEvent event = new ResponseEvent();
+        event.begin();
+        this.closePauseWindow(responseTime);
+        this.responseAndUpdate(pickedLeft, responseTime, trialTime);
+        // Export and publish first: after the last trial of a phase, preparing the next round ends the phase.
         this.exportDataToCSV();
+        this.metrics.trialDone(game.getPlayer().getNumRounds(), game.getPlayer().getNumCorrect(), responseTime);
+        this.prepareNextRound(); 
+        this.timings.record(Stage.RESPONSE_TOTAL, System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            this.describeTrial(event, game.getPlayer().getNumRounds());
+            event.responseTime = responseTime;
+            event.correct = game.getPlayer().isRight();
+            event.commit();
+        }
     }
     
     /** 
-     * Export data to CSV file.
+     * Export data to CSV file. A replay exports nothing: its trials are the
+     * recorded subject's, which are already in the subject's results.
      */
     private void exportDataToCSV() {
-        if (state == CurrentState.GAMEPLAY) {
-            dataWriter.writeToCSV();    
+        if (session.getState() == CurrentState.GAMEPLAY && this.replay == null) {
+            long start = System.nanoTime();
+            TrialExportEvent event = new TrialExportEvent();
+            event.begin();
+            game.getDataWriter().writeToCSV();    
+            this.trialSync.written(game.getDataWriter().getResultsFile());
+            if (this.trialStore != null) {
+                this.trialStore.submit(game.getDataWriter().generateTrialValues());
+            }
+            if (networkSink != null) {
+                networkSink.submit(TrialRecord.of(settings.getSinkStation(), game.getPlayer(), game.getCurrentPair()));
+            }
+            this.timings.record(Stage.CSV_EXPORT, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                this.describeTrial(event, game.getPlayer().getNumRounds());
+                event.commit();
+            }
         }
     }
     
     /**
      * Update models and view appropriately according to correctness
      * of subject's response.  
-     * @param e The key event to check which key the user pressed.
-     * @param view the graphical user interface
-     * @return True if the player is correct. False otherwise.
-     */
-    public void responseAndUpdate (
-            KeyEvent e) {
-        gameState = GameState.WAITING_BETWEEN_ROUNDS;
-        AlphaPair ap = this.currentAlphaPair;
-        boolean correct = GameLogic.checkAnswerCorrect(e, ap);
-        this.updatePlayer(correct);   
-        this.updateGUI(correct);
-        this.dataWriter.grabData(this);
-    }
-    
-    /** Update the player appropriately.
-     * 
-     * @param currentPlayer The current player.
-     * @param correct True if subject's reponse is correct. False otherwise.
+     * @param pickedLeft True if the left choice was picked.
+     * @param responseTime Response time in nanoseconds.
+     * @param trialTime Time of the response.
      */
-    private void updatePlayer(boolean correct) {
-        Player currentPlayer = this.thePlayer;
-        this.recordResponseTime();
-        if (correct) {
-            currentPlayer.addPoint();
-            currentPlayer.setRight(true);
-        } else {
-            currentPlayer.setRight(false);
+    public void responseAndUpdate(boolean pickedLeft, long responseTime, LocalDateTime trialTime) {
+        session.setGameState(GameState.WAITING_BETWEEN_ROUNDS);
+        long start = System.nanoTime();
+        boolean correct = this.game.respond(pickedLeft, responseTime, trialTime);
+        long scored = System.nanoTime();
+        this.updateGUI(correct);
+        long updated = System.nanoTime();
+        FeedbackEvent event = new FeedbackEvent();
+        event.begin();
+        this.feedbackSound(correct); 
+        event.end();
+        if (event.shouldCommit()) {
+            this.describeTrial(event, game.getPlayer().getNumRounds());
+            event.correct = correct;
+            event.commit();
         }
-        currentPlayer.incrementNumRounds();
+        this.timings.record(Stage.SCORING, scored - start);
+        this.timings.record(Stage.GUI_UPDATE, updated - scored);
+        this.timings.record(Stage.SOUND, System.nanoTime() - updated);
     }
     
     /** 
-     * Update the progressbar, audio, stars, and background.
+     * Update the progressbar, stars, and background. The feedback sound is 
+     * played separately so its latency is measured on its own.
      * @param correct Whether the subject answered correctly.
      */
     private void updateGUI(boolean correct) {
         if (correct) {
             if (theView.getProgressBar().isIndeterminate()) {
                 theView.getProgressBar().setProgress(0.0);
-                theView.getProgressBar().setStyle("-fx-accent: #0094C5;");
+                theView.setProgressAccent(ProgressAccent.ANSWERED);
             }
             theView.getProgressBar().setProgress(theView.getProgressBar().getProgress() + .1666667);
             if (theView.getProgressBar().getProgress() >= 1.00) {
@@ -344,44 +577,60 @@ public class LetterGameController implements GameController {
                 URL powerUpSound = getClass().getResource("/res/sounds/Powerup.wav");
                 new AudioClip(powerUpSound.toString()).play();
                 
-                int starToReveal = numStars;
+                int starToReveal = session.getNumStars();
                 theView.getStarNodes()[starToReveal].setVisible(true);
-                numStars++;
+                session.setNumStars(starToReveal + 1);
                 
                 this.checkBackground();
             }
         } else {
-            theView.getProgressBar().setStyle("-fx-accent: #0094C5;");
+            theView.setProgressAccent(ProgressAccent.ANSWERED);
             if (PUNISH) {
                 theView.getProgressBar().setProgress(theView.getProgressBar().getProgress() - .125);
                 if (theView.getProgressBar().isIndeterminate()) {
-                    theView.getProgressBar().setStyle("-fx-accent: red;");                    
+                    theView.setProgressAccent(ProgressAccent.PENALTY);                    
                 }
             }
         }
-        this.feedbackSound(correct); 
     }
     
     /**
      * Check to see if background needs to be switched and if so change the background.
      */
     private void checkBackground() {
-        if (numStars % STARS_PER_BACKGROUND == 0) {
-            theView.changeBackground(++backgroundNumber);
+        if (session.getNumStars() % STARS_PER_BACKGROUND == 0) {
+            BackgroundChangeEvent event = new BackgroundChangeEvent();
+            event.begin();
+            int backgroundNumber = session.getBackgroundNumber() + 1;
+            session.setBackgroundNumber(backgroundNumber);
+            theView.changeBackground(backgroundNumber);
             theView.changeFontColors(backgroundNumber);
             this.playSound("Applause.mp3", 1.4);
+            event.end();
+            if (event.shouldCommit()) {
+                this.describeTrial(event, game.getPlayer().getNumRounds());
+                event.background = backgroundNumber;
+                event.stars = session.getNumStars();
+                event.commit();
+            }
         }    
     }
     
-    /** Play applause sound */
+    /** 
+     * Play applause sound. The player is held until it finishes so it is not 
+     * collected while playing; it is not added to the scene graph.
+     */
     private void playSound(String soundFile, double rate) {
         URL sound = getClass().getResource("/res/sounds/" + soundFile);
         Media media = new Media(sound.toString());
         MediaPlayer player = new MediaPlayer(media);
+        this.soundPlayers.add(player);
+        player.setOnEndOfMedia(() -> {
+            this.soundPlayers.remove(player);
+            player.dispose();
+        });
         player.setAutoPlay(true);
         player.setRate(rate);
-        MediaView mediaView = new MediaView(player);
-        theView.getLayout().getChildren().add(mediaView);
     }
 
     /** If user inputs correct answer play positive feedback sound,
@@ -417,15 +666,15 @@ public class LetterGameController implements GameController {
             }
         };
         theView.getGetReadyBar().progressProperty().bind(sleeper.progressProperty());
+        this.stageNextRound();
         sleeper.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
             @Override
             public void handle(WorkerStateEvent e) {
                 setOptions();
-                gameState = GameState.WAITING_FOR_RESPONSE;
-                responseTimeMetric = System.nanoTime();
+                session.setGameState(GameState.WAITING_FOR_RESPONSE);
+                markOnset();
                 theView.getGetReadyBox().setVisible(false);
-                theView.getLeftOption().toBack();
-                theView.getRightOption().toBack();
+                replayNextResponse();
             }
         });
         new Thread(sleeper).start();
@@ -436,8 +685,13 @@ public class LetterGameController implements GameController {
      * waiting, and creating the next round.
      */
     public void prepareNextRound() {
+        long start = System.nanoTime();
         this.clearRound();
-        this.waitBeforeNextRoundAndUpdate(TIME_BETWEEN_ROUNDS); 
+        long cleared = System.nanoTime();
+        this.stageNextRound();
+        this.timings.record(Stage.CLEAR_ROUND, cleared - start);
+        this.timings.record(Stage.STAGE_NEXT, System.nanoTime() - cleared);
+        this.waitBeforeNextRoundAndUpdate(settings.getTimeBetweenRounds()); 
         this.checkIfDone();
     }
     
@@ -445,10 +699,14 @@ public class LetterGameController implements GameController {
      * Check if subject has completed practice or assessment.
      */
     private void checkIfDone() {
-        if (thePlayer.getNumRounds() >= NUM_ROUNDS) {
+        if (game.isAssessmentDone()) {
+            if (game.getStaircase() != null && game.getPlayer().getNumRounds() < NUM_ROUNDS) {
+                logger.info("Staircase finished after " + game.getPlayer().getNumRounds() + " rounds: " 
+                        + game.getStaircase());
+            }
             this.finishGame();
         }
-        if (state == CurrentState.PRACTICE && thePlayer.getNumRounds() >= NUM_PRACTICE_ROUNDS) {
+        if (game.isPracticeDone()) {
             this.finishPractice();
         }
     }
@@ -458,10 +716,84 @@ public class LetterGameController implements GameController {
      * then change the scene to the finish screen.
      */
     private void finishGame() {
-        theView.setFinishScreen(thePlayer.getNumCorrect(), backgroundNumber);
+        this.cancelPendingRound();
+        this.lastFinishNanos = System.nanoTime();
+        this.numParticipants++;
+        this.metrics.participantDone(this.numParticipants);
+        this.logOnsetTimes("assessment");
+        this.logLatencies("assessment");
+        this.logSummary("assessment");
+        game.finish();
+        if (this.replay == null) {
+            if (game.getStaircase() != null) {
+                game.getDataWriter().writeStaircaseToCSV(game.getStaircase());
+            }
+            this.trialSync.sessionEnd();
+            if (this.trialStore != null) {
+                this.trialStore.endSession();
+                logger.info(this.trialStore.report());
+            }
+            logger.info(this.trialSync.report());
+        }
+        theView.setFinishScreen(game.getPlayer().getNumCorrect(), session.getBackgroundNumber());
         this.theScene.setOnKeyPressed(null);
         this.playSound("Applause.mp3", 1.4);
         this.playSound("Correct1.wav", 1.4);
+        if (settings.isKiosk()) {
+            this.waitForNextParticipant();
+        }
+    }
+    
+    /**
+     * In kiosk mode, go to the next participant after the kiosk delay or 
+     * when the experimenter presses NEXT_PARTICIPANT_KEY, whichever is first.
+     */
+    private void waitForNextParticipant() {
+        this.theScene.setOnKeyPressed(new EventHandler<KeyEvent>() {
+            @Override
+            public void handle(KeyEvent event) {
+                if (NEXT_PARTICIPANT_KEY.match(event)) {
+                    nextParticipant();
+                }
+            }
+        });
+        int waitTime = settings.getKioskDelay();
+        if (waitTime <= 0) {
+            return;
+        }
+        Task<Void> sleeper = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                Thread.sleep(waitTime);
+                return null;
+            }
+        };
+        sleeper.setOnSucceeded(e -> nextParticipant());
+        this.pendingNextParticipant = sleeper;
+        Thread thread = new Thread(sleeper);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Reset everything about the previous participant and show a fresh login screen.
+     * The screens, assets, glyph atlas and generator tables stay as they are, 
+     * so the next participant does not pay for start up again.
+     */
+    private void nextParticipant() {
+        if (this.pendingNextParticipant != null) {
+            this.pendingNextParticipant.cancel();
+            this.pendingNextParticipant = null;
+        }
+        this.theScene.setOnKeyPressed(null);
+        long start = System.nanoTime();
+        this.session.reset();
+        this.metrics.resetParticipant();
+        this.game = null;
+        theView.setNextParticipantLoginScreen();
+        logger.info("Participant " + this.numParticipants + " done; login screen reset in " 
+                + (System.nanoTime() - start) / 1000000.0 + " ms, " 
+                + (System.nanoTime() - this.lastFinishNanos) / 1000000.0 + " ms after finishing");
     }
     
     /**
@@ -469,27 +801,45 @@ public class LetterGameController implements GameController {
      * then change the scene to the practice complete screen.
      */
     private void finishPractice() {
+        this.cancelPendingRound();
+        this.logOnsetTimes("practice");
+        this.logLatencies("practice");
+        this.logSummary("practice");
         theView.setPracticeCompleteScreen();
         this.theScene.setOnKeyPressed(null);
-        numStars = 0;
-        backgroundNumber = 0;
+        session.resetProgress();
     }
 
     /**
      * Clears the options.
      */
     public void clearRound() {
-        getTheView().getLeftOption().setText("");
-        getTheView().getLeftOption().setVisible(false);
-        getTheView().getRightOption().setText("");
-        getTheView().getRightOption().setVisible(false);
+        getTheView().clearStimulus();
+    }
+
+    /**
+     * Cancel the wait before the next round so it cannot show a pair 
+     * after the practice or assessment has ended.
+     */
+    private void cancelPendingRound() {
+        if (this.pendingRound != null) {
+            this.pendingRound.cancel();
+            this.pendingRound = null;
+        }
     }
 
     /**
      * Wait for a certain time and then set the next round.
      */
     public void waitBeforeNextRoundAndUpdate(int waitTime) {
-        
+        long start = System.nanoTime();
+        IsiEvent isi = new IsiEvent();
+        if (isi.isEnabled()) {
+            isi.begin();
+            this.describeTrial(isi, game.getPlayer().getNumRounds());
+            isi.requested = waitTime;
+            this.pendingIsi = isi;
+        }
         Task<Void> sleeper = new Task<Void>() {
             @Override
             protected Void call() throws Exception {
@@ -503,64 +853,190 @@ public class LetterGameController implements GameController {
         sleeper.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
             @Override
             public void handle(WorkerStateEvent e) {
+                long lateness = System.nanoTime() - start - waitTime * 1000000L;
+                timings.record(Stage.ISI_LATENESS, lateness);
+                metrics.isiDone(lateness);
+                if (pendingIsi != null) {
+                    pendingIsi.commit();
+                    pendingIsi = null;
+                }
                 setOptions();
-                gameState = GameState.WAITING_FOR_RESPONSE;
-                responseTimeMetric = System.nanoTime();
+                session.setGameState(GameState.WAITING_FOR_RESPONSE);
+                markOnset();
+                replayNextResponse();
             }
         });
+        this.pendingRound = sleeper;
         new Thread(sleeper).start();
     }
 
     /**
-     * Set the next round's choices.
+     * Generate the next pair and lay it out on hidden nodes. Called at the 
+     * start of the wait between rounds, so none of this work falls inside 
+     * the response time of the next round.
+     */
+    public void stageNextRound() {
+        theView.stageStimulus(game.stageNext(), settings.isSizeVariation());
+    }
+
+    /**
+     * Set the next round's choices by swapping in the staged pair,
+     * and record how long the swap took.
      */
     public void setOptions() {
-        this.prepareNextPair();
-        this.showPair();
+        long onsetCallback = System.nanoTime();
+        StimulusOnsetEvent onsetEvent = new StimulusOnsetEvent();
+        onsetEvent.begin();
+        if (game.getStagedPair() == null) {
+            logger.warn("setOptions(): no pair staged, staging now.");
+            this.stageNextRound();
+        }
+        AlphaPair pair = game.onset();
+        theView.swapStimulus();
+        this.recordOnsetSwapTime(System.nanoTime() - onsetCallback);
+        onsetEvent.end();
+        if (onsetEvent.shouldCommit()) {
+            this.describeTrial(onsetEvent, game.getPlayer().getNumRounds() + 1);
+            onsetEvent.leftLetter = pair.getLetterOne();
+            onsetEvent.rightLetter = pair.getLetterTwo();
+            onsetEvent.commit();
+        }
     }
     
     /**
-     * Prepare the next pair.
+     * Fill in the subject and trial of a Flight Recorder event about the current pair.
+     * @param event The event.
+     * @param trialIndex Number of the trial within the phase.
      */
-    private void prepareNextPair() {
-        apg.getNewDifficultyPair();
-        this.currentAlphaPair = apg.getAlphaPair();
+    private void describeTrial(TrialEvent event, int trialIndex) {
+        event.setTrial(game.getPlayer().getSubjectID(), 
+                session.getState() == CurrentState.PRACTICE ? "practice" : "assessment",
+                trialIndex, game.getCurrentPair().getDifficultyMode());
     }
     
     /**
-     * Show the pair.
+     * Record the time from the onset callback to the stimulus swap.
+     * @param nanos The time in nanoseconds.
      */
-    private void showPair() {
-        char letterOne = this.currentAlphaPair.getLetterOne();
-        char letterTwo = this.currentAlphaPair.getLetterTwo();
-        theView.getLeftOption().setText(String.valueOf(letterOne));
-        theView.getLeftOption().setVisible(true);
-        theView.getRightOption().setText(String.valueOf(letterTwo));
-        theView.getRightOption().setVisible(true);
-        if (SIZE_VARIATION) {
-            this.setFontSizes();
-        };
+    private void recordOnsetSwapTime(long nanos) {
+        this.timings.record(Stage.SET_OPTIONS, nanos);
+        this.onsetSwapNanos = nanos;
+        this.numOnsets++;
+        this.maxOnsetSwapNanos = Math.max(this.maxOnsetSwapNanos, nanos);
+        if (nanos > SLOW_ONSET_NANOS) {
+            this.numSlowOnsets++;
+            logger.warn("Onset callback to swap took " + nanos / 1000000.0 + " ms");
+        }
+    }
+    
+    /**
+     * Log the onset callback to swap times of the phase that just ended and reset them.
+     * @param phase Name of the phase.
+     */
+    private void logOnsetTimes(String phase) {
+        logger.info("Onset callback to swap during " + phase + ": " + this.numOnsets 
+                + " onsets, max " + this.maxOnsetSwapNanos / 1000000.0 + " ms, " 
+                + this.numSlowOnsets + " over " + SLOW_ONSET_NANOS / 1000000.0 + " ms");
+        this.numOnsets = 0;
+        this.maxOnsetSwapNanos = 0;
+        this.numSlowOnsets = 0;
+    }
+    
+    /**
+     * Log the latencies of the trial loop stages in the phase that just ended and reset them.
+     * @param phase Name of the phase.
+     */
+    private void logLatencies(String phase) {
+        logger.info("Trial loop latencies during " + phase + ":" + this.timings.report());
+        this.timings.reset();
+    }
+    
+    /**
+     * Log the accuracy and mean response time of the phase that just ended,
+     * overall and by difficulty, from the subject's trial history.
+     * @param phase Name of the phase.
+     */
+    private void logSummary(String phase) {
+        TrialHistory history = game.getPlayer().getTrialHistory();
+        LongBuffer responseTimes = history.getResponseTimes();
+        ByteBuffer correct = history.getCorrect();
+        IntBuffer difficulties = history.getDifficulties();
+        int levels = 0;
+        for (int i = 0; i < history.size(); i++) {
+            levels = Math.max(levels, difficulties.get(i) + 1);
+        }
+        int trials[] = new int[levels];
+        int numCorrect[] = new int[levels];
+        long totalTimes[] = new long[levels];
+        long totalTime = 0;
+        for (int i = 0; i < history.size(); i++) {
+            int difficulty = difficulties.get(i);
+            trials[difficulty]++;
+            numCorrect[difficulty] += correct.get(i);
+            totalTimes[difficulty] += responseTimes.get(i);
+            totalTime += responseTimes.get(i);
+        }
+        StringBuilder summary = new StringBuilder("Summary of " + phase + ": " 
+                + history.getNumCorrect() + " of " + history.size() + " correct, mean response time " 
+                + (history.size() == 0 ? 0 : totalTime / history.size() / 1000000.0) + " ms");
+        for (int difficulty = 0; difficulty < levels; difficulty++) {
+            if (trials[difficulty] > 0) {
+                summary.append("\n\tDifficulty " + difficulty + ": " + numCorrect[difficulty] + " of " 
+                        + trials[difficulty] + " correct, mean response time " 
+                        + totalTimes[difficulty] / trials[difficulty] / 1000000.0 + " ms");
+            }
+        }
+        logger.info(summary);
+    }
+    
+    /**
+     * Report the latencies of the trial loop stages so far in the current phase.
+     * @return One line per stage with p50, p99, p99.9 and max.
+     */
+    public String reportLatencies() {
+        return this.timings.report();
     }
     
     /**
-     * Set the font sizes of the pair.
+     * Mark the onset of the round: the response time is measured from now,
+     * and so is the window the GC pauses and JIT time are recorded over.
      */
-    private void setFontSizes() {
-        int letterSizeOne = this.currentAlphaPair.getFontSizeOne();
-        int letterSizeTwo = this.currentAlphaPair.getFontSizeTwo();
-        theView.getLeftOption().setFont(new Font("Tahoma", letterSizeOne));
-        theView.getRightOption().setFont(new Font("Tahoma", letterSizeTwo));
+    private void markOnset() {
+        long onset = System.nanoTime();
+        session.setResponseTimeMetric(onset);
+        PauseMonitor monitor = this.pauseMonitor;
+        this.pauseWindow = monitor == null ? null : monitor.open(onset);
+    }
+    
+    /**
+     * Close the response window of the round and hand it to the session, 
+     * to be written with the trial.
+     * @param responseTime Response time in nanoseconds.
+     */
+    private void closePauseWindow(long responseTime) {
+        PauseMonitor.Window window = this.pauseWindow;
+        this.pauseWindow = null;
+        if (window != null) {
+            this.pauseMonitor.close(window, window.getStartNanos() + responseTime);
+            this.metrics.pausesDone(window.getGcPauseMillis(), window.getGcCount());
+            if (window.getGcCount() > 0) {
+                logger.warn("Response window overlapped " + window.getGcCount() + " GC pauses, " 
+                        + window.getGcPauseMillis() + " ms");
+            }
+        }
+        game.setPauses(window);
     }
     
     /** 
      * Record the response time of the subject. 
+     * @return The response time in nanoseconds.
      */
-    public void recordResponseTime() {
-        long responseTime = System.nanoTime() - responseTimeMetric;
-        thePlayer.setResponseTime(responseTime);
+    public long recordResponseTime() {
+        long responseTime = System.nanoTime() - session.getResponseTimeMetric();
         double responseTimeSec = responseTime / 1000000000.0;        
         logger.info("Response time: " 
                 + responseTimeSec + " seconds");
+        return responseTime;
     }
     
 //    /** (This method is not in use)
@@ -585,30 +1061,132 @@ public class LetterGameController implements GameController {
 //        drainer.play();
 //    }
 
-    public Player getThePlayer() {
-        return thePlayer;
+    /**
+     * Record that the game is being quit from the exit popup, and unregister
+     * the session metrics.
+     */
+    public void recordExit() {
+        if (this.game != null && this.game.getRecorder() != null) {
+            this.game.getRecorder().exit();
+            this.game.getRecorder().close();
+        }
+        this.metrics.unregister();
     }
-
-    public void setThePlayer(Player thePlayer) {
-        this.thePlayer = thePlayer;
+    
+    /**
+     * Replay a recording at real speed: log in as the recorded subject, go through 
+     * the screens, and give each recorded response its recorded time after onset.
+     * Nothing is written to the subject's results, the timing header, the trial 
+     * store or the network sink, so a replay leaves the recorded data as it was.
+     * For checking a recording headless and as fast as possible, see ReplayEngine.
+     * @param recording The recording. Its settings must have been given to the 
+     *      constructor as config overrides.
+     */
+    public void startReplay(SessionRecording recording) {
+        this.replay = recording;
+        this.replayPosition = 0;
+        ReplayEvent login = this.nextReplayEvent(ReplayEvent.Type.LOGIN);
+        if (login == null) {
+            logger.warn("Recording has no login, nothing to replay.");
+            return;
+        }
+        theView.getEnterId().setText(login.getField(0));
+        if (Player.Gender.valueOf(login.getField(1)) == Player.Gender.MALE) {
+            theView.getPickMale().setSelected(true);
+        } else {
+            theView.getPickFemale().setSelected(true);
+        }
+        theView.getEnterAge().setText(login.getField(2));
+        this.runLater(REPLAY_SCREEN_TIME, this::onClickStartButton);
     }
-
-    public AlphaPair getCurrentAlphaPair() {
-        return currentAlphaPair;
+    
+    /**
+     * When replaying, respond to the pair just shown as recorded.
+     */
+    private void replayNextResponse() {
+        if (this.replay == null) {
+            return;
+        }
+        ReplayEvent key = this.nextReplayEvent(ReplayEvent.Type.KEY);
+        if (key == null) {
+            logger.info("Replay: end of recording after " + game.getPlayer().getNumRounds() + " rounds.");
+            return;
+        }
+        long responseTime = key.getLong(1);
+        LocalDateTime trialTime = LocalDateTime.parse(key.getField(2));
+        this.runLater(responseTime / 1000000, 
+                () -> this.handleResponse("F".equals(key.getField(0)), responseTime, trialTime));
+    }
+    
+    /**
+     * Move on to the next event of a type in the replayed recording, 
+     * logging escape and exit events passed on the way.
+     * @param type The type of event.
+     * @return The event, or null at the end of the recording.
+     */
+    private ReplayEvent nextReplayEvent(ReplayEvent.Type type) {
+        while (this.replayPosition < this.replay.getEvents().size()) {
+            ReplayEvent event = this.replay.getEvents().get(this.replayPosition++);
+            if (event.getType() == type) {
+                return event;
+            }
+            if (event.getType() == ReplayEvent.Type.ESCAPE || event.getType() == ReplayEvent.Type.EXIT) {
+                logger.info("Replay: " + event);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Run an action on the FX thread after a wait.
+     * @param waitTime Time to wait in milliseconds.
+     * @param action The action.
+     */
+    private void runLater(long waitTime, Runnable action) {
+        Task<Void> sleeper = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                Thread.sleep(waitTime);
+                return null;
+            }
+        };
+        sleeper.setOnSucceeded(e -> action.run());
+        Thread thread = new Thread(sleeper);
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    public void setCurrentAlphaPair(AlphaPair currentAlphaPair) {
-        this.currentAlphaPair = currentAlphaPair;
+    public GameSession getGame() {
+        return game;
     }
 
-    public AlphaPairGenerator getApg() {
-        return apg;
+    public long getOnsetSwapNanos() {
+        return onsetSwapNanos;
     }
 
-    public void setApg(AlphaPairGenerator apg) {
-        this.apg = apg;
+    public SessionMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * @return Completes once the config has been loaded in the background.
+     */
+    public CompletableFuture<Void> getConfigLoaded() {
+        return this.configLoaded;
     }
     
+    /**
+     * Get the settings of this session.
+     * @return The settings, or null if the config has not been loaded yet.
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public SessionState getSession() {
+        return session;
+    }
+
     public GameGUI getTheView() {
         return theView;
     }
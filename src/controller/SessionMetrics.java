@@ -0,0 +1,343 @@
+package controller;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import ingest.NetworkSink;
+import store.TrialStore;
+import view.PulseMonitor;
+
+/**
+ * Live metrics of one session, registered as an MBean so the experimenter 
+ * can watch several stations from JConsole without touching the stimulus 
+ * display.
+ * 
+ * The controller publishes each trial and each wait between rounds here as 
+ * they happen, on the thread driving the session. The running statistics 
+ * are kept by that thread and only their results are written to volatile 
+ * fields, so reading an attribute never waits on or polls the FX thread, 
+ * and publishing costs a few field writes per trial.
+ * 
+ * Classes Related To:
+ *  -LetterGameController.java
+ *      -Publishes the trials and registers the MBean.
+ *  -SessionState.java
+ *      -The state and game state reported.
+ *  -NetworkSink.java (ingest), TrialStore.java (store), TrialSync.java
+ *      -The export queues reported.
+ *  -PulseMonitor.java (view)
+ *      -The dropped frames reported.
+ * 
+ */
+public class SessionMetrics implements SessionMetricsMBean {
+    
+    private static final Logger logger = Logger.getLogger(SessionMetrics.class);
+    
+    /** Domain of the MBean names. */
+    public static final String DOMAIN = "lettergame";
+    
+    /** Number of the next session registered, to tell sessions of one JVM apart. */
+    private static final AtomicInteger nextSession = new AtomicInteger(1);
+    
+    private final SessionState session;
+    
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    
+    private volatile NetworkSink networkSink;
+    private volatile TrialStore trialStore;
+    private volatile TrialSync trialSync;
+    private volatile PulseMonitor pulseMonitor;
+    
+    /** Name the MBean is registered under, null if it is not registered. */
+    private volatile ObjectName name;
+    
+    private volatile int subjectID;
+    private volatile int trialIndex;
+    private volatile int numCorrect;
+    private volatile long lastResponseTime;
+    private volatile double meanResponseTime;
+    private volatile double responseTimeSd;
+    private volatile long lastIsiDrift;
+    private volatile double meanIsiDrift;
+    private volatile long maxIsiDrift;
+    private volatile int numParticipants;
+    private volatile int pausedTrials;
+    private volatile long pausedTrialsTotal;
+    private volatile long measuredTrialsTotal;
+    private volatile double gcPauseTotal;
+    
+    /** Running sum of squared deviations of the response times. Only used by the session thread. */
+    private double responseTimeM2;
+    
+    /** Number of waits between rounds in the current phase. Only used by the session thread. */
+    private int numIsis;
+    
+    /**
+     * Constructor.
+     * @param session The state of the session.
+     */
+    public SessionMetrics(SessionState session) {
+        this.session = session;
+    }
+    
+    /**
+     * Register with the platform MBean server. Failure is logged and the 
+     * session runs without the MBean.
+     * @param station Number of the station, part of the MBean name.
+     */
+    public void register(int station) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Session,station=" + station 
+                    + ",session=" + nextSession.getAndIncrement());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, name);
+            this.name = name;
+            logger.info("Session metrics registered as " + name);
+        } catch (JMException e) {
+            logger.warn("Could not register session metrics.", e);
+        }
+    }
+    
+    /**
+     * Unregister from the platform MBean server, if registered.
+     */
+    public void unregister() {
+        ObjectName name = this.name;
+        if (name == null) {
+            return;
+        }
+        this.name = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            logger.warn("Could not unregister session metrics.", e);
+        }
+    }
+    
+    /**
+     * Publish that a subject logged in. Called on the session thread.
+     * @param subjectID ID of the subject.
+     */
+    public void login(int subjectID) {
+        this.resetPhase();
+        this.subjectID = subjectID;
+    }
+    
+    /**
+     * Publish a trial that was just answered. Called on the session thread.
+     * @param trialIndex Number of trials answered in the phase, including this one.
+     * @param numCorrect Number of those answered correctly.
+     * @param responseTime Response time in nanoseconds.
+     */
+    public void trialDone(int trialIndex, int numCorrect, long responseTime) {
+        double mean = this.meanResponseTime;
+        double delta = responseTime - mean;
+        mean += delta / trialIndex;
+        this.responseTimeM2 += delta * (responseTime - mean);
+        this.meanResponseTime = mean;
+        this.responseTimeSd = trialIndex > 1 ? Math.sqrt(this.responseTimeM2 / (trialIndex - 1)) : 0;
+        this.lastResponseTime = responseTime;
+        this.numCorrect = numCorrect;
+        this.trialIndex = trialIndex;
+    }
+    
+    /**
+     * Publish a wait between rounds that just ended. Called on the session thread.
+     * @param lateness How late the wait ended, in nanoseconds.
+     */
+    public void isiDone(long lateness) {
+        this.numIsis++;
+        this.meanIsiDrift += (lateness - this.meanIsiDrift) / this.numIsis;
+        this.lastIsiDrift = lateness;
+        if (lateness > this.maxIsiDrift) {
+            this.maxIsiDrift = lateness;
+        }
+    }
+    
+    /**
+     * Publish what overlapped the response window of a trial that was just 
+     * answered. Called on the session thread.
+     * @param gcPauseMillis Time in milliseconds the window overlapped a GC pause.
+     * @param gcCount Number of collections that ended during the window.
+     */
+    public void pausesDone(double gcPauseMillis, long gcCount) {
+        this.measuredTrialsTotal++;
+        this.gcPauseTotal += gcPauseMillis;
+        if (gcPauseMillis > 0 || gcCount > 0) {
+            this.pausedTrials++;
+            this.pausedTrialsTotal++;
+        }
+    }
+    
+    /**
+     * Publish that a participant finished. Called on the session thread.
+     * @param numParticipants Number of participants finished so far.
+     */
+    public void participantDone(int numParticipants) {
+        this.numParticipants = numParticipants;
+    }
+    
+    /**
+     * Clear the trial statistics at the start of a phase. Called on the session thread.
+     */
+    public void resetPhase() {
+        this.trialIndex = 0;
+        this.numCorrect = 0;
+        this.lastResponseTime = 0;
+        this.meanResponseTime = 0;
+        this.responseTimeSd = 0;
+        this.responseTimeM2 = 0;
+        this.lastIsiDrift = 0;
+        this.meanIsiDrift = 0;
+        this.maxIsiDrift = 0;
+        this.numIsis = 0;
+        this.pausedTrials = 0;
+    }
+    
+    /**
+     * Clear everything about the participant. Called on the session thread.
+     */
+    public void resetParticipant() {
+        this.resetPhase();
+        this.subjectID = 0;
+    }
+    
+    public void setNetworkSink(NetworkSink networkSink) {
+        this.networkSink = networkSink;
+    }
+    
+    public void setTrialStore(TrialStore trialStore) {
+        this.trialStore = trialStore;
+    }
+    
+    public void setTrialSync(TrialSync trialSync) {
+        this.trialSync = trialSync;
+    }
+    
+    public void setPulseMonitor(PulseMonitor pulseMonitor) {
+        this.pulseMonitor = pulseMonitor;
+    }
+    
+    public ObjectName getName() {
+        return this.name;
+    }
+    
+    @Override
+    public String getState() {
+        return String.valueOf(this.session.getState());
+    }
+    
+    @Override
+    public String getGameState() {
+        return String.valueOf(this.session.getGameState());
+    }
+    
+    @Override
+    public int getSubjectID() {
+        return this.subjectID;
+    }
+    
+    @Override
+    public int getTrialIndex() {
+        return this.trialIndex;
+    }
+    
+    @Override
+    public int getNumCorrect() {
+        return this.numCorrect;
+    }
+    
+    @Override
+    public double getAccuracy() {
+        int trials = this.trialIndex;
+        return trials == 0 ? 0 : (double) this.numCorrect / trials;
+    }
+    
+    @Override
+    public double getLastResponseTime() {
+        return this.lastResponseTime / 1000000.0;
+    }
+    
+    @Override
+    public double getMeanResponseTime() {
+        return this.meanResponseTime / 1000000.0;
+    }
+    
+    @Override
+    public double getResponseTimeSd() {
+        return this.responseTimeSd / 1000000.0;
+    }
+    
+    @Override
+    public double getLastIsiDrift() {
+        return this.lastIsiDrift / 1000000.0;
+    }
+    
+    @Override
+    public double getMeanIsiDrift() {
+        return this.meanIsiDrift / 1000000.0;
+    }
+    
+    @Override
+    public double getMaxIsiDrift() {
+        return this.maxIsiDrift / 1000000.0;
+    }
+    
+    @Override
+    public int getExportQueueDepth() {
+        NetworkSink sink = this.networkSink;
+        TrialStore store = this.trialStore;
+        TrialSync sync = this.trialSync;
+        return (sink == null ? 0 : sink.getQueueDepth()) 
+                + (store == null ? 0 : store.getQueueDepth()) 
+                + (sync == null ? 0 : sync.getQueueDepth());
+    }
+    
+    @Override
+    public long getDroppedFrames() {
+        PulseMonitor monitor = this.pulseMonitor;
+        return monitor == null ? 0 : monitor.getDroppedFrames();
+    }
+    
+    @Override
+    public int getNumParticipants() {
+        return this.numParticipants;
+    }
+    
+    @Override
+    public int getPausedTrials() {
+        return this.pausedTrials;
+    }
+    
+    @Override
+    public long getPausedTrialsTotal() {
+        return this.pausedTrialsTotal;
+    }
+    
+    @Override
+    public long getMeasuredTrialsTotal() {
+        return this.measuredTrialsTotal;
+    }
+    
+    @Override
+    public double getGcPauseTotal() {
+        return this.gcPauseTotal;
+    }
+    
+    @Override
+    public long getHeapUsed() {
+        return this.memory.getHeapMemoryUsage().getUsed();
+    }
+    
+    @Override
+    public long getHeapMax() {
+        return this.memory.getHeapMemoryUsage().getMax();
+    }
+}
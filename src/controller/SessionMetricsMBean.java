@@ -0,0 +1,76 @@
+package controller;
+
+/**
+ * Live metrics of one session, for JConsole or a monitoring agent. Every 
+ * attribute is read-only. Times are in milliseconds and memory in bytes.
+ * 
+ * Classes Related To:
+ *  -SessionMetrics.java
+ *      -The implementation registered for each controller.
+ * 
+ */
+public interface SessionMetricsMBean {
+    
+    /** @return Current state of the game, see CurrentState. */
+    String getState();
+    
+    /** @return Whether the game is between rounds or waiting for a response, see GameState. */
+    String getGameState();
+    
+    /** @return ID of the subject logged in, 0 if none. */
+    int getSubjectID();
+    
+    /** @return Number of trials answered in the current phase. */
+    int getTrialIndex();
+    
+    /** @return Number of trials answered correctly in the current phase. */
+    int getNumCorrect();
+    
+    /** @return Proportion of trials answered correctly in the current phase. */
+    double getAccuracy();
+    
+    /** @return Response time of the last trial. */
+    double getLastResponseTime();
+    
+    /** @return Mean response time in the current phase. */
+    double getMeanResponseTime();
+    
+    /** @return Standard deviation of the response times in the current phase. */
+    double getResponseTimeSd();
+    
+    /** @return How late the last wait between rounds ended. */
+    double getLastIsiDrift();
+    
+    /** @return Mean lateness of the waits between rounds in the current phase. */
+    double getMeanIsiDrift();
+    
+    /** @return Largest lateness of a wait between rounds in the current phase. */
+    double getMaxIsiDrift();
+    
+    /** @return Number of trials waiting to be sent to the collector, inserted into the store or forced to disk. */
+    int getExportQueueDepth();
+    
+    /** @return Number of frames dropped since the game screen was last shown. */
+    long getDroppedFrames();
+    
+    /** @return Number of participants finished since the game started. */
+    int getNumParticipants();
+    
+    /** @return Number of trials in the current phase whose response overlapped a GC pause. */
+    int getPausedTrials();
+    
+    /** @return Number of trials since the game started whose response overlapped a GC pause. */
+    long getPausedTrialsTotal();
+    
+    /** @return Number of trials since the game started whose response was checked for GC pauses. */
+    long getMeasuredTrialsTotal();
+    
+    /** @return Total time of GC pauses inside responses since the game started. */
+    double getGcPauseTotal();
+    
+    /** @return Heap memory in use. */
+    long getHeapUsed();
+    
+    /** @return Most heap memory the JVM will use. */
+    long getHeapMax();
+}
@@ -0,0 +1,93 @@
+package controller;
+
+/**
+ * The mutable state of one session: where the game is, and the stars and 
+ * backgrounds earned. Each controller has its own, so several sessions can 
+ * run in one JVM. 
+ * 
+ * A session is driven by one thread (the FX thread for a session on a Stage).
+ * The fields are volatile so other threads, such as monitoring, see current 
+ * values.
+ * 
+ */
+public class SessionState {
+    
+    /** Current state of the overall game. */
+    private volatile CurrentState state;
+    
+    /** Describes the current state of gameplay */
+    private volatile GameState gameState;
+    
+    /** How many stars the player has earned. 
+     * The player earns a star for every time the
+     * progress bar is filled. */
+    private volatile int numStars;
+    
+    /** Integer representing each each background. */
+    private volatile int backgroundNumber;
+    
+    /** Time the current pair was shown, used to measure response time. */
+    private volatile long responseTimeMetric;
+    
+    public SessionState() {
+        this.state = CurrentState.INTRODUCTION;
+    }
+    
+    /**
+     * Reset everything for the next participant.
+     */
+    public void reset() {
+        this.state = CurrentState.INTRODUCTION;
+        this.gameState = null;
+        this.responseTimeMetric = 0;
+        this.resetProgress();
+    }
+    
+    /**
+     * Reset the stars and background, as at the start of practice or assessment.
+     */
+    public void resetProgress() {
+        this.numStars = 0;
+        this.backgroundNumber = 0;
+    }
+
+    public CurrentState getState() {
+        return state;
+    }
+
+    public void setState(CurrentState state) {
+        this.state = state;
+    }
+
+    public GameState getGameState() {
+        return gameState;
+    }
+
+    public void setGameState(GameState gameState) {
+        this.gameState = gameState;
+    }
+
+    public int getNumStars() {
+        return numStars;
+    }
+
+    public void setNumStars(int numStars) {
+        this.numStars = numStars;
+    }
+
+    public int getBackgroundNumber() {
+        return backgroundNumber;
+    }
+
+    public void setBackgroundNumber(int backgroundNumber) {
+        this.backgroundNumber = backgroundNumber;
+    }
+
+    public long getResponseTimeMetric() {
+        return responseTimeMetric;
+    }
+
+    public void setResponseTimeMetric(long responseTimeMetric) {
+        this.responseTimeMetric = responseTimeMetric;
+    }
+}
@@ -0,0 +1,81 @@
+package controller;
+
+import util.LatencyHistogram;
+
+/**
+ * Latency histograms of each stage of the trial loop, from the subject's 
+ * key press to the onset of the next pair. Recording is allocation-free, 
+ * so it can stay on in every session.
+ * 
+ * Classes Related To:
+ *  -LetterGameController.java
+ *      -Times each stage and reports at the end of practice and assessment.
+ *  -LatencyHistogram.java (util)
+ *      -The histograms.
+ * 
+ */
+public class TrialLoopTimings {
+    
+    /** The stages of the trial loop. */
+    public enum Stage {
+        /** Scoring the response and updating the player, staircase and trial text. */
+        SCORING,
+        /** Progress bar, stars and background. */
+        GUI_UPDATE,
+        /** Starting the feedback sound. */
+        SOUND,
+        /** Hiding the previous pair. */
+        CLEAR_ROUND,
+        /** Generating and laying out the next pair. */
+        STAGE_NEXT,
+        /** Appending the trial to the CSV file. */
+        CSV_EXPORT,
+        /** Everything done on the key press, from scoring to export. */
+        RESPONSE_TOTAL,
+        /** How late the wait between rounds ended, compared to the time asked for. */
+        ISI_LATENESS,
+        /** Swapping in the staged pair at onset. */
+        SET_OPTIONS,
+    }
+    
+    private final LatencyHistogram histograms[];
+    
+    public TrialLoopTimings() {
+        Stage stages[] = Stage.values();
+        this.histograms = new LatencyHistogram[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            this.histograms[i] = new LatencyHistogram(stages[i].name());
+        }
+    }
+    
+    /**
+     * Record the latency of a stage.
+     * @param stage The stage.
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(Stage stage, long nanos) {
+        this.histograms[stage.ordinal()].record(nanos);
+    }
+    
+    public LatencyHistogram get(Stage stage) {
+        return this.histograms[stage.ordinal()];
+    }
+    
+    public void reset() {
+        for (LatencyHistogram histogram : this.histograms) {
+            histogram.reset();
+        }
+    }
+    
+    /**
+     * Report the percentiles of every stage.
+     * @return One line per stage.
+     */
+    public String report() {
+        StringBuilder text = new StringBuilder();
+        for (LatencyHistogram histogram : this.histograms) {
+            text.append('\n').append(histogram);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,297 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import util.LatencyHistogram;
+
+/**
+ * Makes the trials DataWriter appends to the results durable, by forcing the
+ * results file to disk (fsync) on a background thread, so the FX thread never
+ * waits on the disk. Closing the file after each trial only hands the data to
+ * the operating system; until it is forced, a power loss can lose it.
+ *
+ * How often the file is forced is the durability policy (durability.mode):
+ *  -none: never, the operating system writes the data back when it likes.
+ *  -trial: after every trial.
+ *  -group: once groupTrials trials are waiting or the oldest has waited
+ *   groupMillis, whichever comes first.
+ *  -session: at the end of the session.
+ * Whatever is waiting is forced when the JVM exits, except under none.
+ *
+ * The time each force takes and how long each trial waited to be durable are
+ * kept in histograms, so the cost of each policy can be compared.
+ *
+ * Classes Related To:
+ *  -LetterGameController.java
+ *      -Reports each trial written and the end of each session.
+ *  -DataWriter.java
+ *      -Writes the results file.
+ *
+ */
+public class TrialSync {
+
+    private static final Logger logger = Logger.getLogger(TrialSync.class);
+
+    /** When the results are forced to disk. */
+    public enum Policy {
+        NONE,
+        TRIAL,
+        GROUP,
+        SESSION;
+
+        /**
+         * Read a policy from the config.
+         * @param name none, trial, group or session.
+         * @return The policy.
+         */
+        public static Policy parse(String name) {
+            return Policy.valueOf(name.trim().toUpperCase());
+        }
+    }
+
+    /** Time in milliseconds the sync thread waits for work when nothing is waiting to be forced. */
+    static final long IDLE_WAIT = 1000;
+
+    /** Time in milliseconds close() waits for the last force. */
+    static final long CLOSE_WAIT = 10000;
+
+    /** A trial appended to a file. */
+    private static final class Written {
+        final File file;
+        final long nanos;
+
+        Written(File file, long nanos) {
+            this.file = file;
+            this.nanos = nanos;
+        }
+    }
+
+    /** Queued to force whatever is waiting. */
+    private static final Written FLUSH = new Written(null, 0);
+
+    private final Policy policy;
+    private final int groupTrials;
+    private final long groupMillis;
+
+    /** Trials written, in order, and FLUSH markers. */
+    private final BlockingQueue<Written> queue;
+
+    private final Thread syncer;
+
+    private volatile boolean running;
+
+    /** Files with trials not yet forced. Only used by the sync thread. */
+    private final Set<File> pendingFiles = new LinkedHashSet<File>();
+
+    /** Write times of the trials not yet forced. Only used by the sync thread. */
+    private long pendingTimes[] = new long[64];
+    private int numPending;
+
+    /** Directories already forced after a file was created in them. Only used by the sync thread. */
+    private final Set<File> syncedDirs = new LinkedHashSet<File>();
+
+    /** Time each force took, and time from each trial being written until it was forced. */
+    private final LatencyHistogram forceTimes = new LatencyHistogram("FSYNC");
+    private final LatencyHistogram durableLag = new LatencyHistogram("DURABLE_LAG");
+
+    private long numForces;
+    private long numFailures;
+
+    /**
+     * Constructor. Starts the sync thread unless the policy is none.
+     * @param policy When to force the results to disk.
+     * @param groupTrials Most trials waiting under the group policy.
+     * @param groupMillis Longest time in milliseconds a trial waits under the group policy.
+     */
+    public TrialSync(Policy policy, int groupTrials, long groupMillis) {
+        this.policy = policy;
+        this.groupTrials = Math.max(1, groupTrials);
+        this.groupMillis = groupMillis;
+        this.queue = new LinkedBlockingQueue<Written>();
+        this.syncer = new Thread(this::syncLoop, "trial-fsync");
+        this.syncer.setDaemon(true);
+        if (policy != Policy.NONE) {
+            this.running = true;
+            this.syncer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "trial-fsync-shutdown"));
+        }
+        logger.info("Durability policy " + policy
+                + (policy == Policy.GROUP ? " (" + this.groupTrials + " trials or " + groupMillis + " ms)" : ""));
+    }
+
+    /**
+     * Note that a trial was appended to a file. Never blocks.
+     * @param file The file.
+     */
+    public void written(File file) {
+        if (!this.running) {
+            return;
+        }
+        this.queue.offer(new Written(file, System.nanoTime()));
+    }
+
+    /**
+     * Force whatever is waiting, without waiting for it. Called at the end of
+     * a session, after the session's last trial is written; a trial written
+     * after this waits for the policy or the JVM exit.
+     */
+    public void sessionEnd() {
+        if (this.running) {
+            this.queue.offer(FLUSH);
+        }
+    }
+
+    /**
+     * Take trials off the queue and force them according to the policy until closed.
+     */
+    private void syncLoop() {
+        while (this.running) {
+            try {
+                Written written = this.queue.poll(this.waitTime(), TimeUnit.MILLISECONDS);
+                if (written == FLUSH) {
+                    this.forcePending();
+                } else if (written != null) {
+                    this.addPending(written);
+                    if (this.policy == Policy.TRIAL
+                            || (this.policy == Policy.GROUP && this.numPending >= this.groupTrials)) {
+                        this.forcePending();
+                    }
+                }
+                if (this.policy == Policy.GROUP && this.numPending > 0
+                        && System.nanoTime() - this.pendingTimes[0] >= this.groupMillis * 1000000L) {
+                    this.forcePending();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        Written written;
+        while ((written = this.queue.poll()) != null) {
+            if (written != FLUSH) {
+                this.addPending(written);
+            }
+        }
+        this.forcePending();
+    }
+
+    /**
+     * @return Time in milliseconds until the oldest waiting trial is due under the group policy.
+     */
+    private long waitTime() {
+        if (this.policy != Policy.GROUP || this.numPending == 0) {
+            return IDLE_WAIT;
+        }
+        long waited = (System.nanoTime() - this.pendingTimes[0]) / 1000000L;
+        return Math.max(0, this.groupMillis - waited);
+    }
+
+    private void addPending(Written written) {
+        this.pendingFiles.add(written.file);
+        if (this.numPending == this.pendingTimes.length) {
+            this.pendingTimes = Arrays.copyOf(this.pendingTimes, this.numPending * 2);
+        }
+        this.pendingTimes[this.numPending++] = written.nanos;
+    }
+
+    /**
+     * Force every file with trials waiting, and the directory of each new file.
+     */
+    private void forcePending() {
+        if (this.numPending == 0) {
+            return;
+        }
+        for (File file : this.pendingFiles) {
+            long start = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            } catch (IOException e) {
+                logger.error("Could not force " + file + " to disk", e);
+                synchronized (this) {
+                    this.numFailures++;
+                }
+                continue;
+            }
+            this.forceDirectory(file.getAbsoluteFile().getParentFile());
+            long done = System.nanoTime();
+            synchronized (this) {
+                this.forceTimes.record(done - start);
+                this.numForces++;
+            }
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            for (int i = 0; i < this.numPending; i++) {
+                this.durableLag.record(now - this.pendingTimes[i]);
+            }
+        }
+        this.pendingFiles.clear();
+        this.numPending = 0;
+    }
+
+    /**
+     * Force a directory the first time, so a newly created file is not lost
+     * with its directory entry. Not every platform can open a directory;
+     * where it cannot, this is skipped.
+     * @param dir The directory.
+     */
+    private void forceDirectory(File dir) {
+        if (dir == null || !this.syncedDirs.add(dir)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not force directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Force whatever is waiting and stop. Waits up to CLOSE_WAIT for the force
+     * to finish. The sync thread is woken rather than interrupted, because an
+     * interrupt would close the file channel in the middle of a force.
+     */
+    public void close() {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        this.queue.offer(FLUSH);
+        try {
+            this.syncer.join(CLOSE_WAIT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Report the cost of the policy so far.
+     * @return Policy, number of forces, and the force and durable lag histograms.
+     */
+    public synchronized String report() {
+        return "Durability " + this.policy + ": " + this.numForces + " forces, "
+                + this.numFailures + " failures\n\t" + this.forceTimes + "\n\t" + this.durableLag;
+    }
+
+    /**
+     * Get the number of trials waiting to be taken by the sync thread. Safe to call from any thread.
+     * @return Number of trials queued.
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    public Policy getPolicy() {
+        return this.policy;
+    }
+}
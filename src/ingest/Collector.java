@@ -0,0 +1,340 @@
+package ingest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Receives trial records from the stations of a lab and writes them, as 
+ * they arrive, to one CSV file per subject and one merged cohort file:
+ *  -outputDir/subjectID/collected_subjectID.csv
+ *  -outputDir/cohort.csv
+ * The subject files are named apart from DataWriter's results_subjectID.csv,
+ * whose columns differ, so the collected and local files can share a folder.
+ * 
+ * Each connection is read on its own thread. Writing is serialized, and the
+ * files a frame was written to are forced to disk before it is acknowledged,
+ * so a station only forgets a frame once it is on disk. At most MAX_OPEN_FILES 
+ * subject files are kept open; the one used least recently is closed to open 
+ * another. Throughput is logged every REPORT_INTERVAL seconds while records 
+ * come in.
+ * 
+ * Delivery is at least once: a frame whose acknowledgement is lost is sent 
+ * again by the station, so the same record (station, subject, round and time)
+ * can be written twice, and readers of the files should drop repeats.
+ * 
+ * Classes Related To:
+ *  -NetworkSink.java
+ *      -Sends the records of a station.
+ *  -CollectorMain.java (main)
+ *      -Runs the collector.
+ * 
+ */
+public class Collector {
+    
+    private static final Logger logger = Logger.getLogger(Collector.class);
+    
+    /** Port the collector listens on by default. */
+    public static final int DEFAULT_PORT = 5405;
+    
+    /** Seconds between throughput reports. */
+    static final int REPORT_INTERVAL = 10;
+    
+    /** Name of the merged file. */
+    static final String COHORT_FILE_NAME = "cohort.csv";
+    
+    /** Start of the name of a subject's file, followed by the subject ID. */
+    static final String SUBJECT_FILE_PREFIX = "collected_";
+    
+    /** Most subject files open at once. */
+    static final int MAX_OPEN_FILES = 64;
+    
+    /** A CSV file open for appending. */
+    private static final class CsvFile {
+        private final FileOutputStream out;
+        private final Writer writer;
+        private boolean closed;
+        
+        CsvFile(FileOutputStream out) {
+            this.out = out;
+            this.writer = new BufferedWriter(new OutputStreamWriter(out));
+        }
+        
+        void write(String line) throws IOException {
+            this.writer.write(line);
+        }
+        
+        /** Flush the file and force it to disk, unless it has been closed. */
+        void force() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.writer.flush();
+            this.out.getChannel().force(false);
+        }
+        
+        void close() throws IOException {
+            try {
+                this.force();
+            } finally {
+                this.closed = true;
+                this.writer.close();
+            }
+        }
+    }
+    
+    private final int port;
+    private final File outputDir;
+    
+    private ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final ScheduledExecutorService reporter;
+    
+    /** Open subject files by subject ID, least recently used first. Guarded by this. */
+    private final Map<Integer, CsvFile> subjectFiles;
+    
+    /** The cohort file. Guarded by this. */
+    private CsvFile cohortFile;
+    
+    private final AtomicLong records;
+    private final AtomicLong bytes;
+    private final AtomicLong frames;
+    private final AtomicInteger openConnections;
+    
+    /** Totals at the last report. */
+    private long reportedRecords;
+    private long reportedBytes;
+    private long reportedNanos;
+    
+    /**
+     * Constructor.
+     * @param port Port to listen on, 0 for any free port.
+     * @param outputDir Folder to write the CSV files to.
+     */
+    public Collector(int port, File outputDir) {
+        this.port = port;
+        this.outputDir = outputDir;
+        this.subjectFiles = new LinkedHashMap<Integer, CsvFile>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CsvFile> eldest) {
+                if (size() <= MAX_OPEN_FILES) {
+                    return false;
+                }
+                try {
+                    eldest.getValue().close();
+                } catch (IOException e) {
+                    logger.error("Closing the file of subject " + eldest.getKey() + " failed", e);
+                }
+                return true;
+            }
+        };
+        this.connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "collector-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "collector-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.records = new AtomicLong();
+        this.bytes = new AtomicLong();
+        this.frames = new AtomicLong();
+        this.openConnections = new AtomicInteger();
+    }
+    
+    /**
+     * Start listening. Returns once the server socket is open.
+     * @throws IOException If the port cannot be opened.
+     */
+    public void start() throws IOException {
+        this.outputDir.mkdirs();
+        synchronized (this) {
+            this.cohortFile = openCSV(new File(this.outputDir, COHORT_FILE_NAME));
+        }
+        this.serverSocket = new ServerSocket(this.port);
+        this.reportedNanos = System.nanoTime();
+        this.reporter.scheduleAtFixedRate(this::reportThroughput, 
+                REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.SECONDS);
+        Thread acceptor = new Thread(this::acceptLoop, "collector-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Collector listening on port " + this.getPort() + ", writing to " 
+                + this.outputDir.getAbsolutePath());
+    }
+    
+    private void acceptLoop() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                this.connections.execute(() -> this.receive(socket));
+            } catch (SocketException e) {
+                // Closed.
+            } catch (IOException e) {
+                logger.error("Accepting a connection failed", e);
+            }
+        }
+    }
+    
+    /**
+     * Read frames from one station until it disconnects, acknowledging each.
+     * @param socket The connection.
+     */
+    private void receive(Socket socket) {
+        this.openConnections.incrementAndGet();
+        String station = socket.getRemoteSocketAddress().toString();
+        logger.info("Station connected: " + station);
+        try (Socket connection = socket) {
+            connection.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            List<TrialRecord> batch;
+            while ((batch = TrialCodec.decode(in)) != null) {
+                this.store(batch);
+                this.records.addAndGet(batch.size());
+                this.bytes.addAndGet(TrialCodec.FRAME_OVERHEAD + batch.size() * TrialCodec.RECORD_SIZE);
+                this.frames.incrementAndGet();
+                out.writeInt(batch.size());
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.warn("Connection from " + station + " failed: " + e.getMessage());
+        } finally {
+            this.openConnections.decrementAndGet();
+            logger.info("Station disconnected: " + station);
+        }
+    }
+    
+    /**
+     * Append records to their subject files and the cohort file, and force 
+     * the files written to disk.
+     * @param batch The records.
+     * @throws IOException If a file cannot be written.
+     */
+    private synchronized void store(List<TrialRecord> batch) throws IOException {
+        Set<CsvFile> written = new LinkedHashSet<CsvFile>();
+        for (TrialRecord record : batch) {
+            String line = record.toCSV();
+            CsvFile subjectFile = this.subjectFiles.get(record.getSubjectID());
+            if (subjectFile == null) {
+                String subjectId = Integer.toString(record.getSubjectID());
+                File subjectDir = new File(this.outputDir, subjectId);
+                subjectDir.mkdirs();
+                subjectFile = openCSV(new File(subjectDir, SUBJECT_FILE_PREFIX + subjectId + ".csv"));
+                this.subjectFiles.put(record.getSubjectID(), subjectFile);
+            }
+            subjectFile.write(line);
+            written.add(subjectFile);
+            this.cohortFile.write(line);
+        }
+        for (CsvFile file : written) {
+            // A file closed to make room for another was forced as it closed.
+            file.force();
+        }
+        this.cohortFile.force();
+    }
+    
+    /**
+     * Open a CSV file to append to, writing the header if the file is new.
+     * @param file The file.
+     * @return The open file.
+     * @throws IOException If the file cannot be opened.
+     */
+    private static CsvFile openCSV(File file) throws IOException {
+        boolean isNew = file.createNewFile();
+        CsvFile csv = new CsvFile(new FileOutputStream(file, true));
+        if (isNew) {
+            csv.write(TrialRecord.CSV_HEADER);
+        }
+        return csv;
+    }
+    
+    /**
+     * Log the throughput since the last report, if anything came in.
+     */
+    private void reportThroughput() {
+        long now = System.nanoTime();
+        long totalRecords = this.records.get();
+        long totalBytes = this.bytes.get();
+        double seconds = (now - this.reportedNanos) / 1000000000.0;
+        if (totalRecords != this.reportedRecords) {
+            logger.info(String.format("Ingest: %.1f records/s, %.1f KB/s; total %d records, %d frames, "
+                    + "%d connections open", 
+                    (totalRecords - this.reportedRecords) / seconds, 
+                    (totalBytes - this.reportedBytes) / seconds / 1024, 
+                    totalRecords, this.frames.get(), this.openConnections.get()));
+        }
+        this.reportedRecords = totalRecords;
+        this.reportedBytes = totalBytes;
+        this.reportedNanos = now;
+    }
+    
+    /**
+     * Stop listening and close the files.
+     */
+    public void close() {
+        try {
+            if (this.serverSocket != null) {
+                this.serverSocket.close();
+            }
+        } catch (IOException ignored) {
+        }
+        this.connections.shutdownNow();
+        this.reporter.shutdownNow();
+        synchronized (this) {
+            for (CsvFile file : this.subjectFiles.values()) {
+                try {
+                    file.close();
+                } catch (IOException ignored) {
+                }
+            }
+            this.subjectFiles.clear();
+            try {
+                if (this.cohortFile != null) {
+                    this.cohortFile.close();
+                }
+            } catch (IOException ignored) {
+            }
+        }
+        logger.info("Collector stopped after " + this.records.get() + " records in " 
+                + this.frames.get() + " frames");
+    }
+    
+    /**
+     * Get the port the collector is listening on.
+     * @return The port, which is chosen by the system if 0 was given.
+     */
+    public int getPort() {
+        return this.serverSocket != null ? this.serverSocket.getLocalPort() : this.port;
+    }
+    
+    public long getRecords() {
+        return this.records.get();
+    }
+}
@@ -0,0 +1,373 @@
+package ingest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Sends the trials of a station to the collector, next to the CSV files 
+ * DataWriter writes locally. 
+ * 
+ * submit() only queues a record, so the FX thread never waits on the network.
+ * A background thread sends the queue in batches of up to batchSize records,
+ * or whatever has queued after flushMillis. If the collector cannot be reached,
+ * the batch is appended to a spool file and sent, oldest first, once the 
+ * collector is back. Whatever is still queued when the JVM exits is spooled.
+ * 
+ * Delivery is at least once. A frame is only dropped once the collector has
+ * acknowledged it, so a frame whose acknowledgement is lost is sent again,
+ * and the collector may write its records twice.
+ * 
+ * Classes Related To:
+ *  -TrialCodec.java
+ *      -The frames that are sent and spooled.
+ *  -Collector.java
+ *      -The service receiving the frames.
+ * 
+ */
+public class NetworkSink {
+    
+    private static final Logger logger = Logger.getLogger(NetworkSink.class);
+    
+    /** Time in milliseconds to wait for a connection to the collector. */
+    static final int CONNECT_TIMEOUT = 1000;
+    
+    /** Time in milliseconds to wait for the collector to acknowledge a frame. */
+    static final int ACK_TIMEOUT = 5000;
+    
+    /** Time in milliseconds to wait after a failure before trying the collector again. */
+    static final long RETRY_INTERVAL = 10000;
+    
+    /** Queued by close() to wake the sender thread. */
+    private static final TrialRecord STOP = new TrialRecord(0, 0, 0, (byte) 0, 0, ' ', ' ', 
+            false, false, 0, 0, 0, 0, 0, 0);
+    
+    private final InetSocketAddress collector;
+    private final int station;
+    private final int batchSize;
+    private final long flushMillis;
+    
+    /** Frames that could not be sent, one after another. */
+    private final File spoolFile;
+    
+    /** Records waiting to be sent. */
+    private final BlockingQueue<TrialRecord> queue;
+    
+    private final Thread sender;
+    
+    private volatile boolean running;
+    
+    /** Connection to the collector, null when not connected. Only used by the sender thread. */
+    private Socket socket;
+    private DataOutputStream out;
+    private DataInputStream in;
+    
+    /** Time of the last failure to reach the collector. */
+    private long lastFailure;
+    
+    private long recordsSent;
+    private long bytesSent;
+    private long recordsSpooled;
+    private long sendNanos;
+    
+    /**
+     * Constructor. Starts sending right away.
+     * @param host Host of the collector.
+     * @param port Port of the collector.
+     * @param station Number of this station.
+     * @param batchSize Most records sent in one frame.
+     * @param flushMillis Longest time in milliseconds a record waits to be sent.
+     * @param spoolDir Folder of the spool file.
+     */
+    public NetworkSink(String host, int port, int station, int batchSize, long flushMillis, File spoolDir) {
+        this.collector = new InetSocketAddress(host, port);
+        this.station = station;
+        this.batchSize = Math.max(1, Math.min(batchSize, TrialCodec.MAX_RECORDS));
+        this.flushMillis = flushMillis;
+        spoolDir.mkdirs();
+        this.spoolFile = new File(spoolDir, "station_" + station + ".spool");
+        this.queue = new LinkedBlockingQueue<TrialRecord>();
+        this.running = true;
+        this.sender = new Thread(this::sendLoop, "trial-sink");
+        this.sender.setDaemon(true);
+        this.sender.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "trial-sink-shutdown"));
+        logger.info("Sending trials of station " + station + " to " + this.collector);
+    }
+    
+    /**
+     * Queue a record to be sent. Never blocks.
+     * @param record The record.
+     */
+    public void submit(TrialRecord record) {
+        this.queue.offer(record);
+    }
+    
+    /**
+     * Take batches off the queue and send them until closed.
+     */
+    private void sendLoop() {
+        List<TrialRecord> batch = new ArrayList<TrialRecord>(this.batchSize);
+        long deadline = 0;
+        while (this.running) {
+            try {
+                TrialRecord record = this.queue.poll(this.flushMillis, TimeUnit.MILLISECONDS);
+                if (record == STOP) {
+                    break;
+                }
+                if (record != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.currentTimeMillis() + this.flushMillis;
+                    }
+                    batch.add(record);
+                    this.queue.drainTo(batch, this.batchSize - batch.size());
+                    batch.removeIf(r -> r == STOP);
+                }
+                if (batch.size() >= this.batchSize 
+                        || (!batch.isEmpty() && System.currentTimeMillis() >= deadline)) {
+                    this.send(TrialCodec.encode(batch), batch.size());
+                    batch.clear();
+                } else if (batch.isEmpty() && this.spoolFile.exists()) {
+                    this.sendSpool();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        batch.addAll(this.queue);
+        this.queue.clear();
+        batch.removeIf(r -> r == STOP);
+        if (!batch.isEmpty()) {
+            this.spool(TrialCodec.encode(batch), batch.size());
+        }
+        this.disconnect();
+    }
+    
+    /**
+     * Send a frame, after anything spooled so the collector gets frames in order.
+     * Spools the frame if the collector cannot be reached.
+     * @param frame The frame.
+     * @param count Number of records in the frame.
+     */
+    private void send(byte frame[], int count) {
+        if (this.spoolFile.exists() && !this.sendSpool()) {
+            this.spool(frame, count);
+            return;
+        }
+        if (!this.trySend(frame, count)) {
+            this.spool(frame, count);
+        }
+    }
+    
+    /**
+     * Send one frame and wait for it to be acknowledged.
+     * @param frame The frame.
+     * @param count Number of records in the frame.
+     * @return true if the collector has written the records.
+     */
+    private boolean trySend(byte frame[], int count) {
+        if (!this.connect()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            this.out.write(frame);
+            this.out.flush();
+            int acknowledged = this.in.readInt();
+            if (acknowledged != count) {
+                throw new IOException("Collector acknowledged " + acknowledged + " of " + count + " records");
+            }
+        } catch (IOException e) {
+            logger.warn("Sending to collector failed: " + e.getMessage());
+            this.fail();
+            return false;
+        }
+        this.sendNanos += System.nanoTime() - start;
+        this.recordsSent += count;
+        this.bytesSent += frame.length;
+        return true;
+    }
+    
+    /**
+     * Send the frames in the spool file. Frames that were not acknowledged 
+     * are kept in the spool, so none is lost; one that reached the collector 
+     * but whose acknowledgement did not is sent again.
+     * @return true if the spool is now empty.
+     */
+    private boolean sendSpool() {
+        if (!this.connect()) {
+            return false;
+        }
+        List<byte[]> frames = new ArrayList<byte[]>();
+        List<Integer> counts = new ArrayList<Integer>();
+        try {
+            byte bytes[] = Files.readAllBytes(this.spoolFile.toPath());
+            DataInputStream spooled = new DataInputStream(new ByteArrayInputStream(bytes));
+            int offset = 0;
+            List<TrialRecord> records;
+            while ((records = TrialCodec.decode(spooled)) != null) {
+                int length = TrialCodec.FRAME_OVERHEAD + records.size() * TrialCodec.RECORD_SIZE;
+                byte frame[] = new byte[length];
+                System.arraycopy(bytes, offset, frame, 0, length);
+                frames.add(frame);
+                counts.add(records.size());
+                offset += length;
+            }
+        } catch (IOException e) {
+            logger.error("Spool file " + this.spoolFile + " is corrupt after " + frames.size() 
+                    + " frames, setting it aside: " + e.getMessage());
+            this.spoolFile.renameTo(new File(this.spoolFile.getPath() + ".corrupt." + System.currentTimeMillis()));
+        }
+        
+        int sent = 0;
+        while (sent < frames.size() && this.trySend(frames.get(sent), counts.get(sent))) {
+            sent++;
+        }
+        if (sent > 0) {
+            logger.info("Sent " + sent + " spooled frames to the collector");
+        }
+        try {
+            if (sent == frames.size()) {
+                Files.deleteIfExists(this.spoolFile.toPath());
+                return true;
+            }
+            File remaining = new File(this.spoolFile.getPath() + ".tmp");
+            try (OutputStream rest = new BufferedOutputStream(new FileOutputStream(remaining))) {
+                for (int i = sent; i < frames.size(); i++) {
+                    rest.write(frames.get(i));
+                }
+            }
+            Files.move(remaining.toPath(), this.spoolFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Could not rewrite spool file " + this.spoolFile, e);
+        }
+        return false;
+    }
+    
+    /**
+     * Append a frame to the spool file.
+     * @param frame The frame.
+     * @param count Number of records in the frame.
+     */
+    private void spool(byte frame[], int count) {
+        try (OutputStream spool = new FileOutputStream(this.spoolFile, true)) {
+            spool.write(frame);
+            this.recordsSpooled += count;
+            logger.info("Spooled " + count + " records to " + this.spoolFile);
+        } catch (IOException e) {
+            logger.error("Could not spool " + count + " records", e);
+        }
+    }
+    
+    /**
+     * Connect to the collector if not connected, unless the last attempt failed 
+     * within RETRY_INTERVAL.
+     * @return true if connected.
+     */
+    private boolean connect() {
+        if (this.socket != null) {
+            return true;
+        }
+        if (this.lastFailure != 0 && System.currentTimeMillis() - this.lastFailure < RETRY_INTERVAL) {
+            return false;
+        }
+        Socket connection = new Socket();
+        try {
+            connection.connect(this.collector, CONNECT_TIMEOUT);
+            connection.setSoTimeout(ACK_TIMEOUT);
+            connection.setTcpNoDelay(true);
+            this.out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            this.in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            this.socket = connection;
+            this.lastFailure = 0;
+            logger.info("Connected to collector " + this.collector);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Collector " + this.collector + " unavailable: " + e.getMessage());
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+            }
+            this.lastFailure = System.currentTimeMillis();
+            return false;
+        }
+    }
+    
+    private void fail() {
+        this.disconnect();
+        this.lastFailure = System.currentTimeMillis();
+    }
+    
+    private void disconnect() {
+        if (this.socket != null) {
+            try {
+                this.socket.close();
+            } catch (IOException ignored) {
+            }
+            this.socket = null;
+            this.out = null;
+            this.in = null;
+        }
+    }
+    
+    /**
+     * Stop sending. Records not yet sent are spooled for the next run.
+     * The sender thread is woken rather than interrupted, because an 
+     * interrupt would close the spool file in the middle of reading it, 
+     * and the spool would be set aside as corrupt.
+     */
+    public void close() {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        this.queue.offer(STOP);
+        try {
+            this.sender.join(ACK_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info(this.report());
+    }
+    
+    /**
+     * Report what has been sent.
+     * @return String with records and bytes sent and the throughput while sending.
+     */
+    public String report() {
+        double seconds = this.sendNanos / 1000000000.0;
+        return "Station " + this.station + " sent " + this.recordsSent + " records (" 
+                + this.bytesSent + " bytes), spooled " + this.recordsSpooled + ", " 
+                + (seconds > 0 ? String.format("%.0f records/s", this.recordsSent / seconds) : "-")
+                + " while sending";
+    }
+    
+    /**
+     * Get the number of records waiting to be sent. Safe to call from any thread.
+     * @return Number of records queued.
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+    
+    public int getStation() {
+        return station;
+    }
+}
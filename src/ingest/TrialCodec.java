@@ -0,0 +1,134 @@
+package ingest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary framing of trial records between stations and the collector.
+ * 
+ * A frame is:
+ *  -int MAGIC
+ *  -short number of records
+ *  -the records, RECORD_SIZE bytes each, big-endian
+ *  -int CRC32 of the records
+ * 
+ * After each frame the collector answers with an int: the number of records
+ * it has written. Frames are self-delimiting, so the spool of a station is 
+ * just frames one after another.
+ * 
+ */
+public final class TrialCodec {
+    
+    /** "LTR1": letter trial records, version 1. */
+    public static final int MAGIC = 0x4C545231;
+    
+    /** Bytes per record. */
+    public static final int RECORD_SIZE = 40;
+    
+    /** Bytes of a frame besides its records. */
+    public static final int FRAME_OVERHEAD = 4 + 2 + 4;
+    
+    /** Most records in one frame. */
+    public static final int MAX_RECORDS = Short.MAX_VALUE;
+    
+    private TrialCodec() {
+    }
+    
+    /**
+     * Encode records into one frame.
+     * @param records At most MAX_RECORDS records.
+     * @return The frame.
+     */
+    public static byte[] encode(List<TrialRecord> records) {
+        if (records.size() > MAX_RECORDS) {
+            throw new IllegalArgumentException("Too many records for one frame: " + records.size());
+        }
+        ByteBuffer payload = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+        for (TrialRecord record : records) {
+            payload.putInt(record.getStation());
+            payload.putInt(record.getSubjectID());
+            payload.putShort((short) record.getSubjectAge());
+            payload.put(record.getGender());
+            payload.putInt(record.getRound());
+            payload.put((byte) record.getLetterOne());
+            payload.put((byte) record.getLetterTwo());
+            payload.put((byte) ((record.isLeftCorrect() ? 1 : 0) | (record.isCorrect() ? 2 : 0)));
+            payload.put((byte) record.getDifficultyMode());
+            payload.put((byte) record.getDistance());
+            payload.putShort((short) record.getFontSizeOne());
+            payload.putShort((short) record.getFontSizeTwo());
+            payload.putLong(record.getResponseTime());
+            payload.putLong(record.getTimestamp());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(FRAME_OVERHEAD + payload.capacity());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(records.size());
+            out.write(payload.array());
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Read one frame.
+     * @param in Stream positioned at the start of a frame.
+     * @return The records of the frame, or null if the stream ended before the frame.
+     * @throws IOException If the frame is cut short or corrupt.
+     */
+    public static List<TrialRecord> decode(DataInputStream in) throws IOException {
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (magic != MAGIC) {
+            throw new IOException("Bad frame magic: " + Integer.toHexString(magic));
+        }
+        int count = in.readUnsignedShort();
+        byte payloadBytes[] = new byte[count * RECORD_SIZE];
+        in.readFully(payloadBytes);
+        int checksum = in.readInt();
+        CRC32 crc = new CRC32();
+        crc.update(payloadBytes);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Frame checksum mismatch");
+        }
+        
+        ByteBuffer payload = ByteBuffer.wrap(payloadBytes);
+        List<TrialRecord> records = new ArrayList<TrialRecord>(count);
+        for (int i = 0; i < count; i++) {
+            int station = payload.getInt();
+            int subjectID = payload.getInt();
+            int subjectAge = payload.getShort();
+            byte gender = payload.get();
+            int round = payload.getInt();
+            char letterOne = (char) payload.get();
+            char letterTwo = (char) payload.get();
+            byte flags = payload.get();
+            int difficultyMode = payload.get();
+            int distance = payload.get();
+            int fontSizeOne = payload.getShort();
+            int fontSizeTwo = payload.getShort();
+            long responseTime = payload.getLong();
+            long timestamp = payload.getLong();
+            records.add(new TrialRecord(station, subjectID, subjectAge, gender, round, 
+                    letterOne, letterTwo, (flags & 1) != 0, (flags & 2) != 0, 
+                    difficultyMode, distance, fontSizeOne, fontSizeTwo, responseTime, timestamp));
+        }
+        return records;
+    }
+}
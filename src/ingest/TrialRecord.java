@@ -0,0 +1,187 @@
+package ingest;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import controller.DataWriter;
+import model.AlphaPair;
+import model.Player;
+
+/**
+ * One trial of one subject as sent from a station to the collector. 
+ * Holds only primitives, so it encodes to a fixed number of bytes.
+ * 
+ * Classes Related To:
+ *  -TrialCodec.java
+ *      -Encodes and decodes records in frames.
+ *  -NetworkSink.java
+ *      -Sends records from a station.
+ *  -Collector.java
+ *      -Receives records and writes them to CSV.
+ * 
+ */
+public final class TrialRecord {
+    
+    /** Value of gender when the subject's gender is not known. */
+    public static final byte GENDER_UNKNOWN = -1;
+    
+    /** Column names of toCSV(), matching the columns of DataWriter where they overlap. */
+    public static final String CSV_HEADER = "Station" + DataWriter.DELIMITER
+            + DataWriter.SUBJECT_ID + DataWriter.DELIMITER
+            + DataWriter.SUBJECT_AGE + DataWriter.DELIMITER
+            + DataWriter.SUBJECT_GENDER + DataWriter.DELIMITER
+            + DataWriter.LEFT_CHOICE + DataWriter.DELIMITER
+            + DataWriter.RIGHT_CHOICE + DataWriter.DELIMITER
+            + DataWriter.WHICH_SIDE_CORRECT + DataWriter.DELIMITER
+            + DataWriter.IS_CORRECT + DataWriter.DELIMITER
+            + DataWriter.DIFFICULTY + DataWriter.DELIMITER
+            + DataWriter.DISTANCE + DataWriter.DELIMITER
+            + DataWriter.LEFT_CHOICE_SIZE + DataWriter.DELIMITER
+            + DataWriter.RIGHT_CHOICE_SIZE + DataWriter.DELIMITER
+            + DataWriter.RESPONSE_TIME + DataWriter.DELIMITER
+            + DataWriter.DATE_TIME + DataWriter.DELIMITER
+            + DataWriter.CONSECUTIVE_ROUND + "\n";
+    
+    private final int station;
+    private final int subjectID;
+    private final int subjectAge;
+    /** Ordinal of Player.Gender, or GENDER_UNKNOWN. */
+    private final byte gender;
+    /** Number of the round within the assessment, from 1. */
+    private final int round;
+    private final char letterOne;
+    private final char letterTwo;
+    private final boolean leftCorrect;
+    private final boolean correct;
+    private final int difficultyMode;
+    /** Distance between the letters in the alphabet. */
+    private final int distance;
+    private final int fontSizeOne;
+    private final int fontSizeTwo;
+    /** Response time in nanoseconds. */
+    private final long responseTime;
+    /** Time the trial was recorded, in milliseconds since the epoch. */
+    private final long timestamp;
+    
+    public TrialRecord(int station, int subjectID, int subjectAge, byte gender, int round, 
+            char letterOne, char letterTwo, boolean leftCorrect, boolean correct, 
+            int difficultyMode, int distance, int fontSizeOne, int fontSizeTwo, 
+            long responseTime, long timestamp) {
+        this.station = station;
+        this.subjectID = subjectID;
+        this.subjectAge = subjectAge;
+        this.gender = gender;
+        this.round = round;
+        this.letterOne = letterOne;
+        this.letterTwo = letterTwo;
+        this.leftCorrect = leftCorrect;
+        this.correct = correct;
+        this.difficultyMode = difficultyMode;
+        this.distance = distance;
+        this.fontSizeOne = fontSizeOne;
+        this.fontSizeTwo = fontSizeTwo;
+        this.responseTime = responseTime;
+        this.timestamp = timestamp;
+    }
+    
+    /**
+     * Make a record of the most recent trial of a player.
+     * @param station Number of the station the trial was run on.
+     * @param player The subject, after the trial has been recorded.
+     * @param pair The pair of the trial.
+     * @return The record.
+     */
+    public static TrialRecord of(int station, Player player, AlphaPair pair) {
+        byte gender = player.getSubjectGender() == null 
+                ? GENDER_UNKNOWN : (byte) player.getSubjectGender().ordinal();
+        return new TrialRecord(station, player.getSubjectID(), player.getSubjectAge(), gender, 
+                player.getNumRounds(), pair.getLetterOne(), pair.getLetterTwo(), 
+                pair.isLeftCorrect(), player.isRight(), pair.getDifficultyMode(), 
+                Math.abs(pair.getDifference()), pair.getFontSizeOne(), pair.getFontSizeTwo(), 
+                player.getRT(), System.currentTimeMillis());
+    }
+    
+    /**
+     * Format the record as a line of CSV, see CSV_HEADER.
+     * @return The line, ending in a newline.
+     */
+    public String toCSV() {
+        String d = DataWriter.DELIMITER;
+        return this.station + d
+                + this.subjectID + d
+                + this.subjectAge + d
+                + (this.gender == GENDER_UNKNOWN ? "" : Player.Gender.values()[this.gender].toString()) + d
+                + this.letterOne + d
+                + this.letterTwo + d
+                + (this.leftCorrect ? "left" : "right") + d
+                + (this.correct ? "yes" : "no") + d
+                + DataWriter.difficultyText(this.distance) + d
+                + this.distance + d
+                + this.fontSizeOne + d
+                + this.fontSizeTwo + d
+                + this.responseTime / 1000000000.0 + d
+                + LocalDateTime.ofInstant(Instant.ofEpochMilli(this.timestamp), ZoneId.systemDefault()) + d
+                + this.round + "\n";
+    }
+
+    public int getStation() {
+        return station;
+    }
+
+    public int getSubjectID() {
+        return subjectID;
+    }
+
+    public int getSubjectAge() {
+        return subjectAge;
+    }
+
+    public byte getGender() {
+        return gender;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public char getLetterOne() {
+        return letterOne;
+    }
+
+    public char getLetterTwo() {
+        return letterTwo;
+    }
+
+    public boolean isLeftCorrect() {
+        return leftCorrect;
+    }
+
+    public boolean isCorrect() {
+        return correct;
+    }
+
+    public int getDifficultyMode() {
+        return difficultyMode;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    public int getFontSizeOne() {
+        return fontSizeOne;
+    }
+
+    public int getFontSizeTwo() {
+        return fontSizeTwo;
+    }
+
+    public long getResponseTime() {
+        return responseTime;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
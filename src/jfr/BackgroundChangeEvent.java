@@ -0,0 +1,21 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The background changed after the subject earned enough stars.
+ * 
+ */
+@Name("lettergame.BackgroundChange")
+@Label("Background Change")
+@Description("The background and font colors changed")
+public class BackgroundChangeEvent extends TrialEvent {
+    
+    @Label("Background")
+    public int background;
+    
+    @Label("Stars")
+    public int stars;
+}
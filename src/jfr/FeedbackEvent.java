@@ -0,0 +1,18 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The feedback sound of a response was started.
+ * 
+ */
+@Name("lettergame.Feedback")
+@Label("Feedback Played")
+@Description("The feedback sound of a response was started")
+public class FeedbackEvent extends TrialEvent {
+    
+    @Label("Correct")
+    public boolean correct;
+}
@@ -0,0 +1,22 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The wait between rounds: starts when it is scheduled after a response and 
+ * ends when its callback runs on the FX thread, just before the next onset.
+ * The trial fields are those of the response before the wait.
+ * 
+ */
+@Name("lettergame.Isi")
+@Label("Inter-Trial Interval")
+@Description("Wait between a response and the next onset")
+public class IsiEvent extends TrialEvent {
+    
+    @Label("Requested")
+    @Timespan(Timespan.MILLISECONDS)
+    public long requested;
+}
@@ -0,0 +1,24 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The subject responded to a pair. The duration is the handling of the 
+ * response, from scoring to export.
+ * 
+ */
+@Name("lettergame.Response")
+@Label("Response Received")
+@Description("The subject pressed F or J while a pair was shown")
+public class ResponseEvent extends TrialEvent {
+    
+    @Label("Response Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long responseTime;
+    
+    @Label("Correct")
+    public boolean correct;
+}
@@ -0,0 +1,21 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A pair was shown. The duration is the swap of the staged pair.
+ * 
+ */
+@Name("lettergame.StimulusOnset")
+@Label("Stimulus Onset")
+@Description("The staged pair was swapped in")
+public class StimulusOnsetEvent extends TrialEvent {
+    
+    @Label("Left Letter")
+    public char leftLetter;
+    
+    @Label("Right Letter")
+    public char rightLetter;
+}
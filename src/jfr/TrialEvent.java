@@ -0,0 +1,49 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Fields shared by the Flight Recorder events of the trial loop, so every 
+ * event can be lined up with its subject and trial in JDK Mission Control.
+ * 
+ * Events follow the usual pattern: create, begin() and end() around the work
+ * if it has a duration, and only fill in and commit if shouldCommit(). When no 
+ * recording is running shouldCommit() is false and the JIT removes the event 
+ * altogether.
+ * 
+ * Classes Related To:
+ *  -LetterGameController.java (controller)
+ *      -Emits the events.
+ * 
+ */
+@Category({"Letter Game", "Trial"})
+public abstract class TrialEvent extends Event {
+    
+    @Label("Subject ID")
+    int subjectID;
+    
+    @Label("Phase")
+    @Description("practice or assessment")
+    String phase;
+    
+    @Label("Trial Index")
+    @Description("Number of the trial within its phase, from 1")
+    int trialIndex;
+    
+    @Label("Difficulty")
+    @Description("Difficulty mode of the pair, see AlphaPairGenerator")
+    int difficulty;
+    
+    /**
+     * Set the fields shared by every trial event.
+     */
+    public void setTrial(int subjectID, String phase, int trialIndex, int difficulty) {
+        this.subjectID = subjectID;
+        this.phase = phase;
+        this.trialIndex = trialIndex;
+        this.difficulty = difficulty;
+    }
+}
@@ -0,0 +1,15 @@
+package jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A trial was written to the CSV file, and queued to the collector if enabled.
+ * 
+ */
+@Name("lettergame.TrialExport")
+@Label("Row Exported")
+@Description("A trial was written to the subject's CSV file")
+public class TrialExportEvent extends TrialEvent {
+}
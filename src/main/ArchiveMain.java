@@ -0,0 +1,107 @@
+package main;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.log4j.BasicConfigurator;
+
+import archive.SessionArchive;
+
+/**
+ *
+ * Packs finished sessions into a SessionArchive, and lists, extracts and
+ * verifies what has been packed.
+ *
+ * Usage: ArchiveMain archiveDir command ...
+ *  pack [resultsDir] [--quiet minutes] [--segment-mb size] [--remove]
+ *      Packs every session of resultsDir (results_letters by default) whose
+ *      folder has not changed for the given minutes (60 by default). With
+ *      --remove each folder that is archived, now or before, is deleted
+ *      once its archived copy verifies, unless its files differ from it.
+ *  list
+ *      Lists every archived session.
+ *  extract subjectID [outDir]
+ *      Writes the subject's files to outDir (results_letters/subjectID by default).
+ *  verify [threads]
+ *      Checks every archived session, on as many threads as processors by default.
+ *
+ * The exit code is 1 if verify finds a corrupt session or extract finds no
+ * such subject.
+ *
+ */
+public class ArchiveMain {
+
+    /** Minutes since a session's folder last changed for it to be packed, when none is given. */
+    static final long DEFAULT_QUIET_MINUTES = 60;
+
+    static final String USAGE = "Usage: ArchiveMain archiveDir pack [resultsDir] [--quiet minutes]"
+            + " [--segment-mb size] [--remove] | list | extract subjectID [outDir] | verify [threads]";
+
+    /**
+     * Main class.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        BasicConfigurator.configure();
+        SessionArchive archive = new SessionArchive(new File(args[0]));
+        switch (args[1]) {
+        case "pack":
+            File resultsDir = new File("results_letters");
+            long quietMinutes = DEFAULT_QUIET_MINUTES;
+            long maxSegment = SessionArchive.DEFAULT_MAX_SEGMENT;
+            boolean remove = false;
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("--quiet")) {
+                    quietMinutes = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--segment-mb")) {
+                    maxSegment = Long.parseLong(args[++i]) << 20;
+                } else if (args[i].equals("--remove")) {
+                    remove = true;
+                } else {
+                    resultsDir = new File(args[i]);
+                }
+            }
+            SessionArchive.PackResult result = archive.pack(resultsDir, quietMinutes * 60000L, maxSegment, remove);
+            for (String skipped : result.getSkipped()) {
+                System.out.println("Skipped " + skipped);
+            }
+            System.out.println(result);
+            break;
+        case "list":
+            for (SessionArchive.Entry entry : archive.getEntries()) {
+                System.out.println(entry);
+            }
+            System.out.println(archive.getEntries().size() + " sessions in "
+                    + archive.getSegments().size() + " segments");
+            break;
+        case "extract":
+            if (args.length < 3) {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            File outDir = args.length > 3 ? new File(args[3]) : new File("results_letters", args[2]);
+            int written = archive.extract(args[2], outDir);
+            System.out.println("Extracted " + written + " files to " + outDir);
+            System.exit(written > 0 ? 0 : 1);
+            break;
+        case "verify":
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            long start = System.nanoTime();
+            List<String> failures = archive.verifyAll(threads);
+            for (String failure : failures) {
+                System.out.println("FAILED " + failure);
+            }
+            System.out.printf("Verified %d sessions on %d threads in %.1f ms, %d failed%n",
+                    archive.getEntries().size(), threads, (System.nanoTime() - start) / 1e6, failures.size());
+            System.exit(failures.isEmpty() ? 0 : 1);
+            break;
+        default:
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.BasicConfigurator;
+
+import analytics.BootstrapEngine;
+import analytics.Trials;
+
+/**
+ *
+ * Computes bootstrap confidence intervals of the metrics of every subject and
+ * of the cohort, and writes them as a table, see BootstrapEngine.
+ *
+ * Usage: BootstrapMain [resultsDir | cohort.lgc] [out.csv] [--replicates n] [--confidence c]
+ *                      [--seed s] [--threads n] [--by gender|age]
+ *
+ * By default results_letters is bootstrapped to bootstrap_intervals.csv with
+ * 1000 replicates, 95% intervals and a fixed seed, on one thread per
+ * processor. The same seed gives the same intervals on any number of threads.
+ * --by adds a group for each gender or age to the group of all subjects.
+ *
+ */
+public class BootstrapMain {
+
+    /**
+     * Main class.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        File in = new File("results_letters");
+        File out = new File("bootstrap_intervals.csv");
+        int replicates = BootstrapEngine.DEFAULT_REPLICATES;
+        double confidence = BootstrapEngine.DEFAULT_CONFIDENCE;
+        long seed = BootstrapEngine.DEFAULT_SEED;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String by = null;
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "--replicates":
+                replicates = Integer.parseInt(args[++i]);
+                break;
+            case "--confidence":
+                confidence = Double.parseDouble(args[++i]);
+                break;
+            case "--seed":
+                seed = Long.parseLong(args[++i]);
+                break;
+            case "--threads":
+                threads = Integer.parseInt(args[++i]);
+                break;
+            case "--by":
+                by = args[++i];
+                break;
+            default:
+                if (positional++ == 0) {
+                    in = new File(args[i]);
+                } else {
+                    out = new File(args[i]);
+                }
+            }
+        }
+        BasicConfigurator.configure();
+        if (!in.exists()) {
+            System.err.println(in + " does not exist");
+            System.exit(2);
+        }
+
+        List<Trials> subjects = Trials.loadAll(in);
+        Map<String, List<Trials>> groups = BootstrapEngine.groupBy(subjects, by);
+        BootstrapEngine engine = new BootstrapEngine(threads, replicates, confidence, seed);
+        long start = System.nanoTime();
+        List<BootstrapEngine.Interval> intervals = engine.run(subjects, groups);
+        BootstrapEngine.writeIntervals(intervals, out);
+        System.out.printf("Bootstrapped %d subjects and %d groups to %s in %.1f ms on %d threads%n",
+                subjects.size(), groups.size(), out, (System.nanoTime() - start) / 1e6, engine.getThreads());
+    }
+}
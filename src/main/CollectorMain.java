@@ -0,0 +1,32 @@
+package main;
+
+import java.io.File;
+
+import org.apache.log4j.BasicConfigurator;
+
+import ingest.Collector;
+
+/**
+ * 
+ * Runs the collector that gathers the trials of every station in a lab.
+ * 
+ * Usage: CollectorMain [port] [output folder]
+ * Defaults to port 5405 and the folder results_collector.
+ *
+ */
+public class CollectorMain {
+
+    /**
+     * Main class.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        BasicConfigurator.configure();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Collector.DEFAULT_PORT;
+        File outputDir = new File(args.length > 1 ? args[1] : "results_collector");
+        Collector collector = new Collector(port, outputDir);
+        Runtime.getRuntime().addShutdownHook(new Thread(collector::close, "collector-shutdown"));
+        collector.start();
+        Thread.currentThread().join();
+    }
+}
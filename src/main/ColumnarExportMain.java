@@ -0,0 +1,189 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.BasicConfigurator;
+
+import analytics.CohortExporter;
+import analytics.ColumnarFormat;
+import analytics.ColumnarReader;
+
+/**
+ *
+ * Exports a results tree to a columnar file, see ColumnarFormat.
+ *
+ * Usage: ColumnarExportMain [resultsDir] [out.lgc] [--bench [repetitions]]
+ *
+ * By default results_letters is exported to results_letters.lgc. With --bench
+ * the time to load the cohort into typed columns is then compared between the
+ * CSV files and the columnar file, and so are their sizes. Each load is run
+ * the given number of times (5 by default) and the median is reported.
+ *
+ */
+public class ColumnarExportMain {
+
+    /** Number of times each load is run when none is given. */
+    static final int DEFAULT_REPETITIONS = 5;
+
+    /**
+     * Main class.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        File resultsDir = new File("results_letters");
+        File out = new File("results_letters.lgc");
+        int repetitions = 0;
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--bench")) {
+                repetitions = DEFAULT_REPETITIONS;
+                if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                    repetitions = Integer.parseInt(args[++i]);
+                }
+            } else if (positional++ == 0) {
+                resultsDir = new File(args[i]);
+            } else {
+                out = new File(args[i]);
+            }
+        }
+        BasicConfigurator.configure();
+        if (!resultsDir.isDirectory()) {
+            System.err.println(resultsDir + " is not a directory");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        int subjects = CohortExporter.export(resultsDir, out);
+        System.out.printf("Exported %d subjects to %s in %.1f ms%n",
+                subjects, out, (System.nanoTime() - start) / 1e6);
+        if (repetitions > 0) {
+            bench(resultsDir, out, repetitions);
+        }
+    }
+
+    /**
+     * Compare loading the cohort from the CSV files and from the columnar file.
+     * @param resultsDir The results tree.
+     * @param lgc The columnar file.
+     * @param repetitions Number of times each load is run.
+     */
+    private static void bench(File resultsDir, File lgc, int repetitions) throws IOException {
+        List<File> csvFiles = CohortExporter.findResults(resultsDir);
+        long csvBytes = 0;
+        for (File file : csvFiles) {
+            csvBytes += file.length();
+        }
+        long csvTimes[] = new long[repetitions];
+        long lgcTimes[] = new long[repetitions];
+        long csvRows = 0;
+        long lgcRows = 0;
+        // Alternated, so neither load always runs with a warmer JIT or page cache.
+        for (int r = 0; r < repetitions; r++) {
+            long start = System.nanoTime();
+            csvRows = loadCSV(csvFiles);
+            csvTimes[r] = System.nanoTime() - start;
+            start = System.nanoTime();
+            lgcRows = loadColumnar(lgc);
+            lgcTimes[r] = System.nanoTime() - start;
+        }
+        if (csvRows != lgcRows) {
+            System.err.println("Row counts differ: " + csvRows + " in the CSV files, " + lgcRows + " in " + lgc);
+        }
+        double csvMedian = median(csvTimes) / 1e6;
+        double lgcMedian = median(lgcTimes) / 1e6;
+        System.out.printf("%-8s %10s %12s %12s%n", "Format", "Rows", "Bytes", "Load (ms)");
+        System.out.printf("%-8s %10d %12d %12.1f%n", "CSV", csvRows, csvBytes, csvMedian);
+        System.out.printf("%-8s %10d %12d %12.1f%n", "Columnar", lgcRows, lgc.length(), lgcMedian);
+        System.out.printf("Columnar is %.1fx smaller and loads %.1fx faster (median of %d)%n",
+                (double) csvBytes / Math.max(1, lgc.length()), csvMedian / Math.max(1e-6, lgcMedian), repetitions);
+    }
+
+    /**
+     * Load every CSV file into typed columns, as an analyst's script would:
+     * numbers are parsed and categorical fields are kept as strings. A file
+     * that cannot be read is skipped, as the export skips it.
+     * @param files The results files.
+     * @return Number of trials loaded.
+     */
+    private static long loadCSV(List<File> files) throws IOException {
+        long rows = 0;
+        for (File file : files) {
+            List<String[]> trials;
+            try {
+                trials = CohortExporter.readTrials(file);
+            } catch (IOException e) {
+                // Skipped by the export too.
+                continue;
+            }
+            Object columns[] = new Object[ColumnarFormat.numColumns()];
+            for (int c = 0; c < columns.length; c++) {
+                switch (ColumnarFormat.TYPES[c]) {
+                case INT:
+                    int ints[] = new int[trials.size()];
+                    for (int i = 0; i < ints.length; i++) {
+                        ints[i] = Integer.parseInt(trials.get(i)[c]);
+                    }
+                    columns[c] = ints;
+                    break;
+                case LONG:
+                    long longs[] = new long[trials.size()];
+                    for (int i = 0; i < longs.length; i++) {
+                        longs[i] = ColumnarFormat.parseDateTime(trials.get(i)[c]);
+                    }
+                    columns[c] = longs;
+                    break;
+                case DOUBLE:
+                    double doubles[] = new double[trials.size()];
+                    for (int i = 0; i < doubles.length; i++) {
+                        doubles[i] = Double.parseDouble(trials.get(i)[c]);
+                    }
+                    columns[c] = doubles;
+                    break;
+                case BOOLEAN:
+                    boolean booleans[] = new boolean[trials.size()];
+                    for (int i = 0; i < booleans.length; i++) {
+                        booleans[i] = ColumnarFormat.parseBoolean(trials.get(i)[c]);
+                    }
+                    columns[c] = booleans;
+                    break;
+                case DICTIONARY:
+                    String strings[] = new String[trials.size()];
+                    for (int i = 0; i < strings.length; i++) {
+                        strings[i] = trials.get(i)[c];
+                    }
+                    columns[c] = strings;
+                    break;
+                }
+            }
+            rows += trials.size();
+        }
+        return rows;
+    }
+
+    /**
+     * Load every row group of a columnar file.
+     * @param lgc The columnar file.
+     * @return Number of trials loaded.
+     */
+    private static long loadColumnar(File lgc) throws IOException {
+        long rows = 0;
+        try (ColumnarReader reader = new ColumnarReader(lgc)) {
+            for (int g = 0; g < reader.getNumGroups(); g++) {
+                rows += reader.readGroup(g).getNumRows();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return The median of the times.
+     */
+    private static double median(long times[]) {
+        long sorted[] = times.clone();
+        Arrays.sort(sorted);
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2.0;
+    }
+}
@@ -0,0 +1,98 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.log4j.BasicConfigurator;
+
+import analytics.FitEngine;
+
+/**
+ *
+ * Fits the psychometric functions of every subject and of the cohort, and
+ * writes them as a summary table, see FitEngine.
+ *
+ * Usage: FitMain [resultsDir | cohort.lgc] [out.csv] [--threads n] [--bench]
+ *
+ * By default results_letters is fitted to psychometric_fits.csv, on one
+ * thread per processor. The input may be a results tree or a columnar file
+ * written by ColumnarExportMain. With --bench the fits are then timed on 1,
+ * 2, 4, ... threads up to the given number, and the subjects fitted per
+ * second of each are printed.
+ *
+ */
+public class FitMain {
+
+    /**
+     * Main class.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        File in = new File("results_letters");
+        File out = new File("psychometric_fits.csv");
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean bench = false;
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--bench")) {
+                bench = true;
+            } else if (positional++ == 0) {
+                in = new File(args[i]);
+            } else {
+                out = new File(args[i]);
+            }
+        }
+        BasicConfigurator.configure();
+        if (!in.exists()) {
+            System.err.println(in + " does not exist");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        List<FitEngine.Row> rows = fit(new FitEngine(threads), in);
+        FitEngine.writeSummary(rows, out);
+        System.out.printf("Fitted %d subjects to %s in %.1f ms on %d threads%n",
+                rows.size() - 1, out, (System.nanoTime() - start) / 1e6, threads);
+        if (bench) {
+            bench(in, threads);
+        }
+    }
+
+    /**
+     * Fit a results tree or a columnar file.
+     */
+    private static List<FitEngine.Row> fit(FitEngine engine, File in) throws IOException {
+        return in.isDirectory() ? engine.fitResults(in) : engine.fitColumnar(in);
+    }
+
+    /**
+     * Time the fits on a growing number of threads.
+     * @param in The results tree or columnar file.
+     * @param maxThreads Most threads to time.
+     */
+    private static void bench(File in, int maxThreads) throws IOException {
+        org.apache.log4j.Logger.getRootLogger().setLevel(org.apache.log4j.Level.WARN);
+        System.out.printf("%-8s %12s %14s %9s%n", "Threads", "Time (ms)", "Subjects/s", "Speedup");
+        double single = 0;
+        for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads && threads * 2 > maxThreads
+                ? maxThreads : threads * 2) {
+            FitEngine engine = new FitEngine(threads);
+            // Once to warm up the JIT and the page cache, then timed.
+            fit(engine, in);
+            long start = System.nanoTime();
+            int subjects = fit(engine, in).size() - 1;
+            double millis = (System.nanoTime() - start) / 1e6;
+            if (threads == 1) {
+                single = millis;
+            }
+            System.out.printf("%-8d %12.1f %14.1f %8.2fx%n", threads, millis, subjects / (millis / 1000),
+                    single / millis);
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+    }
+}
@@ -2,6 +2,9 @@ package main;
 
 import org.apache.log4j.BasicConfigurator;
 
+import model.AlphaPairGenerator;
+import util.StartupProfiler;
+import view.Assets;
 import view.GameGUI;
 import javafx.application.Application;
 import javafx.stage.Stage;
@@ -24,12 +27,24 @@ public class LettersMain extends Application {
     * @param args command line arguments
      */
     public static void main(String[] args) {
+        StartupProfiler profiler = StartupProfiler.getInstance();
         BasicConfigurator.configure();
+        profiler.mark("log4j");
         launch(args);
     }
 
+    /**
+     * Start decoding the images and building the generator tables in the background,
+     * then build the login screen. The controller loads the configuration in the
+     * background as well. The startup report is logged once all of it is done.
+     */
     @Override
     public void start(Stage primaryStage) throws Exception {
+        StartupProfiler profiler = StartupProfiler.getInstance();
+        profiler.mark("javafx launch");
+        profiler.submit("assets", Assets::preload);
+        profiler.submit("generator tables", AlphaPairGenerator::buildTables);
         new GameGUI(primaryStage);
+        profiler.reportWhenDone();
     }
 }
@@ -0,0 +1,107 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.log4j.BasicConfigurator;
+
+import model.AlphaPairGenerator;
+import view.Assets;
+import view.GameGUI;
+import view.RenderLatencyHarness;
+import view.StimulusRenderer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.stage.Stage;
+
+/**
+ *
+ * Measures the onset latency of each stimulus renderer with RenderLatencyHarness
+ * and prints one line per renderer, so rendering changes can be compared.
+ *
+ * Usage: RenderLatencyMain [trials] [--headless]
+ *
+ * Runs under the software pipeline unless prism.order is set. With --headless
+ * it runs on the headless Monocle platform, which needs openjfx-monocle on the
+ * class path; without it, run under a virtual display such as Xvfb instead.
+ *
+ */
+public class RenderLatencyMain {
+
+    /** Number of trials per renderer when none is given. */
+    static final int DEFAULT_TRIALS = 200;
+
+    /** Seed of the pairs, so every run shows the same pairs. */
+    static final long SEED = 20261019L;
+
+    /** Number of trials per renderer. */
+    private static int numTrials = DEFAULT_TRIALS;
+
+    /**
+     * Main class.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--headless")) {
+                System.setProperty("glass.platform", "Monocle");
+                System.setProperty("monocle.platform", "Headless");
+            } else {
+                numTrials = Integer.parseInt(arg);
+            }
+        }
+        if (System.getProperty("prism.order") == null) {
+            System.setProperty("prism.order", "sw");
+        }
+        BasicConfigurator.configure();
+        Application.launch(Harness.class, args);
+    }
+
+    /**
+     * Builds the game on a stage and runs the harness with each renderer in turn.
+     * Kept apart from RenderLatencyMain so the system properties are set before
+     * the JavaFX runtime starts.
+     */
+    public static class Harness extends Application {
+
+        private final List<RenderLatencyHarness.Result> results = new ArrayList<RenderLatencyHarness.Result>();
+
+        @Override
+        public void start(Stage primaryStage) throws Exception {
+            Assets.preload();
+            AlphaPairGenerator.buildTables();
+            Properties overrides = new Properties();
+            overrides.setProperty("replay.record", "false");
+            overrides.setProperty("jmx.enabled", "false");
+            overrides.setProperty("sink.enabled", "false");
+            GameGUI view = new GameGUI(primaryStage, overrides);
+            RenderLatencyHarness harness = new RenderLatencyHarness(view, numTrials, SEED);
+            String renderers[] = {StimulusRenderer.LABEL, StimulusRenderer.ATLAS};
+            // Deferred twice so the controller has set the configured renderer before the harness switches it.
+            view.getController().getConfigLoaded().thenRun(() -> Platform.runLater(
+                    () -> Platform.runLater(() -> this.run(harness, renderers, 0))));
+        }
+
+        /**
+         * Run the harness with a renderer, then with the next, then report.
+         * @param harness The harness.
+         * @param renderers The renderers to run.
+         * @param index Index of the renderer to run now.
+         */
+        private void run(RenderLatencyHarness harness, String renderers[], int index) {
+            if (index == renderers.length) {
+                System.out.println("Onset latency over " + numTrials + " trials per renderer:");
+                for (RenderLatencyHarness.Result result : this.results) {
+                    System.out.println(result);
+                }
+                Platform.exit();
+                return;
+            }
+            harness.run(renderers[index]).thenAccept(result -> {
+                this.results.add(result);
+                Platform.runLater(() -> this.run(harness, renderers, index + 1));
+            });
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package main;
+
+import java.io.File;
+
+import org.apache.log4j.BasicConfigurator;
+
+import replay.ReplayEngine;
+import replay.SessionRecording;
+import view.GameGUI;
+import javafx.application.Application;
+import javafx.stage.Stage;
+
+/**
+ * 
+ * Replays a session recorded by SessionRecorder.
+ * 
+ * Usage: ReplayMain recording [--realtime]
+ * 
+ * By default the recording is replayed headless, as fast as possible, and 
+ * the exit code is 0 if the trial output is identical to the recording.
+ * With --realtime the session is shown on screen at the recorded speed.
+ *
+ */
+public class ReplayMain {
+    
+    /** The recording to replay. */
+    private static SessionRecording recording;
+
+    /**
+     * Main class.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayMain recording [--realtime]");
+            System.exit(2);
+        }
+        BasicConfigurator.configure();
+        recording = SessionRecording.load(new File(args[0]));
+        if (args.length > 1 && args[1].equals("--realtime")) {
+            Application.launch(Viewer.class, args);
+            return;
+        }
+        ReplayEngine.Result result = new ReplayEngine(recording).run();
+        for (String mismatch : result.getMismatches()) {
+            System.out.println(mismatch);
+        }
+        System.out.println(result);
+        System.exit(result.isIdentical() ? 0 : 1);
+    }
+
+    /**
+     * Shows a replay at real speed. Kept apart from ReplayMain so a headless 
+     * replay does not need the JavaFX runtime.
+     */
+    public static class Viewer extends Application {
+        
+        /**
+         * Show the game with the recorded settings and replay the recording on it.
+         */
+        @Override
+        public void start(Stage primaryStage) throws Exception {
+            GameGUI view = new GameGUI(primaryStage, recording.getSettings());
+            view.startReplay(recording);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.log4j.BasicConfigurator;
+
+import report.CohortSummary;
+import report.HtmlReport;
+import report.ReportGenerator;
+import report.SessionSummary;
+
+/**
+ *
+ * Writes static HTML reports of a session or of a study, see ReportGenerator.
+ *
+ * Usage: ReportMain [resultsDir | results_n.csv] [out] [--pages] [--threads n]
+ *
+ * By default results_letters is reported to the directory report, as
+ * index.html with the whole cohort, on one thread per processor. With
+ * --pages a page per subject, linked from index.html, is written beside it.
+ * Given one results file, its page is written to out, by default
+ * report_n.html for subject n.
+ *
+ */
+public class ReportMain {
+
+    /**
+     * Main class.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        File in = new File("results_letters");
+        File out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean pages = false;
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--pages")) {
+                pages = true;
+            } else if (positional++ == 0) {
+                in = new File(args[i]);
+            } else {
+                out = new File(args[i]);
+            }
+        }
+        BasicConfigurator.configure();
+        if (!in.exists()) {
+            System.err.println(in + " does not exist");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        if (in.isDirectory()) {
+            out = out == null ? new File("report") : out;
+            ReportGenerator generator = new ReportGenerator(threads);
+            CohortSummary cohort = generator.writeCohort(in, out, pages);
+            System.out.printf("Reported %d subjects to %s in %.1f ms on %d threads%n",
+                    cohort.getSubjects().size(), new File(out, ReportGenerator.INDEX),
+                    (System.nanoTime() - start) / 1e6, generator.getThreads());
+        } else {
+            SessionSummary summary = ReportGenerator.summarize(in);
+            out = out == null ? new File("report_" + summary.getSubjectID() + ".html") : out;
+            HtmlReport.write(HtmlReport.session(summary, null), out);
+            System.out.printf("Reported %d trials of subject %d to %s in %.1f ms%n", summary.getNumTrials(),
+                    summary.getSubjectID(), out, (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package main;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+import org.apache.log4j.BasicConfigurator;
+
+import store.TrialStore;
+
+/**
+ * 
+ * Exports the trial store to CSV files with the columns of DataWriter.
+ * 
+ * Usage: StoreExportMain url [folder | -]
+ * 
+ * Writes folder/subjectID/results_subjectID.csv for every subject, by default
+ * in results_store. With - every trial is written to standard output instead.
+ * The JDBC driver is given with -Dstore.driver, Apache Derby by default.
+ *
+ */
+public class StoreExportMain {
+
+    /** JDBC driver loaded when none is given. */
+    static final String DEFAULT_DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
+
+    /**
+     * Main class.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: StoreExportMain url [folder | -]");
+            System.exit(2);
+        }
+        BasicConfigurator.configure();
+        String driver = System.getProperty("store.driver", DEFAULT_DRIVER);
+        if (!driver.isEmpty()) {
+            Class.forName(driver);
+        }
+        try (Connection connection = DriverManager.getConnection(args[0])) {
+            String target = args.length > 1 ? args[1] : "results_store";
+            if (target.equals("-")) {
+                Writer out = new OutputStreamWriter(System.out);
+                TrialStore.exportCSV(connection, -1, out);
+                out.flush();
+            } else {
+                int subjects = TrialStore.exportSubjects(connection, new File(target));
+                System.out.println("Exported " + subjects + " subjects to " + target);
+            }
+        }
+    }
+}
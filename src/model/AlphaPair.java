@@ -30,6 +30,9 @@ public class AlphaPair {
     /** Whether the left answer is correct or not. */
     private boolean leftCorrect;
     
+    /** The difficulty mode the pair was generated for, see AlphaPairGenerator. */
+    private int difficultyMode;
+    
     /** 
      * Constructor for AlphaPair.
      * @param posLetterOne The index of the first letter. A is 0, Z is 25.
@@ -95,6 +98,14 @@ public class AlphaPair {
         this.leftCorrect = leftCorrect;
     }
 
+    public int getDifficultyMode() {
+        return this.difficultyMode;
+    }
+
+    public void setDifficultyMode(int difficultyMode) {
+        this.difficultyMode = difficultyMode;
+    }
+
     public int getFontSizeOne() {
         return fontSizeOne;
     }
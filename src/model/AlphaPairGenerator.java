@@ -2,6 +2,7 @@ package model;
 
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.TreeSet;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -46,6 +47,21 @@ public class AlphaPairGenerator {
     /** Number of difficulty modes. */
     static final int NUM_MODES = 3;
     
+    /** Base font sizes to choose from, see chooseBaseFontSize(). */
+    static final int BASE_FONT_SIZES[] = {SMALL_CHOICE_FONT_SIZE, MEDIUM_CHOICE_FONT_SIZE, BIG_CHOICE_FONT_SIZE};
+    
+    /** Font ratio of each difficulty mode, indexed by mode. */
+    static final double FONT_RATIOS[] = {EASY_MODE_FONT_RATIO, MEDIUM_MODE_FONT_RATIO, HARD_MODE_FONT_RATIO};
+    
+    /** 
+     * Font size of the other choice for each difficulty mode and base font size,
+     * indexed by [mode][index in BASE_FONT_SIZES]. Built by buildTables().
+     */
+    private static volatile int fontSizeTable[][];
+    
+    /** Every font size a letter can be shown at, in ascending order. Built by buildTables(). */
+    private static volatile int possibleFontSizes[];
+    
     /** Define the lowest distance (in number of letters) each difficulty can have. */
     public static final int EASY_MODE_MIN = 14;
     public static final int MEDIUM_MODE_MIN = 8;
@@ -57,8 +73,22 @@ public class AlphaPairGenerator {
     /** Number of triplets of modes per set. See fillDifficultySet(). */
     static final int NUM_MODE_TRIPLETS = 2;
     
+    /** Lowest distance of each difficulty mode, indexed by mode. */
+    static final int MODE_MINS[] = {EASY_MODE_MIN, MEDIUM_MODE_MIN, HARD_MODE_MIN};
+    
+    /** 
+     * Number of levels in adaptive mode: every distance of every mode, from the 
+     * largest EASY distance (level 0) to the smallest HARD distance. The font 
+     * ratio of a level is the ratio of its mode, so distance and font ratio get 
+     * harder together.
+     */
+    public static final int NUM_ADAPTIVE_LEVELS = NUM_MODES * NUM_CHOICES_IN_MODE;
+    
+    /** Seed of randomGenerator, recorded so a session can be replayed. */
+    private final long seed;
+    
     /** Random number generator. */
-    Random randomGenerator = new Random();
+    final Random randomGenerator;
     
     /** The most recent AlphaPair produced by AlphaPairGenerator. */
     private AlphaPair alphaPair;    
@@ -80,17 +110,72 @@ public class AlphaPairGenerator {
     
     /** True if the last correct choice was big. False otherwise. */
     private boolean lastWasBig;
+    
+    /** The staircase deciding the difficulty in adaptive mode, null in fixed mode. */
+    private Staircase staircase;
 
     /**
-     * Constructor. 
+     * Build the font size tables. Safe to call from a background thread; 
+     * the tables are only built once.
+     */
+    public static synchronized void buildTables() {
+        if (fontSizeTable != null) {
+            return;
+        }
+        int table[][] = new int[NUM_MODES][BASE_FONT_SIZES.length];
+        TreeSet<Integer> sizes = new TreeSet<Integer>();
+        for (int mode = 0; mode < NUM_MODES; mode++) {
+            for (int i = 0; i < BASE_FONT_SIZES.length; i++) {
+                table[mode][i] = (int) (FONT_RATIOS[mode] * BASE_FONT_SIZES[i]);
+                sizes.add(BASE_FONT_SIZES[i]);
+                sizes.add(table[mode][i]);
+            }
+        }
+        int all[] = new int[sizes.size()];
+        int i = 0;
+        for (int size : sizes) {
+            all[i++] = size;
+        }
+        possibleFontSizes = all;
+        fontSizeTable = table;
+        logger.log(Level.INFO, "AlphaPairGenerator tables built: " + all.length + " font sizes.");
+    }
+    
+    /**
+     * Get every font size a letter can be shown at.
+     * @return font sizes in ascending order.
+     */
+    public static int[] getPossibleFontSizes() {
+        if (possibleFontSizes == null) {
+            buildTables();
+        }
+        return possibleFontSizes.clone();
+    }
+    
+    /**
+     * Constructor with a random seed. 
      */
     public AlphaPairGenerator() {
+        this(new Random().nextLong());
+    }
+    
+    /**
+     * Constructor. The same seed and the same responses give the same pairs.
+     * @param seed Seed of the random number generator.
+     */
+    public AlphaPairGenerator(long seed) {
+        this.seed = seed;
+        this.randomGenerator = new Random(seed);
         this.setSameChoiceCorrect(0);
         this.setLastWasLeft(false);
         this.setLastWasBig(false);
         this.difficultySet = new ArrayList<Integer>();
         this.fillDifficultySet();
-        logger.log(Level.INFO, "AlphaPairGenerator constructed.");
+        logger.log(Level.INFO, "AlphaPairGenerator constructed with seed " + seed + ".");
+    }
+    
+    public long getSeed() {
+        return this.seed;
     }
     
     /**
@@ -129,15 +214,76 @@ public class AlphaPairGenerator {
      * Get a new pair based on the current difficulty.
      */
     public void getNewDifficultyPair() {
-        this.setDifficulty();
-        int difference = this.decideDifference();
-        int baseFontSize = this.chooseBaseFontSize();
-        int otherFontSize = this.decideFontSize(baseFontSize);
+        int difference;
+        if (this.staircase != null) {
+            int level = this.staircase.getLevel();
+            this.difficultyMode = getAdaptiveMode(level);
+            difference = getAdaptiveDistance(level);
+        } else {
+            this.setDifficulty();
+            difference = this.decideDifference();
+        }
+        int baseSizeIndex = this.chooseBaseFontSize();
+        int baseFontSize = BASE_FONT_SIZES[baseSizeIndex];
+        int otherFontSize = this.decideFontSize(baseSizeIndex);
         if (randomGenerator.nextBoolean()) {
             baseFontSize = swap(otherFontSize, otherFontSize = baseFontSize);
         }    
         logger.log(Level.INFO, "NEW PAIR WITH DIFFICULTY:" + this.difficultyMode + " DIFFERENCE: " + difference);
         this.getNewPair(difference, baseFontSize, otherFontSize);
+        this.alphaPair.setDifficultyMode(this.difficultyMode);
+    }
+    
+    /**
+     * Switch to adaptive mode: from now on the difficulty of each pair 
+     * is decided by the staircase.
+     * @param staircase A staircase over NUM_ADAPTIVE_LEVELS levels.
+     */
+    public void startStaircase(Staircase staircase) {
+        if (staircase.getNumLevels() != NUM_ADAPTIVE_LEVELS) {
+            throw new IllegalArgumentException("Staircase must have " + NUM_ADAPTIVE_LEVELS + " levels.");
+        }
+        this.staircase = staircase;
+        logger.log(Level.INFO, "Adaptive mode started, target " + staircase.getTarget());
+    }
+    
+    /**
+     * Move the staircase after a response to the most recent pair. 
+     * Does nothing in fixed mode.
+     * @param correct Whether the subject was correct.
+     */
+    public void recordResponse(boolean correct) {
+        if (this.staircase != null) {
+            this.staircase.update(correct);
+            logger.log(Level.INFO, this.staircase.toString());
+        }
+    }
+    
+    /**
+     * Get the difficulty mode of an adaptive level.
+     * @param level The level, 0 is the easiest.
+     * @return The difficulty mode.
+     */
+    static int getAdaptiveMode(int level) {
+        return level / NUM_CHOICES_IN_MODE;
+    }
+    
+    /**
+     * Get the letter distance of an adaptive level.
+     * @param level The level, 0 is the easiest.
+     * @return The distance between the letters.
+     */
+    public static int getAdaptiveDistance(int level) {
+        return MODE_MINS[getAdaptiveMode(level)] + NUM_CHOICES_IN_MODE - 1 - level % NUM_CHOICES_IN_MODE;
+    }
+    
+    /**
+     * Get the font ratio of an adaptive level.
+     * @param level The level, 0 is the easiest.
+     * @return The ratio of the smaller font size to the bigger.
+     */
+    public static double getAdaptiveFontRatio(int level) {
+        return FONT_RATIOS[getAdaptiveMode(level)];
     }
     
     /**
@@ -159,38 +305,27 @@ public class AlphaPairGenerator {
     
     /**
      * Decide the font size of another letter given the font size of one letter and the current difficulty.
-     * @param baseFontSize font size of the first choice.
+     * @param baseSizeIndex index in BASE_FONT_SIZES of the font size of the first choice.
      * @return font size of the other choice.
      */
-    private int decideFontSize(int baseFontSize) {
-        switch (this.difficultyMode) {
-        case EASY_MODE:
-            return (int) (EASY_MODE_FONT_RATIO * baseFontSize);
-        case MEDIUM_MODE:
-            return (int) (MEDIUM_MODE_FONT_RATIO * baseFontSize);
-        case HARD_MODE:
-            return (int) (HARD_MODE_FONT_RATIO * baseFontSize);
+    private int decideFontSize(int baseSizeIndex) {
+        if (fontSizeTable == null) {
+            buildTables();
         }
-        logger.log(Level.ERROR, "in decideFontSize(): no difficulty found.");
-        return 0;
+        if (this.difficultyMode < 0 || this.difficultyMode >= NUM_MODES) {
+            logger.log(Level.ERROR, "in decideFontSize(): no difficulty found.");
+            return 0;
+        }
+        return fontSizeTable[this.difficultyMode][baseSizeIndex];
     }
     
     /**
      * Determine the base font size to build the font ratio off of. The other
      * font size choice will be scaled down from this font size.
-     * @return int The base font size.
+     * @return int Index in BASE_FONT_SIZES of the base font size.
      */
     private int chooseBaseFontSize() {
-        int choiceOfSize = randomGenerator.nextInt(3);
-        switch (choiceOfSize) {
-        case 0:
-            return SMALL_CHOICE_FONT_SIZE;
-        case 1:
-            return MEDIUM_CHOICE_FONT_SIZE;
-        case 2:
-            return BIG_CHOICE_FONT_SIZE;
-        }
-        return 0;
+        return randomGenerator.nextInt(BASE_FONT_SIZES.length);
     }
     
     /**
@@ -416,6 +551,10 @@ public class AlphaPairGenerator {
     public int getDifficultyMode() {
         return this.difficultyMode;
     }
+    
+    public Staircase getStaircase() {
+        return this.staircase;
+    }
 
     public boolean isLastWasBig() {
         return lastWasBig;
@@ -1,8 +1,5 @@
 package model;
 
-import javafx.scene.input.KeyCode;
-import javafx.scene.input.KeyEvent;
-
 /**
  * Utility class for the game logic.
  * 
@@ -14,14 +11,14 @@ public final class GameLogic {
     
     /**
      * Checks whether subject's answer is correct or incorrect.
-     * @param e The key event to check which key the user pressed.
+     * @param pickedLeft True if the subject picked the left choice (F), false for the right (J).
      * @param ap The current AlphaPair being evaluated.
      * @return correct True if correct, false otherwise.
      */
-    public static boolean checkAnswerCorrect(KeyEvent e, AlphaPair ap) {
+    public static boolean checkAnswerCorrect(boolean pickedLeft, AlphaPair ap) {
         boolean correct;
-        if ((ap.isLeftCorrect() && e.getCode() == KeyCode.F)
-                || !ap.isLeftCorrect() && e.getCode() == KeyCode.J) {
+        if ((ap.isLeftCorrect() && pickedLeft)
+                || !ap.isLeftCorrect() && !pickedLeft) {
             correct = true;
         } else {  
             correct = false;     
@@ -1,11 +1,12 @@
 package model;
 
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-
 /**
  * Object to represent the Subject.
  * 
+ * Classes Related To:
+ *  -TrialHistory.java
+ *      -Holds every trial of the subject's session.
+ * 
  * @author Tony Jiang
  * 6-25-2015
  * 
@@ -15,7 +16,7 @@ public class Player {
     
     
     /** The subject's assigned ID number. */
-    private IntegerProperty subjectID;
+    private int subjectID;
     
     /** Enum for gender */
     public enum Gender {
@@ -27,76 +28,99 @@ public class Player {
     private Gender subjectGender;
     
     /** The subject's age. */
-    private IntegerProperty subjectAge;
+    private int subjectAge;
     
     /** The number of correct answers the subject has input. */
-    private IntegerProperty numCorrect;
+    private int numCorrect;
     
     /** The total number of questions the subject has answered. */
-    private IntegerProperty numRounds;
+    private int numRounds;
     
-    /** The response time of the subject for the most recent question. */
-    private double responseTime;
+    /** The response time of the subject for the most recent question, in nanoseconds. */
+    private long responseTime;
     
     /** Whether the subject was correct for the most recent question. */
     private boolean isRight;
     
+    /** Every trial of the session. */
+    private TrialHistory trialHistory;
+    
     /** 
      * Constructor.
      */
     public Player() {
-        this.subjectID = new SimpleIntegerProperty(0);
-        this.subjectAge = new SimpleIntegerProperty(0);
-        this.numCorrect = new SimpleIntegerProperty(0);
-        this.numRounds = new SimpleIntegerProperty(0);
-        this.setResponseTime(0);
+        this(TrialHistory.DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Constructor.
+     * @param expectedTrials Number of trials to allocate the trial history for.
+     */
+    public Player(int expectedTrials) {
+        this.trialHistory = new TrialHistory(expectedTrials);
     }
 
-    public Player(IntegerProperty subjectID, Gender subjectGender, IntegerProperty subjectAge) {
-        this();
+    public Player(int subjectID, Gender subjectGender, int subjectAge, int expectedTrials) {
+        this(expectedTrials);
         this.subjectID = subjectID;
         this.subjectGender = subjectGender;
         this.subjectAge = subjectAge;
     }
     
-    public double getRT() {
+    /**
+     * Record the subject's response to a trial.
+     * @param responseTime Response time in nanoseconds.
+     * @param correct Whether the subject was correct.
+     * @param pair The pair the subject responded to.
+     */
+    public void recordTrial(long responseTime, boolean correct, AlphaPair pair) {
+        this.setResponseTime(responseTime);
+        this.setRight(correct);
+        if (correct) {
+            this.addPoint();
+        }
+        this.incrementNumRounds();
+        this.trialHistory.record(responseTime, correct, pair.isLeftCorrect(), pair.getDifficultyMode());
+    }
+    
+    public long getRT() {
         return this.responseTime;
     }
 
     public int getNumCorrect() {
-        return this.numCorrect.get();
+        return this.numCorrect;
     }
 
     public void setNumCorrect(int numCorrect) {
-        this.numCorrect.set(numCorrect);
+        this.numCorrect = numCorrect;
     }
     
     public void addPoint() {
-        this.numCorrect.set(this.numCorrect.get() + 1);
+        this.numCorrect++;
     }
     
-    public void setResponseTime(double responseTime) {
+    public void setResponseTime(long responseTime) {
         this.responseTime = responseTime;
     }
 
     public int getNumRounds() {
-        return this.numRounds.get();
+        return this.numRounds;
     }
 
     public void setNumRounds(int numRounds) {
-        this.numRounds.set(numRounds);
+        this.numRounds = numRounds;
     }
     
     public void incrementNumRounds() {
-        this.numRounds.set(this.numRounds.get() + 1);
+        this.numRounds++;
     }
 
     public int getSubjectID() {
-        return this.subjectID.get();
+        return this.subjectID;
     }
 
     public void setSubjectID(int subjectID) {
-        this.subjectID.set(subjectID);
+        this.subjectID = subjectID;
     }
 
     public boolean isRight() {
@@ -116,10 +140,14 @@ public class Player {
     }
 
     public int getSubjectAge() {
-        return this.subjectAge.get();
+        return this.subjectAge;
     }
 
     public void setSubjectAge(int subjectAge) {
-        this.subjectAge.set(subjectAge);
+        this.subjectAge = subjectAge;
+    }
+
+    public TrialHistory getTrialHistory() {
+        return this.trialHistory;
     }
 }
@@ -0,0 +1,242 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Weighted up/down staircase (Kaernbach, 1991) over the difficulty levels of
+ * AlphaPairGenerator. After a correct answer the level goes up (harder) by
+ * one step, after a wrong answer it goes down (easier) by
+ * step * target / (1 - target), so the level settles where the subject is
+ * correct on a target proportion of trials.
+ *
+ * The step starts large and is halved at each reversal down to the final
+ * step. The threshold estimate is the mean level at the most recent
+ * reversals, and the staircase is finished once the standard error of that
+ * estimate is small enough or the maximum number of trials has been run.
+ *
+ * The state after every trial is kept in primitive arrays for export.
+ *
+ * Classes Related To:
+ *  -AlphaPairGenerator.java
+ *      -Generates pairs at the level of the staircase in adaptive mode.
+ *
+ */
+public class Staircase {
+
+    /** Proportion correct the staircase converges on by default. */
+    public static final double DEFAULT_TARGET = 0.75;
+
+    /** Step, in levels, before the first reversal. */
+    static final double INITIAL_STEP = 2.0;
+
+    /** Smallest step, in levels. */
+    static final double FINAL_STEP = 1.0;
+
+    /** Fewest trials before the staircase may finish. */
+    static final int MIN_TRIALS = 20;
+
+    /** Fewest reversals before the staircase may finish. */
+    static final int MIN_REVERSALS = 8;
+
+    /** Number of most recent reversals the threshold is estimated from. */
+    static final int REVERSALS_FOR_ESTIMATE = 6;
+
+    /** The estimate is stable once its standard error is at most this, in levels. */
+    static final double STABLE_SE = 0.75;
+
+    /** Number of levels; 0 is the easiest. */
+    private final int numLevels;
+
+    /** Proportion correct to converge on. */
+    private final double target;
+
+    /** Most trials the staircase runs. */
+    private final int maxTrials;
+
+    /** Current level, before rounding. */
+    private double level;
+
+    /** Current step. */
+    private double step;
+
+    /** Direction of the last move: 1 harder, -1 easier, 0 none yet. */
+    private int lastDirection;
+
+    /** Level at each reversal. */
+    private double reversalLevels[];
+
+    /** Number of reversals. */
+    private int numReversals;
+
+    /** Level shown on each trial. */
+    private final int trialLevels[];
+
+    /** 1 if the subject was correct on the trial. */
+    private final byte trialCorrect[];
+
+    /** 1 if the trial caused a reversal. */
+    private final byte trialReversal[];
+
+    /** Threshold estimate after each trial, NaN until there are reversals. */
+    private final double trialEstimates[];
+
+    /** Number of trials run. */
+    private int numTrials;
+
+    /**
+     * Constructor. Starts at the easiest level.
+     * @param numLevels Number of levels.
+     * @param target Proportion correct to converge on, between 0.5 and 1.
+     * @param maxTrials Most trials to run.
+     */
+    public Staircase(int numLevels, double target, int maxTrials) {
+        if (target <= 0.5 || target >= 1.0) {
+            throw new IllegalArgumentException("Target must be between 0.5 and 1: " + target);
+        }
+        this.numLevels = numLevels;
+        this.target = target;
+        this.maxTrials = maxTrials;
+        this.step = INITIAL_STEP;
+        this.reversalLevels = new double[Math.max(MIN_REVERSALS, maxTrials)];
+        this.trialLevels = new int[maxTrials];
+        this.trialCorrect = new byte[maxTrials];
+        this.trialReversal = new byte[maxTrials];
+        this.trialEstimates = new double[maxTrials];
+    }
+
+    /**
+     * Get the level of the next trial.
+     * @return level from 0 (easiest) to numLevels - 1.
+     */
+    public int getLevel() {
+        return (int) Math.round(this.level);
+    }
+
+    /**
+     * Move the staircase after a response to a trial at the current level.
+     * Does nothing once the maximum number of trials has been run.
+     * @param correct Whether the subject was correct.
+     */
+    public void update(boolean correct) {
+        if (this.numTrials >= this.maxTrials) {
+            return;
+        }
+        int trial = this.numTrials++;
+        this.trialLevels[trial] = this.getLevel();
+        this.trialCorrect[trial] = (byte) (correct ? 1 : 0);
+
+        int direction = correct ? 1 : -1;
+        if (this.lastDirection != 0 && direction != this.lastDirection) {
+            this.reversalLevels[this.numReversals++] = this.level;
+            this.trialReversal[trial] = 1;
+            this.step = Math.max(FINAL_STEP, this.step / 2);
+        }
+        this.lastDirection = direction;
+
+        double move = correct ? this.step : -this.step * this.target / (1 - this.target);
+        this.level = Math.max(0, Math.min(this.numLevels - 1, this.level + move));
+        this.trialEstimates[trial] = this.getThreshold();
+    }
+
+    /**
+     * Estimate the threshold as the mean level at the most recent reversals.
+     * @return the estimate in levels, or NaN if there has been no reversal.
+     */
+    public double getThreshold() {
+        int n = Math.min(REVERSALS_FOR_ESTIMATE, this.numReversals);
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = this.numReversals - n; i < this.numReversals; i++) {
+            sum += this.reversalLevels[i];
+        }
+        return sum / n;
+    }
+
+    /**
+     * Standard deviation of the reversal levels the threshold is estimated from.
+     * @return the standard deviation in levels, or NaN if there has been no reversal.
+     */
+    public double getThresholdSd() {
+        int n = Math.min(REVERSALS_FOR_ESTIMATE, this.numReversals);
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double mean = this.getThreshold();
+        double sum = 0;
+        for (int i = this.numReversals - n; i < this.numReversals; i++) {
+            sum += (this.reversalLevels[i] - mean) * (this.reversalLevels[i] - mean);
+        }
+        return Math.sqrt(sum / n);
+    }
+
+    /**
+     * Standard error of the threshold estimate.
+     * @return the standard error in levels, or NaN if there has been no reversal.
+     */
+    public double getThresholdSe() {
+        int n = Math.min(REVERSALS_FOR_ESTIMATE, this.numReversals);
+        return this.getThresholdSd() / Math.sqrt(n);
+    }
+
+    /**
+     * The staircase is finished once it has run the maximum number of trials, or
+     * once it has run enough trials and reversals and the estimate is stable.
+     * @return true if no more trials are needed.
+     */
+    public boolean isFinished() {
+        if (this.numTrials >= this.maxTrials) {
+            return true;
+        }
+        return this.numTrials >= MIN_TRIALS
+                && this.numReversals >= MIN_REVERSALS
+                && this.getThresholdSe() <= STABLE_SE;
+    }
+
+    public int getNumTrials() {
+        return this.numTrials;
+    }
+
+    public int getNumReversals() {
+        return this.numReversals;
+    }
+
+    public int getNumLevels() {
+        return this.numLevels;
+    }
+
+    public double getTarget() {
+        return this.target;
+    }
+
+    public double getStep() {
+        return this.step;
+    }
+
+    public int getTrialLevel(int trial) {
+        return this.trialLevels[trial];
+    }
+
+    public boolean isTrialCorrect(int trial) {
+        return this.trialCorrect[trial] == 1;
+    }
+
+    public boolean isTrialReversal(int trial) {
+        return this.trialReversal[trial] == 1;
+    }
+
+    public double getTrialEstimate(int trial) {
+        return this.trialEstimates[trial];
+    }
+
+    @Override
+    public String toString() {
+        return "Staircase[trials=" + this.numTrials + ", level=" + this.getLevel()
+                + ", step=" + this.step + ", reversals=" + this.numReversals
+                + ", threshold=" + this.getThreshold() + ", sd=" + this.getThresholdSd()
+                + ", last reversals=" + Arrays.toString(Arrays.copyOfRange(this.reversalLevels,
+                        Math.max(0, this.numReversals - REVERSALS_FOR_ESTIMATE), this.numReversals))
+                + "]";
+    }
+}
@@ -0,0 +1,171 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * The trials of one session, held in primitive arrays indexed by trial.
+ * The arrays are allocated up front for the expected number of trials and
+ * only grow if a session runs longer, so recording a trial does not allocate
+ * or box anything.
+ *
+ * The get...s() methods return read-only buffers over the arrays. They see
+ * trials recorded later only up to their limit, and stop seeing new data
+ * if the arrays grow.
+ *
+ * Classes Related To:
+ *  -Player.java
+ *      -Each Player keeps the TrialHistory of its session.
+ *  -LetterGameController.java (controller)
+ *      -Logs a summary of each phase from the history.
+ *
+ */
+public class TrialHistory {
+
+    /** Number of trials allocated for when no capacity is given. */
+    public static final int DEFAULT_CAPACITY = 128;
+
+    /** Value of a side for the left choice. */
+    public static final byte LEFT = 0;
+
+    /** Value of a side for the right choice. */
+    public static final byte RIGHT = 1;
+
+    /** Response time of each trial in nanoseconds. */
+    private long responseTimes[];
+
+    /** 1 if the subject was correct on the trial, 0 otherwise. */
+    private byte correct[];
+
+    /** The side that was correct on each trial: LEFT or RIGHT. */
+    private byte sides[];
+
+    /** The difficulty mode of each trial, see AlphaPairGenerator. */
+    private int difficulties[];
+
+    /** Number of trials recorded. */
+    private int size;
+
+    /** Number of trials the subject was correct on. */
+    private int numCorrect;
+
+    /**
+     * Constructor.
+     * @param capacity Number of trials to allocate for.
+     */
+    public TrialHistory(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.responseTimes = new long[capacity];
+        this.correct = new byte[capacity];
+        this.sides = new byte[capacity];
+        this.difficulties = new int[capacity];
+    }
+
+    /**
+     * Record a trial.
+     * @param responseTime Response time in nanoseconds.
+     * @param isCorrect Whether the subject was correct.
+     * @param leftCorrect Whether the left choice was correct.
+     * @param difficulty The difficulty mode of the trial.
+     */
+    public void record(long responseTime, boolean isCorrect, boolean leftCorrect, int difficulty) {
+        if (this.size == this.responseTimes.length) {
+            this.grow();
+        }
+        this.responseTimes[this.size] = responseTime;
+        this.correct[this.size] = (byte) (isCorrect ? 1 : 0);
+        this.sides[this.size] = leftCorrect ? LEFT : RIGHT;
+        this.difficulties[this.size] = difficulty;
+        if (isCorrect) {
+            this.numCorrect++;
+        }
+        this.size++;
+    }
+
+    /**
+     * Double the capacity of the arrays.
+     */
+    private void grow() {
+        int capacity = this.responseTimes.length * 2;
+        this.responseTimes = Arrays.copyOf(this.responseTimes, capacity);
+        this.correct = Arrays.copyOf(this.correct, capacity);
+        this.sides = Arrays.copyOf(this.sides, capacity);
+        this.difficulties = Arrays.copyOf(this.difficulties, capacity);
+    }
+
+    /**
+     * Forget every trial, keeping the arrays.
+     */
+    public void clear() {
+        this.size = 0;
+        this.numCorrect = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int getNumCorrect() {
+        return this.numCorrect;
+    }
+
+    public long getResponseTime(int trial) {
+        this.checkTrial(trial);
+        return this.responseTimes[trial];
+    }
+
+    public boolean isCorrect(int trial) {
+        this.checkTrial(trial);
+        return this.correct[trial] == 1;
+    }
+
+    public boolean isLeftCorrect(int trial) {
+        this.checkTrial(trial);
+        return this.sides[trial] == LEFT;
+    }
+
+    public int getDifficulty(int trial) {
+        this.checkTrial(trial);
+        return this.difficulties[trial];
+    }
+
+    /**
+     * Read-only view of the response times in nanoseconds.
+     * @return Buffer with one entry per recorded trial.
+     */
+    public LongBuffer getResponseTimes() {
+        return LongBuffer.wrap(this.responseTimes, 0, this.size).asReadOnlyBuffer();
+    }
+
+    /**
+     * Read-only view of the correctness of each trial, 1 if correct and 0 if not.
+     * @return Buffer with one entry per recorded trial.
+     */
+    public ByteBuffer getCorrect() {
+        return ByteBuffer.wrap(this.correct, 0, this.size).asReadOnlyBuffer();
+    }
+
+    /**
+     * Read-only view of the correct side of each trial, LEFT or RIGHT.
+     * @return Buffer with one entry per recorded trial.
+     */
+    public ByteBuffer getSides() {
+        return ByteBuffer.wrap(this.sides, 0, this.size).asReadOnlyBuffer();
+    }
+
+    /**
+     * Read-only view of the difficulty mode of each trial.
+     * @return Buffer with one entry per recorded trial.
+     */
+    public IntBuffer getDifficulties() {
+        return IntBuffer.wrap(this.difficulties, 0, this.size).asReadOnlyBuffer();
+    }
+
+    private void checkTrial(int trial) {
+        if (trial < 0 || trial >= this.size) {
+            throw new IndexOutOfBoundsException("Trial " + trial + " of " + this.size);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package replay;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import config.Config;
+import config.Settings;
+import controller.DataWriter;
+import controller.GameSession;
+import controller.SessionState;
+import model.Player;
+
+/**
+ * Replays a recording headless and as fast as possible: the game logic of 
+ * LetterGameController (GameSession) is driven with the recorded seed, 
+ * settings and responses, in the same order the controller drives it, and 
+ * the CSV text of every trial is checked against the recording byte for byte,
+ * apart from the columns that describe the JVM during the trial (GC pauses
+ * and JIT time), which a replay cannot reproduce.
+ * 
+ * To watch a recording at real speed instead, see LetterGameController.startReplay().
+ * 
+ * Classes Related To:
+ *  -SessionRecording.java
+ *      -The recording replayed.
+ *  -GameSession.java (controller)
+ *      -The game logic replayed.
+ * 
+ */
+public class ReplayEngine {
+    
+    private static final Logger logger = Logger.getLogger(ReplayEngine.class);
+    
+    /** What a replay found. */
+    public static final class Result {
+        private final int numTrials;
+        private final List<String> mismatches;
+        private final String ending;
+        
+        Result(int numTrials, List<String> mismatches, String ending) {
+            this.numTrials = numTrials;
+            this.mismatches = Collections.unmodifiableList(mismatches);
+            this.ending = ending;
+        }
+        
+        /** @return Number of responses replayed. */
+        public int getNumTrials() {
+            return numTrials;
+        }
+        
+        /** @return Every difference from the recording, empty if the replay was identical. */
+        public List<String> getMismatches() {
+            return mismatches;
+        }
+        
+        /** @return How the recorded session ended. */
+        public String getEnding() {
+            return ending;
+        }
+        
+        public boolean isIdentical() {
+            return mismatches.isEmpty();
+        }
+        
+        @Override
+        public String toString() {
+            return numTrials + " responses replayed, " + (this.isIdentical() ? "identical" 
+                    : mismatches.size() + " mismatches") + "; session ended: " + ending;
+        }
+    }
+    
+    private final SessionRecording recording;
+    
+    public ReplayEngine(SessionRecording recording) {
+        this.recording = recording;
+    }
+    
+    /**
+     * Replay the whole recording.
+     * @return What the replay found.
+     */
+    public Result run() {
+        long start = System.nanoTime();
+        Settings settings = new Settings(new Config(this.recording.getSettings()));
+        SessionState state = new SessionState();
+        GameSession game = new GameSession(settings, state, this.recording.getSeed(), null);
+        List<String> mismatches = new ArrayList<String>();
+        int numTrials = 0;
+        String ending = "end of recording";
+        /** Trial text produced by the last response and not yet checked. */
+        String produced = null;
+        
+        for (ReplayEvent event : this.recording.getEvents()) {
+            if (produced != null && event.getType() != ReplayEvent.Type.TRIAL) {
+                mismatches.add(event + ": replay exported a trial the recording does not have: " + produced);
+                produced = null;
+            }
+            switch (event.getType()) {
+            case LOGIN:
+                game.login(event.getInt(0), Player.Gender.valueOf(event.getField(1)), event.getInt(2));
+                break;
+            case PRACTICE:
+                game.startPractice();
+                game.stageNext();
+                break;
+            case ASSESSMENT:
+                game.startAssessment();
+                game.stageNext();
+                break;
+            case KEY:
+                if (game.isAssessmentDone() || game.isPracticeDone()) {
+                    mismatches.add(event + ": response after the replay had ended the phase");
+                }
+                game.onset();
+                game.respond("F".equals(event.getField(0)), event.getLong(1), 
+                        LocalDateTime.parse(event.getField(2)));
+                numTrials++;
+                String text = game.getLastTrialText();
+                produced = text == null ? null : text.substring(0, text.length() - 1);
+                game.stageNext();
+                break;
+            case TRIAL:
+                if (produced == null) {
+                    mismatches.add(event + ": replay exported nothing for this trial");
+                } else if (!trialColumns(produced).equals(trialColumns(event.getText()))) {
+                    mismatches.add(event + ": replay exported " + produced);
+                }
+                produced = null;
+                break;
+            case ESCAPE:
+                logger.info("Escape pressed at " + event.getLong(0) / 1000000000.0 + " s, after " 
+                        + numTrials + " responses");
+                break;
+            case EXIT:
+                ending = "quit after " + numTrials + " responses, " + event.getLong(0) / 1000000000.0 + " s";
+                break;
+            case FINISH:
+                if (!game.isAssessmentDone()) {
+                    mismatches.add(event + ": recording finished before the replay did");
+                }
+                ending = "finished";
+                break;
+            default:
+                break;
+            }
+        }
+        if (produced != null) {
+            mismatches.add("end of recording: replay exported a trial the recording does not have: " + produced);
+        }
+        Result result = new Result(numTrials, mismatches, ending);
+        logger.info("Replay took " + (System.nanoTime() - start) / 1000000.0 + " ms: " + result);
+        return result;
+    }
+    
+    /**
+     * Cut a trial's CSV text down to the columns that describe the trial itself.
+     * The columns after them describe the JVM during the trial and differ
+     * between the session and its replay.
+     * @param text CSV text of a trial.
+     * @return The first DataWriter.NUM_TRIAL_COLUMNS values.
+     */
+    static String trialColumns(String text) {
+        int end = -1;
+        for (int i = 0; i < DataWriter.NUM_TRIAL_COLUMNS; i++) {
+            end = text.indexOf(DataWriter.DELIMITER, end + 1);
+            if (end < 0) {
+                return text;
+            }
+        }
+        return text.substring(0, end);
+    }
+}
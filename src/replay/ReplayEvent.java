@@ -0,0 +1,82 @@
+package replay;
+
+/**
+ * One line of a session recording: a type followed by its fields, 
+ * separated by spaces.
+ * 
+ */
+public final class ReplayEvent {
+    
+    /** The kinds of event in a recording. */
+    public enum Type {
+        /** Seed of the pair generator. */
+        SEED,
+        /** A setting the pairs depend on: key value. */
+        SETTING,
+        /** The subject logged in: subject ID, gender, age. */
+        LOGIN,
+        /** Practice started. */
+        PRACTICE,
+        /** Assessment started. */
+        ASSESSMENT,
+        /** A response: F or J, response time in nanoseconds from onset, time of the response. */
+        KEY,
+        /** F or J pressed while no pair was shown: key, nanoseconds since the last onset. */
+        IGNORED_KEY,
+        /** The CSV text exported for the preceding response. */
+        TRIAL,
+        /** Escape pressed: nanoseconds since the recording started. */
+        ESCAPE,
+        /** The game was quit from the exit popup: nanoseconds since the recording started. */
+        EXIT,
+        /** The assessment finished: nanoseconds since the recording started. */
+        FINISH,
+    }
+    
+    private final Type type;
+    
+    /** Everything after the type. */
+    private final String text;
+    
+    /** The fields of text. */
+    private final String fields[];
+    
+    /** Line number in the recording. */
+    private final int line;
+    
+    public ReplayEvent(Type type, String text, int line) {
+        this.type = type;
+        this.text = text;
+        this.fields = text.isEmpty() ? new String[0] : text.split(" ");
+        this.line = line;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getField(int i) {
+        return fields[i];
+    }
+    
+    public int getInt(int i) {
+        return Integer.parseInt(fields[i]);
+    }
+    
+    public long getLong(int i) {
+        return Long.parseLong(fields[i]);
+    }
+
+    public int getLine() {
+        return line;
+    }
+    
+    @Override
+    public String toString() {
+        return "line " + line + ": " + type + " " + text;
+    }
+}
@@ -0,0 +1,153 @@
+package replay;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.apache.log4j.Logger;
+
+import config.Settings;
+import model.Player;
+import replay.ReplayEvent.Type;
+
+/**
+ * Records everything needed to replay a session: the seed, the settings the
+ * pairs depend on, every key press with its time from onset, escape and exit,
+ * and the CSV text exported for each trial so a replay can be checked against it.
+ * 
+ * One event per line, flushed as it happens, so the recording is complete up
+ * to the moment the game froze or was quit. Recordings are written next to the
+ * subject's results: results_letters/subjectID/replay_subjectID_time.txt
+ * 
+ * Classes Related To:
+ *  -SessionRecording.java
+ *      -Reads a recording back.
+ *  -ReplayEngine.java
+ *      -Replays a recording.
+ * 
+ */
+public class SessionRecorder implements Closeable {
+    
+    private static final Logger logger = Logger.getLogger(SessionRecorder.class);
+    
+    /** First line of every recording. */
+    public static final String HEADER = "# letter game session recording v1";
+    
+    private final PrintWriter out;
+    
+    /** Time the recording started. */
+    private final long startNanos;
+    
+    /**
+     * Constructor.
+     * @param writer Where to write the recording.
+     */
+    public SessionRecorder(Writer writer) {
+        this.out = new PrintWriter(writer, true);
+        this.startNanos = System.nanoTime();
+    }
+    
+    /**
+     * Create a recorder writing next to the results of a subject.
+     * @param subjectID The subject.
+     * @return The recorder, or null if the file cannot be created.
+     */
+    public static SessionRecorder create(int subjectID) {
+        String subjectId = Integer.toString(subjectID);
+        File subjectDir = new File("results_letters", subjectId);
+        subjectDir.mkdirs();
+        File file = new File(subjectDir, "replay_" + subjectId + "_" 
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".txt");
+        try {
+            SessionRecorder recorder = new SessionRecorder(new BufferedWriter(new FileWriter(file)));
+            logger.info("Recording session to " + file.getPath());
+            return recorder;
+        } catch (IOException e) {
+            logger.error("Could not create recording " + file.getPath(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Record the seed and the settings the pairs depend on.
+     */
+    public void start(long seed, Settings settings) {
+        this.out.println(HEADER);
+        this.event(Type.SEED, seed);
+        this.event(Type.SETTING, "size.variation", settings.isSizeVariation());
+        this.event(Type.SETTING, "difficulty.mode", settings.isAdaptive() ? Settings.ADAPTIVE_MODE : "fixed");
+        this.event(Type.SETTING, "staircase.target", settings.getStaircaseTarget());
+        this.event(Type.SETTING, "time.between.rounds", settings.getTimeBetweenRounds());
+    }
+    
+    public void login(int subjectID, Player.Gender gender, int subjectAge) {
+        this.event(Type.LOGIN, subjectID, gender, subjectAge);
+    }
+    
+    public void practice() {
+        this.event(Type.PRACTICE);
+    }
+    
+    public void assessment() {
+        this.event(Type.ASSESSMENT);
+    }
+    
+    /**
+     * Record a response.
+     * @param pickedLeft True for F, false for J.
+     * @param responseTime Nanoseconds from onset.
+     * @param trialTime Time of the response.
+     */
+    public void key(boolean pickedLeft, long responseTime, LocalDateTime trialTime) {
+        this.event(Type.KEY, pickedLeft ? "F" : "J", responseTime, trialTime);
+    }
+    
+    /**
+     * Record an F or J press while no pair was shown.
+     * @param left True for F, false for J.
+     * @param sinceOnset Nanoseconds since the last onset.
+     */
+    public void ignoredKey(boolean left, long sinceOnset) {
+        this.event(Type.IGNORED_KEY, left ? "F" : "J", sinceOnset);
+    }
+    
+    /**
+     * Record the CSV text exported for the preceding response.
+     * @param trialText The text, with or without its newline.
+     */
+    public void trial(String trialText) {
+        this.event(Type.TRIAL, trialText.endsWith("\n") 
+                ? trialText.substring(0, trialText.length() - 1) : trialText);
+    }
+    
+    public void escape() {
+        this.event(Type.ESCAPE, System.nanoTime() - this.startNanos);
+    }
+    
+    public void exit() {
+        this.event(Type.EXIT, System.nanoTime() - this.startNanos);
+    }
+    
+    public void finish() {
+        this.event(Type.FINISH, System.nanoTime() - this.startNanos);
+    }
+    
+    private void event(Type type, Object... fields) {
+        StringBuilder line = new StringBuilder(type.name());
+        for (Object field : fields) {
+            line.append(' ').append(field);
+        }
+        this.out.println(line);
+    }
+    
+    @Override
+    public void close() {
+        this.out.close();
+    }
+}
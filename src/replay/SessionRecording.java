@@ -0,0 +1,96 @@
+package replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A session recording read back from a file written by SessionRecorder.
+ * 
+ */
+public class SessionRecording {
+    
+    private final long seed;
+    
+    /** The recorded settings, as config properties. */
+    private final Properties settings;
+    
+    private final List<ReplayEvent> events;
+    
+    private SessionRecording(long seed, Properties settings, List<ReplayEvent> events) {
+        this.seed = seed;
+        this.settings = settings;
+        this.events = Collections.unmodifiableList(events);
+    }
+    
+    /**
+     * Read a recording.
+     * @param file The recording.
+     * @return The recording.
+     * @throws IOException If the file cannot be read or is not a recording.
+     */
+    public static SessionRecording load(File file) throws IOException {
+        Long seed = null;
+        Properties settings = new Properties();
+        List<ReplayEvent> events = new ArrayList<ReplayEvent>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line = in.readLine();
+            if (!SessionRecorder.HEADER.equals(line)) {
+                throw new IOException(file + " is not a session recording");
+            }
+            int lineNumber = 1;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                String type = space < 0 ? line : line.substring(0, space);
+                String text = space < 0 ? "" : line.substring(space + 1);
+                ReplayEvent event;
+                try {
+                    event = new ReplayEvent(ReplayEvent.Type.valueOf(type), text, lineNumber);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unknown event on line " + lineNumber + ": " + line);
+                }
+                switch (event.getType()) {
+                case SEED:
+                    seed = event.getLong(0);
+                    break;
+                case SETTING:
+                    settings.setProperty(event.getField(0), event.getField(1));
+                    break;
+                default:
+                    events.add(event);
+                }
+            }
+        }
+        if (seed == null) {
+            throw new IOException(file + " has no seed");
+        }
+        return new SessionRecording(seed, settings, events);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the recorded settings.
+     * @return A copy, to be used as config overrides.
+     */
+    public Properties getSettings() {
+        Properties copy = new Properties();
+        copy.putAll(this.settings);
+        return copy;
+    }
+
+    public List<ReplayEvent> getEvents() {
+        return events;
+    }
+}
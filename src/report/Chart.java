@@ -0,0 +1,390 @@
+package report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Draws a chart as inline SVG: axes with round ticks, and bars with error
+ * bars, lines and points over numeric or categorical x. Colours come from
+ * the style sheet of HtmlReport through the class of each series, so the
+ * SVG holds only geometry. Coordinates are rounded to a tenth of a pixel to
+ * keep pages small.
+ *
+ * Classes Related To:
+ *  -HtmlReport.java
+ *      -Places the charts in a page.
+ *
+ */
+final class Chart {
+
+    static final int WIDTH = 480;
+    static final int HEIGHT = 280;
+    static final int LEFT = 52;
+    static final int RIGHT = 12;
+    static final int TOP = 28;
+    static final int BOTTOM = 40;
+
+    /** Ticks each axis aims for. */
+    static final int TICKS = 5;
+
+    private enum Kind {
+        BARS, LINE, POINTS
+    }
+
+    /** One series of the chart. */
+    private static final class Series {
+        Kind kind;
+        String label;
+        String style;
+        double x[];
+        double y[];
+        double lower[];
+        double upper[];
+        double radius[];
+        String pointStyle[];
+        String tips[];
+    }
+
+    private final String title;
+    private final String xLabel;
+    private final String yLabel;
+    private String categories[];
+    private double xMin = Double.NaN;
+    private double xMax = Double.NaN;
+    private double yMin = Double.NaN;
+    private double yMax = Double.NaN;
+    private final List<Series> series = new ArrayList<Series>();
+
+    /**
+     * Constructor.
+     * @param title Shown above the chart.
+     * @param xLabel Label of the x axis.
+     * @param yLabel Label of the y axis.
+     */
+    Chart(String title, String xLabel, String yLabel) {
+        this.title = title;
+        this.xLabel = xLabel;
+        this.yLabel = yLabel;
+    }
+
+    /**
+     * Use categories on the x axis; x of each series is then the index of its category.
+     */
+    Chart categories(String categories[]) {
+        this.categories = categories;
+        return this;
+    }
+
+    /** Fix the x axis rather than fit it to the series. */
+    Chart xRange(double min, double max) {
+        this.xMin = min;
+        this.xMax = max;
+        return this;
+    }
+
+    /** Fix the y axis rather than fit it to the series. */
+    Chart yRange(double min, double max) {
+        this.yMin = min;
+        this.yMax = max;
+        return this;
+    }
+
+    /**
+     * Add bars, placed side by side with the other bars of the same category.
+     * @param lower Lower end of each error bar, null for none.
+     * @param upper Upper end of each error bar, null for none.
+     * @param tips Tool tip of each bar, null for none.
+     */
+    Chart bars(String label, String style, double x[], double y[], double lower[], double upper[],
+            String tips[]) {
+        Series bars = this.add(Kind.BARS, label, style, x, y);
+        bars.lower = lower;
+        bars.upper = upper;
+        bars.tips = tips;
+        return this;
+    }
+
+    /** Add a line through the points, broken where y is NaN. */
+    Chart line(String label, String style, double x[], double y[]) {
+        this.add(Kind.LINE, label, style, x, y);
+        return this;
+    }
+
+    /**
+     * Add points.
+     * @param radius Radius of each point, null for the default.
+     * @param pointStyle Class of each point, null for the style of the series.
+     */
+    Chart points(String label, String style, double x[], double y[], double radius[], String pointStyle[]) {
+        Series points = this.add(Kind.POINTS, label, style, x, y);
+        points.radius = radius;
+        points.pointStyle = pointStyle;
+        return this;
+    }
+
+    private Series add(Kind kind, String label, String style, double x[], double y[]) {
+        Series added = new Series();
+        added.kind = kind;
+        added.label = label;
+        added.style = style;
+        added.x = x;
+        added.y = y;
+        this.series.add(added);
+        return added;
+    }
+
+    /**
+     * @return The chart as an svg element.
+     */
+    String toSvg() {
+        this.fitRanges();
+        StringBuilder svg = new StringBuilder(4096);
+        svg.append("<svg class=\"chart\" viewBox=\"0 0 ").append(WIDTH).append(' ').append(HEIGHT)
+                .append("\" width=\"").append(WIDTH).append("\" height=\"").append(HEIGHT)
+                .append("\" role=\"img\">\n");
+        svg.append("<text class=\"title\" x=\"").append(WIDTH / 2).append("\" y=\"16\">")
+                .append(escape(this.title)).append("</text>\n");
+        this.axes(svg);
+        int numBars = 0;
+        for (Series s : this.series) {
+            numBars += s.kind == Kind.BARS ? 1 : 0;
+        }
+        int bar = 0;
+        for (Series s : this.series) {
+            switch (s.kind) {
+            case BARS:
+                this.drawBars(svg, s, bar++, numBars);
+                break;
+            case LINE:
+                this.drawLine(svg, s);
+                break;
+            default:
+                this.drawPoints(svg, s);
+            }
+        }
+        this.legend(svg);
+        svg.append("</svg>\n");
+        return svg.toString();
+    }
+
+    /**
+     * Fit the axes not fixed to the series, with room for the error bars.
+     */
+    private void fitRanges() {
+        double loX = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY;
+        double loY = Double.POSITIVE_INFINITY;
+        double hiY = Double.NEGATIVE_INFINITY;
+        for (Series s : this.series) {
+            for (int i = 0; i < s.x.length; i++) {
+                if (Double.isNaN(s.y[i])) {
+                    continue;
+                }
+                loX = Math.min(loX, s.x[i]);
+                hiX = Math.max(hiX, s.x[i]);
+                loY = Math.min(loY, s.kind == Kind.BARS ? 0 : s.y[i]);
+                hiY = Math.max(hiY, s.y[i]);
+                if (s.upper != null && !Double.isNaN(s.upper[i])) {
+                    hiY = Math.max(hiY, s.upper[i]);
+                }
+            }
+        }
+        if (this.categories != null) {
+            this.xMin = -0.5;
+            this.xMax = this.categories.length - 0.5;
+        } else if (Double.isNaN(this.xMin)) {
+            this.xMin = loX > hiX ? 0 : loX;
+            this.xMax = loX > hiX ? 1 : hiX;
+        }
+        if (Double.isNaN(this.yMin)) {
+            this.yMin = loY > hiY ? 0 : Math.min(0, loY);
+            this.yMax = loY > hiY ? 1 : hiY;
+        }
+        if (this.xMax <= this.xMin) {
+            this.xMax = this.xMin + 1;
+        }
+        if (this.yMax <= this.yMin) {
+            this.yMax = this.yMin + 1;
+        }
+        if (this.categories == null) {
+            double step = niceStep(this.xMax - this.xMin);
+            this.xMin = Math.floor(this.xMin / step) * step;
+            this.xMax = Math.ceil(this.xMax / step) * step;
+        }
+        double step = niceStep(this.yMax - this.yMin);
+        this.yMin = Math.floor(this.yMin / step) * step;
+        this.yMax = Math.ceil(this.yMax / step) * step;
+    }
+
+    /**
+     * @return A step of 1, 2 or 5 times a power of ten that splits the range in about TICKS.
+     */
+    static double niceStep(double range) {
+        double rough = range / TICKS;
+        double power = Math.pow(10, Math.floor(Math.log10(rough)));
+        double fraction = rough / power;
+        return (fraction < 1.5 ? 1 : fraction < 3.5 ? 2 : fraction < 7.5 ? 5 : 10) * power;
+    }
+
+    private double px(double x) {
+        return LEFT + (x - this.xMin) / (this.xMax - this.xMin) * (WIDTH - LEFT - RIGHT);
+    }
+
+    private double py(double y) {
+        return HEIGHT - BOTTOM - (y - this.yMin) / (this.yMax - this.yMin) * (HEIGHT - TOP - BOTTOM);
+    }
+
+    private void axes(StringBuilder svg) {
+        double bottom = HEIGHT - BOTTOM;
+        svg.append("<g class=\"axis\">\n");
+        double yStep = niceStep(this.yMax - this.yMin);
+        for (double y = this.yMin; y <= this.yMax + yStep / 2; y += yStep) {
+            svg.append("<line class=\"grid\" x1=\"").append(LEFT).append("\" x2=\"").append(WIDTH - RIGHT)
+                    .append("\" y1=\"").append(format(this.py(y))).append("\" y2=\"").append(format(this.py(y)))
+                    .append("\"/><text class=\"ytick\" x=\"").append(LEFT - 4).append("\" y=\"")
+                    .append(format(this.py(y) + 4)).append("\">").append(tick(y, yStep)).append("</text>\n");
+        }
+        if (this.categories != null) {
+            for (int c = 0; c < this.categories.length; c++) {
+                svg.append("<text class=\"xtick\" x=\"").append(format(this.px(c))).append("\" y=\"")
+                        .append(format(bottom + 14)).append("\">").append(escape(this.categories[c]))
+                        .append("</text>\n");
+            }
+        } else {
+            double xStep = niceStep(this.xMax - this.xMin);
+            for (double x = this.xMin; x <= this.xMax + xStep / 2; x += xStep) {
+                svg.append("<text class=\"xtick\" x=\"").append(format(this.px(x))).append("\" y=\"")
+                        .append(format(bottom + 14)).append("\">").append(tick(x, xStep)).append("</text>\n");
+            }
+        }
+        svg.append("<line x1=\"").append(LEFT).append("\" x2=\"").append(WIDTH - RIGHT).append("\" y1=\"")
+                .append(format(bottom)).append("\" y2=\"").append(format(bottom)).append("\"/>\n");
+        svg.append("<text class=\"xlabel\" x=\"").append((LEFT + WIDTH - RIGHT) / 2).append("\" y=\"")
+                .append(HEIGHT - 6).append("\">").append(escape(this.xLabel)).append("</text>\n");
+        svg.append("<text class=\"ylabel\" transform=\"translate(12 ").append((TOP + HEIGHT - BOTTOM) / 2)
+                .append(") rotate(-90)\">").append(escape(this.yLabel)).append("</text>\n");
+        svg.append("</g>\n");
+    }
+
+    private void drawBars(StringBuilder svg, Series s, int bar, int numBars) {
+        double slot = (this.px(1) - this.px(0)) * 0.8 / numBars;
+        svg.append("<g class=\"").append(s.style).append("\">\n");
+        for (int i = 0; i < s.x.length; i++) {
+            if (Double.isNaN(s.y[i])) {
+                continue;
+            }
+            double left = this.px(s.x[i]) - slot * numBars / 2 + slot * bar;
+            double top = this.py(Math.max(s.y[i], this.yMin));
+            svg.append("<rect x=\"").append(format(left + slot * 0.05)).append("\" y=\"").append(format(top))
+                    .append("\" width=\"").append(format(slot * 0.9)).append("\" height=\"")
+                    .append(format(this.py(this.yMin) - top)).append('"');
+            if (s.tips != null) {
+                svg.append("><title>").append(escape(s.tips[i])).append("</title></rect>\n");
+            } else {
+                svg.append("/>\n");
+            }
+            if (s.lower != null && !Double.isNaN(s.lower[i]) && !Double.isNaN(s.upper[i])) {
+                double middle = left + slot / 2;
+                svg.append("<path class=\"error\" d=\"M").append(format(middle)).append(' ')
+                        .append(format(this.py(s.lower[i]))).append('V').append(format(this.py(s.upper[i])))
+                        .append("M").append(format(middle - slot * 0.15)).append(' ')
+                        .append(format(this.py(s.lower[i]))).append('h').append(format(slot * 0.3))
+                        .append("M").append(format(middle - slot * 0.15)).append(' ')
+                        .append(format(this.py(s.upper[i]))).append('h').append(format(slot * 0.3))
+                        .append("\"/>\n");
+            }
+        }
+        svg.append("</g>\n");
+    }
+
+    private void drawLine(StringBuilder svg, Series s) {
+        StringBuilder path = new StringBuilder();
+        boolean drawing = false;
+        for (int i = 0; i < s.x.length; i++) {
+            if (Double.isNaN(s.y[i])) {
+                drawing = false;
+                continue;
+            }
+            path.append(drawing ? 'L' : 'M').append(format(this.px(s.x[i]))).append(' ')
+                    .append(format(this.py(s.y[i])));
+            drawing = true;
+        }
+        svg.append("<path class=\"line ").append(s.style).append("\" d=\"").append(path).append("\"/>\n");
+    }
+
+    private void drawPoints(StringBuilder svg, Series s) {
+        svg.append("<g class=\"").append(s.style).append("\">\n");
+        for (int i = 0; i < s.x.length; i++) {
+            if (Double.isNaN(s.y[i])) {
+                continue;
+            }
+            svg.append("<circle cx=\"").append(format(this.px(s.x[i]))).append("\" cy=\"")
+                    .append(format(this.py(s.y[i]))).append("\" r=\"")
+                    .append(format(s.radius == null ? 2.5 : s.radius[i])).append('"');
+            if (s.pointStyle != null) {
+                svg.append(" class=\"").append(s.pointStyle[i]).append('"');
+            }
+            svg.append("/>\n");
+        }
+        svg.append("</g>\n");
+    }
+
+    private void legend(StringBuilder svg) {
+        int y = TOP + 4;
+        for (Series s : this.series) {
+            if (s.label == null) {
+                continue;
+            }
+            svg.append("<g class=\"legend ").append(s.style).append("\"><rect x=\"").append(WIDTH - RIGHT - 110)
+                    .append("\" y=\"").append(y - 8).append("\" width=\"10\" height=\"10\"/><text x=\"")
+                    .append(WIDTH - RIGHT - 96).append("\" y=\"").append(y + 1).append("\">")
+                    .append(escape(s.label)).append("</text></g>\n");
+            y += 14;
+        }
+    }
+
+    /**
+     * @return A tick label with as many decimals as the step needs.
+     */
+    static String tick(double value, double step) {
+        int decimals = Math.max(0, (int) Math.ceil(-Math.log10(step) - 1e-9));
+        return String.format(Locale.ROOT, "%." + decimals + "f", Math.abs(value) < step / 2 ? 0 : value);
+    }
+
+    /**
+     * @return A coordinate rounded to a tenth of a pixel.
+     */
+    static String format(double value) {
+        long tenths = Math.round(value * 10);
+        return tenths % 10 == 0 ? Long.toString(tenths / 10)
+                : (tenths < 0 ? "-" : "") + Math.abs(tenths) / 10 + "." + Math.abs(tenths) % 10;
+    }
+
+    /**
+     * @return The text with the characters HTML reserves escaped.
+     */
+    static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                escaped.append("&lt;");
+                break;
+            case '>':
+                escaped.append("&gt;");
+                break;
+            case '&':
+                escaped.append("&amp;");
+                break;
+            case '"':
+                escaped.append("&quot;");
+                break;
+            default:
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,302 @@
+package report;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import analytics.Trials;
+
+/**
+ * What a report shows of a cohort, built from the summary of each subject.
+ * Accuracy pools the trials of every subject, with a Wilson interval.
+ * Response time is the median of the subjects' medians, with its quartiles,
+ * so that a subject with many trials does not outweigh the rest. The plots
+ * that would have a point per subject or per trial are pre-aggregated: the
+ * learning curve by position in the session, the accuracy against response
+ * time scatter on a grid once there are more than MAX_SCATTER subjects, and
+ * the distance thresholds as a histogram.
+ *
+ * Classes Related To:
+ *  -SessionSummary.java
+ *      -The summary of each subject.
+ *  -HtmlReport.java
+ *      -Renders the summary.
+ *
+ */
+public final class CohortSummary {
+
+    /** Most subjects drawn as points of the scatter; more are binned on a grid. */
+    public static final int MAX_SCATTER = 1000;
+
+    /** Cells on each side of the scatter grid. */
+    public static final int SCATTER_GRID = 40;
+
+    /** Bins of the histogram of distance thresholds. */
+    public static final int THRESHOLD_BINS = 25;
+
+    private final List<SessionSummary> subjects;
+    private final int numTrials;
+    private final SessionSummary.Cell overall = new SessionSummary.Cell();
+    private final SessionSummary.Cell byDifficulty[];
+    private final SessionSummary.Cell byDistance[];
+    private final SessionSummary.Cell byCongruency[];
+    private final SessionSummary.Flags flags = new SessionSummary.Flags();
+
+    private final double positionTrial[] = new double[SessionSummary.NUM_POSITION_BINS];
+    private final double positionAccuracy[] = new double[SessionSummary.NUM_POSITION_BINS];
+    private final double positionMeanRT[] = new double[SessionSummary.NUM_POSITION_BINS];
+    private final int positionTrials[] = new int[SessionSummary.NUM_POSITION_BINS];
+
+    private double scatterAccuracy[];
+    private double scatterMedianRT[];
+    private int scatterCount[];
+
+    private final double thresholdBin[] = new double[THRESHOLD_BINS];
+    private final int thresholdCount[] = new int[THRESHOLD_BINS];
+
+    /**
+     * Constructor.
+     * @param subjects The summary of each subject, in order.
+     */
+    private CohortSummary(List<SessionSummary> subjects) {
+        this.subjects = Collections.unmodifiableList(new ArrayList<SessionSummary>(subjects));
+        int trials = 0;
+        for (SessionSummary subject : subjects) {
+            trials += subject.getNumTrials();
+            this.flags.add(subject.getFlags());
+        }
+        this.numTrials = trials;
+        this.byDifficulty = new SessionSummary.Cell[Trials.DIFFICULTIES.length];
+        this.byDistance = new SessionSummary.Cell[SessionSummary.MAX_DISTANCE + 1];
+        this.byCongruency = new SessionSummary.Cell[SessionSummary.CONGRUENCIES.length];
+    }
+
+    /**
+     * Summarize a cohort.
+     * @param subjects The summary of each subject, in order.
+     * @return The summary.
+     */
+    public static CohortSummary of(List<SessionSummary> subjects) {
+        CohortSummary cohort = new CohortSummary(subjects);
+        int n = subjects.size();
+        SessionSummary.Cell cells[] = new SessionSummary.Cell[n];
+        for (int i = 0; i < n; i++) {
+            cells[i] = subjects.get(i).getOverall();
+        }
+        cohort.pool(cohort.overall, cells);
+        for (int d = 0; d < cohort.byDifficulty.length; d++) {
+            for (int i = 0; i < n; i++) {
+                cells[i] = subjects.get(i).getByDifficulty()[d];
+            }
+            cohort.byDifficulty[d] = new SessionSummary.Cell();
+            cohort.pool(cohort.byDifficulty[d], cells);
+        }
+        for (int d = 0; d < cohort.byDistance.length; d++) {
+            for (int i = 0; i < n; i++) {
+                cells[i] = subjects.get(i).getByDistance()[d];
+            }
+            cohort.byDistance[d] = new SessionSummary.Cell();
+            cohort.pool(cohort.byDistance[d], cells);
+        }
+        for (int c = 0; c < cohort.byCongruency.length; c++) {
+            for (int i = 0; i < n; i++) {
+                cells[i] = subjects.get(i).getByCongruency()[c];
+            }
+            cohort.byCongruency[c] = new SessionSummary.Cell();
+            cohort.pool(cohort.byCongruency[c], cells);
+        }
+        cohort.learningCurve();
+        cohort.scatter();
+        cohort.thresholds();
+        return cohort;
+    }
+
+    /**
+     * Pool the cells of the subjects: their trials add up, their median
+     * response times give the quartiles.
+     */
+    private void pool(SessionSummary.Cell cell, SessionSummary.Cell cells[]) {
+        int trials = 0;
+        int correct = 0;
+        double medians[] = new double[cells.length];
+        int numMedians = 0;
+        for (SessionSummary.Cell subject : cells) {
+            trials += subject.getTrials();
+            correct += subject.getCorrect();
+            if (!Double.isNaN(subject.getMedianRT())) {
+                medians[numMedians++] = subject.getMedianRT();
+            }
+        }
+        cell.set(trials, correct, medians, numMedians);
+    }
+
+    /**
+     * Add up the position bins of the subjects.
+     */
+    private void learningCurve() {
+        int correct[] = new int[SessionSummary.NUM_POSITION_BINS];
+        double timeSum[] = new double[SessionSummary.NUM_POSITION_BINS];
+        for (SessionSummary subject : this.subjects) {
+            for (int b = 0; b < SessionSummary.NUM_POSITION_BINS; b++) {
+                this.positionTrials[b] += subject.positionTrials[b];
+                correct[b] += subject.positionCorrect[b];
+                timeSum[b] += subject.positionTimeSum[b];
+            }
+        }
+        for (int b = 0; b < SessionSummary.NUM_POSITION_BINS; b++) {
+            this.positionTrial[b] = b * SessionSummary.POSITION_BIN + (SessionSummary.POSITION_BIN + 1) / 2.0;
+            this.positionAccuracy[b] = this.positionTrials[b] == 0 ? Double.NaN
+                    : (double) correct[b] / this.positionTrials[b];
+            this.positionMeanRT[b] = correct[b] == 0 ? Double.NaN : timeSum[b] / correct[b];
+        }
+    }
+
+    /**
+     * Place each subject by accuracy and median response time, on a grid if
+     * there are too many to draw.
+     */
+    private void scatter() {
+        int n = 0;
+        double accuracy[] = new double[this.subjects.size()];
+        double median[] = new double[this.subjects.size()];
+        for (SessionSummary subject : this.subjects) {
+            SessionSummary.Cell cell = subject.getOverall();
+            if (!Double.isNaN(cell.getAccuracy()) && !Double.isNaN(cell.getMedianRT())) {
+                accuracy[n] = cell.getAccuracy();
+                median[n] = cell.getMedianRT();
+                n++;
+            }
+        }
+        if (n <= MAX_SCATTER) {
+            this.scatterAccuracy = Arrays.copyOf(accuracy, n);
+            this.scatterMedianRT = Arrays.copyOf(median, n);
+            this.scatterCount = new int[n];
+            Arrays.fill(this.scatterCount, 1);
+            return;
+        }
+
+        double maxMedian = 0;
+        for (int i = 0; i < n; i++) {
+            maxMedian = Math.max(maxMedian, median[i]);
+        }
+        int grid[] = new int[SCATTER_GRID * SCATTER_GRID];
+        for (int i = 0; i < n; i++) {
+            int x = Math.min(SCATTER_GRID - 1, (int) (median[i] / maxMedian * SCATTER_GRID));
+            int y = Math.min(SCATTER_GRID - 1, (int) (accuracy[i] * SCATTER_GRID));
+            grid[y * SCATTER_GRID + x]++;
+        }
+        int cells = 0;
+        for (int count : grid) {
+            cells += count > 0 ? 1 : 0;
+        }
+        this.scatterAccuracy = new double[cells];
+        this.scatterMedianRT = new double[cells];
+        this.scatterCount = new int[cells];
+        int k = 0;
+        for (int g = 0; g < grid.length; g++) {
+            if (grid[g] > 0) {
+                this.scatterMedianRT[k] = (g % SCATTER_GRID + 0.5) * maxMedian / SCATTER_GRID;
+                this.scatterAccuracy[k] = (g / SCATTER_GRID + 0.5) / SCATTER_GRID;
+                this.scatterCount[k] = grid[g];
+                k++;
+            }
+        }
+    }
+
+    /**
+     * Count the converged distance thresholds in each bin, from 0 to MAX_DISTANCE.
+     */
+    private void thresholds() {
+        double width = (double) SessionSummary.MAX_DISTANCE / THRESHOLD_BINS;
+        for (int b = 0; b < THRESHOLD_BINS; b++) {
+            this.thresholdBin[b] = (b + 0.5) * width;
+        }
+        for (SessionSummary subject : this.subjects) {
+            if (subject.getDistanceFit() != null && subject.getDistanceFit().isConverged()) {
+                double threshold = subject.getDistanceFit().getThreshold();
+                if (threshold >= 0 && threshold <= SessionSummary.MAX_DISTANCE) {
+                    this.thresholdCount[Math.min(THRESHOLD_BINS - 1, (int) (threshold / width))]++;
+                }
+            }
+        }
+    }
+
+    /** @return The summary of each subject, in order. */
+    public List<SessionSummary> getSubjects() {
+        return this.subjects;
+    }
+
+    public int getNumTrials() {
+        return this.numTrials;
+    }
+
+    public SessionSummary.Cell getOverall() {
+        return this.overall;
+    }
+
+    /** @return A cell per difficulty, indexed as Trials.DIFFICULTIES. */
+    public SessionSummary.Cell[] getByDifficulty() {
+        return this.byDifficulty;
+    }
+
+    /** @return A cell per letter distance, indexed by distance. */
+    public SessionSummary.Cell[] getByDistance() {
+        return this.byDistance;
+    }
+
+    /** @return A cell per congruency, indexed as SessionSummary.CONGRUENCIES. */
+    public SessionSummary.Cell[] getByCongruency() {
+        return this.byCongruency;
+    }
+
+    /** @return The flags of all subjects added up. */
+    public SessionSummary.Flags getFlags() {
+        return this.flags;
+    }
+
+    /** @return Middle trial of each position bin. */
+    public double[] getPositionTrial() {
+        return this.positionTrial;
+    }
+
+    /** @return Pooled accuracy of each position bin. */
+    public double[] getPositionAccuracy() {
+        return this.positionAccuracy;
+    }
+
+    /** @return Mean response time of the correct trials of each position bin. */
+    public double[] getPositionMeanRT() {
+        return this.positionMeanRT;
+    }
+
+    /** @return Trials in each position bin. */
+    public int[] getPositionTrials() {
+        return this.positionTrials;
+    }
+
+    /** @return Accuracy of each point of the scatter. */
+    public double[] getScatterAccuracy() {
+        return this.scatterAccuracy;
+    }
+
+    /** @return Median response time of each point of the scatter. */
+    public double[] getScatterMedianRT() {
+        return this.scatterMedianRT;
+    }
+
+    /** @return Subjects at each point of the scatter, 1 unless binned. */
+    public int[] getScatterCount() {
+        return this.scatterCount;
+    }
+
+    /** @return Middle of each bin of the threshold histogram. */
+    public double[] getThresholdBin() {
+        return this.thresholdBin;
+    }
+
+    /** @return Subjects in each bin of the threshold histogram. */
+    public int[] getThresholdCount() {
+        return this.thresholdCount;
+    }
+}
@@ -0,0 +1,374 @@
+package report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import analytics.PsychometricFit;
+import analytics.Trials;
+
+/**
+ * Renders the summary of a session or of a cohort as a self-contained HTML
+ * page: the style sheet and the SVG charts are inline and there is no
+ * script, so a page opens from disk or an e-mail without anything else.
+ * Every chart is drawn from the pre-aggregated summary, so a page costs the
+ * same whatever the number of trials behind it.
+ *
+ * Classes Related To:
+ *  -SessionSummary.java, CohortSummary.java
+ *      -What the pages show.
+ *  -Chart.java
+ *      -Draws each chart.
+ *  -ReportGenerator.java
+ *      -Writes the pages of a results tree.
+ *
+ */
+public final class HtmlReport {
+
+    /** Points of each fitted curve. */
+    static final int CURVE_POINTS = 60;
+
+    /** Radius of a scatter point that stands for the most subjects. */
+    static final double MAX_RADIUS = 9;
+
+    static final String STYLE = "body{font-family:sans-serif;margin:24px;color:#222;max-width:1000px}"
+            + "h1{font-size:22px}h2{font-size:17px;margin-top:28px;border-bottom:1px solid #ccc}"
+            + "table{border-collapse:collapse;font-size:13px;margin:8px 0}"
+            + "th,td{padding:3px 8px;border-bottom:1px solid #eee;text-align:right}"
+            + "th:first-child,td:first-child{text-align:left}.note{color:#666;font-size:13px}"
+            + ".charts{display:flex;flex-wrap:wrap;gap:8px}"
+            + ".chart text{font-size:11px;fill:#333}.chart .title{font-size:13px;text-anchor:middle}"
+            + ".xtick,.xlabel,.ylabel{text-anchor:middle}.ytick{text-anchor:end}"
+            + ".axis line{stroke:#888}.axis .grid{stroke:#eee}"
+            + ".line{fill:none;stroke-width:2}.error{stroke:#333;fill:none}"
+            + ".s0{fill:#4c78a8;stroke:#4c78a8}.s1{fill:#f58518;stroke:#f58518}"
+            + ".s2{fill:#54a24b;stroke:#54a24b}.line.s0,.line.s1,.line.s2{fill:none}"
+            + ".correct{fill:#4c78a8}.incorrect{fill:#e45756}"
+            + ".flagged{stroke:#000;stroke-width:1.5}.bin{fill:#4c78a8;fill-opacity:.6}"
+            + ".legend text{font-size:11px}.legend rect{stroke:none}"
+            + ".flag{color:#b00}";
+
+    private HtmlReport() {
+    }
+
+    /**
+     * Render the page of one subject.
+     * @param summary The subject's summary, with its per-trial plots.
+     * @param index Link back to the cohort page, null for none.
+     * @return The page.
+     */
+    public static String session(SessionSummary summary, String index) {
+        StringBuilder page = new StringBuilder(64 * 1024);
+        String title = "Subject " + summary.getSubjectID();
+        begin(page, title);
+        if (index != null) {
+            page.append("<p><a href=\"").append(Chart.escape(index)).append("\">Cohort report</a></p>\n");
+        }
+        page.append("<table><tr><th>Age</th><th>Gender</th><th>Trials</th><th>Sessions</th><th>Accuracy</th>"
+                + "<th>Median RT (s)</th><th>Distance threshold</th></tr>\n<tr><td>")
+                .append(summary.getAge()).append("</td><td>").append(Chart.escape(summary.getGender()))
+                .append("</td><td>").append(summary.getNumTrials()).append("</td><td>")
+                .append(summary.getFlags().getSessions()).append("</td><td>")
+                .append(percent(summary.getOverall().getAccuracy())).append("</td><td>")
+                .append(number(summary.getOverall().getMedianRT(), 3)).append("</td><td>")
+                .append(threshold(summary.getDistanceFit())).append("</td></tr></table>\n");
+
+        conditions(page, summary.getByDifficulty(), summary.getByDistance(), summary.getByCongruency(),
+                summary.getDistanceFit(), "Median and quartiles of the correct trials.");
+        flags(page, summary.getFlags(), summary.getNumTrials());
+
+        page.append("<h2>Trials</h2>\n");
+        int points = summary.getPointTrial().length;
+        if (points < summary.getNumTrials()) {
+            page.append("<p class=\"note\">").append(points).append(" of ").append(summary.getNumTrials())
+                    .append(" trials are drawn: the fastest and slowest of each run of trials.</p>\n");
+        }
+        double trial[] = new double[points];
+        String style[] = new String[points];
+        for (int i = 0; i < points; i++) {
+            trial[i] = summary.getPointTrial()[i];
+            style[i] = (summary.getPointCorrect()[i] ? "correct" : "incorrect")
+                    + (summary.getPointFlagged()[i] ? " flagged" : "");
+        }
+        page.append("<div class=\"charts\">\n");
+        page.append(new Chart("Response time of each trial", "Trial", "Response time (s)")
+                .points(null, "s0", trial, summary.getPointTime(), null, style).toSvg());
+        page.append(new Chart("Running accuracy, last " + SessionSummary.RUNNING_WINDOW + " trials", "Trial",
+                "Accuracy").yRange(0, 1)
+                .line(null, "s0", summary.getRunningTrial(), summary.getRunningAccuracy()).toSvg());
+        page.append("</div>\n<p class=\"note\">Blue: correct, red: incorrect, outlined: flagged.</p>\n");
+        return end(page);
+    }
+
+    /**
+     * Render the page of a cohort.
+     * @param cohort The cohort's summary.
+     * @param pages Whether each subject has a page to link to, see pageName().
+     * @return The page.
+     */
+    public static String cohort(CohortSummary cohort, boolean pages) {
+        StringBuilder page = new StringBuilder(64 * 1024 + 256 * cohort.getSubjects().size());
+        begin(page, "Cohort of " + cohort.getSubjects().size() + " subjects");
+        page.append("<table><tr><th>Subjects</th><th>Trials</th><th>Accuracy</th>"
+                + "<th>Median of median RT (s)</th></tr>\n<tr><td>")
+                .append(cohort.getSubjects().size()).append("</td><td>").append(cohort.getNumTrials())
+                .append("</td><td>").append(percent(cohort.getOverall().getAccuracy())).append("</td><td>")
+                .append(number(cohort.getOverall().getMedianRT(), 3)).append("</td></tr></table>\n");
+
+        conditions(page, cohort.getByDifficulty(), cohort.getByDistance(), cohort.getByCongruency(), null,
+                "Accuracy pools the trials of all subjects. Response time is the median and quartiles "
+                        + "of the subjects' median correct response times.");
+        flags(page, cohort.getFlags(), cohort.getNumTrials());
+
+        page.append("<h2>Subjects</h2>\n<div class=\"charts\">\n");
+        page.append(new Chart("Learning curve", "Trial", "Accuracy").yRange(0, 1)
+                .line(null, "s0", cohort.getPositionTrial(), cohort.getPositionAccuracy()).toSvg());
+        page.append(new Chart("Response time by trial", "Trial", "Mean correct RT (s)")
+                .line(null, "s1", cohort.getPositionTrial(), cohort.getPositionMeanRT()).toSvg());
+        int counts[] = cohort.getScatterCount();
+        int most = 1;
+        for (int count : counts) {
+            most = Math.max(most, count);
+        }
+        double radius[] = new double[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            radius[i] = most == 1 ? 3 : 1.5 + (MAX_RADIUS - 1.5) * Math.sqrt((double) counts[i] / most);
+        }
+        page.append(new Chart("Accuracy against response time", "Median correct RT (s)", "Accuracy")
+                .yRange(0, 1).points(null, most == 1 ? "s0" : "bin", cohort.getScatterMedianRT(),
+                        cohort.getScatterAccuracy(), radius, null).toSvg());
+        double thresholds[] = new double[CohortSummary.THRESHOLD_BINS];
+        for (int b = 0; b < thresholds.length; b++) {
+            thresholds[b] = cohort.getThresholdCount()[b];
+        }
+        page.append(new Chart("Distance thresholds", "Letter distance", "Subjects")
+                .bars(null, "s2", cohort.getThresholdBin(), thresholds, null, null, null).toSvg());
+        page.append("</div>\n");
+        if (most > 1) {
+            page.append("<p class=\"note\">Subjects are binned on a ").append(CohortSummary.SCATTER_GRID)
+                    .append("&times;").append(CohortSummary.SCATTER_GRID)
+                    .append(" grid; the area of a point grows with its subjects, at most ").append(most)
+                    .append(".</p>\n");
+        }
+
+        page.append("<table><tr><th>Subject</th><th>Age</th><th>Gender</th><th>Trials</th><th>Accuracy</th>");
+        for (String difficulty : Trials.DIFFICULTIES) {
+            page.append("<th>").append(difficulty).append("</th>");
+        }
+        page.append("<th>Median RT (s)</th><th>Distance threshold</th><th>Flagged trials</th></tr>\n");
+        for (SessionSummary subject : cohort.getSubjects()) {
+            SessionSummary.Flags flags = subject.getFlags();
+            int flagged = flags.getGcTrials() + flags.getJitTrials() + flags.getFastTrials()
+                    + flags.getSlowTrials();
+            page.append("<tr><td>");
+            if (pages) {
+                page.append("<a href=\"").append(pageName(subject.getSubjectID())).append("\">")
+                        .append(subject.getSubjectID()).append("</a>");
+            } else {
+                page.append(subject.getSubjectID());
+            }
+            page.append("</td><td>").append(subject.getAge()).append("</td><td>")
+                    .append(Chart.escape(subject.getGender())).append("</td><td>").append(subject.getNumTrials())
+                    .append("</td><td>").append(percent(subject.getOverall().getAccuracy())).append("</td>");
+            for (SessionSummary.Cell cell : subject.getByDifficulty()) {
+                page.append("<td>").append(percent(cell.getAccuracy())).append("</td>");
+            }
+            page.append("<td>").append(number(subject.getOverall().getMedianRT(), 3)).append("</td><td>")
+                    .append(threshold(subject.getDistanceFit())).append("</td><td")
+                    .append(flagged > 0 ? " class=\"flag\">" : ">").append(flagged).append("</td></tr>\n");
+        }
+        page.append("</table>\n<p class=\"note\">Flagged trials may count under more than one flag.</p>\n");
+        return end(page);
+    }
+
+    /**
+     * @return File name of the page of a subject.
+     */
+    public static String pageName(int subjectID) {
+        return "subject_" + subjectID + ".html";
+    }
+
+    /**
+     * Write a page.
+     * @param page The page.
+     * @param out The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(String page, File out) throws IOException {
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(out.toPath()),
+                StandardCharsets.UTF_8)) {
+            writer.write(page);
+        }
+    }
+
+    /**
+     * Render accuracy and response time by difficulty, distance and congruency.
+     * @param fit The fit to draw over accuracy by distance, null for none.
+     * @param rtNote What the response times are.
+     */
+    private static void conditions(StringBuilder page, SessionSummary.Cell byDifficulty[],
+            SessionSummary.Cell byDistance[], SessionSummary.Cell byCongruency[],
+            PsychometricFit.Logistic fit, String rtNote) {
+        page.append("<h2>By difficulty and size congruency</h2>\n<div class=\"charts\">\n");
+        page.append(accuracyBars("Accuracy by difficulty", "Difficulty", Trials.DIFFICULTIES, byDifficulty));
+        page.append(timeBars("Response time by difficulty", "Difficulty", Trials.DIFFICULTIES, byDifficulty));
+        page.append(accuracyBars("Accuracy by size congruency", "Correct letter", congruencyLabels(),
+                byCongruency));
+        page.append(timeBars("Response time by size congruency", "Correct letter", congruencyLabels(),
+                byCongruency));
+        page.append("</div>\n");
+
+        page.append("<h2>By letter distance</h2>\n<div class=\"charts\">\n");
+        int levels = 0;
+        for (SessionSummary.Cell cell : byDistance) {
+            levels += cell.getTrials() > 0 ? 1 : 0;
+        }
+        double distance[] = new double[levels];
+        double accuracy[] = new double[levels];
+        double median[] = new double[levels];
+        double lower[] = new double[levels];
+        double upper[] = new double[levels];
+        int k = 0;
+        for (int d = 0; d < byDistance.length; d++) {
+            if (byDistance[d].getTrials() > 0) {
+                distance[k] = d;
+                accuracy[k] = byDistance[d].getAccuracy();
+                median[k] = byDistance[d].getMedianRT();
+                lower[k] = byDistance[d].getLowerRT();
+                upper[k] = byDistance[d].getUpperRT();
+                k++;
+            }
+        }
+        Chart chart = new Chart("Accuracy by letter distance", "Letter distance", "Accuracy").yRange(0, 1)
+                .xRange(0, SessionSummary.MAX_DISTANCE);
+        chart.points("Observed", "s0", distance, accuracy, null, null);
+        if (fit != null && fit.isConverged()) {
+            double x[] = new double[CURVE_POINTS];
+            double y[] = new double[CURVE_POINTS];
+            for (int i = 0; i < CURVE_POINTS; i++) {
+                x[i] = (double) SessionSummary.MAX_DISTANCE * i / (CURVE_POINTS - 1);
+                y[i] = fit.predict(x[i]);
+            }
+            chart.line("Fitted", "s1", x, y);
+        }
+        page.append(chart.toSvg());
+        page.append(new Chart("Response time by letter distance", "Letter distance", "Response time (s)")
+                .xRange(0, SessionSummary.MAX_DISTANCE).line("Median", "s0", distance, median)
+                .line("Quartiles", "s2", distance, lower).line(null, "s2", distance, upper).toSvg());
+        page.append("</div>\n");
+
+        page.append("<table><tr><th>Condition</th><th>Trials</th><th>Accuracy</th><th>95% interval</th>"
+                + "<th>Median RT (s)</th><th>Quartiles (s)</th></tr>\n");
+        for (int d = 0; d < byDifficulty.length; d++) {
+            row(page, Trials.DIFFICULTIES[d], byDifficulty[d]);
+        }
+        for (int c = 0; c < byCongruency.length; c++) {
+            row(page, congruencyLabels()[c], byCongruency[c]);
+        }
+        for (int d = 0; d < byDistance.length; d++) {
+            if (byDistance[d].getTrials() > 0) {
+                row(page, "Distance " + d, byDistance[d]);
+            }
+        }
+        page.append("</table>\n<p class=\"note\">").append(Chart.escape(rtNote))
+                .append(" Error bars of accuracy are 95% Wilson intervals.</p>\n");
+    }
+
+    private static String[] congruencyLabels() {
+        return new String[] {"Bigger (" + SessionSummary.CONGRUENCIES[0] + ")",
+                "Smaller (" + SessionSummary.CONGRUENCIES[1] + ")"};
+    }
+
+    private static String accuracyBars(String title, String xLabel, String labels[], SessionSummary.Cell cells[]) {
+        double x[] = new double[cells.length];
+        double y[] = new double[cells.length];
+        double lower[] = new double[cells.length];
+        double upper[] = new double[cells.length];
+        String tips[] = new String[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            x[i] = i;
+            y[i] = cells[i].getAccuracy();
+            lower[i] = cells[i].getAccuracyLower();
+            upper[i] = cells[i].getAccuracyUpper();
+            tips[i] = cells[i].getCorrect() + " of " + cells[i].getTrials() + " correct";
+        }
+        return new Chart(title, xLabel, "Accuracy").categories(labels).yRange(0, 1)
+                .bars(null, "s0", x, y, lower, upper, tips).toSvg();
+    }
+
+    private static String timeBars(String title, String xLabel, String labels[], SessionSummary.Cell cells[]) {
+        double x[] = new double[cells.length];
+        double y[] = new double[cells.length];
+        double lower[] = new double[cells.length];
+        double upper[] = new double[cells.length];
+        String tips[] = new String[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            x[i] = i;
+            y[i] = cells[i].getMedianRT();
+            lower[i] = cells[i].getLowerRT();
+            upper[i] = cells[i].getUpperRT();
+            tips[i] = Double.isNaN(y[i]) ? "No correct trials"
+                    : String.format(Locale.ROOT, "Median %.3f s of %d", y[i], cells[i].getCorrect());
+        }
+        return new Chart(title, xLabel, "Response time (s)").categories(labels)
+                .bars(null, "s1", x, y, lower, upper, tips).toSvg();
+    }
+
+    private static void row(StringBuilder page, String condition, SessionSummary.Cell cell) {
+        page.append("<tr><td>").append(Chart.escape(condition)).append("</td><td>").append(cell.getTrials())
+                .append("</td><td>").append(percent(cell.getAccuracy())).append("</td><td>")
+                .append(percent(cell.getAccuracyLower())).append(" &ndash; ")
+                .append(percent(cell.getAccuracyUpper())).append("</td><td>")
+                .append(number(cell.getMedianRT(), 3)).append("</td><td>").append(number(cell.getLowerRT(), 3))
+                .append(" &ndash; ").append(number(cell.getUpperRT(), 3)).append("</td></tr>\n");
+    }
+
+    /**
+     * Render the timing-quality flags.
+     */
+    private static void flags(StringBuilder page, SessionSummary.Flags flags, int trials) {
+        page.append("<h2>Timing quality</h2>\n<table><tr><th>Flag</th><th>Trials</th><th>Share</th></tr>\n");
+        flag(page, "Response overlapped a GC pause", flags.getGcTrials(), trials);
+        flag(page, "Over " + number(SessionSummary.JIT_FLAG_MILLIS, 0) + " ms of JIT compilation",
+                flags.getJitTrials(), trials);
+        flag(page, "Faster than " + number(SessionSummary.FAST_SECONDS, 2) + " s", flags.getFastTrials(),
+                trials);
+        flag(page, "Slower than " + number(SessionSummary.SLOW_SECONDS, 0) + " s", flags.getSlowTrials(),
+                trials);
+        flag(page, "Runtime not recorded", flags.getUnmeasuredTrials(), trials);
+        page.append("</table>\n");
+    }
+
+    private static void flag(StringBuilder page, String name, int count, int trials) {
+        page.append("<tr><td>").append(Chart.escape(name)).append("</td><td")
+                .append(count > 0 ? " class=\"flag\">" : ">").append(count).append("</td><td>")
+                .append(percent(trials == 0 ? Double.NaN : (double) count / trials)).append("</td></tr>\n");
+    }
+
+    private static void begin(StringBuilder page, String title) {
+        page.append("<!DOCTYPE html>\n<html lang=\"en\"><head><meta charset=\"utf-8\"><title>")
+                .append(Chart.escape(title)).append("</title>\n<style>").append(STYLE)
+                .append("</style></head>\n<body>\n<h1>").append(Chart.escape(title)).append("</h1>\n");
+    }
+
+    private static String end(StringBuilder page) {
+        return page.append("</body></html>\n").toString();
+    }
+
+    private static String threshold(PsychometricFit.Logistic fit) {
+        return fit != null && fit.isConverged()
+                ? number(fit.getThreshold(), 2) + " &plusmn; " + number(fit.getThresholdError(), 2) : "&ndash;";
+    }
+
+    private static String percent(double fraction) {
+        return Double.isNaN(fraction) ? "&ndash;" : String.format(Locale.ROOT, "%.1f%%", 100 * fraction);
+    }
+
+    private static String number(double value, int decimals) {
+        return Double.isNaN(value) ? "&ndash;" : String.format(Locale.ROOT, "%." + decimals + "f", value);
+    }
+}
@@ -0,0 +1,114 @@
+package report;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import analytics.CohortExporter;
+import analytics.TaskPool;
+
+/**
+ * Writes the HTML reports of a results file or of a whole results tree.
+ *
+ * Each subject is one task on a TaskPool, which reads the subject's results,
+ * summarizes them, writes the subject's page if asked to, and then drops the
+ * per-trial plots. Only the summaries are kept for the cohort page, so memory
+ * does not grow with the number of trials.
+ *
+ * Classes Related To:
+ *  -SessionSummary.java, CohortSummary.java
+ *      -What the reports show.
+ *  -HtmlReport.java
+ *      -Renders the pages.
+ *  -TaskPool.java
+ *      -Runs the subjects in parallel.
+ *  -ReportMain.java (main)
+ *      -Writes the reports from the command line.
+ *
+ */
+public class ReportGenerator {
+
+    private static final Logger logger = Logger.getLogger(ReportGenerator.class);
+
+    /** File name of the cohort page. */
+    public static final String INDEX = "index.html";
+
+    private final int threads;
+
+    /**
+     * Constructor.
+     * @param threads Number of subjects summarized at once.
+     */
+    public ReportGenerator(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Summarize a results file.
+     * @param file The results file of a subject, in a directory named by the subject.
+     * @return The summary.
+     * @throws IOException If the file cannot be read or parsed.
+     */
+    public static SessionSummary summarize(File file) throws IOException {
+        String subject = file.getAbsoluteFile().getParentFile().getName();
+        try {
+            return SessionSummary.of(Integer.parseInt(subject), CohortExporter.readTrials(file));
+        } catch (NumberFormatException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write the cohort page of a results tree, and the page of each subject
+     * if asked to. A subject whose file cannot be read or parsed is logged
+     * and skipped.
+     * @param resultsDir The results tree, such as results_letters.
+     * @param outDir The directory to write the pages to, made if missing.
+     * @param pages Whether to write the page of each subject.
+     * @return The cohort's summary.
+     * @throws IOException If a page cannot be written or the reports are interrupted.
+     */
+    public CohortSummary writeCohort(File resultsDir, File outDir, boolean pages) throws IOException {
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("Cannot make " + outDir);
+        }
+        List<File> files = CohortExporter.findResults(resultsDir);
+        try (TaskPool pool = new TaskPool(this.threads, "report-generator")) {
+            List<Future<SessionSummary>> tasks = new ArrayList<Future<SessionSummary>>(files.size());
+            for (File file : files) {
+                tasks.add(pool.submit(() -> {
+                    SessionSummary summary = summarize(file);
+                    if (pages) {
+                        HtmlReport.write(HtmlReport.session(summary, INDEX),
+                                new File(outDir, HtmlReport.pageName(summary.getSubjectID())));
+                    }
+                    summary.dropPoints();
+                    return summary;
+                }));
+            }
+            List<SessionSummary> subjects = new ArrayList<SessionSummary>(files.size());
+            for (Future<SessionSummary> task : tasks) {
+                try {
+                    subjects.add(task.get());
+                } catch (ExecutionException e) {
+                    logger.error("Skipping a subject: " + e.getCause().getMessage());
+                }
+            }
+            CohortSummary cohort = CohortSummary.of(subjects);
+            HtmlReport.write(HtmlReport.cohort(cohort, pages), new File(outDir, INDEX));
+            logger.info("Reported " + subjects.size() + " subjects on " + this.threads + " threads");
+            return cohort;
+        } catch (InterruptedException e) {
+            throw new IOException("Reporting interrupted", e);
+        }
+    }
+
+    public int getThreads() {
+        return this.threads;
+    }
+}
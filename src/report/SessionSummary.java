@@ -0,0 +1,519 @@
+package report;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import analytics.PsychometricFit;
+import analytics.Trials;
+import controller.DataWriter;
+
+/**
+ * What a report shows of one results file: accuracy and response time by
+ * difficulty, letter distance and size congruency, timing-quality flags, and
+ * the response time of each trial, downsampled to at most MAX_POINTS points.
+ *
+ * Everything is computed once from the trials, which are then dropped, so a
+ * cohort report only holds a summary per subject. The counts per position in
+ * the session add up across subjects, see CohortSummary.
+ *
+ * Response times are those of correct trials. A trial is congruent when the
+ * correct letter is the bigger one. A trial is flagged when its response
+ * window overlapped a GC pause or JIT_FLAG_MILLIS of JIT compilation, or its
+ * response was faster than FAST_SECONDS or slower than SLOW_SECONDS.
+ *
+ * Classes Related To:
+ *  -CohortSummary.java
+ *      -Adds up the summaries of a cohort.
+ *  -HtmlReport.java
+ *      -Renders a summary.
+ *
+ */
+public final class SessionSummary {
+
+    /** Size congruencies, in the order of the congruency cells. */
+    public static final String CONGRUENCIES[] = {"Congruent", "Incongruent"};
+
+    /** Largest letter distance. */
+    public static final int MAX_DISTANCE = 25;
+
+    /** Responses faster than this, in seconds, are anticipations. */
+    public static final double FAST_SECONDS = 0.15;
+
+    /** Responses slower than this, in seconds, are lapses of attention. */
+    public static final double SLOW_SECONDS = 5;
+
+    /** JIT compilation during a response window, in milliseconds, that flags the trial. */
+    public static final double JIT_FLAG_MILLIS = 5;
+
+    /** A gap between trials longer than this starts a new session. */
+    public static final Duration SESSION_GAP = Duration.ofMinutes(30);
+
+    /** Most points of a per-trial plot. */
+    public static final int MAX_POINTS = 500;
+
+    /** Trials in each window of the running accuracy. */
+    public static final int RUNNING_WINDOW = 10;
+
+    /** Trials in each position bin. */
+    public static final int POSITION_BIN = 10;
+
+    /** Number of position bins; later trials count in the last. */
+    public static final int NUM_POSITION_BINS = 30;
+
+    static final int SUBJECT_AGE_COLUMN = indexOf(DataWriter.SUBJECT_AGE);
+    static final int SUBJECT_GENDER_COLUMN = indexOf(DataWriter.SUBJECT_GENDER);
+    static final int CORRECT_COLUMN = indexOf(DataWriter.IS_CORRECT);
+    static final int DIFFICULTY_COLUMN = indexOf(DataWriter.DIFFICULTY);
+    static final int DISTANCE_COLUMN = indexOf(DataWriter.DISTANCE);
+    static final int SIZE_CORRECT_COLUMN = indexOf(DataWriter.WHICH_SIZE_CORRECT);
+    static final int RESPONSE_TIME_COLUMN = indexOf(DataWriter.RESPONSE_TIME);
+    static final int DATE_TIME_COLUMN = indexOf(DataWriter.DATE_TIME);
+    static final int GC_PAUSE_COLUMN = indexOf(DataWriter.GC_PAUSE);
+    static final int GC_COUNT_COLUMN = indexOf(DataWriter.GC_COUNT);
+    static final int JIT_TIME_COLUMN = indexOf(DataWriter.JIT_TIME);
+
+    /** Accuracy and response time of the trials of one condition. */
+    public static final class Cell {
+        private int trials;
+        private int correct;
+        private double medianRT = Double.NaN;
+        private double lowerRT = Double.NaN;
+        private double upperRT = Double.NaN;
+
+        Cell() {
+        }
+
+        /**
+         * Set the counts and the quartiles of the response times.
+         * @param times Response times, sorted in place.
+         * @param n Number of response times.
+         */
+        void set(int trials, int correct, double times[], int n) {
+            this.trials = trials;
+            this.correct = correct;
+            if (n > 0) {
+                Arrays.sort(times, 0, n);
+                this.lowerRT = quantile(times, n, 0.25);
+                this.medianRT = quantile(times, n, 0.5);
+                this.upperRT = quantile(times, n, 0.75);
+            }
+        }
+
+        public int getTrials() {
+            return this.trials;
+        }
+
+        public int getCorrect() {
+            return this.correct;
+        }
+
+        /** @return Fraction correct, NaN if there are no trials. */
+        public double getAccuracy() {
+            return this.trials == 0 ? Double.NaN : (double) this.correct / this.trials;
+        }
+
+        /** @return Lower end of the 95% Wilson interval of the accuracy. */
+        public double getAccuracyLower() {
+            return wilson(this.correct, this.trials, -1);
+        }
+
+        /** @return Upper end of the 95% Wilson interval of the accuracy. */
+        public double getAccuracyUpper() {
+            return wilson(this.correct, this.trials, 1);
+        }
+
+        /** @return Median response time in seconds, NaN if none. */
+        public double getMedianRT() {
+            return this.medianRT;
+        }
+
+        /** @return First quartile of the response times. */
+        public double getLowerRT() {
+            return this.lowerRT;
+        }
+
+        /** @return Third quartile of the response times. */
+        public double getUpperRT() {
+            return this.upperRT;
+        }
+
+        /**
+         * @return An end of the 95% Wilson score interval of k successes in n.
+         */
+        static double wilson(int k, int n, int sign) {
+            if (n == 0) {
+                return Double.NaN;
+            }
+            double z = 1.959964;
+            double p = (double) k / n;
+            double center = p + z * z / (2 * n);
+            double spread = z * Math.sqrt(p * (1 - p) / n + z * z / (4.0 * n * n));
+            return (center + sign * spread) / (1 + z * z / n);
+        }
+    }
+
+    /** Counts of the trials with each timing-quality flag. */
+    public static final class Flags {
+        int gcTrials;
+        int jitTrials;
+        int unmeasuredTrials;
+        int fastTrials;
+        int slowTrials;
+        int sessions;
+
+        /** Add the counts of other flags to these. */
+        void add(Flags other) {
+            this.gcTrials += other.gcTrials;
+            this.jitTrials += other.jitTrials;
+            this.unmeasuredTrials += other.unmeasuredTrials;
+            this.fastTrials += other.fastTrials;
+            this.slowTrials += other.slowTrials;
+            this.sessions += other.sessions;
+        }
+
+        /** @return Trials whose response window overlapped a GC pause. */
+        public int getGcTrials() {
+            return this.gcTrials;
+        }
+
+        /** @return Trials with more than JIT_FLAG_MILLIS of JIT compilation. */
+        public int getJitTrials() {
+            return this.jitTrials;
+        }
+
+        /** @return Trials without runtime columns, from before they were recorded or with the monitor off. */
+        public int getUnmeasuredTrials() {
+            return this.unmeasuredTrials;
+        }
+
+        /** @return Trials answered faster than FAST_SECONDS. */
+        public int getFastTrials() {
+            return this.fastTrials;
+        }
+
+        /** @return Trials answered slower than SLOW_SECONDS. */
+        public int getSlowTrials() {
+            return this.slowTrials;
+        }
+
+        /** @return Sessions in the file, split at gaps longer than SESSION_GAP. */
+        public int getSessions() {
+            return this.sessions;
+        }
+    }
+
+    private final int subjectID;
+    private final int age;
+    private final String gender;
+    private final int numTrials;
+    private final Cell overall = new Cell();
+    private final Cell byDifficulty[] = newCells(Trials.DIFFICULTIES.length);
+    private final Cell byDistance[] = newCells(MAX_DISTANCE + 1);
+    private final Cell byCongruency[] = newCells(CONGRUENCIES.length);
+    private final Flags flags = new Flags();
+    private PsychometricFit.Logistic distanceFit;
+
+    /** Trials, correct trials and the sum of correct response times in each position bin. */
+    final int positionTrials[] = new int[NUM_POSITION_BINS];
+    final int positionCorrect[] = new int[NUM_POSITION_BINS];
+    final double positionTimeSum[] = new double[NUM_POSITION_BINS];
+
+    /** The per-trial plot: trial number, response time, and whether correct and flagged. */
+    private int pointTrial[];
+    private double pointTime[];
+    private boolean pointCorrect[];
+    private boolean pointFlagged[];
+
+    /** The running accuracy: trial number and accuracy over the last RUNNING_WINDOW trials. */
+    private double runningTrial[];
+    private double runningAccuracy[];
+
+    /**
+     * Constructor.
+     */
+    private SessionSummary(int subjectID, int age, String gender, int numTrials) {
+        this.subjectID = subjectID;
+        this.age = age;
+        this.gender = gender;
+        this.numTrials = numTrials;
+    }
+
+    /**
+     * @return Index of a column in DataWriter.COLUMNS.
+     */
+    private static int indexOf(String column) {
+        return Arrays.asList(DataWriter.COLUMNS).indexOf(column);
+    }
+
+    private static Cell[] newCells(int n) {
+        Cell cells[] = new Cell[n];
+        for (int i = 0; i < n; i++) {
+            cells[i] = new Cell();
+        }
+        return cells;
+    }
+
+    /**
+     * Summarize a results file.
+     * @param subjectID The subject.
+     * @param rows The values of each trial, see CohortExporter.readTrials().
+     * @return The summary.
+     * @throws NumberFormatException If a value cannot be parsed.
+     */
+    public static SessionSummary of(int subjectID, List<String[]> rows) {
+        int n = rows.size();
+        SessionSummary summary = new SessionSummary(subjectID,
+                n == 0 ? -1 : Integer.parseInt(rows.get(0)[SUBJECT_AGE_COLUMN]),
+                n == 0 ? "" : rows.get(0)[SUBJECT_GENDER_COLUMN], n);
+
+        double distance[] = new double[n];
+        boolean correct[] = new boolean[n];
+        double time[] = new double[n];
+        boolean flagged[] = new boolean[n];
+        int difficulty[] = new int[n];
+        int congruency[] = new int[n];
+        LocalDateTime previous = null;
+        for (int i = 0; i < n; i++) {
+            String values[] = rows.get(i);
+            correct[i] = values[CORRECT_COLUMN].equals("yes");
+            distance[i] = Integer.parseInt(values[DISTANCE_COLUMN]);
+            time[i] = Double.parseDouble(values[RESPONSE_TIME_COLUMN]);
+            difficulty[i] = Arrays.asList(Trials.DIFFICULTIES).indexOf(values[DIFFICULTY_COLUMN]);
+            congruency[i] = values[SIZE_CORRECT_COLUMN].equals("Bigger") ? 0 : 1;
+            flagged[i] = summary.flag(values, time[i]);
+            try {
+                LocalDateTime dateTime = LocalDateTime.parse(values[DATE_TIME_COLUMN]);
+                if (previous == null || Duration.between(previous, dateTime).compareTo(SESSION_GAP) > 0) {
+                    summary.flags.sessions++;
+                }
+                previous = dateTime;
+            } catch (DateTimeParseException e) {
+                // Counted with the session before it.
+            }
+
+            int bin = Math.min(i / POSITION_BIN, NUM_POSITION_BINS - 1);
+            summary.positionTrials[bin]++;
+            if (correct[i]) {
+                summary.positionCorrect[bin]++;
+                summary.positionTimeSum[bin] += time[i];
+            }
+        }
+
+        double times[] = new double[n];
+        summary.fill(summary.overall, correct, time, times, i -> true);
+        for (int d = 0; d < summary.byDifficulty.length; d++) {
+            int level = d;
+            summary.fill(summary.byDifficulty[d], correct, time, times, i -> difficulty[i] == level);
+        }
+        for (int d = 0; d < summary.byDistance.length; d++) {
+            int level = d;
+            summary.fill(summary.byDistance[d], correct, time, times, i -> distance[i] == level);
+        }
+        for (int c = 0; c < summary.byCongruency.length; c++) {
+            int level = c;
+            summary.fill(summary.byCongruency[c], correct, time, times, i -> congruency[i] == level);
+        }
+        summary.distanceFit = PsychometricFit.fitLogistic(distance, correct, n);
+        summary.downsample(correct, time, flagged);
+        return summary;
+    }
+
+    /**
+     * Count the flags of a trial.
+     * @return Whether the trial is flagged.
+     */
+    private boolean flag(String values[], double time) {
+        double gcPause = Double.parseDouble(values[GC_PAUSE_COLUMN]);
+        double gcCount = Double.parseDouble(values[GC_COUNT_COLUMN]);
+        double jit = Double.parseDouble(values[JIT_TIME_COLUMN]);
+        boolean gc = gcPause > 0 || gcCount > 0;
+        boolean compiling = jit > JIT_FLAG_MILLIS;
+        boolean fast = time < FAST_SECONDS;
+        boolean slow = time > SLOW_SECONDS;
+        this.flags.gcTrials += gc ? 1 : 0;
+        this.flags.jitTrials += compiling ? 1 : 0;
+        this.flags.unmeasuredTrials += Double.isNaN(gcCount) ? 1 : 0;
+        this.flags.fastTrials += fast ? 1 : 0;
+        this.flags.slowTrials += slow ? 1 : 0;
+        return gc || compiling || fast || slow;
+    }
+
+    /**
+     * Fill a cell with the trials that match.
+     * @param times Space for the response times.
+     */
+    private void fill(Cell cell, boolean correct[], double time[], double times[],
+            IntPredicate matches) {
+        int trials = 0;
+        int numCorrect = 0;
+        for (int i = 0; i < this.numTrials; i++) {
+            if (matches.test(i)) {
+                trials++;
+                if (correct[i]) {
+                    times[numCorrect++] = time[i];
+                }
+            }
+        }
+        cell.set(trials, numCorrect, times, numCorrect);
+    }
+
+    /**
+     * Keep at most MAX_POINTS points of the per-trial plots. Each bucket of
+     * trials keeps its fastest and slowest response, so outliers stay visible,
+     * and the running accuracy keeps the mean of each bucket.
+     */
+    private void downsample(boolean correct[], double time[], boolean flagged[]) {
+        int n = this.numTrials;
+        int buckets = Math.min(n, MAX_POINTS / 2);
+        int keep[] = new int[n <= MAX_POINTS ? n : 2 * buckets];
+        int kept = 0;
+        if (n <= MAX_POINTS) {
+            for (int i = 0; i < n; i++) {
+                keep[kept++] = i;
+            }
+        } else {
+            for (int b = 0; b < buckets; b++) {
+                int from = (int) ((long) b * n / buckets);
+                int to = (int) ((long) (b + 1) * n / buckets);
+                int fastest = from;
+                int slowest = from;
+                for (int i = from + 1; i < to; i++) {
+                    fastest = time[i] < time[fastest] ? i : fastest;
+                    slowest = time[i] > time[slowest] ? i : slowest;
+                }
+                keep[kept++] = Math.min(fastest, slowest);
+                if (fastest != slowest) {
+                    keep[kept++] = Math.max(fastest, slowest);
+                }
+            }
+        }
+        this.pointTrial = new int[kept];
+        this.pointTime = new double[kept];
+        this.pointCorrect = new boolean[kept];
+        this.pointFlagged = new boolean[kept];
+        for (int k = 0; k < kept; k++) {
+            int i = keep[k];
+            this.pointTrial[k] = i + 1;
+            this.pointTime[k] = time[i];
+            this.pointCorrect[k] = correct[i];
+            this.pointFlagged[k] = flagged[i];
+        }
+
+        int points = Math.min(n, MAX_POINTS);
+        this.runningTrial = new double[points];
+        this.runningAccuracy = new double[points];
+        int windowCorrect = 0;
+        int bucket = 0;
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            windowCorrect += correct[i] ? 1 : 0;
+            if (i >= RUNNING_WINDOW) {
+                windowCorrect -= correct[i - RUNNING_WINDOW] ? 1 : 0;
+            }
+            sum += (double) windowCorrect / Math.min(i + 1, RUNNING_WINDOW);
+            count++;
+            if ((long) (i + 1) * points / n > bucket) {
+                this.runningTrial[bucket] = i + 1 - (count - 1) / 2.0;
+                this.runningAccuracy[bucket] = sum / count;
+                bucket++;
+                sum = 0;
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Drop the per-trial plots, once they are rendered, to keep a cohort small.
+     */
+    public void dropPoints() {
+        this.pointTrial = new int[0];
+        this.pointTime = new double[0];
+        this.pointCorrect = new boolean[0];
+        this.pointFlagged = new boolean[0];
+        this.runningTrial = new double[0];
+        this.runningAccuracy = new double[0];
+    }
+
+    /**
+     * @return A quantile of the first n sorted values, interpolated between neighbours.
+     */
+    static double quantile(double sorted[], int n, double p) {
+        double position = p * (n - 1);
+        int below = (int) Math.floor(position);
+        int above = Math.min(n - 1, below + 1);
+        return sorted[below] + (position - below) * (sorted[above] - sorted[below]);
+    }
+
+    public int getSubjectID() {
+        return this.subjectID;
+    }
+
+    public int getAge() {
+        return this.age;
+    }
+
+    public String getGender() {
+        return this.gender;
+    }
+
+    public int getNumTrials() {
+        return this.numTrials;
+    }
+
+    public Cell getOverall() {
+        return this.overall;
+    }
+
+    /** @return A cell per difficulty, indexed as Trials.DIFFICULTIES. */
+    public Cell[] getByDifficulty() {
+        return this.byDifficulty;
+    }
+
+    /** @return A cell per letter distance, indexed by distance. */
+    public Cell[] getByDistance() {
+        return this.byDistance;
+    }
+
+    /** @return A cell per congruency, indexed as CONGRUENCIES. */
+    public Cell[] getByCongruency() {
+        return this.byCongruency;
+    }
+
+    public Flags getFlags() {
+        return this.flags;
+    }
+
+    /** @return The fit of accuracy against letter distance. */
+    public PsychometricFit.Logistic getDistanceFit() {
+        return this.distanceFit;
+    }
+
+    public int[] getPointTrial() {
+        return this.pointTrial;
+    }
+
+    public double[] getPointTime() {
+        return this.pointTime;
+    }
+
+    public boolean[] getPointCorrect() {
+        return this.pointCorrect;
+    }
+
+    public boolean[] getPointFlagged() {
+        return this.pointFlagged;
+    }
+
+    public double[] getRunningTrial() {
+        return this.runningTrial;
+    }
+
+    public double[] getRunningAccuracy() {
+        return this.runningAccuracy;
+    }
+}
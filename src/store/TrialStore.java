@@ -0,0 +1,560 @@
+package store;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import controller.DataWriter;
+
+/**
+ * Keeps the trials of every session in an embedded SQL database, next to the
+ * CSV files DataWriter writes. Each session gets its own key, so a subject ID
+ * that is used again starts a new session instead of appending to an old one,
+ * and trials of many subjects can be queried together.
+ *
+ * The database runs in-process through JDBC; any embedded, file-based engine
+ * with a JDBC driver works, such as Apache Derby (the default) or H2. The
+ * driver is loaded by name, so it only needs to be on the class path when the
+ * store is enabled (store.enabled).
+ *
+ * Like NetworkSink, the FX thread only queues work. A background thread runs
+ * the inserts as batches of a prepared statement, committed once batchSize
+ * trials are waiting, flushMillis after the first, or at the end of the session.
+ *
+ * Every column of the results CSV is stored, typed where it is queried
+ * (subject, difficulty, date), so exportCSV() reproduces the CSV files.
+ *
+ * A session is closed when it ends and before the next one is inserted. If
+ * the insert fails, no session is open until the next one starts, and the
+ * trials submitted meanwhile are dropped with a warning rather than stored
+ * under the previous session's key; they are still in the CSV files.
+ *
+ * Classes Related To:
+ *  -DataWriter.java (controller)
+ *      -The columns and their values.
+ *  -LetterGameController.java (controller)
+ *      -Starts sessions and submits their trials.
+ *  -StoreExportMain.java (main)
+ *      -Exports the store to CSV files.
+ *
+ */
+public class TrialStore {
+
+    private static final Logger logger = Logger.getLogger(TrialStore.class);
+
+    static final String CREATE_SESSIONS = "CREATE TABLE sessions ("
+            + "session_id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, "
+            + "subject_id INT NOT NULL, "
+            + "station INT NOT NULL, "
+            + "seed BIGINT NOT NULL, "
+            + "started TIMESTAMP NOT NULL)";
+
+    static final String CREATE_TRIALS = "CREATE TABLE trials ("
+            + "session_id BIGINT NOT NULL REFERENCES sessions (session_id), "
+            + "trial INT NOT NULL, "
+            + "subject_id INT NOT NULL, "
+            + "subject_age INT NOT NULL, "
+            + "subject_gender VARCHAR(8) NOT NULL, "
+            + "left_choice CHAR(1) NOT NULL, "
+            + "right_choice CHAR(1) NOT NULL, "
+            + "side_correct VARCHAR(5) NOT NULL, "
+            + "side_picked VARCHAR(5) NOT NULL, "
+            + "correct VARCHAR(3) NOT NULL, "
+            + "difficulty VARCHAR(6) NOT NULL, "
+            + "distance INT NOT NULL, "
+            + "left_size INT NOT NULL, "
+            + "right_size INT NOT NULL, "
+            + "font_ratio DOUBLE NOT NULL, "
+            + "size_correct VARCHAR(7) NOT NULL, "
+            + "size_picked VARCHAR(7) NOT NULL, "
+            + "response_time DOUBLE NOT NULL, "
+            + "date_time TIMESTAMP NOT NULL, "
+            + "consecutive_rounds INT NOT NULL, "
+            + "gc_pause_ms DOUBLE, "
+            + "gc_count INT, "
+            + "jit_ms INT, "
+            + "PRIMARY KEY (session_id, trial))";
+
+    /** Columns added to trials since it was first created, added to an older store when it is opened. */
+    static final String ADDED_COLUMNS[][] = {
+            {"GC_PAUSE_MS", "ALTER TABLE trials ADD COLUMN gc_pause_ms DOUBLE"},
+            {"GC_COUNT", "ALTER TABLE trials ADD COLUMN gc_count INT"},
+            {"JIT_MS", "ALTER TABLE trials ADD COLUMN jit_ms INT"},
+    };
+
+    static final String CREATE_INDEXES[] = {
+            "CREATE INDEX trials_subject ON trials (subject_id)",
+            "CREATE INDEX trials_difficulty ON trials (difficulty)",
+            "CREATE INDEX trials_date ON trials (date_time)",
+    };
+
+    static final String INSERT_SESSION =
+            "INSERT INTO sessions (subject_id, station, seed, started) VALUES (?, ?, ?, ?)";
+
+    static final String INSERT_TRIAL = "INSERT INTO trials VALUES "
+            + "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /** The trial columns in the order of DataWriter.COLUMNS. */
+    static final String SELECT_TRIALS = "SELECT subject_id, subject_age, subject_gender, "
+            + "left_choice, right_choice, side_correct, side_picked, correct, difficulty, "
+            + "distance, left_size, right_size, font_ratio, size_correct, size_picked, "
+            + "response_time, date_time, consecutive_rounds, gc_pause_ms, gc_count, jit_ms FROM trials";
+
+    /** Work for the store thread. */
+    private static final class Command {
+        /** Values of a trial in the order of DataWriter.COLUMNS, null for the start or end of a session. */
+        final String values[];
+        /** Start of a session: subject, station and seed. */
+        final int subjectID;
+        final int station;
+        final long seed;
+        final boolean start;
+
+        Command(String values[], int subjectID, int station, long seed, boolean start) {
+            this.values = values;
+            this.subjectID = subjectID;
+            this.station = station;
+            this.seed = seed;
+            this.start = start;
+        }
+    }
+
+    /** Queued at the end of a session. */
+    private static final Command END = new Command(null, 0, 0, 0, false);
+
+    private final Connection connection;
+    private final int batchSize;
+    private final long flushMillis;
+
+    private final BlockingQueue<Command> queue;
+    private final Thread writer;
+    private volatile boolean running;
+
+    /** Statements and state of the store thread. */
+    private PreparedStatement insertSession;
+    private PreparedStatement insertTrial;
+    /** Key of the open session, or -1 while no session is open. */
+    private long sessionID = -1;
+    private int trial;
+    private int batched;
+    /** Trials submitted while no session was open, since the last warning. */
+    private int dropped;
+
+    private long trialsStored;
+    private long batchNanos;
+
+    /**
+     * Connect to the database and create the tables if they do not exist.
+     * @param driver Class name of the JDBC driver, empty if it registers itself.
+     * @param url JDBC URL of the database.
+     * @param batchSize Most trials inserted in one batch.
+     * @param flushMillis Longest time in milliseconds a trial waits to be inserted.
+     * @throws SQLException If the database cannot be opened.
+     * @throws ClassNotFoundException If the driver is not on the class path.
+     */
+    public TrialStore(String driver, String url, int batchSize, long flushMillis)
+            throws SQLException, ClassNotFoundException {
+        if (driver != null && !driver.isEmpty()) {
+            Class.forName(driver);
+        }
+        this.connection = DriverManager.getConnection(url);
+        this.connection.setAutoCommit(false);
+        createSchema(this.connection);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushMillis = flushMillis;
+        this.queue = new LinkedBlockingQueue<Command>();
+        this.running = true;
+        this.writer = new Thread(this::writeLoop, "trial-store");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "trial-store-shutdown"));
+        logger.info("Storing trials in " + url);
+    }
+
+    /**
+     * Open a store, or log why it cannot be opened.
+     * @return The store, or null if it cannot be opened.
+     */
+    public static TrialStore open(String driver, String url, int batchSize, long flushMillis) {
+        try {
+            return new TrialStore(driver, url, batchSize, flushMillis);
+        } catch (SQLException | ClassNotFoundException e) {
+            logger.error("Could not open trial store " + url + ", trials go to CSV only", e);
+            return null;
+        }
+    }
+
+    /**
+     * Create the tables and indexes if the database does not have them yet.
+     * @param connection Connection to the database.
+     * @throws SQLException If they cannot be created.
+     */
+    static void createSchema(Connection connection) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet tables = meta.getTables(null, null, "TRIALS", null)) {
+            if (tables.next()) {
+                addColumns(connection);
+                return;
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(CREATE_SESSIONS);
+            statement.executeUpdate(CREATE_TRIALS);
+            for (String index : CREATE_INDEXES) {
+                statement.executeUpdate(index);
+            }
+        }
+        connection.commit();
+        logger.info("Created trial store tables");
+    }
+
+    /**
+     * Add the columns an older store does not have yet.
+     * @param connection Connection to the database.
+     * @throws SQLException If they cannot be added.
+     */
+    static void addColumns(Connection connection) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        for (String added[] : ADDED_COLUMNS) {
+            try (ResultSet columns = meta.getColumns(null, null, "TRIALS", added[0])) {
+                if (columns.next()) {
+                    continue;
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(added[1]);
+            }
+            logger.info("Added column " + added[0] + " to the trial store");
+        }
+        connection.commit();
+    }
+
+    /**
+     * Start a new session. Trials submitted after this belong to it. Never blocks.
+     * @param subjectID The subject.
+     * @param station Number of the station.
+     * @param seed Seed of the session's pairs.
+     */
+    public void startSession(int subjectID, int station, long seed) {
+        this.queue.offer(new Command(null, subjectID, station, seed, true));
+    }
+
+    /**
+     * Queue a trial of the current session. Never blocks.
+     * @param values Values of the trial in the order of DataWriter.COLUMNS.
+     */
+    public void submit(String values[]) {
+        this.queue.offer(new Command(values, 0, 0, 0, false));
+    }
+
+    /**
+     * Insert whatever is waiting of the current session. Never blocks.
+     * Call after the session's last trial is submitted; trials submitted
+     * after this are dropped.
+     */
+    public void endSession() {
+        this.queue.offer(END);
+    }
+
+    /**
+     * Take work off the queue and insert it until closed.
+     */
+    private void writeLoop() {
+        try {
+            this.insertSession = this.connection.prepareStatement(INSERT_SESSION, Statement.RETURN_GENERATED_KEYS);
+            this.insertTrial = this.connection.prepareStatement(INSERT_TRIAL);
+        } catch (SQLException e) {
+            logger.error("Could not prepare trial store statements", e);
+            this.running = false;
+            return;
+        }
+        long deadline = 0;
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                Command command = this.queue.poll(this.running ? this.flushMillis : 0, TimeUnit.MILLISECONDS);
+                if (command == END) {
+                    this.closeSession();
+                } else if (command != null && command.start) {
+                    this.closeSession();
+                    this.insertSession(command);
+                } else if (command != null) {
+                    if (this.batched == 0) {
+                        deadline = System.currentTimeMillis() + this.flushMillis;
+                    }
+                    this.addTrial(command.values);
+                }
+                if (this.batched >= this.batchSize
+                        || (this.batched > 0 && System.currentTimeMillis() >= deadline)) {
+                    this.flush();
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (SQLException e) {
+                logger.error("Trial store write failed, trials are still in the CSV files", e);
+                this.rollback();
+            }
+        }
+        this.closeSession();
+    }
+
+    /**
+     * Insert what is waiting of the open session and close it. Trials
+     * submitted after this are dropped until the next session is inserted.
+     * A failed insert is logged and rolled back here, so the next session
+     * still starts.
+     */
+    private void closeSession() {
+        this.sessionID = -1;
+        this.trial = 0;
+        try {
+            this.flush();
+        } catch (SQLException e) {
+            logger.error("Trial store write failed, trials are still in the CSV files", e);
+            this.rollback();
+        }
+        if (this.dropped > 0) {
+            logger.warn(this.dropped + " trials submitted with no session open, not stored");
+            this.dropped = 0;
+        }
+    }
+
+    /**
+     * Insert the row of a new session and remember its key. The session is
+     * only open once the insert has been committed.
+     * @param command The start of the session.
+     * @throws SQLException If the insert fails.
+     */
+    private void insertSession(Command command) throws SQLException {
+        this.insertSession.setInt(1, command.subjectID);
+        this.insertSession.setInt(2, command.station);
+        this.insertSession.setLong(3, command.seed);
+        this.insertSession.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+        this.insertSession.executeUpdate();
+        long key;
+        try (ResultSet keys = this.insertSession.getGeneratedKeys()) {
+            keys.next();
+            key = keys.getLong(1);
+        }
+        this.connection.commit();
+        this.sessionID = key;
+    }
+
+    /**
+     * Add a trial to the batch.
+     * @param values Values of the trial in the order of DataWriter.COLUMNS.
+     * @throws SQLException If the values cannot be bound.
+     */
+    private void addTrial(String values[]) throws SQLException {
+        if (this.sessionID < 0) {
+            this.dropped++;
+            return;
+        }
+        PreparedStatement insert = this.insertTrial;
+        insert.setLong(1, this.sessionID);
+        insert.setInt(2, ++this.trial);
+        insert.setInt(3, Integer.parseInt(values[0]));
+        insert.setInt(4, Integer.parseInt(values[1]));
+        insert.setString(5, values[2]);
+        insert.setString(6, values[3]);
+        insert.setString(7, values[4]);
+        insert.setString(8, values[5]);
+        insert.setString(9, values[6]);
+        insert.setString(10, values[7]);
+        insert.setString(11, values[8]);
+        insert.setInt(12, Integer.parseInt(values[9]));
+        insert.setInt(13, Integer.parseInt(values[10]));
+        insert.setInt(14, Integer.parseInt(values[11]));
+        insert.setDouble(15, Double.parseDouble(values[12]));
+        insert.setString(16, values[13]);
+        insert.setString(17, values[14]);
+        insert.setDouble(18, Double.parseDouble(values[15]));
+        insert.setTimestamp(19, Timestamp.valueOf(LocalDateTime.parse(values[16])));
+        insert.setInt(20, Integer.parseInt(values[17]));
+        setRuntime(insert, 21, values[18], Types.DOUBLE);
+        setRuntime(insert, 22, values[19], Types.INTEGER);
+        setRuntime(insert, 23, values[20], Types.INTEGER);
+        insert.addBatch();
+        this.batched++;
+    }
+
+    /**
+     * Bind a runtime column, NULL if it was not measured.
+     * @param insert The statement.
+     * @param index Index of the parameter.
+     * @param value The value as written to the CSV, DataWriter.UNKNOWN if not measured.
+     * @param type Types.DOUBLE or Types.INTEGER.
+     * @throws SQLException If the value cannot be bound.
+     */
+    private static void setRuntime(PreparedStatement insert, int index, String value, int type) throws SQLException {
+        if (value.equals(DataWriter.UNKNOWN)) {
+            insert.setNull(index, type);
+        } else if (type == Types.INTEGER) {
+            insert.setInt(index, Integer.parseInt(value));
+        } else {
+            insert.setDouble(index, Double.parseDouble(value));
+        }
+    }
+
+    /**
+     * Run and commit the batch, if any.
+     * @throws SQLException If the batch fails.
+     */
+    private void flush() throws SQLException {
+        if (this.batched == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        this.insertTrial.executeBatch();
+        this.connection.commit();
+        this.batchNanos += System.nanoTime() - start;
+        this.trialsStored += this.batched;
+        this.batched = 0;
+    }
+
+    private void rollback() {
+        this.batched = 0;
+        try {
+            this.insertTrial.clearBatch();
+            this.connection.rollback();
+        } catch (SQLException e) {
+            logger.error("Trial store rollback failed", e);
+        }
+    }
+
+    /**
+     * Write the trials of the store as the results CSV of DataWriter, in the
+     * order they were run.
+     * @param connection Connection to the database.
+     * @param subjectID Only the trials of this subject, or all trials if negative.
+     * @param out Where to write the CSV.
+     * @return Number of trials written.
+     * @throws SQLException If the trials cannot be read.
+     * @throws IOException If the CSV cannot be written.
+     */
+    public static int exportCSV(Connection connection, int subjectID, Writer out)
+            throws SQLException, IOException {
+        String sql = SELECT_TRIALS + (subjectID >= 0 ? " WHERE subject_id = ?" : "")
+                + " ORDER BY session_id, trial";
+        out.write(String.join(DataWriter.DELIMITER, DataWriter.COLUMNS) + "\n");
+        int count = 0;
+        try (PreparedStatement select = connection.prepareStatement(sql)) {
+            if (subjectID >= 0) {
+                select.setInt(1, subjectID);
+            }
+            try (ResultSet rows = select.executeQuery()) {
+                String values[] = new String[DataWriter.COLUMNS.length];
+                while (rows.next()) {
+                    values[0] = Integer.toString(rows.getInt(1));
+                    values[1] = Integer.toString(rows.getInt(2));
+                    for (int i = 2; i < 9; i++) {
+                        values[i] = rows.getString(i + 1);
+                    }
+                    values[9] = Integer.toString(rows.getInt(10));
+                    values[10] = Integer.toString(rows.getInt(11));
+                    values[11] = Integer.toString(rows.getInt(12));
+                    values[12] = Double.toString(rows.getDouble(13));
+                    values[13] = rows.getString(14);
+                    values[14] = rows.getString(15);
+                    values[15] = String.valueOf(rows.getDouble(16));
+                    values[16] = rows.getTimestamp(17).toLocalDateTime().toString();
+                    values[17] = Integer.toString(rows.getInt(18));
+                    double gcPause = rows.getDouble(19);
+                    values[18] = rows.wasNull() ? DataWriter.UNKNOWN : String.valueOf(gcPause);
+                    int gcCount = rows.getInt(20);
+                    values[19] = rows.wasNull() ? DataWriter.UNKNOWN : Integer.toString(gcCount);
+                    int jit = rows.getInt(21);
+                    values[20] = rows.wasNull() ? DataWriter.UNKNOWN : Integer.toString(jit);
+                    out.write(String.join(DataWriter.DELIMITER, values) + "\n");
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Export the trials of every subject to their own CSV file, laid out like
+     * DataWriter's results: dir/subjectID/results_subjectID.csv
+     * @param connection Connection to the database.
+     * @param dir Folder to export to.
+     * @return Number of subjects exported.
+     * @throws SQLException If the trials cannot be read.
+     * @throws IOException If a CSV cannot be written.
+     */
+    public static int exportSubjects(Connection connection, File dir) throws SQLException, IOException {
+        List<Integer> subjects = new ArrayList<Integer>();
+        try (Statement statement = connection.createStatement();
+                ResultSet rows = statement.executeQuery(
+                        "SELECT DISTINCT subject_id FROM trials ORDER BY subject_id")) {
+            while (rows.next()) {
+                subjects.add(rows.getInt(1));
+            }
+        }
+        for (int subjectID : subjects) {
+            String subjectId = Integer.toString(subjectID);
+            File subjectDir = new File(dir, subjectId);
+            subjectDir.mkdirs();
+            File file = new File(subjectDir, "results_" + subjectId + ".csv");
+            try (Writer out = new BufferedWriter(new FileWriter(file))) {
+                int count = exportCSV(connection, subjectID, out);
+                logger.info("Exported " + count + " trials to " + file.getPath());
+            }
+        }
+        return subjects.size();
+    }
+
+    /**
+     * Insert whatever is waiting and close the database.
+     */
+    public void close() {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        try {
+            this.writer.join(10000);
+            this.connection.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            logger.error("Could not close trial store", e);
+        }
+    }
+
+    /**
+     * Report what has been stored.
+     * @return String with trials stored and the time spent inserting them.
+     */
+    public String report() {
+        return "Trial store: " + this.trialsStored + " trials stored, "
+                + String.format("%.3f ms inserting", this.batchNanos / 1000000.0);
+    }
+
+    /**
+     * Get the number of trials and session commands waiting to be inserted.
+     * Safe to call from any thread.
+     * @return Number of commands queued.
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+}
@@ -0,0 +1,142 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies in nanoseconds with log-sized buckets: every power 
+ * of two is split into SUB_BUCKETS buckets, so a value is known to within 
+ * 1 / SUB_BUCKETS of itself at any scale. The memory is fixed when the 
+ * histogram is created and record() does not allocate.
+ * 
+ * A histogram is written by one thread. Reading from another thread is safe
+ * but may see a recording half done.
+ * 
+ */
+public class LatencyHistogram {
+    
+    /** Log2 of the number of buckets per power of two. */
+    static final int SUB_BUCKET_BITS = 4;
+    
+    /** Number of buckets per power of two. */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    /** Number of buckets, enough for any positive long. */
+    static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    
+    private final String name;
+    private final long counts[];
+    private long count;
+    private long sum;
+    private long max;
+    
+    /**
+     * Constructor.
+     * @param name Name of what is measured, used in reports.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+        this.counts = new long[NUM_BUCKETS];
+    }
+    
+    /**
+     * Record a latency. Negative latencies are recorded as 0.
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        this.counts[bucketOf(nanos)]++;
+        this.count++;
+        this.sum += nanos;
+        if (nanos > this.max) {
+            this.max = nanos;
+        }
+    }
+    
+    /**
+     * Index of the bucket of a value.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    
+    /**
+     * Highest value in a bucket.
+     */
+    static long highestInBucket(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+    
+    /**
+     * Get a percentile. The value is the top of its bucket, but never above the maximum.
+     * @param percentile Between 0 and 100.
+     * @return The latency in nanoseconds, 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.count));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return Math.min(highestInBucket(i), this.max);
+            }
+        }
+        return this.max;
+    }
+    
+    /**
+     * Forget everything recorded.
+     */
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+        this.count = 0;
+        this.sum = 0;
+        this.max = 0;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public long getMax() {
+        return max;
+    }
+    
+    /**
+     * @return Mean latency in nanoseconds, 0 if nothing has been recorded.
+     */
+    public double getMean() {
+        return this.count == 0 ? 0 : (double) this.sum / this.count;
+    }
+    
+    /**
+     * Report count, p50, p99, p99.9 and max in milliseconds.
+     * @return One line.
+     */
+    @Override
+    public String toString() {
+        return String.format("%-14s n=%-5d p50=%8.3f p99=%8.3f p99.9=%8.3f max=%8.3f ms", 
+                this.name, this.count, 
+                this.getPercentile(50) / 1e6, this.getPercentile(99) / 1e6, 
+                this.getPercentile(99.9) / 1e6, this.max / 1e6);
+    }
+}
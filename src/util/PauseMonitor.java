@@ -0,0 +1,227 @@
+package util;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.log4j.Logger;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+/**
+ * Records when the JVM paused for garbage collection, so each trial can
+ * report how much of its response window the subject's response time was
+ * inflated by a pause, and how much JIT compilation ran during it.
+ *
+ * Pauses are taken from the notification each GarbageCollectorMXBean sends
+ * after a collection, converted to the System.nanoTime() clock the response
+ * times are measured on, and kept in a ring of the most recent MAX_PAUSES.
+ * The JVM times collections in milliseconds, so pauses are known to within
+ * a millisecond. Collectors that run alongside the application (G1
+ * Concurrent GC, ZGC and Shenandoah Cycles) are not pauses and are ignored.
+ *
+ * A notification arrives on its own thread shortly after the pause, and may
+ * not have arrived yet when a trial is exported right after the response.
+ * The collection counters are read directly, so a Window also reports how
+ * many collections ended in it, whether or not they have been notified.
+ *
+ * Classes Related To:
+ *  -LetterGameController.java
+ *      -Opens a window at each onset and closes it at the response.
+ *  -DataWriter.java
+ *      -Writes the window's pause and JIT time as extra columns.
+ *
+ */
+public class PauseMonitor {
+
+    private static final Logger logger = Logger.getLogger(PauseMonitor.class);
+
+    /** Number of recent pauses kept. */
+    static final int MAX_PAUSES = 256;
+
+    /** The response window of one trial and what overlapped it. */
+    public static final class Window {
+        private final long startNanos;
+        private final long startGcCount;
+        private final long startJitMillis;
+        private long endNanos;
+        private long gcPauseNanos;
+        private long gcCount;
+        private long jitMillis;
+        private boolean closed;
+
+        Window(long startNanos, long startGcCount, long startJitMillis) {
+            this.startNanos = startNanos;
+            this.startGcCount = startGcCount;
+            this.startJitMillis = startJitMillis;
+        }
+
+        public long getStartNanos() {
+            return this.startNanos;
+        }
+
+        public long getEndNanos() {
+            return this.endNanos;
+        }
+
+        public boolean isClosed() {
+            return this.closed;
+        }
+
+        /** @return Time in milliseconds the window overlapped a GC pause. */
+        public double getGcPauseMillis() {
+            return this.gcPauseNanos / 1000000.0;
+        }
+
+        /** @return Number of collections that ended during the window. */
+        public long getGcCount() {
+            return this.gcCount;
+        }
+
+        /** @return Time in milliseconds the JIT compilers ran during the window, -1 if unknown. */
+        public long getJitMillis() {
+            return this.jitMillis;
+        }
+    }
+
+    private static PauseMonitor instance;
+
+    /** Collectors that pause the application. */
+    private final List<GarbageCollectorMXBean> pauseCollectors = new ArrayList<GarbageCollectorMXBean>();
+
+    private final CompilationMXBean compiler;
+
+    /** System.nanoTime() when the JVM started, to convert GC times to the nano clock. */
+    private final long jvmStartNanos;
+
+    /** Start and end of the most recent pauses, on the nano clock. Guarded by this. */
+    private final long pauseStarts[] = new long[MAX_PAUSES];
+    private final long pauseEnds[] = new long[MAX_PAUSES];
+    private long numPauses;
+
+    /**
+     * Get the monitor of this JVM, subscribing to the collectors the first time.
+     * @return The monitor.
+     */
+    public static synchronized PauseMonitor getInstance() {
+        if (instance == null) {
+            instance = new PauseMonitor();
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor. Subscribes to the notifications of every collector.
+     */
+    private PauseMonitor() {
+        this.jvmStartNanos = System.nanoTime() - ManagementFactory.getRuntimeMXBean().getUptime() * 1000000L;
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        this.compiler = compiler != null && compiler.isCompilationTimeMonitoringSupported() ? compiler : null;
+        NotificationListener listener = this::handleNotification;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!isPause(collector.getName())) {
+                continue;
+            }
+            this.pauseCollectors.add(collector);
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+            }
+        }
+        logger.info("Monitoring pauses of " + this.pauseCollectors.size() + " collectors"
+                + (this.compiler == null ? ", JIT time unknown" : ""));
+    }
+
+    /**
+     * @return Whether a collector of this name pauses the application.
+     */
+    static boolean isPause(String collectorName) {
+        return !collectorName.contains("Concurrent") && !collectorName.contains("Cycles");
+    }
+
+    /**
+     * Record the pause a notification reports. Called on the notification thread.
+     * @param notification The notification.
+     * @param handback Unused.
+     */
+    private void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GcInfo gc = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+        long start = this.jvmStartNanos + gc.getStartTime() * 1000000L;
+        long end = this.jvmStartNanos + gc.getEndTime() * 1000000L;
+        synchronized (this) {
+            int slot = (int) (this.numPauses % MAX_PAUSES);
+            this.pauseStarts[slot] = start;
+            this.pauseEnds[slot] = end;
+            this.numPauses++;
+        }
+    }
+
+    /**
+     * Open the response window of a trial.
+     * @param onsetNanos System.nanoTime() at the onset.
+     * @return The window.
+     */
+    public Window open(long onsetNanos) {
+        return new Window(onsetNanos, this.gcCount(), this.jitMillis());
+    }
+
+    /**
+     * Close the response window of a trial and measure what overlapped it.
+     * @param window The window.
+     * @param endNanos System.nanoTime() at the response.
+     */
+    public void close(Window window, long endNanos) {
+        window.endNanos = endNanos;
+        window.gcCount = this.gcCount() - window.startGcCount;
+        long jit = this.jitMillis();
+        window.jitMillis = jit < 0 ? -1 : jit - window.startJitMillis;
+        window.gcPauseNanos = this.overlap(window.startNanos, endNanos);
+        window.closed = true;
+    }
+
+    /**
+     * @return Time in nanoseconds the recorded pauses overlap an interval.
+     */
+    synchronized long overlap(long start, long end) {
+        long total = 0;
+        long first = Math.max(0, this.numPauses - MAX_PAUSES);
+        for (long i = this.numPauses - 1; i >= first; i--) {
+            int slot = (int) (i % MAX_PAUSES);
+            total += Math.max(0, Math.min(end, this.pauseEnds[slot]) - Math.max(start, this.pauseStarts[slot]));
+        }
+        return total;
+    }
+
+    /**
+     * @return Number of collections by the pausing collectors since the JVM started.
+     */
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : this.pauseCollectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * @return Total JIT compilation time in milliseconds, -1 if unknown.
+     */
+    private long jitMillis() {
+        return this.compiler == null ? -1 : this.compiler.getTotalCompilationTime();
+    }
+
+    /** @return Number of pauses recorded since the monitor started. */
+    public synchronized long getNumPauses() {
+        return this.numPauses;
+    }
+}
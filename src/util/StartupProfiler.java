@@ -0,0 +1,180 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Records how long each phase of start up takes, from the launch of the JVM
+ * until the login screen is interactive, and runs the start up work that does
+ * not need the FX thread (asset decoding, config loading, generator tables)
+ * in parallel background tasks.
+ *
+ * Sequential phases on the launching threads are recorded with mark(), which
+ * measures the time since the previous mark. Background phases are started
+ * with submit(). Once every submitted task has finished, reportWhenDone()
+ * writes the startup report to the log.
+ *
+ * Classes Related To:
+ *  -LettersMain.java
+ *      -Marks the launch phases and submits the background tasks.
+ *  -GameGUI.java
+ *      -Marks the phases of building the login screen.
+ *
+ */
+public final class StartupProfiler {
+
+    private static final Logger logger = Logger.getLogger(StartupProfiler.class);
+
+    /** Number of threads used for background start up tasks. */
+    static final int NUM_STARTUP_THREADS =
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+
+    /** The one profiler for this JVM. Created after NUM_STARTUP_THREADS, which it reads. */
+    private static final StartupProfiler INSTANCE = new StartupProfiler();
+
+    /** Nanoseconds in a millisecond. */
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    /** One recorded phase of start up. */
+    private static final class Phase {
+        final String name;
+        final String thread;
+        final long startNanos;
+        final long endNanos;
+        final boolean background;
+
+        Phase(String name, String thread, long startNanos, long endNanos, boolean background) {
+            this.name = name;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.background = background;
+        }
+    }
+
+    /** Time at which the profiler was created, taken as the start of main(). */
+    private final long originNanos;
+
+    /** Milliseconds the JVM had been running when the profiler was created. */
+    private final long jvmUptimeAtOrigin;
+
+    /** End of the most recent sequential phase. */
+    private long lastMarkNanos;
+
+    /** Every phase recorded so far. */
+    private final List<Phase> phases;
+
+    /** Every background task submitted so far. */
+    private final List<CompletableFuture<Void>> pending;
+
+    /** Runs the background tasks. */
+    private final ThreadPoolExecutor executor;
+
+    private StartupProfiler() {
+        this.originNanos = System.nanoTime();
+        this.lastMarkNanos = this.originNanos;
+        this.jvmUptimeAtOrigin = ManagementFactory.getRuntimeMXBean().getUptime();
+        this.phases = new ArrayList<Phase>();
+        this.pending = new ArrayList<CompletableFuture<Void>>();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                NUM_STARTUP_THREADS, NUM_STARTUP_THREADS,
+                1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                r -> {
+                    Thread t = new Thread(r, "startup-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static StartupProfiler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * End the current sequential phase and record the time spent in it
+     * since the previous mark.
+     * @param name Name of the phase that just finished.
+     */
+    public synchronized void mark(String name) {
+        long now = System.nanoTime();
+        this.phases.add(new Phase(name, Thread.currentThread().getName(),
+                this.lastMarkNanos, now, false));
+        this.lastMarkNanos = now;
+    }
+
+    /**
+     * Run a start up task in the background and record how long it takes.
+     * @param name Name of the phase.
+     * @param task The work to be done.
+     * @return Future that completes when the task has finished.
+     */
+    public synchronized CompletableFuture<Void> submit(String name, Runnable task) {
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                this.record(name, start, System.nanoTime());
+            }
+        }, this.executor);
+        future.whenComplete((result, ex) -> {
+            if (ex != null) {
+                logger.error("Startup task " + name + " failed.", ex);
+            }
+        });
+        this.pending.add(future);
+        return future;
+    }
+
+    private synchronized void record(String name, long start, long end) {
+        this.phases.add(new Phase(name, Thread.currentThread().getName(), start, end, true));
+    }
+
+    /**
+     * Write the startup report to the log once every background task
+     * submitted so far has finished.
+     */
+    public synchronized void reportWhenDone() {
+        CompletableFuture<?>[] tasks = this.pending.toArray(new CompletableFuture<?>[0]);
+        CompletableFuture.allOf(tasks).whenComplete((result, ex) -> logger.info(this.report()));
+    }
+
+    /**
+     * Generate the startup report.
+     * @return String one line per phase, with offsets from the start of main().
+     */
+    public synchronized String report() {
+        StringBuilder text = new StringBuilder();
+        text.append("Startup report (JVM uptime at main: ")
+            .append(this.jvmUptimeAtOrigin).append(" ms)\n");
+        long criticalPath = 0;
+        long allDone = 0;
+        for (Phase phase : this.phases) {
+            text.append(String.format("  %-4s %-20s %9.2f ms   [%9.2f .. %9.2f]  %s%n",
+                    phase.background ? "bg" : "fg",
+                    phase.name,
+                    (phase.endNanos - phase.startNanos) / NANOS_PER_MILLI,
+                    (phase.startNanos - this.originNanos) / NANOS_PER_MILLI,
+                    (phase.endNanos - this.originNanos) / NANOS_PER_MILLI,
+                    phase.thread));
+            if (!phase.background) {
+                criticalPath = Math.max(criticalPath, phase.endNanos - this.originNanos);
+            }
+            allDone = Math.max(allDone, phase.endNanos - this.originNanos);
+        }
+        text.append(String.format("  main() to login screen: %.2f ms, all start up work done: %.2f ms",
+                criticalPath / NANOS_PER_MILLI, allDone / NANOS_PER_MILLI));
+        return text.toString();
+    }
+}
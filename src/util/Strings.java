@@ -14,6 +14,7 @@ public class Strings {
     public static final String GENDER_FEEDBACK_SP = "Este es necesaria";
     public static final String AGE_FEEDBACK_SP = "Tienes que entrar un numero.";
     public static final String MALE_SP = "Masculino";
+    public static final String TIMING_WARNING_SP = "Aviso: la temporizacin de esta estacin est fuera de tolerancia.";
     public static final String FEMALE_SP = "Femenino";
     
     public static final String PRESS_NEXT_SP = "Presiona \"Siguiente\" cuando ests listo!";
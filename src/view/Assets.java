@@ -0,0 +1,108 @@
+package view;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+
+import javafx.scene.image.Image;
+
+/**
+ * Cache of decoded images. Each image is decoded once, either by the
+ * background start up task (preload()) or on first use, and shared by
+ * every screen afterwards.
+ *
+ * Images may be decoded off the FX thread. If the FX thread asks for an
+ * image that a background thread is still decoding, it waits for that
+ * decode rather than starting a second one.
+ *
+ * Classes Related To:
+ *  -SetUp.java
+ *      -Uses the cached backgrounds and star.
+ *  -LettersMain.java
+ *      -Starts the preload in the background.
+ *
+ */
+public final class Assets {
+
+    private static final Logger logger = Logger.getLogger(Assets.class);
+
+    /** Path to the images. */
+    static final String IMAGE_DIR = "/res/images/";
+
+    /** Name of the star image. */
+    static final String STAR = "star2";
+
+    /** Decoded images, keyed by image name. */
+    private static final ConcurrentMap<String, FutureTask<Image>> IMAGES =
+            new ConcurrentHashMap<String, FutureTask<Image>>();
+
+    /** Disable constructing of an object. */
+    private Assets() {
+
+    }
+
+    /**
+     * Decode every background and the star. Meant to be run in the background
+     * during start up.
+     */
+    public static void preload() {
+        for (int i = 0; i < SetUp.BACKGROUNDS.length; i++) {
+            getBackground(i);
+        }
+        getStar();
+    }
+
+    /**
+     * Get a background image scaled to the screen.
+     * @param level Index of the background.
+     * @return The decoded image.
+     */
+    static Image getBackground(int level) {
+        String name = SetUp.BACKGROUNDS[level];
+        return get(name, () -> new Image(IMAGE_DIR + name + ".png",
+                SetUp.SCREEN_WIDTH, SetUp.SCREEN_HEIGHT, false, true));
+    }
+
+    /**
+     * Get the star image.
+     * @return The decoded image.
+     */
+    static Image getStar() {
+        return get(STAR, () -> new Image(IMAGE_DIR + STAR + ".png"));
+    }
+
+    /**
+     * Get an image from the cache, decoding it on this thread if no other
+     * thread has started decoding it yet.
+     * @param name Key of the image.
+     * @param loader Decodes the image.
+     * @return The decoded image.
+     */
+    private static Image get(String name, Callable<Image> loader) {
+        FutureTask<Image> task = IMAGES.get(name);
+        if (task == null) {
+            FutureTask<Image> newTask = new FutureTask<Image>(loader);
+            task = IMAGES.putIfAbsent(name, newTask);
+            if (task == null) {
+                task = newTask;
+                long start = System.nanoTime();
+                task.run();
+                logger.debug("Decoded " + name + " in "
+                        + (System.nanoTime() - start) / 1000000.0 + " ms on "
+                        + Thread.currentThread().getName());
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while decoding " + name, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not decode " + name, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package view;
+
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import javafx.scene.effect.Blend;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.effect.ColorInput;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import model.AlphaPair;
+
+/**
+ * Draws the letters from a pre-rendered glyph atlas. Each side has two image 
+ * views in front of its option label, one shown and one staged. Staging points 
+ * the hidden view at the letter's rectangle in the atlas and moves it to where 
+ * the label would have drawn the letter; the swap at onset only changes which 
+ * views are visible. The option labels stay empty and only provide the backdrop.
+ * 
+ * The atlas is white. Each image view is tinted to the font color by blending
+ * a color over the opaque pixels of the letter.
+ * 
+ * Until the first onset, a one pixel view of each atlas page is shown too, so
+ * the pages are uploaded to the graphics pipeline before the first pair. They
+ * are removed when the next pair is staged.
+ * 
+ */
+class AtlasStimulusRenderer implements StimulusRenderer {
+    
+    private static final Logger logger = Logger.getLogger(AtlasStimulusRenderer.class);
+    
+    /** The graphical user interface. */
+    private final GameGUI view;
+    
+    /** The letters of every size. */
+    private final GlyphAtlas atlas;
+    
+    /** Falls back to the labels for a letter or size not in the atlas. */
+    private final LabelStimulusRenderer fallback;
+    
+    /** 
+     * Image views of the letters, indexed by [buffer][side]. One buffer is 
+     * staged while the other is (or was last) showing.
+     */
+    private final ImageView letters[][];
+    
+    /** Index of the buffer showing, or last shown. */
+    private int front;
+    
+    /** Color blended over the letters. */
+    private final ColorInput tint;
+    
+    /** Whether the staged pair is drawn by the fallback. */
+    private boolean stagedFallback;
+    
+    /** Whether the option labels hold text from the fallback. */
+    private boolean labelsHaveText;
+    
+    /** Views warming up the atlas pages, null once removed. */
+    private List<ImageView> warmUpNodes;
+    
+    /** Whether a staged pair has been shown yet. */
+    private boolean swapped;
+    
+    /**
+     * Constructor. Adds the image views to the stimulus layer.
+     * @param view The graphical user interface.
+     * @param atlas The atlas, already built.
+     */
+    AtlasStimulusRenderer(GameGUI view, GlyphAtlas atlas) {
+        this.view = view;
+        this.atlas = atlas;
+        this.fallback = new LabelStimulusRenderer(view);
+        this.tint = new ColorInput(0, 0, SetUp.SCREEN_WIDTH, SetUp.SCREEN_HEIGHT, SetUp.FONT_COLORS[0]);
+        this.letters = new ImageView[2][2];
+        Pane layer = view.getStimulusLayer();
+        for (int buffer = 0; buffer < 2; buffer++) {
+            for (int side = 0; side < 2; side++) {
+                this.letters[buffer][side] = this.createLetterView();
+                layer.getChildren().add(this.letters[buffer][side]);
+            }
+        }
+        this.warmUpNodes = atlas.createWarmUpNodes();
+        layer.getChildren().addAll(this.warmUpNodes);
+    }
+    
+    private ImageView createLetterView() {
+        ImageView letter = new ImageView();
+        letter.setVisible(false);
+        letter.setEffect(new Blend(BlendMode.SRC_ATOP, null, this.tint));
+        return letter;
+    }
+
+    @Override
+    public void stage(AlphaPair pair, boolean sizeVariation) {
+        if (this.swapped) {
+            this.removeWarmUpNodes();
+        }
+        int sizeOne = sizeVariation ? pair.getFontSizeOne() : SetUp.INITIAL_LETTER_SIZE;
+        int sizeTwo = sizeVariation ? pair.getFontSizeTwo() : SetUp.INITIAL_LETTER_SIZE;
+        GlyphAtlas.Glyph glyphOne = this.atlas.getGlyph(pair.getLetterOne(), sizeOne);
+        GlyphAtlas.Glyph glyphTwo = this.atlas.getGlyph(pair.getLetterTwo(), sizeTwo);
+        if (glyphOne == null || glyphTwo == null) {
+            logger.warn("Pair not in glyph atlas, drawing with labels: " 
+                    + pair.getLetterOne() + sizeOne + " " + pair.getLetterTwo() + sizeTwo);
+            this.stagedFallback = true;
+            this.labelsHaveText = true;
+            this.fallback.stage(pair, sizeVariation);
+            return;
+        }
+        this.stagedFallback = false;
+        if (this.labelsHaveText) {
+            view.getLeftOption().setText("");
+            view.getRightOption().setText("");
+            this.labelsHaveText = false;
+        }
+        int back = 1 - this.front;
+        this.place(this.letters[back][0], glyphOne, SetUp.LEFT_OPTION_X, SetUp.LEFT_OPTION_Y);
+        this.place(this.letters[back][1], glyphTwo, SetUp.RIGHT_OPTION_X, SetUp.RIGHT_OPTION_Y);
+    }
+    
+    /**
+     * Point an image view at a glyph and place it where an option label 
+     * at the given position would draw the letter.
+     * @param letter The image view.
+     * @param glyph The glyph.
+     * @param optionX X of the option label.
+     * @param optionY Y of the option label.
+     */
+    private void place(ImageView letter, GlyphAtlas.Glyph glyph, double optionX, double optionY) {
+        letter.setImage(this.atlas.getPage(glyph.page));
+        letter.setViewport(glyph.viewport);
+        letter.setLayoutX(optionX + (SetUp.OPTION_WIDTH - glyph.logicalWidth) / 2 + glyph.offsetX);
+        letter.setLayoutY(optionY + (SetUp.OPTION_HEIGHT - glyph.logicalHeight) / 2 + glyph.offsetY);
+    }
+
+    @Override
+    public void swap() {
+        if (this.stagedFallback) {
+            this.fallback.swap();
+            return;
+        }
+        int back = 1 - this.front;
+        this.letters[this.front][0].setVisible(false);
+        this.letters[this.front][1].setVisible(false);
+        this.letters[back][0].setVisible(true);
+        this.letters[back][1].setVisible(true);
+        view.getLeftOption().setVisible(true);
+        view.getRightOption().setVisible(true);
+        this.front = back;
+        this.swapped = true;
+    }
+
+    @Override
+    public void clear() {
+        this.letters[this.front][0].setVisible(false);
+        this.letters[this.front][1].setVisible(false);
+        view.getLeftOption().setVisible(false);
+        view.getRightOption().setVisible(false);
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.tint.setPaint(color);
+        this.fallback.setColor(color);
+    }
+
+    /**
+     * Remove the image views and any warm-up views from the stimulus layer.
+     */
+    @Override
+    public void dispose() {
+        Pane layer = view.getStimulusLayer();
+        for (ImageView buffer[] : this.letters) {
+            layer.getChildren().removeAll(buffer);
+        }
+        this.removeWarmUpNodes();
+        this.fallback.dispose();
+    }
+    
+    /**
+     * Remove the views warming up the atlas pages, once they have been drawn.
+     */
+    private void removeWarmUpNodes() {
+        if (this.warmUpNodes != null) {
+            view.getStimulusLayer().getChildren().removeAll(this.warmUpNodes);
+            this.warmUpNodes = null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return ATLAS;
+    }
+}
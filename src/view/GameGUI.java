@@ -1,6 +1,14 @@
 package view;
 
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
 import controller.LetterGameController;
+import replay.SessionRecording;
+import javafx.css.PseudoClass;
+import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -11,10 +19,15 @@ import javafx.scene.control.ToggleGroup;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.stage.Popup;
 import javafx.stage.Stage;
+import model.AlphaPair;
+import util.StartupProfiler;
+import util.Strings;
+import view.ScreenManager.ScreenName;
 
 /**
  * The graphical user interface of the game.
@@ -32,6 +45,8 @@ import javafx.stage.Stage;
  */
 public class GameGUI {
     
+    private static final Logger logger = Logger.getLogger(GameGUI.class);
+    
     /** Controller for setting event handlers */
     private LetterGameController LGC;
 
@@ -41,6 +56,8 @@ public class GameGUI {
     private Scene scene;
     /** The pane of the game */
     private AnchorPane layout;
+    /** Builds each screen once and switches between them. */
+    private ScreenManager screens;
     
     /** Login Screen - start button. */
     private Button start;
@@ -62,6 +79,8 @@ public class GameGUI {
     private Label feedbackGender;
     /** Login Screen - feedback to tell if user needs to correctly input their age. */
     private Label feedbackAge;
+    /** Warning shown on the login screen when the station's timing is outside tolerance. */
+    private Label timingWarning;
     /** Login Box to contain login elements */
     private VBox loginBox;
     
@@ -90,11 +109,38 @@ public class GameGUI {
     private VBox getReadyBox;
     /** Game Screen - Stars */
     private ImageView starNodes[];
+    /** Game Screen - Static layer holding the stars. */
+    private Group starLayer;
+    /** Game Screen - Dynamic layer holding the two choices. */
+    private Pane stimulusLayer;
+    /** Background image behind every screen. */
+    private ImageView backgroundView;
+    /** Draws the two letters of each round. */
+    private StimulusRenderer stimulusRenderer;
+    /** Pre-rendered letters for the atlas renderer. */
+    private GlyphAtlas glyphAtlas;
+    /** Measures pulse intervals while the game screen is showing. */
+    private PulseMonitor pulseMonitor;
+    
+    /** Accent of the progress bar, switched with CSS pseudo-classes. */
+    public enum ProgressAccent {
+        /** Default accent, before any round has been answered. */
+        DEFAULT,
+        /** Accent once rounds have been answered. */
+        ANSWERED,
+        /** Accent when the bar has been emptied by wrong answers. */
+        PENALTY,
+    }
+    
+    static final PseudoClass ANSWERED_PSEUDO_CLASS = PseudoClass.getPseudoClass("answered");
+    static final PseudoClass PENALTY_PSEUDO_CLASS = PseudoClass.getPseudoClass("penalty");
     /** Game Screen - Practice label */
     private Label practice;
     
     /** End Screen - message informing the user has finished. */
     private Label congratulations;
+    /** End Screen - the subject's score. */
+    private Label score;
     
     private VBox finishMessage;
     
@@ -105,18 +151,52 @@ public class GameGUI {
      * @throws IOException 
      */
     public GameGUI(Stage stage) {
-        LGC = new LetterGameController(this);
+        this(stage, new Properties());
+    }
+    
+    /** 
+     * Constructor for the user interface of one session. Each GameGUI has
+     * its own controller, so several can run on their own stages.
+     * @param stage The user interface stage.
+     * @param configOverrides Properties that take precedence over the defaults.
+     */
+    public GameGUI(Stage stage, Properties configOverrides) {
+        StartupProfiler profiler = StartupProfiler.getInstance();
+        LGC = new LetterGameController(this, configOverrides);
+        profiler.mark("controller");
         this.setPrimaryStage(stage);
         this.layout = new AnchorPane();
         this.scene = new Scene(this.layout, SetUp.SCREEN_WIDTH, SetUp.SCREEN_HEIGHT);
+        this.scene.getStylesheets().add(GameGUI.class.getResource("game.css").toExternalForm());
+        SetUp.setUpBackgroundLayer(this);
+        this.pulseMonitor = new PulseMonitor(this.scene);
+        LGC.getMetrics().setPulseMonitor(this.pulseMonitor);
         this.primaryStage.setScene(this.scene);
         this.primaryStage.setTitle("Letter Game");  
+        this.screens = new ScreenManager(this.layout);
+        this.registerScreens();
+        profiler.mark("scene");
         this.setLoginScreen();
         this.primaryStage.setResizable(false);
         this.primaryStage.setFullScreenExitKeyCombination(KeyCombination.NO_MATCH);
         this.primaryStage.setFullScreen(true);
         this.primaryStage.sizeToScene();
+        profiler.mark("login screen");
         SetUp.setExitPopup(this);
+        profiler.mark("exit popup");
+        this.screens.buildRemainingLater();
+    }
+    
+    /**
+     * Register how each screen is built. Only the login screen is built 
+     * right away; the rest are built after the login screen is showing.
+     */
+    private void registerScreens() {
+        this.screens.register(ScreenName.LOGIN, screen -> SetUp.setUpLoginScreen(this, screen));
+        this.screens.register(ScreenName.INSTRUCTIONS, screen -> SetUp.setUpInstructionsScreen(this, screen));
+        this.screens.register(ScreenName.PRACTICE_COMPLETE, screen -> SetUp.setUpPracticeCompleteScreen(this, screen));
+        this.screens.register(ScreenName.GAME, screen -> SetUp.setUpGameScreen(this, screen));
+        this.screens.register(ScreenName.FINISH, screen -> SetUp.setUpFinishScreen(this, screen));
     }
     
     /**
@@ -125,15 +205,53 @@ public class GameGUI {
      * @throws IOException
      */
     private void setLoginScreen() {
-        SetUp.setUpLoginScreen(this);
+        this.screens.show(ScreenName.LOGIN);
+        SetUp.showLoginScreen(this);
         this.LGC.setLoginHandlers(); 
+        this.LGC.calibrateTiming();
+    }
+    
+    /**
+     * Warn on the login screen that the station's timing is outside tolerance.
+     * @param problems One line per measurement outside its tolerance.
+     */
+    public void showTimingWarning(List<String> problems) {
+        this.timingWarning.setText(Strings.TIMING_WARNING_SP + "\n" + String.join("\n", problems));
+        this.timingWarning.setManaged(true);
+        this.timingWarning.setVisible(true);
+    }
+
+    /**
+     * Return to a cleared login screen for the next participant. Every screen,
+     * the assets and the glyph atlas are kept from the previous participant.
+     */
+    public void setNextParticipantLoginScreen() {
+        this.screens.build(ScreenName.LOGIN);
+        SetUp.resetLoginScreen(this);
+        this.setLoginScreen();
+    }
+
+    /**
+     * Quit the game.
+     */
+    public void exit() {
+        this.LGC.recordExit();
+        System.exit(0);
+    }
+    
+    /**
+     * Replay a recorded session on this stage. See LetterGameController.startReplay().
+     * @param recording The recording.
+     */
+    public void startReplay(SessionRecording recording) {
+        this.LGC.startReplay(recording);
     }
 
     /**
      * Sets the screen where instructions are shown.
      */
     public void setInstructionsScreen() {
-        SetUp.setUpInstructionsScreen(this);
+        this.screens.show(ScreenName.INSTRUCTIONS);
         this.LGC.setInstructionsHandlers();
     }
     
@@ -141,18 +259,24 @@ public class GameGUI {
      * Sets the screen where user has finished practice trials and is about to begin assessment.
      */
     public void setPracticeCompleteScreen() {
-        SetUp.setUpPracticeCompleteScreen(this);
+        this.stopPulseMonitor("practice");
+        this.screens.show(ScreenName.PRACTICE_COMPLETE);
+        SetUp.showPracticeCompleteScreen(this);
         this.LGC.setPracticeCompleteHandlers();
 
     }
 
     /**
      * Sets the game screen where subject will be presented with two letters.
-     * @param stage The user interface stage.
-     * @param subjectID The subject's ID number.
+     * The same screen is reused for practice and assessment.
      */
     public void setGameScreen() {
-        SetUp.setUpGameScreen(this);          
+        this.screens.show(ScreenName.GAME);
+        this.setStimulusRenderer(LGC.getSettings().getStimulusRenderer());
+        SetUp.resetGameScreen(this);          
+        SetUp.setLayerCaching(this, LGC.getSettings().isRenderCache());
+        this.pulseMonitor.reset();
+        this.pulseMonitor.start();
         this.LGC.prepareFirstRound();
         this.LGC.setGameHandlers();
     }
@@ -162,14 +286,86 @@ public class GameGUI {
      * @param stage The user interface stage.
      */
     public void setFinishScreen(int points, int level) {
-        SetUp.setUpFinishScreen(this, points, level);
+        this.stopPulseMonitor("assessment");
+        this.screens.show(ScreenName.FINISH);
+        SetUp.showFinishScreen(this, points, level);
+    }
+    
+    /**
+     * Stop measuring pulses and log what was measured.
+     * @param phase Name of the phase that just ended.
+     */
+    private void stopPulseMonitor(String phase) {
+        if (this.pulseMonitor.isRunning()) {
+            this.pulseMonitor.stop();
+            logger.info("Render pulses during " + phase + " (render.cache=" 
+                    + LGC.getSettings().isRenderCache() + ") " + this.pulseMonitor.report());
+        }
+    }
+    
+    /**
+     * Choose how the letters are drawn. Building the atlas renderer renders 
+     * the glyph atlas, so this is called once the config has been loaded, 
+     * well before the game screen is first shown.
+     * @param name Name of the renderer, see StimulusRenderer.
+     */
+    public void setStimulusRenderer(String name) {
+        if (this.stimulusRenderer != null && this.stimulusRenderer.getName().equals(name)) {
+            return;
+        }
+        this.screens.build(ScreenName.GAME);
+        if (this.stimulusRenderer != null) {
+            this.stimulusRenderer.dispose();
+        }
+        if (StimulusRenderer.ATLAS.equals(name)) {
+            if (this.glyphAtlas == null) {
+                this.glyphAtlas = new GlyphAtlas();
+                this.glyphAtlas.build();
+            }
+            this.stimulusRenderer = new AtlasStimulusRenderer(this, this.glyphAtlas);
+        } else {
+            this.stimulusRenderer = new LabelStimulusRenderer(this);
+        }
+        logger.info("Stimulus renderer: " + this.stimulusRenderer.getName());
+    }
+    
+    /**
+     * Lay out the letters of the next pair on hidden nodes.
+     * @param pair The pair.
+     * @param sizeVariation True if the letters are shown at the pair's font sizes.
+     */
+    public void stageStimulus(AlphaPair pair, boolean sizeVariation) {
+        this.stimulusRenderer.stage(pair, sizeVariation);
+    }
+    
+    /**
+     * Show the staged letters.
+     */
+    public void swapStimulus() {
+        this.stimulusRenderer.swap();
+    }
+    
+    /**
+     * Hide the letters.
+     */
+    public void clearStimulus() {
+        this.stimulusRenderer.clear();
+    }
+    
+    /**
+     * Set the accent of the progress bar.
+     * @param accent The accent.
+     */
+    public void setProgressAccent(ProgressAccent accent) {
+        this.progressBar.pseudoClassStateChanged(ANSWERED_PSEUDO_CLASS, accent == ProgressAccent.ANSWERED);
+        this.progressBar.pseudoClassStateChanged(PENALTY_PSEUDO_CLASS, accent == ProgressAccent.PENALTY);
     }
     
     /**
      * Change the background.
      */
     public void changeBackground(int level) { 
-        SetUp.setBackground(this.layout, level);
+        SetUp.setBackground(this, level);
         this.scene.setRoot(this.layout);
     }
     
@@ -244,6 +440,18 @@ public class GameGUI {
         this.congratulations = congratulations;
     }
 
+    public Label getScore() {
+        return this.score;
+    }
+
+    public void setScore(Label score) {
+        this.score = score;
+    }
+
+    public ScreenManager getScreens() {
+        return this.screens;
+    }
+
     public Stage getPrimaryStage() {
         return this.primaryStage;
     }
@@ -292,6 +500,42 @@ public class GameGUI {
         this.starNodes = starNodes;
     }
 
+    public Group getStarLayer() {
+        return starLayer;
+    }
+
+    public void setStarLayer(Group starLayer) {
+        this.starLayer = starLayer;
+    }
+
+    public Pane getStimulusLayer() {
+        return stimulusLayer;
+    }
+
+    public void setStimulusLayer(Pane stimulusLayer) {
+        this.stimulusLayer = stimulusLayer;
+    }
+
+    public ImageView getBackgroundView() {
+        return backgroundView;
+    }
+
+    public void setBackgroundView(ImageView backgroundView) {
+        this.backgroundView = backgroundView;
+    }
+
+    public StimulusRenderer getStimulusRenderer() {
+        return stimulusRenderer;
+    }
+
+    public GlyphAtlas getGlyphAtlas() {
+        return glyphAtlas;
+    }
+
+    public PulseMonitor getPulseMonitor() {
+        return pulseMonitor;
+    }
+
     public VBox getLoginBox() {
         return loginBox;
     }
@@ -396,6 +640,18 @@ public class GameGUI {
         this.feedbackAge = feedbackAge;
     }
 
+    public LetterGameController getController() {
+        return LGC;
+    }
+
+    public Label getTimingWarning() {
+        return timingWarning;
+    }
+
+    public void setTimingWarning(Label timingWarning) {
+        this.timingWarning = timingWarning;
+    }
+
     public Popup getExitPopup() {
         return exitPopup;
     }
@@ -0,0 +1,225 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Group;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextBoundsType;
+import model.AlphaPairGenerator;
+
+/**
+ * Every letter at every font size a pair can be shown at, rendered once into
+ * a few large images (pages). Showing a letter is then a matter of pointing an
+ * ImageView at the letter's rectangle in its page, which costs the same for
+ * every letter and size, instead of laying out and rasterizing a glyph on
+ * first use.
+ *
+ * The letters are rendered white; AtlasStimulusRenderer tints them to the
+ * current font color.
+ *
+ * Classes Related To:
+ *  -AtlasStimulusRenderer.java
+ *      -Displays the letters of the atlas.
+ *  -AlphaPairGenerator.java (model)
+ *      -Provides every font size a letter can be shown at.
+ *
+ */
+public class GlyphAtlas {
+
+    private static final Logger logger = Logger.getLogger(GlyphAtlas.class);
+
+    /** Width and maximum height of a page, within the texture size of any graphics card. */
+    static final int PAGE_SIZE = 2048;
+
+    /** Space around each letter so antialiased edges are not cut off. */
+    static final int PADDING = 2;
+
+    /** Number of letters. */
+    static final int NUM_LETTERS = 26;
+
+    /** Font of the letters. */
+    static final String FONT_NAME = "Tahoma";
+
+    /** Where one letter is in the atlas and how to place it. */
+    static final class Glyph {
+        /** Index of the page holding the letter. */
+        final int page;
+        /** Rectangle of the letter in its page. */
+        final Rectangle2D viewport;
+        /** Offset of the rectangle from the top left of the letter's text box. */
+        final double offsetX;
+        final double offsetY;
+        /** Size of the letter's text box, as a Label would lay it out. */
+        final double logicalWidth;
+        final double logicalHeight;
+
+        Glyph(int page, Rectangle2D viewport, double offsetX, double offsetY,
+                double logicalWidth, double logicalHeight) {
+            this.page = page;
+            this.viewport = viewport;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.logicalWidth = logicalWidth;
+            this.logicalHeight = logicalHeight;
+        }
+    }
+
+    /** Font sizes in the atlas, ascending. */
+    private final int fontSizes[];
+
+    /** The glyphs, indexed by [size index][letter index]. */
+    private final Glyph glyphs[][];
+
+    /** The rendered pages. */
+    private final List<WritableImage> pages;
+
+    /** Whether build() has run. */
+    private boolean built;
+
+    /**
+     * Constructor. The atlas holds every size the generator can produce
+     * plus the size used when sizes do not vary.
+     */
+    public GlyphAtlas() {
+        int generated[] = AlphaPairGenerator.getPossibleFontSizes();
+        int sizes[] = Arrays.copyOf(generated, generated.length + 1);
+        sizes[generated.length] = SetUp.INITIAL_LETTER_SIZE;
+        this.fontSizes = Arrays.stream(sizes).distinct().sorted().toArray();
+        this.glyphs = new Glyph[this.fontSizes.length][NUM_LETTERS];
+        this.pages = new ArrayList<WritableImage>();
+    }
+
+    /**
+     * Render every letter at every size. Must be called on the FX thread.
+     * Does nothing if the atlas has already been built.
+     */
+    public void build() {
+        if (this.built) {
+            return;
+        }
+        long start = System.nanoTime();
+        Group page = new Group();
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (int s = 0; s < this.fontSizes.length; s++) {
+            Font font = new Font(FONT_NAME, this.fontSizes[s]);
+            for (int l = 0; l < NUM_LETTERS; l++) {
+                Text text = new Text(String.valueOf((char) ('A' + l)));
+                text.setFont(font);
+                text.setFill(Color.WHITE);
+                Bounds logical = text.getLayoutBounds();
+                text.setBoundsType(TextBoundsType.VISUAL);
+                Bounds visual = text.getLayoutBounds();
+                int width = (int) Math.ceil(visual.getWidth()) + 2 * PADDING;
+                int height = (int) Math.ceil(visual.getHeight()) + 2 * PADDING;
+
+                if (x + width > PAGE_SIZE) {
+                    x = 0;
+                    y += shelfHeight;
+                    shelfHeight = 0;
+                }
+                if (y + height > PAGE_SIZE) {
+                    this.renderPage(page, y + shelfHeight);
+                    page = new Group();
+                    x = 0;
+                    y = 0;
+                    shelfHeight = 0;
+                }
+                text.setLayoutX(x + PADDING - visual.getMinX());
+                text.setLayoutY(y + PADDING - visual.getMinY());
+                page.getChildren().add(text);
+                this.glyphs[s][l] = new Glyph(this.pages.size(),
+                        new Rectangle2D(x, y, width, height),
+                        visual.getMinX() - logical.getMinX() - PADDING,
+                        visual.getMinY() - logical.getMinY() - PADDING,
+                        logical.getWidth(), logical.getHeight());
+                x += width;
+                shelfHeight = Math.max(shelfHeight, height);
+            }
+        }
+        this.renderPage(page, y + shelfHeight);
+        this.built = true;
+        logger.info("Glyph atlas built in " + (System.nanoTime() - start) / 1000000.0
+                + " ms: " + this.fontSizes.length + " sizes x " + NUM_LETTERS + " letters, "
+                + this.pages.size() + " pages, " + this.getMemoryFootprint() / 1024 + " KB");
+    }
+
+    /**
+     * Render one page of letters into an image.
+     * @param page The letters of the page, already positioned.
+     * @param height Height of the page used.
+     */
+    private void renderPage(Group page, int height) {
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        params.setViewport(new Rectangle2D(0, 0, PAGE_SIZE, height));
+        this.pages.add(page.snapshot(params, new WritableImage(PAGE_SIZE, height)));
+    }
+
+    /**
+     * Get where a letter is in the atlas.
+     * @param letter The capital letter.
+     * @param fontSize The font size.
+     * @return The glyph, or null if the letter or size is not in the atlas.
+     */
+    Glyph getGlyph(char letter, int fontSize) {
+        int l = letter - 'A';
+        int s = Arrays.binarySearch(this.fontSizes, fontSize);
+        if (!this.built || s < 0 || l < 0 || l >= NUM_LETTERS) {
+            return null;
+        }
+        return this.glyphs[s][l];
+    }
+
+    /**
+     * Get a page of the atlas.
+     * @param index Index of the page.
+     * @return The page image.
+     */
+    WritableImage getPage(int index) {
+        return this.pages.get(index);
+    }
+
+    /**
+     * Create one tiny view of each page. Showing them for a frame makes
+     * the graphics pipeline upload every page before the first onset.
+     * @return One image view per page, showing a single pixel.
+     */
+    List<ImageView> createWarmUpNodes() {
+        List<ImageView> nodes = new ArrayList<ImageView>();
+        for (WritableImage page : this.pages) {
+            ImageView view = new ImageView(page);
+            view.setViewport(new Rectangle2D(0, 0, 1, 1));
+            nodes.add(view);
+        }
+        return nodes;
+    }
+
+    /**
+     * Get the memory taken by the pages, at four bytes per pixel.
+     * @return Number of bytes.
+     */
+    public long getMemoryFootprint() {
+        long bytes = 0;
+        for (WritableImage page : this.pages) {
+            bytes += (long) page.getWidth() * (long) page.getHeight() * 4;
+        }
+        return bytes;
+    }
+
+    public boolean isBuilt() {
+        return this.built;
+    }
+}
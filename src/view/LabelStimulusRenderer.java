@@ -0,0 +1,69 @@
+package view;
+
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import model.AlphaPair;
+
+/**
+ * Draws the letters as the text of the two option labels. The glyph of 
+ * each letter and size is laid out and rasterized by JavaFX on first use.
+ * 
+ */
+class LabelStimulusRenderer implements StimulusRenderer {
+    
+    /** The graphical user interface. */
+    private final GameGUI view;
+    
+    LabelStimulusRenderer(GameGUI view) {
+        this.view = view;
+    }
+
+    /**
+     * Set the text and fonts of the hidden labels and apply CSS and layout
+     * to them now, rather than in the first pulse after onset.
+     */
+    @Override
+    public void stage(AlphaPair pair, boolean sizeVariation) {
+        view.getLeftOption().setText(String.valueOf(pair.getLetterOne()));
+        view.getRightOption().setText(String.valueOf(pair.getLetterTwo()));
+        if (sizeVariation) {
+            view.getLeftOption().setFont(new Font("Tahoma", pair.getFontSizeOne()));
+            view.getRightOption().setFont(new Font("Tahoma", pair.getFontSizeTwo()));
+        }
+        view.getStimulusLayer().applyCss();
+        view.getStimulusLayer().layout();
+    }
+
+    @Override
+    public void swap() {
+        view.getLeftOption().setVisible(true);
+        view.getRightOption().setVisible(true);
+    }
+
+    @Override
+    public void clear() {
+        view.getLeftOption().setVisible(false);
+        view.getRightOption().setVisible(false);
+    }
+
+    @Override
+    public void setColor(Color color) {
+        view.getLeftOption().setTextFill(color);
+        view.getRightOption().setTextFill(color);
+    }
+
+    /**
+     * Empty and hide the labels.
+     */
+    @Override
+    public void dispose() {
+        view.getLeftOption().setText("");
+        view.getRightOption().setText("");
+        this.clear();
+    }
+
+    @Override
+    public String getName() {
+        return LABEL;
+    }
+}
@@ -0,0 +1,240 @@
+package view;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+/**
+ * Times the work the FX thread does in each JavaFX pulse while the game
+ * screen is showing, and the interval between pulses.
+ *
+ * A pulse runs the animations and timers, then the scene's CSS and layout
+ * passes, then synchronizes the scene graph to the render thread. The monitor
+ * takes the pulse's timestamp in handle(), and brackets CSS and layout with
+ * the scene's pre- and post-layout pulse listeners. The sync is timed from
+ * the post-layout listener to a runnable posted from it, which runs once the
+ * pulse has ended. The sync first waits for the render thread to finish the
+ * previous frame, so a frame that renders in more than the time left in the
+ * frame interval shows up there, and as a long pulse interval.
+ *
+ * Comparing the report with render caching on and off (render.cache in the
+ * config) shows what the cached static layers save per pulse.
+ *
+ */
+public class PulseMonitor extends AnimationTimer {
+
+    /** Frame interval assumed until one is measured: 60 Hz. */
+    public static final long DEFAULT_FRAME_NANOS = 16666667;
+
+    /** A pulse later than this many frame intervals counts as a dropped frame. */
+    static final double LATE_FACTOR = 1.5;
+
+    /** Nanoseconds in a millisecond. */
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    /** Count, total and longest duration of one phase of the pulses. */
+    private static final class Phase {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            this.count++;
+            this.totalNanos += nanos;
+            if (nanos > this.maxNanos) {
+                this.maxNanos = nanos;
+            }
+        }
+
+        void reset() {
+            this.count = 0;
+            this.totalNanos = 0;
+            this.maxNanos = 0;
+        }
+
+        double meanMillis() {
+            return this.count == 0 ? 0 : this.totalNanos / NANOS_PER_MILLI / this.count;
+        }
+
+        double maxMillis() {
+            return this.maxNanos / NANOS_PER_MILLI;
+        }
+    }
+
+    /** The scene whose passes are timed. */
+    private final Scene scene;
+
+    /** Expected interval between pulses. */
+    private long frameNanos;
+
+    /** Time of the previous pulse, or 0 before the first. */
+    private long lastPulse;
+
+    /** Start of CSS and layout in this pulse, or 0 if the pulse has not reached them. */
+    private long layoutStart;
+
+    /** End of CSS and layout in this pulse, or 0 if no sync is being timed. */
+    private long layoutEnd;
+
+    /** Intervals between pulses. */
+    private final Phase intervals = new Phase();
+
+    /** From the start of a pulse to CSS: animations and timers. */
+    private final Phase animation = new Phase();
+
+    /** CSS and layout passes. */
+    private final Phase layout = new Phase();
+
+    /** From layout to the end of the pulse: waiting for the previous frame and copying the scene graph. */
+    private final Phase sync = new Phase();
+
+    /** Number of pulse intervals measured. Volatile so monitoring can read it from other threads. */
+    private volatile long numPulses;
+
+    /** Number of pulse intervals longer than LATE_FACTOR frames. Volatile like numPulses. */
+    private volatile long droppedFrames;
+
+    /** Whether the timer is currently running. */
+    private volatile boolean running;
+
+    private final Runnable preLayout = this::preLayout;
+    private final Runnable postLayout = this::postLayout;
+    private final Runnable pulseEnd = this::pulseEnd;
+
+    /**
+     * Constructor.
+     * @param scene The scene whose CSS and layout passes are timed.
+     */
+    public PulseMonitor(Scene scene) {
+        this.scene = scene;
+        this.frameNanos = DEFAULT_FRAME_NANOS;
+    }
+
+    @Override
+    public void start() {
+        this.lastPulse = 0;
+        this.layoutStart = 0;
+        this.layoutEnd = 0;
+        if (!this.running) {
+            this.scene.addPreLayoutPulseListener(this.preLayout);
+            this.scene.addPostLayoutPulseListener(this.postLayout);
+        }
+        this.running = true;
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (this.running) {
+            this.scene.removePreLayoutPulseListener(this.preLayout);
+            this.scene.removePostLayoutPulseListener(this.postLayout);
+        }
+        this.running = false;
+    }
+
+    @Override
+    public void handle(long now) {
+        if (this.lastPulse != 0) {
+            long interval = now - this.lastPulse;
+            this.intervals.record(interval);
+            this.numPulses++;
+            if (interval > this.frameNanos * LATE_FACTOR) {
+                this.droppedFrames++;
+            }
+        }
+        this.lastPulse = now;
+    }
+
+    /**
+     * Called by the scene at the start of its CSS and layout passes.
+     */
+    private void preLayout() {
+        this.layoutStart = System.nanoTime();
+        if (this.lastPulse != 0) {
+            this.animation.record(this.layoutStart - this.lastPulse);
+        }
+    }
+
+    /**
+     * Called by the scene at the end of its CSS and layout passes.
+     */
+    private void postLayout() {
+        if (this.layoutStart == 0) {
+            return;
+        }
+        this.layoutEnd = System.nanoTime();
+        this.layout.record(this.layoutEnd - this.layoutStart);
+        this.layoutStart = 0;
+        Platform.runLater(this.pulseEnd);
+    }
+
+    /**
+     * Runs on the FX thread once the pulse that posted it has ended.
+     */
+    private void pulseEnd() {
+        if (this.layoutEnd != 0 && this.running) {
+            this.sync.record(System.nanoTime() - this.layoutEnd);
+        }
+        this.layoutEnd = 0;
+    }
+
+    /**
+     * Clear the measurements.
+     */
+    public void reset() {
+        this.lastPulse = 0;
+        this.layoutStart = 0;
+        this.layoutEnd = 0;
+        this.intervals.reset();
+        this.animation.reset();
+        this.layout.reset();
+        this.sync.reset();
+        this.numPulses = 0;
+        this.droppedFrames = 0;
+    }
+
+    /**
+     * Generate a one line summary of the pulses measured.
+     * @return String the summary.
+     */
+    public String report() {
+        return String.format("pulses: %d, interval mean %.3f max %.3f ms, dropped frames: %d, "
+                + "animation mean %.3f max %.3f ms, css+layout mean %.3f max %.3f ms, "
+                + "sync mean %.3f max %.3f ms",
+                this.numPulses, this.intervals.meanMillis(), this.intervals.maxMillis(), this.droppedFrames,
+                this.animation.meanMillis(), this.animation.maxMillis(),
+                this.layout.meanMillis(), this.layout.maxMillis(),
+                this.sync.meanMillis(), this.sync.maxMillis());
+    }
+
+    public long getFrameNanos() {
+        return this.frameNanos;
+    }
+
+    public void setFrameNanos(long frameNanos) {
+        this.frameNanos = frameNanos;
+    }
+
+    public long getNumPulses() {
+        return this.numPulses;
+    }
+
+    public long getDroppedFrames() {
+        return this.droppedFrames;
+    }
+
+    /** @return Mean time of the CSS and layout passes per pulse, in milliseconds. */
+    public double getMeanLayoutMillis() {
+        return this.layout.meanMillis();
+    }
+
+    /** @return Mean time from layout to the end of the pulse, in milliseconds. */
+    public double getMeanSyncMillis() {
+        return this.sync.meanMillis();
+    }
+
+    public boolean isRunning() {
+        return this.running;
+    }
+}
@@ -0,0 +1,253 @@
+package view;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.log4j.Logger;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.transform.Transform;
+import model.AlphaPair;
+import model.AlphaPairGenerator;
+import util.LatencyHistogram;
+import view.ScreenManager.ScreenName;
+
+/**
+ * Measures, without a photodiode, how long it takes from the onset of a pair
+ * (the swap setOptions() makes) until the letters are in a rendered frame.
+ *
+ * Each trial stages a pair from a seeded generator on the game screen, waits
+ * for the screen to settle and snapshots the option area as a baseline. It
+ * then swaps the pair in between pulses, as setOptions() does from the end of
+ * the wait between rounds, and snapshots the option area on every following
+ * pulse until enough pixels differ from the baseline. The onset latency is
+ * the time from the swap until that snapshot has been rendered, so it
+ * includes the wait for the next pulse and the time to render the letters,
+ * as the frame on screen would.
+ *
+ * Run it under the software pipeline (prism.order=sw) so the snapshots are
+ * rendered the same way as the frames, see RenderLatencyMain.
+ *
+ * Classes Related To:
+ *  -RenderLatencyMain.java (main)
+ *      -Runs the harness for each renderer and reports.
+ *  -StimulusRenderer.java
+ *      -The renderers compared.
+ *
+ */
+public class RenderLatencyHarness {
+
+    private static final Logger logger = Logger.getLogger(RenderLatencyHarness.class);
+
+    /** Pulses to wait after staging a pair before the baseline is taken. */
+    static final int SETTLE_PULSES = 3;
+
+    /** Pulses to poll after the swap before the trial counts as missed. */
+    static final int TIMEOUT_PULSES = 60;
+
+    /** Scale the option area is snapshot at, to keep each snapshot cheap. */
+    static final double SNAPSHOT_SCALE = 0.5;
+
+    /** Number of pixels that must differ from the baseline for the letters to count as shown. */
+    static final int MIN_CHANGED_PIXELS = 25;
+
+    /** Result of running the harness with one renderer. */
+    public static final class Result {
+        private final String renderer;
+        private final LatencyHistogram latency;
+        private final double meanPulses;
+        private final int missed;
+
+        Result(String renderer, LatencyHistogram latency, double meanPulses, int missed) {
+            this.renderer = renderer;
+            this.latency = latency;
+            this.meanPulses = meanPulses;
+            this.missed = missed;
+        }
+
+        public String getRenderer() {
+            return this.renderer;
+        }
+
+        /** @return Onset latency in nanoseconds of each trial detected. */
+        public LatencyHistogram getLatency() {
+            return this.latency;
+        }
+
+        /** @return Mean number of pulses from the swap until the letters were detected. */
+        public double getMeanPulses() {
+            return this.meanPulses;
+        }
+
+        public int getMissed() {
+            return this.missed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-6s %s, mean pulses to onset %.2f, missed %d",
+                    this.renderer, this.latency, this.meanPulses, this.missed);
+        }
+    }
+
+    /** What the harness is waiting for. */
+    private enum Phase {
+        SETTLING,
+        SWAPPING,
+        POLLING,
+    }
+
+    private final GameGUI view;
+    private final int numTrials;
+    private final long seed;
+
+    /** Area of the scene the options are drawn in. */
+    private final Rectangle2D optionArea;
+
+    /** Snapshot parameters and images, reused for every snapshot. */
+    private final SnapshotParameters params;
+    private final WritableImage baselineImage;
+    private final WritableImage pollImage;
+    private final int baseline[];
+    private final int polled[];
+
+    /**
+     * Constructor.
+     * @param view A game interface whose config has been loaded.
+     * @param numTrials Number of trials per renderer.
+     * @param seed Seed of the pairs, the same for every renderer.
+     */
+    public RenderLatencyHarness(GameGUI view, int numTrials, long seed) {
+        this.view = view;
+        this.numTrials = numTrials;
+        this.seed = seed;
+        this.optionArea = new Rectangle2D(0, SetUp.LEFT_OPTION_Y, SetUp.SCREEN_WIDTH, SetUp.OPTION_HEIGHT);
+        int width = (int) Math.ceil(this.optionArea.getWidth() * SNAPSHOT_SCALE);
+        int height = (int) Math.ceil(this.optionArea.getHeight() * SNAPSHOT_SCALE);
+        this.params = new SnapshotParameters();
+        this.params.setTransform(Transform.scale(SNAPSHOT_SCALE, SNAPSHOT_SCALE));
+        this.params.setViewport(new Rectangle2D(this.optionArea.getMinX() * SNAPSHOT_SCALE,
+                this.optionArea.getMinY() * SNAPSHOT_SCALE, width, height));
+        this.baselineImage = new WritableImage(width, height);
+        this.pollImage = new WritableImage(width, height);
+        this.baseline = new int[width * height];
+        this.polled = new int[width * height];
+    }
+
+    /**
+     * Run the trials with one renderer. Must be called on the FX thread.
+     * @param renderer Name of the renderer, see StimulusRenderer.
+     * @return Completes with the result once every trial has run.
+     */
+    public CompletableFuture<Result> run(String renderer) {
+        this.view.getScreens().show(ScreenName.GAME);
+        this.view.setStimulusRenderer(renderer);
+        SetUp.resetGameScreen(this.view);
+        SetUp.setLayerCaching(this.view, this.view.getController().getSettings().isRenderCache());
+        this.view.getGetReadyBox().setVisible(false);
+        this.view.getPractice().setVisible(false);
+
+        CompletableFuture<Result> done = new CompletableFuture<Result>();
+        LatencyHistogram latency = new LatencyHistogram("ONSET_" + renderer.toUpperCase());
+        AlphaPairGenerator apg = new AlphaPairGenerator(this.seed);
+        boolean sizeVariation = this.view.getController().getSettings().isSizeVariation();
+
+        new AnimationTimer() {
+            private Phase phase;
+            private int trial;
+            private int waited;
+            private int missed;
+            private long totalPulses;
+            private long swapNanos;
+
+            /** Hide the previous pair and stage the next. */
+            private void nextTrial() {
+                view.clearStimulus();
+                apg.getNewDifficultyPair();
+                AlphaPair pair = apg.getAlphaPair();
+                view.stageStimulus(pair, sizeVariation);
+                this.phase = Phase.SETTLING;
+                this.waited = 0;
+            }
+
+            @Override
+            public void start() {
+                this.nextTrial();
+                super.start();
+            }
+
+            @Override
+            public void handle(long now) {
+                this.waited++;
+                if (this.phase == Phase.SETTLING && this.waited >= SETTLE_PULSES) {
+                    snapshot(baselineImage, baseline);
+                    this.phase = Phase.SWAPPING;
+                    Platform.runLater(() -> {
+                        this.swapNanos = System.nanoTime();
+                        view.swapStimulus();
+                        this.phase = Phase.POLLING;
+                        this.waited = 0;
+                    });
+                } else if (this.phase == Phase.POLLING) {
+                    snapshot(pollImage, polled);
+                    long elapsed = System.nanoTime() - this.swapNanos;
+                    if (countChanged() >= MIN_CHANGED_PIXELS) {
+                        latency.record(elapsed);
+                        this.totalPulses += this.waited;
+                        this.endTrial();
+                    } else if (this.waited >= TIMEOUT_PULSES) {
+                        this.missed++;
+                        this.endTrial();
+                    }
+                }
+            }
+
+            /** Go on to the next trial, or finish after the last. */
+            private void endTrial() {
+                this.trial++;
+                if (this.trial < numTrials) {
+                    this.nextTrial();
+                    return;
+                }
+                this.stop();
+                view.clearStimulus();
+                Result result = new Result(renderer, latency, 
+                        latency.getCount() == 0 ? 0 : (double) this.totalPulses / latency.getCount(), this.missed);
+                logger.info("Render latency " + result);
+                done.complete(result);
+            }
+        }.start();
+        return done;
+    }
+
+    /**
+     * Render the option area of the scene and read its pixels.
+     * @param image Image to render into.
+     * @param pixels Array to read the pixels into.
+     */
+    private void snapshot(WritableImage image, int pixels[]) {
+        this.view.getScene().getRoot().snapshot(this.params, image);
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        image.getPixelReader().getPixels(0, 0, width, height,
+                PixelFormat.getIntArgbInstance(), IntBuffer.wrap(pixels), width);
+    }
+
+    /**
+     * @return Number of pixels of the last polled snapshot that differ from the baseline.
+     */
+    private int countChanged() {
+        int changed = 0;
+        for (int i = 0; i < this.polled.length; i++) {
+            if (this.polled[i] != this.baseline[i]) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+}
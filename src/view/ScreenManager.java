@@ -0,0 +1,157 @@
+package view;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.Pane;
+
+/**
+ * Holds one node tree per screen of the game. Each screen is built once
+ * and added to the root layout hidden; switching screens only swaps which
+ * one is visible, so nothing is rebuilt between practice and assessment
+ * and the scene graph does not grow as the game goes on.
+ *
+ * Classes Related To:
+ *  -GameGUI.java
+ *      -Registers a builder for each screen and switches between them.
+ *  -SetUp.java
+ *      -The builders and the per-show resets of each screen.
+ *
+ */
+public class ScreenManager {
+
+    private static final Logger logger = Logger.getLogger(ScreenManager.class);
+
+    /** The screens of the game. */
+    public enum ScreenName {
+        LOGIN,
+        INSTRUCTIONS,
+        PRACTICE_COMPLETE,
+        GAME,
+        FINISH,
+    }
+
+    /** The root layout that every screen is added to. */
+    private final AnchorPane root;
+
+    /** Builders for screens that have not been built yet. */
+    private final Map<ScreenName, Consumer<Pane>> builders;
+
+    /** Screens that have been built. */
+    private final Map<ScreenName, Pane> screens;
+
+    /** The screen currently showing. */
+    private ScreenName current;
+
+    /**
+     * Constructor.
+     * @param root The root layout of the scene.
+     */
+    public ScreenManager(AnchorPane root) {
+        this.root = root;
+        this.builders = new EnumMap<ScreenName, Consumer<Pane>>(ScreenName.class);
+        this.screens = new EnumMap<ScreenName, Pane>(ScreenName.class);
+    }
+
+    /**
+     * Register the builder of a screen. The screen is built on first use,
+     * or by buildRemainingLater().
+     * @param name The screen.
+     * @param builder Adds the screen's nodes to the given pane.
+     */
+    public void register(ScreenName name, Consumer<Pane> builder) {
+        this.builders.put(name, builder);
+    }
+
+    /**
+     * Build every screen not built yet, each in its own pass of the FX thread
+     * so the login screen stays responsive while they are built.
+     */
+    public void buildRemainingLater() {
+        for (ScreenName name : ScreenName.values()) {
+            if (this.builders.containsKey(name)) {
+                Platform.runLater(() -> this.build(name));
+            }
+        }
+    }
+
+    /**
+     * Build a screen if it has not been built yet.
+     * @param name The screen.
+     * @return The pane holding the screen's nodes.
+     */
+    public Pane build(ScreenName name) {
+        Pane screen = this.screens.get(name);
+        if (screen != null) {
+            return screen;
+        }
+        long start = System.nanoTime();
+        screen = new Pane();
+        screen.setPrefSize(SetUp.SCREEN_WIDTH, SetUp.SCREEN_HEIGHT);
+        screen.setVisible(false);
+        this.builders.remove(name).accept(screen);
+        this.root.getChildren().add(screen);
+        this.screens.put(name, screen);
+        logger.info("Built screen " + name + " (" + countNodes(screen) + " nodes) in "
+                + (System.nanoTime() - start) / 1000000.0 + " ms");
+        return screen;
+    }
+
+    /**
+     * Show a screen and hide the others.
+     * @param name The screen to show.
+     */
+    public void show(ScreenName name) {
+        Pane screen = this.build(name);
+        if (this.current != null && this.current != name) {
+            this.screens.get(this.current).setVisible(false);
+        }
+        screen.setVisible(true);
+        this.current = name;
+        logger.info("Showing screen " + name + ": " + countNodes(screen)
+                + " nodes, scene total " + countNodes(this.root) + " nodes");
+    }
+
+    /**
+     * Get the screen currently showing.
+     * @return The current screen, or null if none has been shown.
+     */
+    public ScreenName getCurrent() {
+        return this.current;
+    }
+
+    /**
+     * Report the number of nodes in each screen built so far.
+     * @return String one entry per screen.
+     */
+    public String reportNodeCounts() {
+        StringBuilder text = new StringBuilder("Node counts:");
+        for (Map.Entry<ScreenName, Pane> entry : this.screens.entrySet()) {
+            text.append(' ').append(entry.getKey()).append('=').append(countNodes(entry.getValue()));
+        }
+        text.append(" total=").append(countNodes(this.root));
+        return text.toString();
+    }
+
+    /**
+     * Count a node and all of its descendants.
+     * @param node The root of the tree to count.
+     * @return Number of nodes in the tree.
+     */
+    public static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+}
@@ -4,7 +4,9 @@ import util.Strings;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.geometry.Rectangle2D;
+import javafx.scene.CacheHint;
 import javafx.scene.Cursor;
+import javafx.scene.Group;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
@@ -13,13 +15,8 @@ import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.layout.AnchorPane;
-import javafx.scene.layout.Background;
-import javafx.scene.layout.BackgroundImage;
-import javafx.scene.layout.BackgroundPosition;
-import javafx.scene.layout.BackgroundRepeat;
-import javafx.scene.layout.BackgroundSize;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
@@ -67,6 +64,9 @@ public final class SetUp {
     static final int LEFT_OPTION_Y = (int) (SCREEN_HEIGHT * .1);
     static final int RIGHT_OPTION_X = (int) SCREEN_WIDTH / 2;
     static final int RIGHT_OPTION_Y = (int) (SCREEN_HEIGHT * .1);
+    /** Size of each of the two choices. */
+    static final double OPTION_WIDTH = SCREEN_WIDTH / 2;
+    static final double OPTION_HEIGHT = SCREEN_HEIGHT * .75;
     static final int PROGRESS_BAR_X = (int) (SCREEN_WIDTH * .02);
     static final int PROGRESS_BAR_Y = (int) (SCREEN_HEIGHT * .05);
     static final int FIRST_STAR_X = (int) (SCREEN_WIDTH * .93);
@@ -85,10 +85,9 @@ public final class SetUp {
     /**
      * Set up the login screen.
      * @param view The graphical user interface.
-     * @param primaryStage The stage.
-     * @return The login scene.
+     * @param screen The pane to build the screen in.
      */
-    public static void setUpLoginScreen(GameGUI view) {
+    public static void setUpLoginScreen(GameGUI view, Pane screen) {
         Label labelID = new Label(Strings.ENTER_SUBJECT_ID_SP);
         Label labelGender = new Label(Strings.PICK_YOUR_GENDER_SP);
         Label labelAge = new Label(Strings.ENTER_AGE_SP);
@@ -104,6 +103,12 @@ public final class SetUp {
         view.getFeedback().setVisible(false);
         view.getFeedbackGender().setVisible(false);
         view.getFeedbackAge().setVisible(false);
+        view.setTimingWarning(new Label(Strings.TIMING_WARNING_SP));
+        view.getTimingWarning().setTextFill(Color.RED);
+        view.getTimingWarning().setWrapText(true);
+        view.getTimingWarning().setMaxWidth(400);
+        view.getTimingWarning().setVisible(false);
+        view.getTimingWarning().setManaged(false);
         view.getEnterId().setAlignment(Pos.CENTER);
 
         view.setLoginBox(new VBox(5));
@@ -125,22 +130,43 @@ public final class SetUp {
         view.getLoginBox().getChildren().addAll(labelID, view.getEnterId(), view.getFeedback(), 
                 labelGender, pickGenderBox, view.getFeedbackGender(), 
                 labelAge, view.getEnterAge(), view.getFeedbackAge(), 
-                view.getStart());
-        view.getLayout().getChildren().setAll(view.getLoginBox());
+                view.getStart(), view.getTimingWarning());
+        screen.getChildren().setAll(view.getLoginBox());
+    }
+    
+    /**
+     * Show the login screen once it has been built.
+     * @param view The graphical user interface.
+     */
+    public static void showLoginScreen(GameGUI view) {
         view.getEnterId().requestFocus();
         view.getPrimaryStage().show(); 
         view.getLoginBox().setLayoutX((SetUp.SCREEN_WIDTH / 2) - (view.getLoginBox().getWidth() / 2));
         view.getLoginBox().setLayoutY(SetUp.SCREEN_HEIGHT * .2);
-        setBackground(view.getLayout(), 0);       
+        setBackground(view, 0);       
+    }
+
+    /**
+     * Clear what the previous participant entered on the login screen.
+     * @param view The graphical user interface.
+     */
+    public static void resetLoginScreen(GameGUI view) {
+        view.getEnterId().setText("");
+        view.getEnterAge().setText("");
+        view.getPickGender().selectToggle(null);
+        view.getFeedback().setVisible(false);
+        view.getFeedbackGender().setVisible(false);
+        view.getFeedbackAge().setVisible(false);
+        view.getTimingWarning().setVisible(false);
+        view.getTimingWarning().setManaged(false);
     }
 
     /**
      * Sets up the elements of the instructions screen.
      * @param gameGUI GameGUI
-     * @param primaryStage stage
-     * @return Scene the instructions scene
+     * @param screen The pane to build the screen in.
      */
-    public static void setUpInstructionsScreen(GameGUI view) {
+    public static void setUpInstructionsScreen(GameGUI view, Pane screen) {
         Rectangle r = new Rectangle();
         r.setLayoutX(SCREEN_WIDTH * .09);
         r.setLayoutY(SCREEN_HEIGHT * .07);
@@ -163,16 +189,16 @@ public final class SetUp {
         view.getNext().setPrefWidth(SCREEN_WIDTH * .1);
         view.getNext().setLayoutX(SCREEN_WIDTH / 2 - view.getNext().getPrefWidth() / 2);        
         view.getNext().setLayoutY(SCREEN_HEIGHT * .6);
-        view.getLayout().getChildren().setAll(r, instructionsText, view.getNext());
+        screen.getChildren().setAll(r, instructionsText, view.getNext());
     }
     
     /**
      * Sets up the practice complete screen where user has finished completing the practice trials and
      * is about to begin assessment.
      * @param view The graphical user interface.
-     * @return scene the Scene containing the elements of this scene.
+     * @param screen The pane to build the screen in.
      */
-    public static void setUpPracticeCompleteScreen(GameGUI view) {       
+    public static void setUpPracticeCompleteScreen(GameGUI view, Pane screen) {       
         view.setPracticeComplete(new Text(Strings.PRACTICE_COMPLETE_MESSAGE_SP));
         view.getPracticeComplete().setTextAlignment(TextAlignment.CENTER);
         view.getPracticeComplete().setFont(new Font("Tahoma", 50));
@@ -183,19 +209,25 @@ public final class SetUp {
         view.getStartAssessment().setPrefWidth(SCREEN_HEIGHT * .2);
         view.getStartAssessment().setLayoutY(SetUp.SCREEN_HEIGHT * .6);
         view.getStartAssessment().setLayoutX(SetUp.SCREEN_WIDTH / 2 - view.getStartAssessment().getPrefWidth() / 2);
-        view.getLayout().getChildren().setAll(view.getPracticeComplete(), view.getStartAssessment());
+        screen.getChildren().setAll(view.getPracticeComplete(), view.getStartAssessment());
+    }
+    
+    /**
+     * Show the practice complete screen once it has been built.
+     * @param view The graphical user interface.
+     */
+    public static void showPracticeCompleteScreen(GameGUI view) {
         view.getScene().setCursor(Cursor.DEFAULT);
         view.getPracticeComplete().requestFocus();
     }
     
     /**
-     * Set up the game screen where subject will undergo trials.
+     * Set up the game screen where subject will undergo trials. The screen is built
+     * once and reset by resetGameScreen() before practice and before the assessment.
      * @param view The graphical user interface.
-     * @param primaryStage The stage.
-     * @param subjectID The subject's ID.
-     * @return The game scene.
+     * @param screen The pane to build the screen in.
      */
-    public static void setUpGameScreen(GameGUI view) {
+    public static void setUpGameScreen(GameGUI view, Pane screen) {
         setUpOptions(view);
         initialOptionSetUp(view);
         
@@ -209,7 +241,7 @@ public final class SetUp {
         
         view.setGetReadyBar(new ProgressBar(0.0));
         view.getGetReadyBar().setPrefWidth(300.0);
-        view.getGetReadyBar().setStyle("-fx-accent: green;");
+        view.getGetReadyBar().getStyleClass().add("get-ready-bar");
         
         view.setGetReady(new Label(Strings.GET_READY_SP));
         view.getGetReady().setFont(new Font("Tahoma", 50));
@@ -221,10 +253,10 @@ public final class SetUp {
         view.setPractice(new Label(Strings.PRACTICE_SP));
         view.getPractice().setFont(new Font("Tahoma", 50));
         
-        view.getLayout().getChildren().setAll(view.getGetReadyBox(), view.getProgressBar(), 
-                view.getLeftOption(), view.getRightOption(), view.getPractice());
-        
+        view.setStimulusLayer(new Pane(view.getLeftOption(), view.getRightOption()));
         setStars(view);
+        screen.getChildren().setAll(view.getStimulusLayer(), view.getProgressBar(), 
+                view.getStarLayer(), view.getGetReadyBox(), view.getPractice());
 
         view.getGetReadyBox().setPrefHeight(SCREEN_HEIGHT * .1);
         view.getGetReadyBox().setPrefWidth(SCREEN_WIDTH * .4);    
@@ -236,25 +268,70 @@ public final class SetUp {
         view.getPractice().setAlignment(Pos.CENTER);        
         view.getPractice().setLayoutX((SetUp.SCREEN_WIDTH / 2) - (view.getPractice().getPrefWidth() / 2));
         view.getPractice().setLayoutY(SetUp.SCREEN_HEIGHT * .1);
+    }
+    
+    /**
+     * Reset the game screen to how it is at the start of practice or assessment:
+     * empty progress bar, no stars, get ready bar showing and the first background.
+     * @param view The graphical user interface.
+     */
+    public static void resetGameScreen(GameGUI view) {
+        initialOptionSetUp(view);
+        view.clearStimulus();
+        setFontColors(view, 0);
+        
+        view.setProgressAccent(GameGUI.ProgressAccent.DEFAULT);
+        view.getProgressBar().setProgress(0.0);
+        view.getGetReadyBar().progressProperty().unbind();
+        view.getGetReadyBar().setProgress(0.0);
+        view.getGetReadyBox().setVisible(true);
+        view.getPractice().setVisible(true);
+        for (ImageView star : view.getStarNodes()) {
+            star.setVisible(false);
+        }
         
-        setBackground(view.getLayout(), 0);
+        setBackground(view, 0);
         view.getScene().setCursor(Cursor.NONE);
     }
     
+    /**
+     * Turn node caching of the static layers (background and stars) on or off.
+     * A cached layer is drawn from a bitmap instead of being re-rendered when
+     * the stimulus layer in front of it changes.
+     * @param view The graphical user interface.
+     * @param cache True to cache the static layers.
+     */
+    public static void setLayerCaching(GameGUI view, boolean cache) {
+        view.getBackgroundView().setCache(cache);
+        view.getBackgroundView().setCacheHint(CacheHint.SPEED);
+        view.getStarLayer().setCache(cache);
+        view.getStarLayer().setCacheHint(CacheHint.SPEED);
+    }
+    
+    /**
+     * Set up the background layer: an image view behind every screen.
+     * @param view The graphical user interface.
+     */
+    public static void setUpBackgroundLayer(GameGUI view) {
+        view.setBackgroundView(new ImageView());
+        view.getBackgroundView().setFitWidth(SCREEN_WIDTH);
+        view.getBackgroundView().setFitHeight(SCREEN_HEIGHT);
+        view.getLayout().getChildren().add(0, view.getBackgroundView());
+    }
+    
     private static void setStars(GameGUI view) {    
-        Image stars[] = new Image[NUM_STARS];
+        Image star = Assets.getStar();
         view.setStarNodes(new ImageView[NUM_STARS]);
         
         for (int i = 0; i < NUM_STARS; i++) {
-            stars[i] = new Image("/res/images/star2.png");
-            view.getStarNodes()[i] = new ImageView(stars[i]);
+            view.getStarNodes()[i] = new ImageView(star);
             view.getStarNodes()[i].setScaleX(STAR_SCALE);
             view.getStarNodes()[i].setScaleY(STAR_SCALE);
             view.getStarNodes()[i].setLayoutY(STAR_Y);
             view.getStarNodes()[i].setLayoutX(FIRST_STAR_X - (i * STAR_SHIFT));
             view.getStarNodes()[i].setVisible(false);
-            view.getLayout().getChildren().add(view.getStarNodes()[i]);
         }            
+        view.setStarLayer(new Group(view.getStarNodes()));
     }
 
     /**
@@ -277,19 +354,21 @@ public final class SetUp {
     public static void initialOptionSetUp(GameGUI view) {
         view.getLeftOption().setFont(new Font("Tahoma", INITIAL_LETTER_SIZE));
         view.getRightOption().setFont(new Font("Tahoma", INITIAL_LETTER_SIZE));
-        view.getLeftOption().setStyle("-fx-background-color: rgba(255,255,255,.65);");
-        view.getRightOption().setStyle("-fx-background-color: rgba(255,255,255,.65);");
+        if (!view.getLeftOption().getStyleClass().contains("option")) {
+            view.getLeftOption().getStyleClass().add("option");
+            view.getRightOption().getStyleClass().add("option");
+        }
         view.getLeftOption().setVisible(false);
         view.getRightOption().setVisible(false);
-        view.getLeftOption().setMinWidth(SCREEN_WIDTH / 2);
-        view.getLeftOption().setMaxWidth(SCREEN_WIDTH / 2);
-        view.getLeftOption().setMaxHeight(SCREEN_HEIGHT * .75);
-        view.getLeftOption().setMinHeight(SCREEN_HEIGHT * .75);
+        view.getLeftOption().setMinWidth(OPTION_WIDTH);
+        view.getLeftOption().setMaxWidth(OPTION_WIDTH);
+        view.getLeftOption().setMaxHeight(OPTION_HEIGHT);
+        view.getLeftOption().setMinHeight(OPTION_HEIGHT);
         
-        view.getRightOption().setMinWidth(SCREEN_WIDTH / 2);
-        view.getRightOption().setMaxWidth(SCREEN_WIDTH / 2);
-        view.getRightOption().setMinHeight(SCREEN_HEIGHT * .75);
-        view.getRightOption().setMaxHeight(SCREEN_HEIGHT * .75);
+        view.getRightOption().setMinWidth(OPTION_WIDTH);
+        view.getRightOption().setMaxWidth(OPTION_WIDTH);
+        view.getRightOption().setMinHeight(OPTION_HEIGHT);
+        view.getRightOption().setMaxHeight(OPTION_HEIGHT);
 
         view.getLeftOption().setAlignment(Pos.CENTER);
         view.getRightOption().setAlignment(Pos.CENTER);
@@ -300,49 +379,45 @@ public final class SetUp {
     /**
      * Set up the finish screen.
      * @param view The graphical user interface.
-     * @param primaryStage The stage.
-     * @return The finishing scene.
+     * @param screen The pane to build the screen in.
      */
-    public static void setUpFinishScreen(GameGUI view, int points, int level) {      
-        Label score = new Label();
-        score.setText(Strings.YOU_EARNED_SP 
-                + points + Strings.POINTS_SP);
+    public static void setUpFinishScreen(GameGUI view, Pane screen) {      
+        view.setScore(new Label());
         view.setCongratulations(new Label(Strings.YOU_DID_IT_SP));
         view.getCongratulations().setFont(Font.font("Verdana", 20));
-        score.setFont(Font.font("Tahoma", 16));
+        view.getScore().setFont(Font.font("Tahoma", 16));
         view.setFinishMessage(new VBox(6));
-        view.getFinishMessage().getChildren().addAll(view.getCongratulations(), score);
+        view.getFinishMessage().getChildren().addAll(view.getCongratulations(), view.getScore());
         view.getFinishMessage().setAlignment(Pos.CENTER); 
-        view.getLayout().getChildren().setAll(view.getFinishMessage());    
+        screen.getChildren().setAll(view.getFinishMessage());    
         view.getFinishMessage().setPrefHeight(SCREEN_HEIGHT * .3);
         view.getFinishMessage().setPrefWidth(SCREEN_WIDTH * .3);
         view.getFinishMessage().setLayoutX((SetUp.SCREEN_WIDTH / 2) - (view.getFinishMessage().getPrefWidth() / 2));
         view.getFinishMessage().setLayoutY((SetUp.SCREEN_HEIGHT / 2) - (view.getFinishMessage().getPrefHeight() / 2));
-        setBackground(view.getLayout(), level);
+    }
+    
+    /**
+     * Show the finish screen once it has been built.
+     * @param view The graphical user interface.
+     * @param points The subject's score.
+     * @param level The background reached.
+     */
+    public static void showFinishScreen(GameGUI view, int points, int level) {
+        view.getScore().setText(Strings.YOU_EARNED_SP 
+                + points + Strings.POINTS_SP);
+        setBackground(view, level);
     }
     
     /**
      * Set the background.
      * @param view The graphical user interface.
-     * @param layout The layout.
+     * @param level Index of the background.
      */
-    public static void setBackground(AnchorPane layout, int level) { 
+    public static void setBackground(GameGUI view, int level) { 
         if (level >= BACKGROUNDS.length) {
             level = BACKGROUNDS.length - 1;
         }
-        String backgroundName = BACKGROUNDS[level];
-        
-        BackgroundImage bg = new BackgroundImage(
-                new Image(
-                        "/res/images/" + backgroundName + ".png", 
-                        SCREEN_WIDTH,
-                        SCREEN_HEIGHT, 
-                        false, true),
-                BackgroundRepeat.NO_REPEAT, 
-                BackgroundRepeat.NO_REPEAT, 
-                BackgroundPosition.CENTER,
-                BackgroundSize.DEFAULT);
-        layout.setBackground(new Background(bg));
+        view.getBackgroundView().setImage(Assets.getBackground(level));
     }
 
     /**
@@ -354,9 +429,7 @@ public final class SetUp {
         if (level >= FONT_COLORS.length) {
             level = FONT_COLORS.length - 1;
         }
-        Color color = FONT_COLORS[level];
-        view.getLeftOption().setTextFill(color);
-        view.getRightOption().setTextFill(color);
+        view.getStimulusRenderer().setColor(FONT_COLORS[level]);
     }
 
     /**
@@ -376,7 +449,7 @@ public final class SetUp {
         quitLabel.setFont(new Font("Tahoma", 20));
         Button yesButton = new Button(Strings.YES_SP);
         yesButton.setOnAction(e -> {
-            System.exit(0);
+            view.exit();
         });
         Button noButton = new Button(Strings.NO_SP);
         noButton.setOnAction(e -> {
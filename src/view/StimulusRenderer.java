@@ -0,0 +1,61 @@
+package view;
+
+import javafx.scene.paint.Color;
+import model.AlphaPair;
+
+/**
+ * Draws the two letters of a round on the game screen. The letters of the
+ * next round are staged on hidden nodes during the wait between rounds,
+ * and shown at onset by swap().
+ * 
+ * Classes Related To:
+ *  -LabelStimulusRenderer.java
+ *      -Draws the letters as the text of the two option labels.
+ *  -AtlasStimulusRenderer.java
+ *      -Draws the letters from a pre-rendered glyph atlas.
+ * 
+ */
+public interface StimulusRenderer {
+    
+    /** Name of the label renderer in the config (stimulus.renderer). */
+    public static final String LABEL = "label";
+    
+    /** Name of the atlas renderer in the config (stimulus.renderer). */
+    public static final String ATLAS = "atlas";
+    
+    /**
+     * Lay out the letters of a pair on hidden nodes, ready for swap().
+     * @param pair The pair to show.
+     * @param sizeVariation True if the letters are shown at the pair's font sizes, 
+     * false if both are shown at the initial size.
+     */
+    void stage(AlphaPair pair, boolean sizeVariation);
+    
+    /**
+     * Show the staged letters. Only changes which nodes are visible.
+     */
+    void swap();
+    
+    /**
+     * Hide the letters.
+     */
+    void clear();
+    
+    /**
+     * Set the color of the letters.
+     * @param color The color.
+     */
+    void setColor(Color color);
+    
+    /**
+     * Remove what the renderer added to the game screen, when another 
+     * renderer replaces it.
+     */
+    void dispose();
+    
+    /**
+     * Get the name of the renderer.
+     * @return The name used in the config.
+     */
+    String getName();
+}
@@ -0,0 +1,281 @@
+package view;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.log4j.Logger;
+
+import config.Settings;
+import javafx.animation.AnimationTimer;
+import util.LatencyHistogram;
+
+/**
+ * Measures the timing of this station while the login screen is showing:
+ * the resolution and cost of System.nanoTime(), how far Thread.sleep(1)
+ * overshoots, and the interval and jitter of the FX pulses. Response times
+ * are measured with nanoTime() from a pulse, and the wait between rounds is
+ * a loop of sleep(1), so these bound how exact the results can be.
+ *
+ * The clock and sleep are measured on a background thread while the pulses
+ * are measured on the FX thread. With vsync on, the pulse interval is the
+ * frame interval of the display.
+ *
+ * The measurements are written to a timing header next to the subject's
+ * results, and compared with the tolerances in the config so a station
+ * that is off can be noticed before testing starts.
+ *
+ * Classes Related To:
+ *  -GameGUI.java
+ *      -Calibrates each time the login screen is shown and warns on the login screen.
+ *  -LetterGameController.java (controller)
+ *      -Writes the timing header of each session.
+ *  -PulseMonitor.java
+ *      -Counts dropped frames against the measured frame interval.
+ *
+ */
+public class TimingCalibration {
+
+    private static final Logger logger = Logger.getLogger(TimingCalibration.class);
+
+    /** First line of every timing header. */
+    public static final String HEADER = "# letter game timing header v1";
+
+    /** Number of back to back calls of nanoTime() measured. */
+    static final int CLOCK_SAMPLES = 200000;
+
+    /** Number of sleep(1) calls measured. */
+    static final int SLEEP_SAMPLES = 200;
+
+    /** Number of pulses skipped before measuring, while the screen settles. */
+    static final int PULSE_WARM_UP = 15;
+
+    /** Number of pulse intervals measured. */
+    static final int PULSE_SAMPLES = 120;
+
+    /** Smallest step seen between two calls of nanoTime(). */
+    private long clockResolution;
+
+    /** Mean cost of one call of nanoTime(). */
+    private double clockCost;
+
+    /** How much longer than a millisecond each sleep(1) took. */
+    private final LatencyHistogram sleepOvershoot = new LatencyHistogram("SLEEP_OVERSHOOT");
+
+    /** Interval between pulses. */
+    private final LatencyHistogram pulseIntervals = new LatencyHistogram("PULSE_INTERVAL");
+
+    /** Mean and sum of squared deviations of the pulse intervals, for the jitter. */
+    private double pulseMean;
+    private double pulseM2;
+
+    /** Time of the calibration. */
+    private LocalDateTime time;
+
+    /**
+     * Measure the clock and sleep on a background thread and the pulses on
+     * the FX thread. Must be called on the FX thread.
+     * @return Completes with the calibration once everything has been measured.
+     */
+    public static CompletableFuture<TimingCalibration> start() {
+        TimingCalibration calibration = new TimingCalibration();
+        calibration.time = LocalDateTime.now();
+        CompletableFuture<Void> clock = CompletableFuture.runAsync(() -> {
+            calibration.measureClock();
+            calibration.measureSleep();
+        }, runnable -> {
+            Thread thread = new Thread(runnable, "timing-calibration");
+            thread.setDaemon(true);
+            thread.start();
+        });
+        CompletableFuture<Void> pulses = calibration.measurePulses();
+        return clock.thenCombine(pulses, (a, b) -> calibration);
+    }
+
+    /**
+     * Measure the resolution and the cost of nanoTime().
+     */
+    private void measureClock() {
+        long resolution = Long.MAX_VALUE;
+        long start = System.nanoTime();
+        long previous = start;
+        for (int i = 0; i < CLOCK_SAMPLES; i++) {
+            long now = System.nanoTime();
+            if (now != previous && now - previous < resolution) {
+                resolution = now - previous;
+            }
+            previous = now;
+        }
+        this.clockCost = (double) (previous - start) / CLOCK_SAMPLES;
+        this.clockResolution = resolution;
+    }
+
+    /**
+     * Measure how long sleep(1) overshoots.
+     */
+    private void measureSleep() {
+        try {
+            for (int i = 0; i < SLEEP_SAMPLES; i++) {
+                long start = System.nanoTime();
+                Thread.sleep(1);
+                this.sleepOvershoot.record(Math.max(0, System.nanoTime() - start - 1000000L));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Measure the interval between pulses with an animation timer.
+     * @return Completes once PULSE_SAMPLES intervals have been measured.
+     */
+    private CompletableFuture<Void> measurePulses() {
+        CompletableFuture<Void> done = new CompletableFuture<Void>();
+        new AnimationTimer() {
+            private int pulses;
+            private long last;
+
+            @Override
+            public void handle(long now) {
+                this.pulses++;
+                if (this.pulses > PULSE_WARM_UP) {
+                    recordPulse(now - this.last);
+                }
+                this.last = now;
+                if (this.pulses >= PULSE_WARM_UP + PULSE_SAMPLES) {
+                    this.stop();
+                    done.complete(null);
+                }
+            }
+        }.start();
+        return done;
+    }
+
+    /**
+     * Record the interval between two pulses.
+     * @param interval The interval in nanoseconds.
+     */
+    private void recordPulse(long interval) {
+        this.pulseIntervals.record(interval);
+        double delta = interval - this.pulseMean;
+        this.pulseMean += delta / this.pulseIntervals.getCount();
+        this.pulseM2 += delta * (interval - this.pulseMean);
+    }
+
+    /**
+     * Compare the measurements with the tolerances in the settings.
+     * @param settings The settings.
+     * @return One line per measurement outside its tolerance, empty if the station is fine.
+     */
+    public List<String> check(Settings settings) {
+        List<String> problems = new ArrayList<String>();
+        if (this.clockResolution > settings.getTimingMaxClockResolution() * 1000L) {
+            problems.add(String.format("Clock resolution %.3f us is above %.3f us",
+                    this.clockResolution / 1000.0, settings.getTimingMaxClockResolution()));
+        }
+        if (this.getSleepOvershootP99() > settings.getTimingMaxSleepOvershoot() * 1000000L) {
+            problems.add(String.format("Sleep overshoot p99 %.3f ms is above %.3f ms",
+                    this.getSleepOvershootP99() / 1000000.0, settings.getTimingMaxSleepOvershoot()));
+        }
+        if (this.getFrameInterval() > settings.getTimingMaxFrame() * 1000000L) {
+            problems.add(String.format("Frame interval %.3f ms is above %.3f ms",
+                    this.getFrameInterval() / 1000000.0, settings.getTimingMaxFrame()));
+        }
+        if (this.getPulseJitter() > settings.getTimingMaxPulseJitter() * 1000000L) {
+            problems.add(String.format("Pulse jitter %.3f ms is above %.3f ms",
+                    this.getPulseJitter() / 1000000.0, settings.getTimingMaxPulseJitter()));
+        }
+        return problems;
+    }
+
+    /**
+     * Write the timing header of a session next to the subject's results:
+     * results_letters/subjectID/timing_subjectID_time.txt
+     * @param subjectID The subject.
+     * @param settings The settings, for the tolerances and the time between rounds.
+     */
+    public void writeHeader(int subjectID, Settings settings) {
+        String subjectId = Integer.toString(subjectID);
+        File subjectDir = new File("results_letters", subjectId);
+        subjectDir.mkdirs();
+        File file = new File(subjectDir, "timing_" + subjectId + "_"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".txt");
+        List<String> problems = this.check(settings);
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            out.println(HEADER);
+            out.println("calibrated=" + this.time);
+            out.println("java.version=" + System.getProperty("java.version"));
+            out.println("os=" + System.getProperty("os.name") + " " + System.getProperty("os.version"));
+            out.println(String.format("clock.resolution.us=%.3f", this.clockResolution / 1000.0));
+            out.println(String.format("clock.cost.ns=%.1f", this.clockCost));
+            out.println(String.format("sleep.overshoot.mean.ms=%.3f", this.sleepOvershoot.getMean() / 1000000.0));
+            out.println(String.format("sleep.overshoot.p99.ms=%.3f", this.getSleepOvershootP99() / 1000000.0));
+            out.println(String.format("sleep.overshoot.max.ms=%.3f", this.sleepOvershoot.getMax() / 1000000.0));
+            out.println(String.format("isi.expected.lateness.ms=%.3f",
+                    settings.getTimeBetweenRounds() * this.sleepOvershoot.getMean() / 1000000.0));
+            out.println(String.format("frame.interval.ms=%.3f", this.getFrameInterval() / 1000000.0));
+            out.println(String.format("frame.rate.hz=%.2f", 1000000000.0 / this.getFrameInterval()));
+            out.println(String.format("pulse.jitter.ms=%.3f", this.getPulseJitter() / 1000000.0));
+            out.println(String.format("pulse.interval.max.ms=%.3f", this.pulseIntervals.getMax() / 1000000.0));
+            out.println("within.tolerance=" + problems.isEmpty());
+            for (String problem : problems) {
+                out.println("# " + problem);
+            }
+            logger.info("Timing header written to " + file.getPath());
+        } catch (IOException e) {
+            logger.error("Could not write timing header " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * @return Smallest step of nanoTime() in nanoseconds.
+     */
+    public long getClockResolution() {
+        return this.clockResolution;
+    }
+
+    /**
+     * @return Mean cost of a call of nanoTime() in nanoseconds.
+     */
+    public double getClockCost() {
+        return this.clockCost;
+    }
+
+    /**
+     * @return 99th percentile of the overshoot of sleep(1) in nanoseconds.
+     */
+    public long getSleepOvershootP99() {
+        return this.sleepOvershoot.getPercentile(99);
+    }
+
+    /**
+     * @return Mean interval between pulses in nanoseconds.
+     */
+    public long getFrameInterval() {
+        return Math.round(this.pulseMean);
+    }
+
+    /**
+     * @return Standard deviation of the interval between pulses in nanoseconds.
+     */
+    public long getPulseJitter() {
+        long n = this.pulseIntervals.getCount();
+        return n > 1 ? Math.round(Math.sqrt(this.pulseM2 / (n - 1))) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Timing calibration: clock resolution %.3f us, clock cost %.1f ns, "
+                + "sleep(1) overshoot mean %.3f ms p99 %.3f ms, frame interval %.3f ms, pulse jitter %.3f ms",
+                this.clockResolution / 1000.0, this.clockCost,
+                this.sleepOvershoot.getMean() / 1000000.0, this.getSleepOvershootP99() / 1000000.0,
+                this.getFrameInterval() / 1000000.0, this.getPulseJitter() / 1000000.0);
+    }
+}